@@ -0,0 +1,46 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for the benchmarks. Accepts the usual JMH command line options,
+ * but writes the results as JSON by default, so that the reports of two
+ * releases can be compared.
+ *
+ * @author Steven Arzt
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * The file to which the results are written unless specified otherwise
+	 */
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+		CommandLineOptions cmdOptions = new CommandLineOptions(args);
+		if (cmdOptions.shouldHelp() || cmdOptions.shouldList() || cmdOptions.shouldListWithParams()
+				|| cmdOptions.shouldListProfilers() || cmdOptions.shouldListResultFormats()) {
+			// Let JMH handle the informational commands
+			Main.main(args);
+			return;
+		}
+
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+		if (!cmdOptions.getResultFormat().hasValue())
+			builder.resultFormat(ResultFormatType.JSON);
+		if (!cmdOptions.getResult().hasValue())
+			builder.result(DEFAULT_RESULT_FILE);
+		new Runner(builder.build()).run();
+	}
+
+}
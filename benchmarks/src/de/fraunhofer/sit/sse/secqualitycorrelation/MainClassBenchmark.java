@@ -0,0 +1,165 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.GroupedSpearman;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.SyntheticCounts;
+
+/**
+ * Benchmarks for the correlation and significance computations in
+ * {@link MainClass}
+ *
+ * @author Steven Arzt
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MainClassBenchmark {
+
+	/**
+	 * A pair of columns from a synthetic matrix with a realistic number of jobs
+	 */
+	@State(Scope.Benchmark)
+	public static class PairState {
+
+		@Param({ "1000", "100000", "1000000" })
+		public int jobs;
+
+		@Param({ "0.05" })
+		public double density;
+
+		public int[] vals1;
+		public int[] vals2;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			// The two most popular columns are the ones that have the most non-zero
+			// values and are thus the most expensive to rank
+			CountMatrix matrix = SyntheticCounts.generate(jobs, 10, density, 42);
+			vals1 = matrix.getColumnOrZeros(0);
+			vals2 = matrix.getColumnOrZeros(1);
+		}
+
+	}
+
+	/**
+	 * A full synthetic matrix for the pairwise correlation of all columns
+	 */
+	@State(Scope.Benchmark)
+	public static class MatrixState {
+
+		@Param({ "1000", "10000" })
+		public int jobs;
+
+		@Param({ "10", "100", "1000" })
+		public int columns;
+
+		@Param({ "0.05" })
+		public double density;
+
+		public CountMatrix matrix;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			matrix = SyntheticCounts.generate(jobs, columns, density, 42);
+		}
+
+	}
+
+	/**
+	 * A smaller synthetic matrix for the pair loop including the significance
+	 * tests
+	 */
+	@State(Scope.Benchmark)
+	public static class PairLoopState {
+
+		@Param({ "1000", "10000" })
+		public int jobs;
+
+		@Param({ "10", "30" })
+		public int columns;
+
+		@Param({ "0.05" })
+		public double density;
+
+		public CountMatrix matrix;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			matrix = SyntheticCounts.generate(jobs, columns, density, 42);
+		}
+
+	}
+
+	@Benchmark
+	public double correlate(PairState state) {
+		return MainClass.correlate(state.vals1, state.vals2);
+	}
+
+	@Benchmark
+	public double computeSignificance(PairState state) {
+		return MainClass.computeSignificance(state.vals1, state.vals2);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public void correlateAllPairs(MatrixState state, Blackhole bh) {
+		// Same traversal as in the main analysis, but without the database
+		int[] ids = state.matrix.getColumnIds();
+		for (int i = 0; i < ids.length; i++) {
+			int[] vals1 = state.matrix.getColumnOrZeros(ids[i]);
+			for (int j = i + 1; j < ids.length; j++)
+				bh.consume(MainClass.correlate(vals1, state.matrix.getColumnOrZeros(ids[j])));
+		}
+	}
+
+	/**
+	 * The pair loop of the main analysis, i.e., ranking all columns once and then
+	 * computing the correlation and the significance of every pair, but without
+	 * the database. Run with
+	 * <i>-jvmArgsAppend -Dsecqualitycorrelation.kernels=scalar</i> to compare
+	 * against the scalar kernels.
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+	public void pairLoop(PairLoopState state, Blackhole bh) {
+		CountMatrix matrix = state.matrix;
+		GroupedSpearman ranks = new GroupedSpearman(matrix,
+				new int[][] { IntStream.range(0, matrix.getRowCount()).toArray() });
+		int[] ids = matrix.getColumnIds();
+		for (int i = 0; i < ids.length; i++) {
+			int[] vals1 = matrix.getColumnOrZeros(ids[i]);
+			for (int j = i + 1; j < ids.length; j++) {
+				bh.consume(ranks.correlation(0, ids[i], ids[j]));
+				bh.consume(MainClass.computeSignificance(vals1, matrix.getColumnOrZeros(ids[j])));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.codeinspect.tables.CountingTable;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.SyntheticCounts;
+
+/**
+ * Benchmarks for merging duplicate values before the linear interpolation in
+ * {@link PlotCreator}
+ *
+ * @author Steven Arzt
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlotCreatorBenchmark {
+
+	/**
+	 * A pair of columns from a synthetic matrix
+	 */
+	@State(Scope.Benchmark)
+	public static class ArrayState {
+
+		@Param({ "1000", "100000", "1000000" })
+		public int jobs;
+
+		@Param({ "0.05" })
+		public double density;
+
+		public int[] vals1;
+		public int[] vals2;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			CountMatrix matrix = SyntheticCounts.generate(jobs, 10, density, 42);
+			vals1 = matrix.getColumnOrZeros(0);
+			vals2 = matrix.getColumnOrZeros(1);
+		}
+
+	}
+
+	/**
+	 * The same data in a counting table. The table-based variant merges the rows
+	 * in place, so every invocation needs a fresh copy.
+	 */
+	@State(Scope.Benchmark)
+	public static class TableState {
+
+		@Param({ "1000", "10000" })
+		public int jobs;
+
+		@Param({ "0.05" })
+		public double density;
+
+		private CountingTable<Integer, Integer> original;
+		public CountingTable<Integer, Integer> table;
+
+		@Setup(Level.Trial)
+		public void setup() {
+			CountMatrix matrix = SyntheticCounts.generate(jobs, 10, density, 42);
+			original = new CountingTable<>();
+			for (int row = 0; row < matrix.getRowCount(); row++) {
+				original.put(row, 0, matrix.get(row, 0));
+				original.put(row, 1, matrix.get(row, 1));
+			}
+		}
+
+		@Setup(Level.Invocation)
+		public void copy() {
+			table = new CountingTable<>(original);
+		}
+
+	}
+
+	@Benchmark
+	public int[][] resolveColDuplicatesArrays(ArrayState state) {
+		return PlotCreator.resolveColDuplicates(state.vals1, state.vals2);
+	}
+
+	@Benchmark
+	public CountingTable<Integer, Integer> resolveColDuplicatesTable(TableState state) {
+		PlotCreator.resolveColDuplicates(state.table, 0);
+		return state.table;
+	}
+
+}
@@ -0,0 +1,73 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for persisting single counts through the JDBC backend, which
+ * writes every count as its own row. The log backend only writes the counts
+ * together with their job, which {@link DatabaseManagerBenchmark} covers.
+ *
+ * @author Steven Arzt
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseCountBenchmark {
+
+	private File dbDir;
+	private IDatabaseManager dbManager;
+	private ProcessedJob job;
+	private int nextId = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, SQLException {
+		dbDir = Files.createTempDirectory("correlation-bench").toFile();
+		dbManager = DatabaseManagerBenchmark.open("h2", dbDir);
+
+		// Counts need an existing job to refer to
+		job = new ProcessedJob();
+		job.jobId = 0;
+		dbManager.addToDatabase(job);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		DatabaseManagerBenchmark.delete(dbDir);
+	}
+
+	@Benchmark
+	public CategoryAndCount addCategoryAndCount() throws SQLException, IOException {
+		CategoryAndCount cc = new CategoryAndCount(job, nextId++ % 100, 3);
+		dbManager.addToDatabase(cc);
+		return cc;
+	}
+
+	@Benchmark
+	public VulnerabilityAndCount addVulnerabilityAndCount() throws SQLException, IOException {
+		VulnerabilityAndCount vc = new VulnerabilityAndCount(job, nextId++ % 1000, 3);
+		dbManager.addToDatabase(vc);
+		return vc;
+	}
+
+}
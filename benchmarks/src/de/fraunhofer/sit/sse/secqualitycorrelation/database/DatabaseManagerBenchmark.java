@@ -0,0 +1,133 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for persisting results through the {@link IDatabaseManager}. The
+ * JDBC backend runs against an embedded H2 database in MariaDB compatibility
+ * mode, so that the benchmarks measure the per-call overhead of our
+ * persistence layer without network latency. The log backend writes to a local
+ * {@link LogDatabaseManager} file. The log backend buffers the counts of a job
+ * until the job itself is written, so the counts are benchmarked together with
+ * their job here, and on their own only for the JDBC backend in
+ * {@link DatabaseCountBenchmark}.
+ *
+ * @author Steven Arzt
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatabaseManagerBenchmark {
+
+	/**
+	 * The number of category and vulnerability type counts per job
+	 */
+	private static final int COUNTS_PER_JOB = 10;
+
+	@Param({ "h2", "log" })
+	public String backend;
+
+	private File dbDir;
+	private IDatabaseManager dbManager;
+	private long nextJobId = 1;
+	private int nextId = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, SQLException {
+		dbDir = Files.createTempDirectory("correlation-bench").toFile();
+		dbManager = open(backend, dbDir);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		delete(dbDir);
+	}
+
+	/**
+	 * Opens the given backend in the given directory
+	 * 
+	 * @param backend The backend, either "h2" or "log"
+	 * @param dbDir   The directory for the database files
+	 * @return The database manager
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	static IDatabaseManager open(String backend, File dbDir) throws IOException, SQLException {
+		if (backend.equals("log"))
+			return new LogDatabaseManager(new File(dbDir, "correlations.log"));
+		return new DatabaseManager(
+				"jdbc:h2:file:" + new File(dbDir, "correlations").getAbsolutePath() + ";MODE=MariaDB", "sa", "");
+	}
+
+	/**
+	 * Deletes the given directory with all its files
+	 * 
+	 * @param dbDir The directory to delete
+	 * @throws IOException
+	 */
+	static void delete(File dbDir) throws IOException {
+		try (Stream<Path> files = Files.walk(dbDir.toPath())) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Benchmark
+	public ProcessedJob addProcessedJob() throws SQLException, IOException {
+		ProcessedJob pj = new ProcessedJob();
+		pj.jobId = nextJobId++;
+		pj.numQualFindings = 17;
+		pj.numSecFindings = 4;
+		dbManager.addToDatabase(pj);
+		return pj;
+	}
+
+	@Benchmark
+	public ProcessedJob addProcessedJobWithCounts() throws SQLException, IOException {
+		// The counts are written first, as in the ingest
+		ProcessedJob pj = new ProcessedJob();
+		pj.jobId = nextJobId++;
+		pj.numQualFindings = 17;
+		pj.numSecFindings = 4;
+		for (int i = 0; i < COUNTS_PER_JOB; i++) {
+			dbManager.addToDatabase(new CategoryAndCount(pj, i, 3));
+			dbManager.addToDatabase(new VulnerabilityAndCount(pj, i, 3));
+		}
+		dbManager.addToDatabase(pj);
+		return pj;
+	}
+
+	@Benchmark
+	public CategoryCorrelation addCategoryCorrelation() throws SQLException, IOException {
+		int id = nextId++;
+		CategoryCorrelation cc = new CategoryCorrelation(id % 100, id / 100, 0.42);
+		cc.significance = 0.1;
+		dbManager.addToDatabase(cc);
+		return cc;
+	}
+
+}
@@ -0,0 +1,54 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for the linear regression in {@link CorrelationAnalysis}
+ *
+ * @author Steven Arzt
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CorrelationAnalysisBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int jobs;
+
+	@Param({ "0.05" })
+	public double density;
+
+	private double[] x;
+	private double[] y;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		CountMatrix matrix = SyntheticCounts.generate(jobs, 10, density, 42);
+		x = Arrays.stream(matrix.getColumnOrZeros(0)).asDoubleStream().toArray();
+		y = Arrays.stream(matrix.getColumnOrZeros(1)).asDoubleStream().toArray();
+	}
+
+	@Benchmark
+	public RegressionResult<LinearFunction> calculateLinearRegression() {
+		return CorrelationAnalysis.calculateLinearRegression(x, y);
+	}
+
+}
@@ -0,0 +1,93 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scalar kernels with the kernels that use the Vector API. The
+ * vector kernels are only available if the main project was built with the
+ * <i>vector</i> profile, and the benchmark must run on JDK 17 or later.
+ *
+ * @author Steven Arzt
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Benchmark)
+public class KernelsBenchmark {
+
+	@Param({ "scalar", "vector" })
+	public String kernel;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int jobs;
+
+	private IKernels kernels;
+	private double[] ranks1;
+	private double[] ranks2;
+	private int[] vals1;
+	private int[] vals2;
+	private long[] swaps;
+	private int[] outVals1;
+	private int[] outVals2;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		kernels = "vector".equals(kernel) ? Kernels.vector() : Kernels.scalar();
+		if (kernels == null)
+			throw new IllegalStateException("The vector kernels are not available");
+
+		// Scaled ranks as the pairwise correlations see them
+		CountMatrix matrix = SyntheticCounts.generate(jobs, 10, 0.05, 42);
+		int[][] allRows = { IntStream.range(0, jobs).toArray() };
+		GroupedSpearman spearman = new GroupedSpearman(matrix, allRows);
+		ranks1 = spearman.getScaledRanks(0, 0);
+		ranks2 = spearman.getScaledRanks(0, 1);
+
+		vals1 = matrix.getColumnOrZeros(0);
+		vals2 = matrix.getColumnOrZeros(1);
+		swaps = new Random(42).longs((jobs + 63) / 64).toArray();
+		outVals1 = new int[jobs];
+		outVals2 = new int[jobs];
+	}
+
+	@Benchmark
+	public double dot() {
+		return kernels.dot(ranks1, ranks2);
+	}
+
+	@Benchmark
+	public double meanAndVariance() {
+		double mean = kernels.sum(ranks1) / ranks1.length;
+		return kernels.sumOfSquaredDeviations(ranks1, mean);
+	}
+
+	@Benchmark
+	public double regressionSums() {
+		return kernels.sumOfCrossDeviations(ranks1, 0, ranks2, 0);
+	}
+
+	@Benchmark
+	public int[] permutation() {
+		kernels.swapWhere(vals1, vals2, swaps, outVals1, outVals2);
+		return outVals1;
+	}
+
+}
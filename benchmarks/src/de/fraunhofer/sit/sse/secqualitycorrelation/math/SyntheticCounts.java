@@ -0,0 +1,68 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generator for synthetic count matrices with a realistic shape. Few columns
+ * occur in many jobs while most columns are rare, and larger apps have more
+ * findings in every column, which gives the columns a positive correlation.
+ *
+ * @author Steven Arzt
+ *
+ */
+public class SyntheticCounts {
+
+	/**
+	 * The default fraction of non-zero cells
+	 */
+	public static final double DEFAULT_DENSITY = 0.05;
+
+	private SyntheticCounts() {
+	}
+
+	/**
+	 * Generates a new count matrix
+	 *
+	 * @param jobs    The number of rows
+	 * @param columns The number of columns
+	 * @param density The average fraction of non-zero cells
+	 * @param seed    The seed for the random number generator, so that all forks
+	 *                of a benchmark see the same data
+	 * @return The new count matrix
+	 */
+	public static CountMatrix generate(int jobs, int columns, double density, long seed) {
+		SplittableRandom rnd = new SplittableRandom(seed);
+
+		// The size of an app scales the number of findings in all categories
+		double[] appSize = new double[jobs];
+		for (int i = 0; i < jobs; i++)
+			appSize[i] = Math.exp(gaussian(rnd) * 0.75);
+
+		// Column popularity follows a Zipf-like distribution
+		double[] popularity = new double[columns];
+		double sum = 0;
+		for (int c = 0; c < columns; c++) {
+			popularity[c] = 1d / Math.sqrt(c + 1);
+			sum += popularity[c];
+		}
+
+		CountMatrix.Builder builder = new CountMatrix.Builder(jobs, columns);
+		for (int i = 0; i < jobs; i++)
+			builder.addRow(i);
+		for (int c = 0; c < columns; c++) {
+			double p = Math.min(1d, density * columns * popularity[c] / sum);
+			double mean = 1 + 4 * rnd.nextDouble();
+			for (int i = 0; i < jobs; i++) {
+				if (rnd.nextDouble() < Math.min(1d, p * appSize[i]))
+					builder.add(i, c, 1 + (int) (-Math.log(1 - rnd.nextDouble()) * mean * appSize[i]));
+			}
+		}
+		return builder.build();
+	}
+
+	private static double gaussian(SplittableRandom rnd) {
+		// Box-Muller transform
+		return Math.sqrt(-2 * Math.log(1 - rnd.nextDouble())) * Math.cos(2 * Math.PI * rnd.nextDouble());
+	}
+
+}
@@ -0,0 +1,126 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels that process as many values at once as the CPU supports, e.g., four
+ * doubles with AVX2 or eight doubles with AVX-512. The remaining values at the
+ * end of an array are processed one after the other. This class requires the
+ * incubator module of the Vector API and is only compiled with the
+ * <i>vector</i> profile. Use {@link Kernels} to obtain an instance.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class VectorKernels implements IKernels {
+
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+	@Override
+	public String getName() {
+		return String.format("vector (%d bits)", DOUBLES.vectorBitSize());
+	}
+
+	@Override
+	public double sum(double[] a) {
+		DoubleVector acc = DoubleVector.zero(DOUBLES);
+		int upper = DOUBLES.loopBound(a.length);
+		int i = 0;
+		for (; i < upper; i += DOUBLES.length())
+			acc = acc.add(DoubleVector.fromArray(DOUBLES, a, i));
+		double sum = acc.reduceLanes(VectorOperators.ADD);
+		for (; i < a.length; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	@Override
+	public double dot(double[] a, double[] b) {
+		return dot(a, b, 0, a.length);
+	}
+
+	@Override
+	public double dot(double[] a, double[] b, int from, int to) {
+		DoubleVector acc = DoubleVector.zero(DOUBLES);
+		int upper = from + DOUBLES.loopBound(to - from);
+		int i = from;
+		for (; i < upper; i += DOUBLES.length())
+			acc = DoubleVector.fromArray(DOUBLES, a, i).fma(DoubleVector.fromArray(DOUBLES, b, i), acc);
+		double sum = acc.reduceLanes(VectorOperators.ADD);
+		for (; i < to; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	@Override
+	public double sumOfSquaredDeviations(double[] a, double mean) {
+		DoubleVector acc = DoubleVector.zero(DOUBLES);
+		int upper = DOUBLES.loopBound(a.length);
+		int i = 0;
+		for (; i < upper; i += DOUBLES.length()) {
+			DoubleVector d = DoubleVector.fromArray(DOUBLES, a, i).sub(mean);
+			acc = d.fma(d, acc);
+		}
+		double sum = acc.reduceLanes(VectorOperators.ADD);
+		for (; i < a.length; i++) {
+			double d = a[i] - mean;
+			sum += d * d;
+		}
+		return sum;
+	}
+
+	@Override
+	public double sumOfCrossDeviations(double[] a, double meanA, double[] b, double meanB) {
+		DoubleVector acc = DoubleVector.zero(DOUBLES);
+		int upper = DOUBLES.loopBound(a.length);
+		int i = 0;
+		for (; i < upper; i += DOUBLES.length()) {
+			DoubleVector da = DoubleVector.fromArray(DOUBLES, a, i).sub(meanA);
+			DoubleVector db = DoubleVector.fromArray(DOUBLES, b, i).sub(meanB);
+			acc = da.fma(db, acc);
+		}
+		double sum = acc.reduceLanes(VectorOperators.ADD);
+		for (; i < a.length; i++)
+			sum += (a[i] - meanA) * (b[i] - meanB);
+		return sum;
+	}
+
+	@Override
+	public void shiftAndScale(double[] a, double shift, double factor) {
+		int upper = DOUBLES.loopBound(a.length);
+		int i = 0;
+		for (; i < upper; i += DOUBLES.length())
+			DoubleVector.fromArray(DOUBLES, a, i).add(shift).mul(factor).intoArray(a, i);
+		for (; i < a.length; i++)
+			a[i] = (a[i] + shift) * factor;
+	}
+
+	@Override
+	public void swapWhere(int[] a, int[] b, long[] mask, int[] outA, int[] outB) {
+		// The number of lanes divides 64, so a vector never spans two mask words
+		int upper = INTS.loopBound(a.length);
+		int i = 0;
+		for (; i < upper; i += INTS.length()) {
+			VectorMask<Integer> swap = VectorMask.fromLong(INTS, mask[i >>> 6] >>> (i & 63));
+			IntVector va = IntVector.fromArray(INTS, a, i);
+			IntVector vb = IntVector.fromArray(INTS, b, i);
+			va.blend(vb, swap).intoArray(outA, i);
+			vb.blend(va, swap).intoArray(outB, i);
+		}
+		for (; i < a.length; i++) {
+			if ((mask[i >>> 6] & (1L << i)) != 0) {
+				outA[i] = b[i];
+				outB[i] = a[i];
+			} else {
+				outA[i] = a[i];
+				outB[i] = b[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,375 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CategoryAndCount;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CategoryCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.IDatabaseManager;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.NameDictionary;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.ProcessedJob;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.VulnerabilityAndCount;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.VulnerabilityCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.GroupedSpearman;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.ICountMatrixBuilder;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.PairPruner;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.PartialCorrelation;
+
+/**
+ * The in-memory state that the stages of the analysis hand to each other: the
+ * count matrices and the correlations computed on them. The rows of all
+ * matrices are aligned.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class AnalysisResult {
+
+	private final NameDictionary dictionary;
+	private final CountMatrix categoryMatrix;
+	private final CountMatrix vulnerabilityMatrix;
+	private final CountMatrix typeMatrix;
+
+	private final Map<Long, CategoryCorrelation> categoryCorrelations = new LinkedHashMap<>();
+	private final Map<Long, VulnerabilityCorrelation> vulnerabilityCorrelations = new LinkedHashMap<>();
+	private boolean correlationsComplete = false;
+
+	private PartialCorrelation categoryPartialCorrelation;
+	private PartialCorrelation vulnerabilityPartialCorrelation;
+
+	private PairPruner categoryPruner;
+	private PairPruner vulnerabilityPruner;
+
+	private int topK = 0;
+
+	private GroupedSpearman categoryRanks;
+	private GroupedSpearman vulnerabilityRanks;
+
+	/**
+	 * Creates a new analysis result
+	 * 
+	 * @param dictionary          The dictionary for resolving the column
+	 *                            identifiers to names
+	 * @param categoryMatrix      The counts per job and category
+	 * @param vulnerabilityMatrix The counts per job and vulnerability type
+	 * @param typeMatrix          The counts per job and {@link CategoryType}
+	 */
+	public AnalysisResult(NameDictionary dictionary, CountMatrix categoryMatrix, CountMatrix vulnerabilityMatrix,
+			CountMatrix typeMatrix) {
+		this.dictionary = dictionary;
+		this.categoryMatrix = categoryMatrix;
+		this.vulnerabilityMatrix = vulnerabilityMatrix;
+		this.typeMatrix = typeMatrix;
+	}
+
+	/**
+	 * Loads the counts of all processed jobs from the database. Correlations are
+	 * not loaded.
+	 * 
+	 * @param dbManager The database manager
+	 * @return The analysis result with the count matrices
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public static AnalysisResult loadFromDatabase(IDatabaseManager dbManager) throws IOException, SQLException {
+		NameDictionary dictionary = dbManager.loadDictionary();
+		List<ProcessedJob> processedJobs = dbManager.getAllProcessedJobs();
+		CountMatrix.Builder catBuilder = new CountMatrix.Builder(processedJobs.size(), dictionary.size() + 1);
+		CountMatrix.Builder vulnBuilder = new CountMatrix.Builder(processedJobs.size(), dictionary.size() + 1);
+		CountMatrix.Builder typeBuilder = new CountMatrix.Builder(processedJobs.size(),
+				CategoryType.values().length);
+		for (ProcessedJob pj : processedJobs)
+			addProcessedJob(pj, catBuilder, vulnBuilder, typeBuilder);
+		return new AnalysisResult(dictionary, catBuilder.build(), vulnBuilder.build(), typeBuilder.build());
+	}
+
+	/**
+	 * Adds the counts of a job that has been processed in a previous run to the
+	 * given matrix builders. Jobs without any counts are skipped. The numbers of
+	 * quality and security findings are taken from the job, which has classified
+	 * its findings with the vulnerability catalog, so that they match the ones of
+	 * new jobs.
+	 * 
+	 * @param pj          The processed job
+	 * @param catBuilder  The builder for the category matrix
+	 * @param vulnBuilder The builder for the vulnerability type matrix
+	 * @param typeBuilder The builder for the category type matrix
+	 */
+	static void addProcessedJob(ProcessedJob pj, ICountMatrixBuilder catBuilder, ICountMatrixBuilder vulnBuilder,
+			ICountMatrixBuilder typeBuilder) {
+		if (pj == null)
+			return;
+		boolean hasCategories = pj.categoriesToCounts != null && !pj.categoriesToCounts.isEmpty();
+		boolean hasVulns = pj.vulnerabilitiesToCounts != null && !pj.vulnerabilitiesToCounts.isEmpty();
+		if (!hasCategories && !hasVulns)
+			return;
+
+		int row = addRow(pj.jobId, catBuilder, vulnBuilder, typeBuilder);
+		typeBuilder.add(row, CategoryType.QualityCategory.ordinal(), pj.numQualFindings);
+		typeBuilder.add(row, CategoryType.SecurityCategory.ordinal(), pj.numSecFindings);
+		if (hasCategories) {
+			for (CategoryAndCount cc : pj.categoriesToCounts)
+				catBuilder.add(row, cc.categoryId, cc.count);
+		}
+		if (hasVulns) {
+			for (VulnerabilityAndCount vc : pj.vulnerabilitiesToCounts) {
+				vulnBuilder.add(row, vc.vulnTypeId, vc.count);
+			}
+		}
+	}
+
+	/**
+	 * Appends a new row for the given job to all of the given matrix builders
+	 * 
+	 * @param jobId    The identifier of the job
+	 * @param builders The builders to which to add the row
+	 * @return The index of the new row
+	 */
+	static int addRow(long jobId, ICountMatrixBuilder... builders) {
+		int row = -1;
+		for (ICountMatrixBuilder builder : builders)
+			row = builder.addRow(jobId);
+		return row;
+	}
+
+	private static long getPairKey(int id1, int id2) {
+		// Correlations are symmetric
+		return ((long) Math.min(id1, id2) << 32) | (Math.max(id1, id2) & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Adds the given category correlation
+	 * 
+	 * @param cc The category correlation
+	 */
+	public void addCategoryCorrelation(CategoryCorrelation cc) {
+		categoryCorrelations.put(getPairKey(cc.catId1, cc.catId2), cc);
+	}
+
+	/**
+	 * Adds the given vulnerability correlation
+	 * 
+	 * @param vc The vulnerability correlation
+	 */
+	public void addVulnerabilityCorrelation(VulnerabilityCorrelation vc) {
+		vulnerabilityCorrelations.put(getPairKey(vc.vulnTypeId1, vc.vulnTypeId2), vc);
+	}
+
+	/**
+	 * Checks whether this result contains a correlation between the given
+	 * categories
+	 * 
+	 * @param cat1 The identifier of the first category
+	 * @param cat2 The identifier of the second category
+	 * @return True if this result contains a correlation between the given
+	 *         categories, false otherwise
+	 */
+	public boolean hasCategoryCorrelation(int cat1, int cat2) {
+		return categoryCorrelations.containsKey(getPairKey(cat1, cat2));
+	}
+
+	/**
+	 * Checks whether this result contains a correlation between the given
+	 * vulnerability types
+	 * 
+	 * @param type1 The identifier of the first vulnerability type
+	 * @param type2 The identifier of the second vulnerability type
+	 * @return True if this result contains a correlation between the given
+	 *         vulnerability types, false otherwise
+	 */
+	public boolean hasVulnerabilityCorrelation(int type1, int type2) {
+		return vulnerabilityCorrelations.containsKey(getPairKey(type1, type2));
+	}
+
+	public Collection<CategoryCorrelation> getCategoryCorrelations() {
+		return categoryCorrelations.values();
+	}
+
+	public Collection<VulnerabilityCorrelation> getVulnerabilityCorrelations() {
+		return vulnerabilityCorrelations.values();
+	}
+
+	/**
+	 * Enables the computation of partial correlations for new correlations
+	 * 
+	 * @param categories      The partial correlation for the category matrix
+	 * @param vulnerabilities The partial correlation for the vulnerability type
+	 *                        matrix
+	 */
+	public void setPartialCorrelations(PartialCorrelation categories, PartialCorrelation vulnerabilities) {
+		this.categoryPartialCorrelation = categories;
+		this.vulnerabilityPartialCorrelation = vulnerabilities;
+	}
+
+	/**
+	 * Computes the partial correlation for the given category correlation if
+	 * partial correlations are enabled
+	 * 
+	 * @param cc The category correlation
+	 */
+	public void fillPartialCorrelation(CategoryCorrelation cc) {
+		if (categoryPartialCorrelation != null)
+			cc.partialCorrelation = toNullable(
+					categoryPartialCorrelation.getPartialCorrelation(cc.catId1, cc.catId2, cc.correlation));
+	}
+
+	/**
+	 * Computes the partial correlation for the given vulnerability correlation if
+	 * partial correlations are enabled
+	 * 
+	 * @param vc The vulnerability correlation
+	 */
+	public void fillPartialCorrelation(VulnerabilityCorrelation vc) {
+		if (vulnerabilityPartialCorrelation != null)
+			vc.partialCorrelation = toNullable(vulnerabilityPartialCorrelation.getPartialCorrelation(vc.vulnTypeId1,
+					vc.vulnTypeId2, vc.correlation));
+	}
+
+	/**
+	 * Enables the pruning of pairs that are not worth correlating
+	 * 
+	 * @param categories      The pruner for the category matrix
+	 * @param vulnerabilities The pruner for the vulnerability type matrix
+	 */
+	public void setPairPruners(PairPruner categories, PairPruner vulnerabilities) {
+		this.categoryPruner = categories;
+		this.vulnerabilityPruner = vulnerabilities;
+	}
+
+	/**
+	 * Checks whether the given pair of categories shall not be correlated
+	 * 
+	 * @param cat1 The identifier of the first category
+	 * @param cat2 The identifier of the second category
+	 * @return True if the pair shall be skipped, false otherwise
+	 */
+	public boolean isCategoryPairPruned(int cat1, int cat2) {
+		return categoryPruner != null && categoryPruner.isPruned(cat1, cat2);
+	}
+
+	/**
+	 * Checks whether the given pair of vulnerability types shall not be correlated
+	 * 
+	 * @param type1 The identifier of the first vulnerability type
+	 * @param type2 The identifier of the second vulnerability type
+	 * @return True if the pair shall be skipped, false otherwise
+	 */
+	public boolean isVulnerabilityPairPruned(int type1, int type2) {
+		return vulnerabilityPruner != null && vulnerabilityPruner.isPruned(type1, type2);
+	}
+
+	/**
+	 * Checks whether the given pair of a vulnerability type and a category shall
+	 * not be correlated
+	 * 
+	 * @param type  The identifier of the vulnerability type
+	 * @param catId The identifier of the category
+	 * @return True if the pair shall be skipped, false otherwise
+	 */
+	public boolean isCrossPairPruned(int type, int catId) {
+		return vulnerabilityPruner != null && categoryPruner != null
+				&& vulnerabilityPruner.isPruned(type, categoryPruner, catId);
+	}
+
+	public PairPruner getCategoryPruner() {
+		return categoryPruner;
+	}
+
+	public PairPruner getVulnerabilityPruner() {
+		return vulnerabilityPruner;
+	}
+
+	/**
+	 * Gets the number of strongest pairs to which the pairwise correlations shall
+	 * be restricted
+	 * 
+	 * @return The number of pairs per matrix, or zero to correlate all pairs
+	 */
+	public int getTopK() {
+		return topK;
+	}
+
+	/**
+	 * Restricts the pairwise correlations to the given number of pairs with the
+	 * strongest correlation per matrix
+	 * 
+	 * @param topK The number of pairs per matrix, or zero to correlate all pairs
+	 */
+	public void setTopK(int topK) {
+		this.topK = topK;
+	}
+
+	private static Double toNullable(double d) {
+		// Not all databases can store NaN
+		return Double.isNaN(d) ? null : d;
+	}
+
+	/**
+	 * Checks whether this result contains the correlations for all pairs of
+	 * columns, so that later stages need not consult the database
+	 * 
+	 * @return True if the correlations are complete, false otherwise
+	 */
+	public boolean areCorrelationsComplete() {
+		return correlationsComplete;
+	}
+
+	/**
+	 * Marks the correlations in this result as complete
+	 */
+	public void setCorrelationsComplete() {
+		this.correlationsComplete = true;
+	}
+
+	public NameDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public CountMatrix getCategoryMatrix() {
+		return categoryMatrix;
+	}
+
+	public CountMatrix getVulnerabilityMatrix() {
+		return vulnerabilityMatrix;
+	}
+
+	public CountMatrix getTypeMatrix() {
+		return typeMatrix;
+	}
+
+	/**
+	 * Gets the ranks of all categories over all jobs in a single group. The
+	 * categories are ranked when this method is called for the first time.
+	 * 
+	 * @return The ranks of the categories
+	 */
+	public synchronized GroupedSpearman getCategoryRanks() {
+		if (categoryRanks == null)
+			categoryRanks = new GroupedSpearman(categoryMatrix, getAllRows());
+		return categoryRanks;
+	}
+
+	/**
+	 * Gets the ranks of all vulnerability types over all jobs in a single group.
+	 * The vulnerability types are ranked when this method is called for the first
+	 * time.
+	 * 
+	 * @return The ranks of the vulnerability types
+	 */
+	public synchronized GroupedSpearman getVulnerabilityRanks() {
+		if (vulnerabilityRanks == null)
+			vulnerabilityRanks = new GroupedSpearman(vulnerabilityMatrix, getAllRows());
+		return vulnerabilityRanks;
+	}
+
+	private int[][] getAllRows() {
+		return new int[][] { IntStream.range(0, categoryMatrix.getRowCount()).toArray() };
+	}
+
+}
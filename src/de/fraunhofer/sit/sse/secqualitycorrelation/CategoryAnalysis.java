@@ -1,7 +1,7 @@
 package de.fraunhofer.sit.sse.secqualitycorrelation;
 
 import java.io.File;
-import java.util.Map;
+import java.io.IOException;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -14,12 +14,11 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configurator;
 
-import de.codeinspect.assessment.client.api.VulnerabilitiesApi;
-import de.codeinspect.assessment.client.invoker.ApiClient;
 import de.codeinspect.assessment.client.invoker.ApiException;
-import de.codeinspect.assessment.client.models.Platform;
-import de.codeinspect.assessment.client.models.VulnerabilityInformation;
 import de.codeinspect.collections.CountingMap;
+import de.fraunhofer.sit.sse.secqualitycorrelation.catalog.VulnerabilityCatalog;
+import de.fraunhofer.sit.sse.secqualitycorrelation.vusc.AdaptiveLimiter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.vusc.VuscSource;
 
 /**
  * Main class for security and quality correlation analysis
@@ -37,6 +36,9 @@ public class CategoryAnalysis {
 
 	private static final String OPTION_VUSC_URL = "v";
 
+	private static final String OPTION_CATALOG_FILE = "k";
+	private static final String OPTION_CATALOG_TTL = "l";
+
 	protected static final Options options = new Options();
 
 	static {
@@ -52,6 +54,14 @@ public class CategoryAnalysis {
 		options.addOption(OPTION_DB_PWD, "dbpwd", true, "The password for accessing the database");
 
 		options.addOption(OPTION_VUSC_URL, "vuscurl", true, "The URL for accessing the VUSC scanner");
+		options.addOption(null, MainClass.OPTION_VUSC_TIMEOUT, true,
+				"The number of seconds after which a call to the VUSC server is aborted");
+		options.addOption(null, MainClass.OPTION_VUSC_RETRIES, true,
+				"The number of times a failed call to the VUSC server is retried");
+
+		options.addOption(OPTION_CATALOG_FILE, "catalog", true, "The file in which to cache the vulnerability catalog");
+		options.addOption(OPTION_CATALOG_TTL, "catalogttl", true,
+				"The number of hours after which the cached vulnerability catalog is refreshed");
 	}
 
 	public static void main(String[] args) {
@@ -88,42 +98,32 @@ public class CategoryAnalysis {
 				return;
 			}
 
-			// Connect to the VUSC server
-			String vuscURL = cmd.getOptionValue(OPTION_VUSC_URL);
-			ApiClient apiClient = new ApiClient();
-			apiClient.setBasePath(vuscURL);
-			apiClient.setReadTimeout(0);
-
-			VulnerabilitiesApi vulnAPI = new VulnerabilitiesApi(apiClient);
-			CountingMap<String> categorySizes = new CountingMap<>();
-			int total = 0;
-			for (VulnerabilityInformation vuln : vulnAPI.getVulnerabilities()) {
-				boolean hasAndroid = false;
-				for (Platform p : vuln.getPlatforms()) {
-					if (p.getId().equals("ANDROID_APP_APK")) {
-						hasAndroid = true;
-						break;
-					}
-				}
-				if (hasAndroid) {
-					Object cat = vuln.getCategory();
-					if (cat instanceof Map) {
-						@SuppressWarnings("unchecked")
-						Map<String, String> catMap = (Map<String, String>) cat;
-						String catName = catMap.get("humanReadableName");
-						if (catName != null)
-							categorySizes.increment(catName);
-					}
-					total++;
-				}
-			}
+			// Connect to the VUSC server with the same timeout and retries as the
+			// correlation analysis. We only make a single call at a time.
+			int timeout = MainClass.DEFAULT_VUSC_TIMEOUT;
+			String s = cmd.getOptionValue(MainClass.OPTION_VUSC_TIMEOUT);
+			if (s != null && !s.isEmpty())
+				timeout = Integer.valueOf(s);
+			int retries = AdaptiveLimiter.DEFAULT_MAX_RETRIES;
+			s = cmd.getOptionValue(MainClass.OPTION_VUSC_RETRIES);
+			if (s != null && !s.isEmpty())
+				retries = Integer.valueOf(s);
+			VuscSource source = new VuscSource(0, cmd.getOptionValue(OPTION_VUSC_URL), timeout, 1, retries);
+
+			// The catalog is only downloaded if the local cache is missing or stale
+			VulnerabilityCatalog catalog = MainClass.loadCatalog(cmd, source.createVulnerabilitiesApi(),
+					source.getLimiter());
+
+			CountingMap<String> categorySizes = catalog.getCategorySizes(VulnerabilityCatalog.PLATFORM_ANDROID);
 			System.out.println(categorySizes.toString());
-			System.out.println("Total: " + total);
+			System.out.println("Total: " + catalog.getTypeCount(VulnerabilityCatalog.PLATFORM_ANDROID));
 		} catch (ParseException e) {
 			formatter.printHelp("java -jar CorrelationAnalysis.jar [OPTIONS]", options);
 			return;
 		} catch (ApiException e) {
 			logger.error("Error during communication with VUSC", e);
+		} catch (IOException e) {
+			logger.error("IO error while loading the vulnerability catalog", e);
 		}
 	}
 
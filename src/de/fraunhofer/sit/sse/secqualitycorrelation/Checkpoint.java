@@ -0,0 +1,224 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CorrelationWriter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.NameDictionary;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+
+/**
+ * Checkpoint for long correlation runs. A checkpoint contains a snapshot of the
+ * count matrices and a bitmap of the column pairs whose correlations have
+ * already been written. A run that is resumed from a checkpoint neither needs
+ * to reload the jobs nor to check the completed pairs against the database.
+ * 
+ * Pairs are numbered by their position in the upper triangle of the column
+ * identifiers of the respective matrix. These identifiers are part of the
+ * snapshot, so the numbering remains valid when resuming.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class Checkpoint {
+
+	/**
+	 * The default interval between two checkpoints
+	 */
+	public static final long DEFAULT_INTERVAL_SECONDS = 300;
+
+	private static final int MAGIC = 0x53514350;
+	private static final int VERSION = 1;
+
+	private final File file;
+	private final long intervalMillis;
+	private long lastWrite;
+
+	private BitSet completedCategoryPairs = new BitSet();
+	private BitSet completedVulnerabilityPairs = new BitSet();
+
+	/**
+	 * Creates a new checkpoint
+	 * 
+	 * @param file            The file in which to store the checkpoint
+	 * @param intervalSeconds The minimum number of seconds between two writes of
+	 *                        the checkpoint
+	 */
+	public Checkpoint(File file, long intervalSeconds) {
+		this.file = file;
+		this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+		this.lastWrite = System.currentTimeMillis();
+	}
+
+	/**
+	 * Checks whether the checkpoint file exists
+	 * 
+	 * @return True if the checkpoint file exists, false otherwise
+	 */
+	public boolean exists() {
+		return file.exists();
+	}
+
+	/**
+	 * Gets the index of the given pair in the upper triangle of an n x n matrix
+	 * 
+	 * @param i The index of the first column
+	 * @param j The index of the second column, which must be greater than i
+	 * @param n The number of columns
+	 * @return The index of the pair
+	 */
+	public static int getPairIndex(int i, int j, int n) {
+		long idx = (long) i * n - (long) i * (i + 1) / 2 + (j - i - 1);
+		if (idx > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(String.format("Too many columns for a checkpoint: %d", n));
+		return (int) idx;
+	}
+
+	/**
+	 * Gets the pairs of categories whose correlations have been written
+	 * 
+	 * @return The indices of the completed category pairs
+	 */
+	public BitSet getCompletedCategoryPairs() {
+		return completedCategoryPairs;
+	}
+
+	/**
+	 * Gets the pairs of vulnerability types whose correlations have been written
+	 * 
+	 * @return The indices of the completed vulnerability type pairs
+	 */
+	public BitSet getCompletedVulnerabilityPairs() {
+		return completedVulnerabilityPairs;
+	}
+
+	/**
+	 * Writes the checkpoint if the checkpoint interval has elapsed. All pending
+	 * correlations are written to the database first, so that the checkpoint
+	 * never marks a pair as completed whose correlation might still get lost.
+	 * 
+	 * @param result The count matrices to store
+	 * @param writer The writer that holds the pending correlations
+	 * @throws IOException
+	 */
+	public void writeIfDue(AnalysisResult result, CorrelationWriter writer) throws IOException {
+		if (System.currentTimeMillis() - lastWrite < intervalMillis)
+			return;
+		writer.flush();
+		write(result);
+	}
+
+	/**
+	 * Writes the checkpoint. The file is replaced atomically, so that a crash
+	 * during the write leaves the previous checkpoint intact.
+	 * 
+	 * @param result The count matrices to store
+	 * @throws IOException
+	 */
+	public void write(AnalysisResult result) throws IOException {
+		File tempFile = new File(file.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeMatrix(out, result.getCategoryMatrix());
+			writeMatrix(out, result.getVulnerabilityMatrix());
+			writeMatrix(out, result.getTypeMatrix());
+			writeBitSet(out, completedCategoryPairs);
+			writeBitSet(out, completedVulnerabilityPairs);
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		lastWrite = System.currentTimeMillis();
+	}
+
+	/**
+	 * Loads the count matrices and the completed pairs from the checkpoint file
+	 * 
+	 * @param dictionary The dictionary for resolving the column identifiers
+	 * @return The count matrices from the checkpoint
+	 * @throws IOException
+	 */
+	public AnalysisResult load(NameDictionary dictionary) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(String.format("%s is not a checkpoint file", file));
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException(String.format("Unsupported checkpoint version %d in %s", version, file));
+			CountMatrix catMatrix = readMatrix(in);
+			CountMatrix vulnMatrix = readMatrix(in);
+			CountMatrix typeMatrix = readMatrix(in);
+			completedCategoryPairs = readBitSet(in);
+			completedVulnerabilityPairs = readBitSet(in);
+			lastWrite = System.currentTimeMillis();
+			return new AnalysisResult(dictionary, catMatrix, vulnMatrix, typeMatrix);
+		}
+	}
+
+	private static void writeMatrix(DataOutputStream out, CountMatrix matrix) throws IOException {
+		long[] rowKeys = matrix.getRowKeys();
+		out.writeInt(rowKeys.length);
+		for (long key : rowKeys)
+			out.writeLong(key);
+
+		int[] columnIds = matrix.getColumnIds();
+		out.writeInt(columnIds.length == 0 ? 0 : columnIds[columnIds.length - 1] + 1);
+		out.writeInt(columnIds.length);
+		for (int id : columnIds) {
+			out.writeInt(id);
+			for (int count : matrix.getColumn(id))
+				out.writeInt(count);
+		}
+	}
+
+	private static CountMatrix readMatrix(DataInputStream in) throws IOException {
+		long[] rowKeys = new long[in.readInt()];
+		for (int i = 0; i < rowKeys.length; i++)
+			rowKeys[i] = in.readLong();
+
+		int[][] columns = new int[in.readInt()][];
+		int numColumns = in.readInt();
+		for (int c = 0; c < numColumns; c++) {
+			int[] col = new int[rowKeys.length];
+			columns[in.readInt()] = col;
+			for (int i = 0; i < col.length; i++)
+				col[i] = in.readInt();
+		}
+		return new CountMatrix(rowKeys, columns);
+	}
+
+	private static void writeBitSet(DataOutputStream out, BitSet bits) throws IOException {
+		long[] words = bits.toLongArray();
+		out.writeInt(words.length);
+		for (long word : words)
+			out.writeLong(word);
+	}
+
+	private static BitSet readBitSet(DataInputStream in) throws IOException {
+		long[] words = new long[in.readInt()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = in.readLong();
+		return BitSet.valueOf(words);
+	}
+
+	/**
+	 * Gets the file in which the checkpoint is stored
+	 * 
+	 * @return The checkpoint file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+}
@@ -0,0 +1,26 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+/**
+ * A property of the jobs by which they can be partitioned into cohorts
+ * 
+ * @author Steven Arzt
+ *
+ */
+public enum CohortDimension {
+
+	/**
+	 * The month in which the analysis of the app has finished
+	 */
+	MONTH,
+
+	/**
+	 * The size of the app, split into buckets with roughly equal numbers of jobs
+	 */
+	SIZE,
+
+	/**
+	 * The VUSC server that has analyzed the app
+	 */
+	SCANNER
+
+}
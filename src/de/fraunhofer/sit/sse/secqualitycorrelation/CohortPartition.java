@@ -0,0 +1,195 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+import de.fraunhofer.sit.sse.secqualitycorrelation.vusc.VuscSource;
+
+/**
+ * Partitions the rows of the count matrices into disjoint cohorts of jobs, e.g.,
+ * by the month in which the app was scanned. The name of a cohort consists of
+ * one "dimension=value" entry per dimension, separated by semicolons, e.g.,
+ * "month=2021-03;scanner=1". The boundaries of the size buckets depend on all
+ * jobs, so the same size cohort may cover different jobs in different runs.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class CohortPartition {
+
+	public static final int DEFAULT_SIZE_BUCKETS = 4;
+
+	private static final String UNKNOWN = "unknown";
+
+	private final String[] names;
+	private final int[][] rows;
+
+	private CohortPartition(String[] names, int[][] rows) {
+		this.names = names;
+		this.rows = rows;
+	}
+
+	/**
+	 * Partitions the rows of the given matrix into cohorts
+	 * 
+	 * @param dimensions  The dimensions by which to partition the jobs
+	 * @param matrix      Any matrix with the rows to partition
+	 * @param finishDates The finish date of each job in milliseconds since the
+	 *                    epoch. Jobs without a finish date are placed into the
+	 *                    "unknown" month.
+	 * @param sizes       The size of the app per row
+	 * @param sizeBuckets The number of buckets into which to split the app sizes
+	 * @return The partition of the rows
+	 */
+	public static CohortPartition create(Collection<CohortDimension> dimensions, CountMatrix matrix,
+			Map<Long, Long> finishDates, double[] sizes, int sizeBuckets) {
+		if (dimensions.isEmpty())
+			throw new IllegalArgumentException("At least one cohort dimension is required");
+		final int numRows = matrix.getRowCount();
+		int[] sizeBucketOfRow = dimensions.contains(CohortDimension.SIZE) ? getSizeBuckets(sizes, sizeBuckets)
+				: null;
+
+		// Sort the cohorts by name, so that the order does not depend on the order of
+		// the rows
+		Map<String, List<Integer>> cohorts = new TreeMap<>();
+		StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < numRows; r++) {
+			long jobId = matrix.getRowKey(r);
+			sb.setLength(0);
+			for (CohortDimension dimension : dimensions) {
+				if (sb.length() > 0)
+					sb.append(';');
+				sb.append(dimension.name().toLowerCase()).append('=');
+				switch (dimension) {
+				case MONTH:
+					Long finishDate = finishDates.get(jobId);
+					sb.append(finishDate == null || finishDate <= 0 ? UNKNOWN
+							: YearMonth.from(Instant.ofEpochMilli(finishDate).atZone(ZoneOffset.UTC)).toString());
+					break;
+				case SIZE:
+					sb.append(sizeBucketOfRow[r] + 1).append('/').append(sizeBuckets);
+					break;
+				case SCANNER:
+					sb.append(VuscSource.getSourceIndex(jobId));
+					break;
+				}
+			}
+			cohorts.computeIfAbsent(sb.toString(), k -> new ArrayList<>()).add(r);
+		}
+
+		String[] names = new String[cohorts.size()];
+		int[][] rows = new int[cohorts.size()][];
+		int i = 0;
+		for (Map.Entry<String, List<Integer>> entry : cohorts.entrySet()) {
+			names[i] = entry.getKey();
+			rows[i] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+			i++;
+		}
+		return new CohortPartition(names, rows);
+	}
+
+	/**
+	 * Splits the given sizes into buckets with roughly the same number of rows.
+	 * Rows with the same size always end up in the same bucket.
+	 * 
+	 * @param sizes      The size per row
+	 * @param numBuckets The number of buckets
+	 * @return The bucket index per row
+	 */
+	private static int[] getSizeBuckets(double[] sizes, int numBuckets) {
+		if (numBuckets < 1)
+			throw new IllegalArgumentException("At least one size bucket is required");
+		Integer[] order = new Integer[sizes.length];
+		for (int r = 0; r < order.length; r++)
+			order[r] = r;
+		Arrays.sort(order, Comparator.comparingDouble(r -> sizes[r]));
+
+		int[] buckets = new int[sizes.length];
+		for (int i = 0; i < order.length; i++) {
+			int bucket = (int) ((long) i * numBuckets / order.length);
+			if (i > 0 && sizes[order[i]] == sizes[order[i - 1]])
+				bucket = buckets[order[i - 1]];
+			buckets[order[i]] = bucket;
+		}
+		return buckets;
+	}
+
+	/**
+	 * Gets the dimensions from which the given cohort name has been built
+	 * 
+	 * @param cohort The name of the cohort
+	 * @return The dimensions of the cohort
+	 */
+	public static Set<CohortDimension> getDimensions(String cohort) {
+		Set<CohortDimension> dimensions = EnumSet.noneOf(CohortDimension.class);
+		for (String entry : cohort.split(";")) {
+			int idx = entry.indexOf('=');
+			if (idx > 0)
+				dimensions.add(CohortDimension.valueOf(entry.substring(0, idx).toUpperCase()));
+		}
+		return dimensions;
+	}
+
+	/**
+	 * Gets the number of cohorts
+	 * 
+	 * @return The number of cohorts
+	 */
+	public int getCohortCount() {
+		return names.length;
+	}
+
+	/**
+	 * Gets the name of the given cohort
+	 * 
+	 * @param cohort The index of the cohort
+	 * @return The name of the cohort
+	 */
+	public String getName(int cohort) {
+		return names[cohort];
+	}
+
+	/**
+	 * Gets the rows that belong to the given cohort in ascending order
+	 * 
+	 * @param cohort The index of the cohort
+	 * @return The rows of the cohort
+	 */
+	public int[] getRows(int cohort) {
+		return rows[cohort];
+	}
+
+	/**
+	 * Gets the rows of all cohorts
+	 * 
+	 * @return The rows per cohort
+	 */
+	public int[][] getAllRows() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of jobs per cohort for logging purposes
+	 * 
+	 * @return The number of jobs per cohort name
+	 */
+	public Map<String, Integer> getSizes() {
+		Map<String, Integer> sizes = new LinkedHashMap<>();
+		for (int i = 0; i < names.length; i++)
+			sizes.put(names[i], rows[i].length);
+		return sizes;
+	}
+
+}
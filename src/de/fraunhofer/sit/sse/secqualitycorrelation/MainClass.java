@@ -2,15 +2,28 @@ package de.fraunhofer.sit.sse.secqualitycorrelation;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -18,16 +31,12 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
-import org.apache.commons.math3.linear.OpenMapRealMatrix;
-import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.logging.log4j.core.config.Configurator;
 
-import de.codeinspect.assessment.client.api.JobsApi;
+import de.codeinspect.assessment.client.api.VulnerabilitiesApi;
 import de.codeinspect.assessment.client.invoker.ApiClient;
 import de.codeinspect.assessment.client.invoker.ApiException;
 import de.codeinspect.assessment.client.models.DetailedJobStatus;
@@ -35,13 +44,39 @@ import de.codeinspect.assessment.client.models.Job;
 import de.codeinspect.assessment.client.models.JobResults;
 import de.codeinspect.assessment.client.models.VulnerabilityFinding;
 import de.codeinspect.collections.CountingMap;
-import de.codeinspect.tables.CountingTable;
+import de.fraunhofer.sit.sse.secqualitycorrelation.catalog.VulnerabilityCatalog;
 import de.fraunhofer.sit.sse.secqualitycorrelation.database.CategoryAndCount;
 import de.fraunhofer.sit.sse.secqualitycorrelation.database.CategoryCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CorrelationWriter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CrossCorrelation;
 import de.fraunhofer.sit.sse.secqualitycorrelation.database.DatabaseManager;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.DirtyColumn;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.IDatabaseManager;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.LogDatabaseManager;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.NameDictionary;
 import de.fraunhofer.sit.sse.secqualitycorrelation.database.ProcessedJob;
 import de.fraunhofer.sit.sse.secqualitycorrelation.database.VulnerabilityAndCount;
 import de.fraunhofer.sit.sse.secqualitycorrelation.database.VulnerabilityCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.VuscServer;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.BootstrapIntervals;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.ConcurrentCountMatrixBuilder;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountingRanks;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.GroupedSpearman;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.ICountMatrixBuilder;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.IKernels;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.Kernels;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.PairPruner;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.PartialCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.TopKCorrelations;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.CorrelationEvent;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.JobFetchEvent;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.PrometheusFileReporter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.shard.ShardCoordinator;
+import de.fraunhofer.sit.sse.secqualitycorrelation.vusc.AdaptiveLimiter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.vusc.JobResponseCache;
+import de.fraunhofer.sit.sse.secqualitycorrelation.vusc.VuscSource;
 
 /**
  * Main class for security and quality correlation analysis
@@ -54,15 +89,51 @@ public class MainClass {
 	private static final int NUM_PERMUTATIONS = 100;
 	private static final float SIGNIFICANCE_ERROR_PROBABILITY = 0.05f;
 	private static final int DEFAULT_CUTOFF = 30000;
+	protected static final int DEFAULT_VUSC_TIMEOUT = 600;
+	private static final int MIN_COHORT_JOBS = 3;
 
 	private static Logger logger;
 
+	private static VulnerabilityCatalog catalog;
+
 	private static final String OPTION_DB_URL = "d";
 	private static final String OPTION_DB_USER = "u";
 	private static final String OPTION_DB_PWD = "w";
 
 	private static final String OPTION_VUSC_URL = "v";
 	private static final String OPTION_CUTOFF = "c";
+	private static final String OPTION_INGEST_THREADS = "z";
+	private static final String OPTION_JOB_CACHE = "h";
+	private static final String OPTION_OFFLINE = "offline";
+	protected static final String OPTION_VUSC_TIMEOUT = "vusctimeout";
+	protected static final String OPTION_VUSC_RETRIES = "vuscretries";
+
+	private static final String OPTION_CATALOG_FILE = "k";
+	private static final String OPTION_CATALOG_TTL = "l";
+
+	private static final String OPTION_METRICS_FILE = "o";
+	private static final String OPTION_METRICS_INTERVAL = "i";
+
+	private static final String OPTION_CHECKPOINT_FILE = "f";
+	private static final String OPTION_CHECKPOINT_INTERVAL = "g";
+	private static final String OPTION_RESUME = "x";
+
+	private static final String OPTION_WORKERS = "e";
+	private static final String OPTION_COORDINATOR_PORT = "y";
+
+	private static final String OPTION_PARTIAL = "q";
+	private static final String OPTION_SIZE_FILE = "b";
+
+	private static final String OPTION_COHORTS = "cohorts";
+	private static final String OPTION_COHORT_BUCKETS = "cohortbuckets";
+	private static final String OPTION_CROSS_LEVEL = "crosslevel";
+
+	private static final String OPTION_MIN_SUPPORT = "minsupport";
+	private static final String OPTION_MIN_CO_OCCURRENCE = "mincooccurrence";
+	private static final String OPTION_TOP_K = "topk";
+
+	private static final String OPTION_BOOTSTRAP = "bootstrap";
+	private static final String OPTION_BOOTSTRAP_SEED = "bootstrapseed";
 
 	protected static final Options options = new Options();
 
@@ -74,12 +145,72 @@ public class MainClass {
 	 * Initializes the set of available command-line options
 	 */
 	private static void initializeCommandLineOptions() {
-		options.addOption(OPTION_DB_URL, "dburl", true, "The JDBC url for connecting to the database");
+		options.addOption(OPTION_DB_URL, "dburl", true,
+				"The JDBC url for connecting to the database, or log:<file> for an embedded log file");
 		options.addOption(OPTION_DB_USER, "dbuser", true, "The user for accessing the database");
 		options.addOption(OPTION_DB_PWD, "dbpwd", true, "The password for accessing the database");
 
-		options.addOption(OPTION_VUSC_URL, "vuscurl", true, "The URL for accessing the VUSC scanner");
+		options.addOption(OPTION_VUSC_URL, "vuscurl", true,
+				"The URL for accessing the VUSC scanner, or a comma-separated list of URLs to combine the jobs of "
+						+ "multiple scanners");
 		options.addOption(OPTION_CUTOFF, "cutoff", true, "The cutoff (max. number of issues) when to discard apps");
+		options.addOption(OPTION_INGEST_THREADS, "ingestthreads", true,
+				"The number of jobs to download and count concurrently");
+		options.addOption(OPTION_JOB_CACHE, "jobcache", true,
+				"The directory in which to cache the job results downloaded from the VUSC server");
+		options.addOption(null, OPTION_OFFLINE, false,
+				"Take all jobs from the job cache instead of the VUSC server");
+		options.addOption(null, OPTION_VUSC_TIMEOUT, true,
+				"The number of seconds after which a call to the VUSC server is aborted");
+		options.addOption(null, OPTION_VUSC_RETRIES, true,
+				"The number of times a failed call to the VUSC server is retried");
+
+		options.addOption(OPTION_CATALOG_FILE, "catalog", true, "The file in which to cache the vulnerability catalog");
+		options.addOption(OPTION_CATALOG_TTL, "catalogttl", true,
+				"The number of hours after which the cached vulnerability catalog is refreshed");
+
+		options.addOption(OPTION_METRICS_FILE, "metrics", true,
+				"The file to which to periodically write the metrics in Prometheus format");
+		options.addOption(OPTION_METRICS_INTERVAL, "metricsinterval", true,
+				"The number of seconds between two updates of the metrics file");
+
+		options.addOption(OPTION_CHECKPOINT_FILE, "checkpoint", true,
+				"The file in which to periodically save the progress of the correlation computation");
+		options.addOption(OPTION_CHECKPOINT_INTERVAL, "checkpointinterval", true,
+				"The number of seconds between two checkpoints");
+		options.addOption(OPTION_RESUME, "resume", false, "Resume the correlation computation from the checkpoint");
+
+		options.addOption(OPTION_WORKERS, "workers", true,
+				"The number of local worker processes among which to shard the correlation computation");
+		options.addOption(OPTION_COORDINATOR_PORT, "coordinatorport", true,
+				"The port on which to accept worker processes from other hosts for the correlation computation");
+
+		options.addOption(OPTION_PARTIAL, "partial", false,
+				"Also compute partial correlations that control for the total number of findings per app");
+		options.addOption(OPTION_SIZE_FILE, "sizefile", true,
+				"The file with additional app size measures for the partial correlations, one "
+						+ "\"jobId;measure1;measure2;...\" entry per line");
+
+		options.addOption(null, OPTION_COHORTS, true,
+				"Also compute the correlations separately for each cohort of jobs, partitioned by a comma-separated "
+						+ "list of month, size, and scanner");
+		options.addOption(null, OPTION_COHORT_BUCKETS, true,
+				"The number of app size buckets into which to split the jobs for the cohorts");
+		options.addOption(null, OPTION_CROSS_LEVEL, false,
+				"Also correlate every vulnerability type with every category");
+
+		options.addOption(null, OPTION_MIN_SUPPORT, true,
+				"The minimum number of apps in which a category or issue type must occur to be correlated");
+		options.addOption(null, OPTION_MIN_CO_OCCURRENCE, true,
+				"The minimum number of apps in which both categories or issue types of a pair must occur to "
+						+ "be correlated");
+		options.addOption(null, OPTION_TOP_K, true,
+				"Only compute the significance of the given number of category pairs and issue type pairs with "
+						+ "the strongest correlation");
+
+		options.addOption(null, OPTION_BOOTSTRAP, true,
+				"Compute bootstrap confidence intervals for the correlations on the given number of resamples");
+		options.addOption(null, OPTION_BOOTSTRAP_SEED, true, "The seed for drawing the bootstrap resamples");
 	}
 
 	public static void main(String[] args) {
@@ -103,263 +234,1347 @@ public class MainClass {
 			return;
 		}
 		CommandLineParser parser = new DefaultParser();
+		PrometheusFileReporter metricsReporter = null;
+		ShardCoordinator coordinator = null;
 		try {
 			CommandLine cmd = parser.parse(options, args);
 
-			// Get the database details
-			String dbUrl = cmd.getOptionValue(OPTION_DB_URL);
-			String dbUser = cmd.getOptionValue(OPTION_DB_USER);
-			String dbPwd = cmd.getOptionValue(OPTION_DB_PWD);
-			if (dbUrl == null || dbUrl.isEmpty() || dbUser == null || dbUser.isEmpty() || dbPwd == null
-					|| dbPwd.isEmpty()) {
-				logger.error("Database url, user, or password not specified");
+			// Periodically write out the metrics if requested
+			metricsReporter = createMetricsReporter(cmd);
+
+			IDatabaseManager dbManager = createDatabaseManager(cmd);
+			if (dbManager == null)
 				return;
+
+			Checkpoint checkpoint = createCheckpoint(cmd);
+			coordinator = createShardCoordinator(cmd);
+			AnalysisResult result = ingestOrResume(cmd, dbManager, checkpoint);
+			configurePartialCorrelations(cmd, result);
+			configurePairPruning(cmd, result);
+			correlate(result, dbManager, checkpoint, coordinator);
+			computeConfidenceIntervals(cmd, result, dbManager);
+			correlateCohorts(cmd, result, dbManager);
+			correlateCrossLevel(cmd, result, dbManager);
+		} catch (ParseException e) {
+			formatter.printHelp("java -jar CorrelationAnalysis.jar [OPTIONS]", options);
+			return;
+		} catch (ApiException e) {
+			logger.error("Error during communication with VUSC", e);
+		} catch (IOException e) {
+			logger.error("IO error during correlation analysis", e);
+		} catch (SQLException e) {
+			logger.error("SQL error on backend database for correlations", e);
+		} finally {
+			if (coordinator != null)
+				coordinator.close();
+			if (metricsReporter != null)
+				metricsReporter.close();
+		}
+	}
+
+	/**
+	 * Creates the reporter that periodically writes out the metrics if the user
+	 * has requested it
+	 * 
+	 * @param cmd The command line with the metrics options
+	 * @return The metrics reporter, or null if no metrics file was given
+	 * @throws IOException
+	 */
+	protected static PrometheusFileReporter createMetricsReporter(CommandLine cmd) throws IOException {
+		String metricsFile = cmd.getOptionValue(OPTION_METRICS_FILE);
+		if (metricsFile == null || metricsFile.isEmpty())
+			return null;
+		long interval = PrometheusFileReporter.DEFAULT_INTERVAL_SECONDS;
+		String s = cmd.getOptionValue(OPTION_METRICS_INTERVAL);
+		if (s != null && !s.isEmpty())
+			interval = Long.valueOf(s);
+		return new PrometheusFileReporter(new File(metricsFile), interval);
+	}
+
+	/**
+	 * Creates the database manager from the database options on the command line.
+	 * URLs that start with {@link LogDatabaseManager#URL_PREFIX} select the
+	 * embedded log file backend, which does not need a user or password.
+	 * 
+	 * @param cmd The command line with the database options
+	 * @return The database manager, or null if the database options are
+	 *         incomplete
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	protected static IDatabaseManager createDatabaseManager(CommandLine cmd) throws IOException, SQLException {
+		String dbUrl = cmd.getOptionValue(OPTION_DB_URL);
+		if (dbUrl != null && dbUrl.startsWith(LogDatabaseManager.URL_PREFIX))
+			return LogDatabaseManager.fromUrl(dbUrl);
+
+		String dbUser = cmd.getOptionValue(OPTION_DB_USER);
+		String dbPwd = cmd.getOptionValue(OPTION_DB_PWD);
+		if (dbUrl == null || dbUrl.isEmpty() || dbUser == null || dbUser.isEmpty() || dbPwd == null
+				|| dbPwd.isEmpty()) {
+			getLogger().error("Database url, user, or password not specified");
+			return null;
+		}
+		return new DatabaseManager(dbUrl, dbUser, dbPwd);
+	}
+
+	/**
+	 * Creates the checkpoint for the correlation computation if the user has
+	 * requested one
+	 * 
+	 * @param cmd The command line with the checkpoint options
+	 * @return The checkpoint, or null if no checkpoint file was given
+	 */
+	protected static Checkpoint createCheckpoint(CommandLine cmd) {
+		String checkpointFile = cmd.getOptionValue(OPTION_CHECKPOINT_FILE);
+		if (checkpointFile == null || checkpointFile.isEmpty())
+			return null;
+		long interval = Checkpoint.DEFAULT_INTERVAL_SECONDS;
+		String s = cmd.getOptionValue(OPTION_CHECKPOINT_INTERVAL);
+		if (s != null && !s.isEmpty())
+			interval = Long.valueOf(s);
+		return new Checkpoint(new File(checkpointFile), interval);
+	}
+
+	/**
+	 * Creates the coordinator for sharding the correlation computation over
+	 * multiple worker processes if the user has requested it
+	 * 
+	 * @param cmd The command line with the sharding options
+	 * @return The coordinator, or null if the correlations shall be computed in
+	 *         this process
+	 */
+	protected static ShardCoordinator createShardCoordinator(CommandLine cmd) {
+		int workers = 0;
+		String s = cmd.getOptionValue(OPTION_WORKERS);
+		if (s != null && !s.isEmpty())
+			workers = Integer.valueOf(s);
+		int port = 0;
+		s = cmd.getOptionValue(OPTION_COORDINATOR_PORT);
+		if (s != null && !s.isEmpty())
+			port = Integer.valueOf(s);
+		if (workers < 1 && port < 1)
+			return null;
+		return new ShardCoordinator(port, workers);
+	}
+
+	/**
+	 * Enables partial correlations on the given result if the user has requested
+	 * them. The partial correlations always control for the total number of
+	 * findings per job, and additionally for the measures from the size file if
+	 * one is given.
+	 * 
+	 * @param cmd    The command line with the partial correlation options
+	 * @param result The count matrices on which the correlations will be computed
+	 * @throws IOException
+	 */
+	public static void configurePartialCorrelations(CommandLine cmd, AnalysisResult result) throws IOException {
+		String sizeFile = cmd.getOptionValue(OPTION_SIZE_FILE);
+		boolean hasSizeFile = sizeFile != null && !sizeFile.isEmpty();
+		if (!hasSizeFile && !cmd.hasOption(OPTION_PARTIAL))
+			return;
+
+		List<double[]> covariates = new ArrayList<>();
+		covariates.add(SizeCovariates.getTotalFindings(result.getTypeMatrix()));
+		if (hasSizeFile)
+			covariates.addAll(Arrays.asList(SizeCovariates.load(new File(sizeFile), result.getTypeMatrix())));
+		double[][] covariateArray = covariates.toArray(new double[covariates.size()][]);
+
+		getLogger().info(String.format("Preparing partial correlations with %d covariates...", covariates.size()));
+		result.setPartialCorrelations(new PartialCorrelation(result.getCategoryMatrix(), covariateArray),
+				new PartialCorrelation(result.getVulnerabilityMatrix(), covariateArray));
+	}
+
+	/**
+	 * Enables the pruning of pairs that are not worth correlating on the given
+	 * result. Columns that are constant over all jobs are always pruned, the
+	 * thresholds for the number of jobs in which the columns occur are taken from
+	 * the command line. If the user has asked for the strongest pairs only, the
+	 * remaining pairs are skipped as well.
+	 * 
+	 * @param cmd    The command line with the pruning options
+	 * @param result The count matrices on which the correlations will be computed
+	 */
+	public static void configurePairPruning(CommandLine cmd, AnalysisResult result) {
+		int minSupport = PairPruner.DEFAULT_MIN_SUPPORT;
+		String s = cmd.getOptionValue(OPTION_MIN_SUPPORT);
+		if (s != null && !s.isEmpty())
+			minSupport = Integer.valueOf(s);
+		int minCoOccurrence = PairPruner.DEFAULT_MIN_CO_OCCURRENCE;
+		s = cmd.getOptionValue(OPTION_MIN_CO_OCCURRENCE);
+		if (s != null && !s.isEmpty())
+			minCoOccurrence = Integer.valueOf(s);
+		result.setPairPruners(new PairPruner(result.getCategoryMatrix(), minSupport, minCoOccurrence),
+				new PairPruner(result.getVulnerabilityMatrix(), minSupport, minCoOccurrence));
+
+		s = cmd.getOptionValue(OPTION_TOP_K);
+		if (s != null && !s.isEmpty())
+			result.setTopK(Integer.valueOf(s));
+	}
+
+	/**
+	 * Restores the count matrices from the given checkpoint if the user has
+	 * requested to resume, otherwise ingests the jobs from the VUSC server
+	 * 
+	 * @param cmd        The command line with the VUSC, catalog, and resume
+	 *                   options
+	 * @param dbManager  The database manager
+	 * @param checkpoint The checkpoint, or null if checkpointing is disabled
+	 * @return The count matrices over all jobs
+	 * @throws ApiException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static AnalysisResult ingestOrResume(CommandLine cmd, IDatabaseManager dbManager, Checkpoint checkpoint)
+			throws ApiException, IOException, SQLException {
+		if (cmd.hasOption(OPTION_RESUME)) {
+			if (checkpoint == null)
+				getLogger().warn("Cannot resume without a checkpoint file, starting from scratch");
+			else if (!checkpoint.exists())
+				getLogger().warn(String.format("No checkpoint found in %s, starting from scratch",
+						checkpoint.getFile().getAbsolutePath()));
+			else {
+				AnalysisResult result = checkpoint.load(dbManager.loadDictionary());
+				getLogger().info(String.format(
+						"Resuming from checkpoint with %d jobs, %d category pairs and %d issue type pairs completed",
+						result.getCategoryMatrix().getRowCount(), checkpoint.getCompletedCategoryPairs().cardinality(),
+						checkpoint.getCompletedVulnerabilityPairs().cardinality()));
+				return result;
 			}
-			DatabaseManager dbManager = new DatabaseManager(dbUrl, dbUser, dbPwd);
-
-			int cutoff = DEFAULT_CUTOFF;
-			String s = cmd.getOptionValue(OPTION_CUTOFF);
-			if (s != null && !s.isEmpty())
-				cutoff = Integer.valueOf(s);
-
-			// Connect to the VUSC server
-			String vuscURL = cmd.getOptionValue(OPTION_VUSC_URL);
-			ApiClient apiClient = new ApiClient();
-			apiClient.setBasePath(vuscURL);
-			apiClient.setReadTimeout(0);
-
-			// Get all jobs from the VUSC server
-			logger.info("Retrieving jobs from VUSC server...");
-			JobsApi jobsApi = new JobsApi(apiClient);
-			List<Job> jobs = jobsApi.getJobs(false, null, null, null, null);
-			logger.info(String.format("Retrieved %d jobs from VUSC server", jobs.size()));
-
-			// If we analyzed the same app multiple times, we only use the copy with the
-			// fewest errors
-			outer: for (Iterator<Job> it = jobs.iterator(); it.hasNext();) {
-				Job j = it.next();
-				for (Job j2 : jobs) {
-					if (j != j2 && j.getMetadata().getSha256Hash().equals(j2.getMetadata().getSha256Hash())) {
-						if (getFailureCount(j) > getFailureCount(j2)) {
-							it.remove();
-							continue outer;
-						}
-					}
+		}
+		return ingest(cmd, dbManager);
+	}
+
+	/**
+	 * Retrieves the jobs from the VUSC server, stores the counts of all jobs that
+	 * have not been processed before in the database, and builds the count
+	 * matrices over all jobs
+	 * 
+	 * @param cmd       The command line with the VUSC and catalog options
+	 * @param dbManager The database manager
+	 * @return The count matrices over all jobs
+	 * @throws ApiException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static AnalysisResult ingest(CommandLine cmd, IDatabaseManager dbManager)
+			throws ApiException, IOException, SQLException {
+		Logger logger = getLogger();
+		int cutoff = DEFAULT_CUTOFF;
+		String s = cmd.getOptionValue(OPTION_CUTOFF);
+		if (s != null && !s.isEmpty())
+			cutoff = Integer.valueOf(s);
+
+		// Connect to the VUSC servers
+		int timeout = DEFAULT_VUSC_TIMEOUT;
+		s = cmd.getOptionValue(OPTION_VUSC_TIMEOUT);
+		if (s != null && !s.isEmpty())
+			timeout = Integer.valueOf(s);
+		int retries = AdaptiveLimiter.DEFAULT_MAX_RETRIES;
+		s = cmd.getOptionValue(OPTION_VUSC_RETRIES);
+		if (s != null && !s.isEmpty())
+			retries = Integer.valueOf(s);
+		List<VuscSource> sources = new ArrayList<>();
+		Map<String, Integer> serverIndices = getVuscServerIndices(cmd.getOptionValues(OPTION_VUSC_URL), dbManager);
+		for (Map.Entry<String, Integer> entry : serverIndices.entrySet()) {
+			// Never run more calls concurrently than we have threads
+			sources.add(new VuscSource(entry.getValue(), entry.getKey(), timeout, getIngestThreads(cmd), retries));
+		}
+
+		String jobCacheDir = cmd.getOptionValue(OPTION_JOB_CACHE);
+		boolean offline = cmd.hasOption(OPTION_OFFLINE);
+		if (offline && (jobCacheDir == null || jobCacheDir.isEmpty()))
+			throw new IOException("Offline mode requires a job cache");
+		if (!offline && sources.isEmpty())
+			throw new IOException("No VUSC server specified");
+		ApiClient jsonClient = sources.isEmpty() ? new ApiClient() : sources.get(0).getApiClient();
+		try (JobResponseCache jobCache = jobCacheDir == null || jobCacheDir.isEmpty() ? null
+				: new JobResponseCache(new File(jobCacheDir), jsonClient.getJSON())) {
+			// Load the vulnerability catalog for classifying findings. We assume that all
+			// servers run the same version of VUSC and thus have the same catalog.
+			VuscSource catalogSource = offline ? null : sources.get(0);
+			catalog = loadCatalog(cmd, catalogSource == null ? null : catalogSource.createVulnerabilitiesApi(),
+					catalogSource == null ? null : catalogSource.getLimiter());
+
+			// Get all jobs from the VUSC servers
+			List<Job> jobs;
+			if (offline) {
+				jobs = jobCache.listJobs();
+				logger.info(String.format("Retrieved %d jobs from job cache", jobs.size()));
+			} else
+				jobs = listJobs(sources);
+			AnalysisResult result = ingest(jobs, offline ? Collections.emptyList() : sources, jobCache, cutoff,
+					cmd, dbManager);
+			if (!offline) {
+				for (VuscSource source : sources)
+					logger.info(String.format("Concurrency limit for VUSC server %s settled at %d", source.getUrl(),
+							source.getLimiter().getLimit()));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Gets the indices of the given VUSC servers. The index of a server is placed
+	 * in the global identifiers of its jobs, so it must not change between runs.
+	 * We therefore take the index of a known server from the database and assign
+	 * the lowest free index to a new server. On a database from before the
+	 * indices were recorded, this is the position of the server in the list as
+	 * before.
+	 * 
+	 * @param vuscURLs  The values of the VUSC URL option, each of which may be a
+	 *                  comma-separated list of URLs, or <code>null</code> if there
+	 *                  are none
+	 * @param dbManager The database manager
+	 * @return The indices of the servers, keyed by their URLs
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	private static Map<String, Integer> getVuscServerIndices(String[] vuscURLs, IDatabaseManager dbManager)
+			throws IOException, SQLException {
+		Map<String, Integer> serverIndices = new LinkedHashMap<>();
+		if (vuscURLs == null)
+			return serverIndices;
+
+		Logger logger = getLogger();
+		Map<String, Integer> knownServers = new HashMap<>();
+		for (VuscServer server : dbManager.getVuscServers())
+			knownServers.put(server.url, server.serverIndex);
+		Set<Integer> usedIndices = new HashSet<>(knownServers.values());
+		for (String urls : vuscURLs) {
+			for (String url : urls.split(",")) {
+				url = url.trim().replaceAll("/+$", "");
+				if (url.isEmpty() || serverIndices.containsKey(url))
+					continue;
+				Integer index = knownServers.get(url);
+				if (index == null) {
+					index = 0;
+					while (usedIndices.contains(index))
+						index++;
+					if (index >= VuscSource.MAX_SOURCES)
+						throw new IOException(String.format("Too many VUSC servers, cannot add %s", url));
+					dbManager.addVuscServer(new VuscServer(url, index));
+					usedIndices.add(index);
+					if (!knownServers.isEmpty())
+						logger.warn(String.format("VUSC server %s is new and has been assigned index %d. If it is "
+								+ "a known server under a new URL, its jobs will be processed again.", url, index));
 				}
+				serverIndices.put(url, index);
+			}
+		}
 
-				// Remove jobs for which we have no data
-				if (j.getStatus().getFinishedAnalyses() == 0) {
-					it.remove();
+		// Jobs of servers that are no longer listed stay in the database, but will
+		// not be updated
+		for (Map.Entry<String, Integer> entry : knownServers.entrySet()) {
+			if (!serverIndices.containsKey(entry.getKey()))
+				logger.warn(String.format("Known VUSC server %s with index %d has not been specified, its jobs "
+						+ "will not be updated", entry.getKey(), entry.getValue()));
+		}
+		return serverIndices;
+	}
+
+	/**
+	 * Gets the jobs from all given VUSC servers in parallel
+	 * 
+	 * @param sources The VUSC servers
+	 * @return The jobs from all servers with their global identifiers
+	 * @throws ApiException
+	 * @throws IOException
+	 */
+	private static List<Job> listJobs(List<VuscSource> sources) throws ApiException, IOException {
+		Logger logger = getLogger();
+		ExecutorService executor = Executors.newFixedThreadPool(sources.size());
+		try {
+			List<Future<List<Job>>> futures = new ArrayList<>(sources.size());
+			for (VuscSource source : sources) {
+				futures.add(executor.submit(() -> {
+					logger.info(String.format("Retrieving jobs from VUSC server %s...", source.getUrl()));
+					List<Job> sourceJobs = source.listJobs();
+					logger.info(String.format("Retrieved %d jobs from VUSC server %s", sourceJobs.size(),
+							source.getUrl()));
+					return sourceJobs;
+				}));
+			}
+			List<Job> jobs = new ArrayList<>();
+			for (Future<List<Job>> future : futures) {
+				try {
+					jobs.addAll(future.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while retrieving jobs");
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof ApiException)
+						throw (ApiException) e.getCause();
+					throw new IOException(e.getCause());
 				}
 			}
-			logger.info(String.format("After cleanup, we have %d jobs left", jobs.size()));
-
-			// Get the jobs that still need to be analyzed
-			List<Job> unprocessedJobs = new ArrayList<>();
-			List<Job> processedJobs = new ArrayList<>();
-			dbManager.splitJobs(jobs, unprocessedJobs, processedJobs);
-			logger.info(String.format("We have %d jobs that we haven't processed yet", unprocessedJobs.size()));
-
-			// Analyze the new jobs
-			CountingTable<Job, String> catMap = new CountingTable<>();
-			CountingTable<Job, String> vulnMap = new CountingTable<>();
-			CountingTable<Job, CategoryType> typeMap = new CountingTable<>();
+			return jobs;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stores the counts of all given jobs that have not been processed before in
+	 * the database, and builds the count matrices over all jobs
+	 * 
+	 * @param jobs      The jobs to analyze
+	 * @param sources   The VUSC servers from which to download the job results,
+	 *                  or an empty list if all results must come from the job
+	 *                  cache
+	 * @param jobCache  The cache of job results, or null if no cache shall be used
+	 * @param cutoff    The maximum number of findings of either kind, above which
+	 *                  a job is discarded
+	 * @param cmd       The command line with the ingest options
+	 * @param dbManager The database manager
+	 * @return The count matrices over all jobs
+	 * @throws ApiException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	private static AnalysisResult ingest(List<Job> jobs, List<VuscSource> sources, JobResponseCache jobCache,
+			int cutoff, CommandLine cmd, IDatabaseManager dbManager) throws ApiException, IOException, SQLException {
+		Logger logger = getLogger();
+
+		// If we analyzed the same app multiple times, possibly on different servers,
+		// we only use the copy with the fewest errors
+		long start = AnalysisMetrics.DEDUPLICATION.start();
+		Map<String, Job> bestJobs = new LinkedHashMap<>(jobs.size() * 2);
+		for (Job j : jobs) {
+			// Remove jobs for which we have no data
+			if (j.getStatus().getFinishedAnalyses() == 0) {
+				AnalysisMetrics.JOBS_NO_DATA.increment();
+				continue;
+			}
+			Job existing = bestJobs.putIfAbsent(j.getMetadata().getSha256Hash(), j);
+			if (existing != null) {
+				if (getFailureCount(j) < getFailureCount(existing))
+					bestJobs.put(j.getMetadata().getSha256Hash(), j);
+				AnalysisMetrics.JOBS_DUPLICATE.increment();
+			}
+		}
+		jobs = new ArrayList<>(bestJobs.values());
+		AnalysisMetrics.DEDUPLICATION.stop(start);
+		logger.info(String.format("After cleanup, we have %d jobs left", jobs.size()));
+
+		// Get the jobs that still need to be analyzed
+		List<Job> unprocessedJobs = new ArrayList<>();
+		List<Job> processedJobs = new ArrayList<>();
+		dbManager.splitJobs(jobs, unprocessedJobs, processedJobs);
+		List<Long> processedJobIds = processedJobs.stream().map(j -> j.getId()).collect(Collectors.toList());
+
+		// If we have processed another job for the same app before, the new job only
+		// replaces the old one if it has fewer failed analyses
+		Map<String, ProcessedJob> processedApps = dbManager.getProcessedJobsByHash();
+		Map<Long, Long> replacedJobs = new HashMap<>();
+		for (Iterator<Job> it = unprocessedJobs.iterator(); it.hasNext();) {
+			Job j = it.next();
+			ProcessedJob oldJob = processedApps.get(j.getMetadata().getSha256Hash());
+			if (oldJob == null)
+				continue;
+			if (getFailureCount(j) < oldJob.failedAnalyses)
+				replacedJobs.put(j.getId(), oldJob.jobId);
+			else {
+				it.remove();
+				processedJobIds.add(oldJob.jobId);
+				AnalysisMetrics.JOBS_DUPLICATE.increment();
+			}
+		}
+		logger.info(String.format("We have %d jobs that we haven't processed yet, %d of which replace older jobs",
+				unprocessedJobs.size(), replacedJobs.size()));
+
+		// Analyze the new jobs. All three matrices share their rows, so that their
+		// rows are aligned regardless of the order in which the jobs finish.
+		NameDictionary dictionary = dbManager.loadDictionary();
+		ConcurrentCountMatrixBuilder catBuilder = new ConcurrentCountMatrixBuilder(jobs.size(),
+				dictionary.size() + 1);
+		ConcurrentCountMatrixBuilder vulnBuilder = new ConcurrentCountMatrixBuilder(catBuilder,
+				dictionary.size() + 1);
+		ConcurrentCountMatrixBuilder typeBuilder = new ConcurrentCountMatrixBuilder(catBuilder,
+				CategoryType.values().length);
+		final int jobCutoff = cutoff;
+
+		// The index of a server is stored in the database and need not match its
+		// position in the list of servers
+		Map<Integer, VuscSource> sourcesByIndex = new HashMap<>();
+		for (VuscSource source : sources)
+			sourcesByIndex.put(source.getIndex(), source);
+		ExecutorService executor = Executors.newFixedThreadPool(getIngestThreads(cmd));
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>(unprocessedJobs.size());
 			for (Job j : unprocessedJobs) {
-				// We need to explicitly load each job to get the job results
-				logger.info(String.format("Analyzing job %d...", j.getId()));
-				j = jobsApi.getJob(j.getId());
-				JobResults results = j.getJobResults();
-
-				if (results != null) {
-					// Create the metadata record
-					ProcessedJob pj = new ProcessedJob();
-					pj.jobId = j.getId();
-					List<VulnerabilityFinding> findings = results.getVulnerabilityFindings();
-					if (findings != null) {
-						pj.numQualFindings = (int) findings.stream().filter(f -> isCodeQualityCategory(f)).count();
-						pj.numSecFindings = (int) findings.stream().filter(f -> !isCodeQualityCategory(f)).count();
-
-						if (pj.numQualFindings > cutoff || pj.numSecFindings > cutoff)
-							continue;
-
-						// Map categories to finding counts
-						CountingMap<String> projectVulnMap = new CountingMap<>();
-						CountingMap<String> projectCatMap = new CountingMap<>();
-						CountingMap<CategoryType> projectTypeMap = new CountingMap<>();
-						for (VulnerabilityFinding f : findings) {
-							projectVulnMap.increment(f.getType());
-							projectCatMap.increment(f.getCategory());
-							projectTypeMap.increment(isCodeQualityCategory(f) ? CategoryType.QualityCategory
-									: CategoryType.SecurityCategory);
-						}
+				futures.add(executor.submit(() -> processJob(j, replacedJobs.get(j.getId()), sourcesByIndex, jobCache,
+						jobCutoff, dictionary, dbManager, catBuilder, vulnBuilder, typeBuilder)));
+			}
+
+			// If a replacement is discarded, e.g., because of the cutoff, we keep the
+			// old job for the app
+			for (int i = 0; i < futures.size(); i++) {
+				Long replacedJob = replacedJobs.get(unprocessedJobs.get(i).getId());
+				if (!waitForJob(futures.get(i)) && replacedJob != null)
+					processedJobIds.add(replacedJob);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
 
-						vulnMap.addAll(j, projectVulnMap);
-						catMap.addAll(j, projectCatMap);
-						typeMap.addAll(j, projectTypeMap);
+		// Load the counts for the existing jobs from the database
+		List<ProcessedJob> resolvedProcessedJobs = dbManager.getProcessedJobs(processedJobIds);
+		for (ProcessedJob pj : resolvedProcessedJobs)
+			AnalysisResult.addProcessedJob(pj, catBuilder, vulnBuilder, typeBuilder);
+		return new AnalysisResult(dictionary, catBuilder.build(), vulnBuilder.build(), typeBuilder.build());
+	}
+
+	/**
+	 * Downloads the results of the given job, stores its counts in the database,
+	 * and adds them to the given matrix builders. This method may be called
+	 * concurrently for different jobs.
+	 * 
+	 * @param j           The job to process
+	 * @param replacedJob The identifier of the processed job for the same app
+	 *                    that this job replaces, or null if there is none
+	 * @param sources     The VUSC servers from which to download the job results,
+	 *                    keyed by their index, or an empty map if all results
+	 *                    must come from the job cache
+	 * @param jobCache    The cache of job results, or null if no cache shall be
+	 *                    used
+	 * @param cutoff      The maximum number of findings of either kind, above
+	 *                    which the job is discarded
+	 * @param dictionary  The dictionary for interning category and type names
+	 * @param dbManager   The database manager
+	 * @param catBuilder  The builder for the category matrix
+	 * @param vulnBuilder The builder for the vulnerability type matrix
+	 * @param typeBuilder The builder for the category type matrix
+	 * @return True if the job has been stored, false if it has been discarded
+	 * @throws ApiException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	private static boolean processJob(Job j, Long replacedJob, Map<Integer, VuscSource> sources,
+			JobResponseCache jobCache, int cutoff, NameDictionary dictionary, IDatabaseManager dbManager,
+			ICountMatrixBuilder catBuilder, ICountMatrixBuilder vulnBuilder, ICountMatrixBuilder typeBuilder)
+			throws ApiException, IOException, SQLException {
+		// We need to explicitly load each job to get the job results
+		getLogger().info(String.format("Analyzing job %d...", j.getId()));
+		JobFetchEvent fetchEvent = new JobFetchEvent();
+		fetchEvent.begin();
+		final String appHash = j.getMetadata().getSha256Hash();
+		final int failedAnalyses = getFailureCount(j);
+		final long finishDate = JobResponseCache.getFinishDate(j);
+		j = fetchJob(j, sources, jobCache);
+		JobResults results = j.getJobResults();
+		fetchEvent.jobId = j.getId();
+		fetchEvent.findings = results == null || results.getVulnerabilityFindings() == null ? 0
+				: results.getVulnerabilityFindings().size();
+		fetchEvent.commit();
+
+		if (results != null) {
+			// Create the metadata record
+			ProcessedJob pj = new ProcessedJob();
+			pj.jobId = j.getId();
+			pj.appHash = appHash;
+			pj.failedAnalyses = failedAnalyses;
+			pj.finishDate = finishDate;
+			List<VulnerabilityFinding> findings = results.getVulnerabilityFindings();
+			if (findings != null) {
+				AnalysisMetrics.FINDINGS_PER_JOB.observe(findings.size());
+				pj.numQualFindings = (int) findings.stream().filter(f -> isCodeQualityCategory(f)).count();
+				pj.numSecFindings = (int) findings.stream().filter(f -> !isCodeQualityCategory(f)).count();
+
+				if (pj.numQualFindings > cutoff || pj.numSecFindings > cutoff) {
+					AnalysisMetrics.JOBS_CUTOFF.increment();
+					return false;
+				}
+
+				// Map categories to finding counts
+				CountingMap<String> projectVulnMap = new CountingMap<>();
+				CountingMap<String> projectCatMap = new CountingMap<>();
+				for (VulnerabilityFinding f : findings) {
+					projectVulnMap.increment(f.getType());
+					projectCatMap.increment(f.getCategory());
+				}
 
-						pj.categoriesToCounts = new HashSet<>();
-						for (String cat : projectCatMap.keySet()) {
-							CategoryAndCount cc = new CategoryAndCount(pj, cat, projectCatMap.get(cat));
-							pj.categoriesToCounts.add(cc);
+				if (!findings.isEmpty()) {
+					int row = AnalysisResult.addRow(pj.jobId, catBuilder, vulnBuilder, typeBuilder);
+					typeBuilder.add(row, CategoryType.QualityCategory.ordinal(), pj.numQualFindings);
+					typeBuilder.add(row, CategoryType.SecurityCategory.ordinal(), pj.numSecFindings);
+
+					pj.categoriesToCounts = new HashSet<>();
+					for (String cat : projectCatMap.keySet()) {
+						int catId = dictionary.intern(cat);
+						catBuilder.add(row, catId, projectCatMap.get(cat));
+						CategoryAndCount cc = new CategoryAndCount(pj, catId, projectCatMap.get(cat));
+						pj.categoriesToCounts.add(cc);
+						if (replacedJob == null)
 							dbManager.addToDatabase(cc);
-						}
-						pj.vulnerabilitiesToCounts = new HashSet<>();
-						for (String vuln : projectVulnMap.keySet()) {
-							VulnerabilityAndCount vc = new VulnerabilityAndCount(pj, vuln, projectVulnMap.get(vuln));
-							pj.vulnerabilitiesToCounts.add(vc);
+					}
+					pj.vulnerabilitiesToCounts = new HashSet<>();
+					for (String vuln : projectVulnMap.keySet()) {
+						int vulnId = dictionary.intern(vuln);
+						vulnBuilder.add(row, vulnId, projectVulnMap.get(vuln));
+						VulnerabilityAndCount vc = new VulnerabilityAndCount(pj, vulnId, projectVulnMap.get(vuln));
+						pj.vulnerabilitiesToCounts.add(vc);
+						if (replacedJob == null)
 							dbManager.addToDatabase(vc);
-						}
 					}
-					dbManager.addToDatabase(pj);
 				}
 			}
+			// A replacement writes the job together with its counts
+			if (replacedJob == null)
+				dbManager.addToDatabase(pj);
+			else {
+				dbManager.replaceJob(replacedJob, pj);
+				AnalysisMetrics.JOBS_REPLACED.increment();
+			}
+			AnalysisMetrics.JOBS_PROCESSED.increment();
+			return true;
+		}
+		return false;
+	}
 
-			// Load the counts for the existing jobs from the database
-			List<ProcessedJob> resolvedProcessedJobs = dbManager
-					.getProcessedJobs(processedJobs.stream().map(j -> j.getId()).collect(Collectors.toList()));
-			for (int i = 0; i < resolvedProcessedJobs.size(); i++) {
-				ProcessedJob pj = resolvedProcessedJobs.get(i);
-				Job j = processedJobs.get(i);
-				if (pj.categoriesToCounts != null) {
-					for (CategoryAndCount cc : pj.categoriesToCounts) {
-						catMap.add(j, cc.category, cc.count);
-						typeMap.add(j, cc.category.equals("Code Quality") ? CategoryType.QualityCategory
-								: CategoryType.SecurityCategory, cc.count);
-					}
-				}
-				if (pj.vulnerabilitiesToCounts != null) {
-					for (VulnerabilityAndCount vc : pj.vulnerabilitiesToCounts) {
-						vulnMap.add(j, vc.vulnType, vc.count);
-					}
-				}
+	/**
+	 * Gets the given job with its results from the job cache if the cache has the
+	 * results of the current run of the job, otherwise from the VUSC server
+	 * 
+	 * @param j        The job as listed by the VUSC server
+	 * @param sources  The VUSC servers from which to download the job results,
+	 *                 keyed by their index, or an empty map if all results must
+	 *                 come from the job cache
+	 * @param jobCache The cache of job results, or null if no cache shall be used
+	 * @return The job with its results
+	 * @throws ApiException
+	 * @throws IOException
+	 */
+	private static Job fetchJob(Job j, Map<Integer, VuscSource> sources, JobResponseCache jobCache)
+			throws ApiException, IOException {
+		if (jobCache != null) {
+			Job cached = jobCache.get(j.getId(), JobResponseCache.getFinishDate(j));
+			if (cached != null) {
+				AnalysisMetrics.JOB_CACHE_HITS.increment();
+				return cached;
 			}
+			AnalysisMetrics.JOB_CACHE_MISSES.increment();
+			if (sources.isEmpty())
+				throw new IOException(String.format("Job %d is not in the job cache", j.getId()));
+		}
+
+		int sourceIndex = VuscSource.getSourceIndex(j.getId());
+		VuscSource source = sources.get(sourceIndex);
+		if (source == null)
+			throw new IOException(String.format("Job %d belongs to unknown VUSC server %d", j.getId(), sourceIndex));
+		Job job = source.getJob(j.getId());
+		if (jobCache != null)
+			jobCache.put(job);
+		return job;
+	}
 
-			// Compute the overall correlation between security and quality
-			int[] qualityVals = typeMap.columnValues(CategoryType.QualityCategory,
-					(a, b) -> a.getId().compareTo(b.getId()));
-			int[] securityVals = typeMap.columnValues(CategoryType.SecurityCategory,
-					(a, b) -> a.getId().compareTo(b.getId()));
-			double correlation = correlate(qualityVals, securityVals);
-			double significance = computeSignificance(qualityVals, securityVals);
-			logger.info(String.format(
-					"Overall correlation between security and quality issues is %.2f (significance is %.2f)",
-					correlation, significance));
-
-			// Compute pairwise correlations between categories
-			{
-				Set<Pair<String, String>> computedPairs = new HashSet<>();
-				for (String cat1 : catMap.getColumns()) {
-					for (String cat2 : catMap.getColumns()) {
-						if (computedPairs.add(new ImmutablePair<>(cat1, cat2))) {
-							if (!cat1.equals(cat2)) {
-								correlateCategories(catMap, cat1, cat2, dbManager);
-							}
+	/**
+	 * Waits for the given job to be processed and rethrows the error on which its
+	 * processing has failed, if any
+	 * 
+	 * @param future The future of the job
+	 * @return True if the job has been stored, false if it has been discarded
+	 * @throws ApiException
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	private static boolean waitForJob(Future<Boolean> future) throws ApiException, IOException, SQLException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while processing jobs");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ApiException)
+				throw (ApiException) cause;
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof SQLException)
+				throw (SQLException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException("Could not process job", cause);
+		}
+	}
+
+	/**
+	 * Computes the overall correlation between security and quality findings as
+	 * well as the pairwise correlations between all categories and between all
+	 * issue types. Correlations that are already in the database are not
+	 * recomputed. Afterwards, the given result contains all correlations.
+	 * 
+	 * @param result    The count matrices on which to compute the correlations
+	 * @param dbManager The database manager
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void correlate(AnalysisResult result, IDatabaseManager dbManager) throws IOException, SQLException {
+		correlate(result, dbManager, null);
+	}
+
+	/**
+	 * Computes the overall correlation between security and quality findings as
+	 * well as the pairwise correlations between all categories and between all
+	 * issue types. Pairs that the given checkpoint marks as completed are skipped,
+	 * and the progress is periodically saved to the checkpoint.
+	 * 
+	 * @param result     The count matrices on which to compute the correlations
+	 * @param dbManager  The database manager
+	 * @param checkpoint The checkpoint, or null if checkpointing is disabled
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void correlate(AnalysisResult result, IDatabaseManager dbManager, Checkpoint checkpoint)
+			throws IOException, SQLException {
+		correlate(result, dbManager, checkpoint, null);
+	}
+
+	/**
+	 * Computes the overall correlation between security and quality findings as
+	 * well as the pairwise correlations between all categories and between all
+	 * issue types. If a coordinator is given, the pairwise correlations are
+	 * computed by its worker processes. If the result is restricted to the
+	 * strongest pairs, only these are correlated in this process, and the
+	 * checkpoint and the coordinator are not used for them.
+	 * 
+	 * @param result      The count matrices on which to compute the correlations
+	 * @param dbManager   The database manager
+	 * @param checkpoint  The checkpoint, or null if checkpointing is disabled
+	 * @param coordinator The coordinator for sharding the pairwise correlations,
+	 *                    or null to compute them in this process
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void correlate(AnalysisResult result, IDatabaseManager dbManager, Checkpoint checkpoint,
+			ShardCoordinator coordinator) throws IOException, SQLException {
+		Logger logger = getLogger();
+		logger.info(String.format("Using the %s kernels", Kernels.get().getName()));
+
+		// Compute the overall correlation between security and quality
+		CountMatrix typeMatrix = result.getTypeMatrix();
+		int[] qualityVals = typeMatrix.getColumnOrZeros(CategoryType.QualityCategory.ordinal());
+		int[] securityVals = typeMatrix.getColumnOrZeros(CategoryType.SecurityCategory.ordinal());
+		double correlation = correlate(qualityVals, securityVals);
+		double significance = computeSignificance(qualityVals, securityVals);
+		logger.info(
+				String.format("Overall correlation between security and quality issues is %.2f (significance is %.2f)",
+						correlation, significance));
+
+		// Correlations that involve columns whose counts have changed since they
+		// were computed, e.g., because a job was replaced, are computed again
+		List<DirtyColumn> dirtyColumns = dbManager.getDirtyColumns();
+		if (!dirtyColumns.isEmpty()) {
+			logger.info(String.format("Recomputing the correlations of %d changed columns", dirtyColumns.size()));
+			dbManager.clearDirtyColumns(dirtyColumns);
+		}
+
+		// Load the known correlations in one go instead of asking the database for
+		// every single pair. This also covers the pairs that were written after the
+		// last checkpoint. Correlations that have been computed without partial
+		// correlations get them now.
+		List<CategoryCorrelation> partialCategories = new ArrayList<>();
+		for (CategoryCorrelation cc : dbManager.getCategoryCorrelations(false, 0)) {
+			if (cc.partialCorrelation == null) {
+				result.fillPartialCorrelation(cc);
+				if (cc.partialCorrelation != null)
+					partialCategories.add(cc);
+			}
+			result.addCategoryCorrelation(cc);
+		}
+		List<VulnerabilityCorrelation> partialVulnerabilities = new ArrayList<>();
+		for (VulnerabilityCorrelation vc : dbManager.getVulnerabilityCorrelations(false, 0)) {
+			if (vc.partialCorrelation == null) {
+				result.fillPartialCorrelation(vc);
+				if (vc.partialCorrelation != null)
+					partialVulnerabilities.add(vc);
+			}
+			result.addVulnerabilityCorrelation(vc);
+		}
+		if (!partialCategories.isEmpty() || !partialVulnerabilities.isEmpty()) {
+			logger.info(String.format("Adding partial correlations to %d known category pairs and %d issue type pairs",
+					partialCategories.size(), partialVulnerabilities.size()));
+			dbManager.updatePartialCorrelations(partialCategories, partialVulnerabilities);
+		}
+
+		// New correlations are written in the background, so that the computation
+		// does not wait for the database
+		try (CorrelationWriter writer = new CorrelationWriter(dbManager)) {
+			if (result.getTopK() > 0)
+				correlateTopK(result, writer);
+			else if (coordinator != null)
+				coordinator.computePairs(result, writer, checkpoint);
+
+			// Compute pairwise correlations between categories. The correlation is
+			// symmetric, so we only need the upper triangle.
+			else {
+				CountMatrix catMatrix = result.getCategoryMatrix();
+				int[] catIds = catMatrix.getColumnIds();
+				BitSet completed = checkpoint == null ? null : checkpoint.getCompletedCategoryPairs();
+				for (int i = 0; i < catIds.length; i++) {
+					for (int j = i + 1; j < catIds.length; j++) {
+						if (completed == null)
+							correlateCategories(result, catIds[i], catIds[j], writer);
+						else {
+							int pairIdx = Checkpoint.getPairIndex(i, j, catIds.length);
+							if (completed.get(pairIdx))
+								continue;
+							correlateCategories(result, catIds[i], catIds[j], writer);
+							completed.set(pairIdx);
+							checkpoint.writeIfDue(result, writer);
 						}
 					}
 				}
 			}
 
 			// Compute pairwise correlations between issue types
-			{
-				Set<Pair<String, String>> computedPairs = new HashSet<>();
-				for (String type1 : vulnMap.getColumns()) {
-					for (String type2 : vulnMap.getColumns()) {
-						if (computedPairs.add(new ImmutablePair<>(type1, type2))) {
-							if (!type1.equals(type2)) {
-								correlateIssueTypes(vulnMap, type1, type2, dbManager);
-							}
+			if (coordinator == null && result.getTopK() == 0) {
+				CountMatrix vulnMatrix = result.getVulnerabilityMatrix();
+				int[] typeIds = vulnMatrix.getColumnIds();
+				BitSet completed = checkpoint == null ? null : checkpoint.getCompletedVulnerabilityPairs();
+				for (int i = 0; i < typeIds.length; i++) {
+					for (int j = i + 1; j < typeIds.length; j++) {
+						if (completed == null)
+							correlateIssueTypes(result, typeIds[i], typeIds[j], writer);
+						else {
+							int pairIdx = Checkpoint.getPairIndex(i, j, typeIds.length);
+							if (completed.get(pairIdx))
+								continue;
+							correlateIssueTypes(result, typeIds[i], typeIds[j], writer);
+							completed.set(pairIdx);
+							checkpoint.writeIfDue(result, writer);
 						}
 					}
 				}
 			}
-		} catch (ParseException e) {
-			formatter.printHelp("java -jar CorrelationAnalysis.jar [OPTIONS]", options);
+		}
+
+		reportPrunedPairs("category", result.getCategoryPruner());
+		reportPrunedPairs("issue type", result.getVulnerabilityPruner());
+
+		// The writer has written all correlations when it is closed
+		if (checkpoint != null)
+			checkpoint.write(result);
+		result.setCorrelationsComplete();
+	}
+
+	/**
+	 * Logs how many pairs the given pruner has skipped and why, and resets its
+	 * counts
+	 * 
+	 * @param kind   The kind of pairs for the log message
+	 * @param pruner The pruner, or null if pruning is disabled
+	 */
+	private static void reportPrunedPairs(String kind, PairPruner pruner) {
+		if (pruner == null || pruner.getPrunedTotal() == 0)
 			return;
-		} catch (ApiException e) {
-			logger.error("Error during communication with VUSC", e);
-		} catch (IOException e) {
-			logger.error("IO error during correlation analysis", e);
-		} catch (SQLException e) {
-			logger.error("SQL error on backend database for correlations", e);
+		getLogger().info(String.format(
+				"Skipped %d %s pairs: %d with a rare column, %d with a constant column, %d with too few common apps",
+				pruner.getPrunedTotal(), kind, pruner.getPrunedLowSupport(), pruner.getPrunedConstant(),
+				pruner.getPrunedLowCoOccurrence()));
+		AnalysisMetrics.PAIRS_PRUNED_SUPPORT.add(pruner.getPrunedLowSupport());
+		AnalysisMetrics.PAIRS_PRUNED_CONSTANT.add(pruner.getPrunedConstant());
+		AnalysisMetrics.PAIRS_PRUNED_CO_OCCURRENCE.add(pruner.getPrunedLowCoOccurrence());
+		pruner.resetCounts();
+	}
+
+	/**
+	 * Correlates only the pairs of categories and the pairs of issue types with
+	 * the strongest correlation. The strongest pairs are found with bounds on the
+	 * rank correlation, so that the expensive significance test only runs on the
+	 * pairs that are actually reported.
+	 * 
+	 * @param result The analysis result with the count matrices and the number of
+	 *               pairs to correlate
+	 * @param writer The writer for persisting new correlations
+	 * @throws IOException
+	 */
+	private static void correlateTopK(AnalysisResult result, CorrelationWriter writer) throws IOException {
+		final int k = result.getTopK();
+		List<TopKCorrelations.Pair> catPairs = TopKCorrelations.find(result.getCategoryMatrix(), k,
+				result.getCategoryPruner());
+		logStrongestPairs("category", catPairs);
+		for (TopKCorrelations.Pair pair : catPairs)
+			correlateCategories(result, pair.id1, pair.id2, writer);
+
+		List<TopKCorrelations.Pair> vulnPairs = TopKCorrelations.find(result.getVulnerabilityMatrix(), k,
+				result.getVulnerabilityPruner());
+		logStrongestPairs("issue type", vulnPairs);
+		for (TopKCorrelations.Pair pair : vulnPairs)
+			correlateIssueTypes(result, pair.id1, pair.id2, writer);
+	}
+
+	private static void logStrongestPairs(String kind, List<TopKCorrelations.Pair> pairs) {
+		if (pairs.isEmpty())
+			getLogger().info(String.format("No %s pair has a correlation", kind));
+		else
+			getLogger().info(String.format("Found the %d strongest %s pairs, the weakest of them is %.2f",
+					pairs.size(), kind, pairs.get(pairs.size() - 1).correlation));
+	}
+
+	/**
+	 * Computes bootstrap confidence intervals for the correlations over all jobs
+	 * that do not have one yet if the user has requested it, and stores them in
+	 * the database. All pairs are correlated on the same resamples.
+	 * 
+	 * @param cmd       The command line with the bootstrap options
+	 * @param result    The count matrices and the correlations over all jobs
+	 * @param dbManager The database manager
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void computeConfidenceIntervals(CommandLine cmd, AnalysisResult result, IDatabaseManager dbManager)
+			throws IOException, SQLException {
+		String s = cmd.getOptionValue(OPTION_BOOTSTRAP);
+		if (s == null || s.isEmpty())
+			return;
+		int numResamples = Integer.valueOf(s);
+		long seed = BootstrapIntervals.DEFAULT_SEED;
+		s = cmd.getOptionValue(OPTION_BOOTSTRAP_SEED);
+		if (s != null && !s.isEmpty())
+			seed = Long.valueOf(s);
+
+		List<CategoryCorrelation> ccs = result.getCategoryCorrelations().stream()
+				.filter(cc -> cc.ciLow == null && !Double.isNaN(cc.correlation)).collect(Collectors.toList());
+		List<VulnerabilityCorrelation> vcs = result.getVulnerabilityCorrelations().stream()
+				.filter(vc -> vc.ciLow == null && !Double.isNaN(vc.correlation)).collect(Collectors.toList());
+		if (ccs.isEmpty() && vcs.isEmpty())
+			return;
+		getLogger().info(String.format(
+				"Computing confidence intervals for %d category pairs and %d issue type pairs on %d resamples...",
+				ccs.size(), vcs.size(), numResamples));
+
+		double[][] catIntervals = new BootstrapIntervals(result.getCategoryMatrix(), numResamples, seed).compute(
+				ccs.stream().mapToInt(cc -> cc.catId1).toArray(), ccs.stream().mapToInt(cc -> cc.catId2).toArray(),
+				BootstrapIntervals.DEFAULT_CONFIDENCE);
+		List<CategoryCorrelation> updatedCategories = new ArrayList<>();
+		for (int i = 0; i < ccs.size(); i++) {
+			if (!Double.isNaN(catIntervals[i][0])) {
+				CategoryCorrelation cc = ccs.get(i);
+				cc.ciLow = catIntervals[i][0];
+				cc.ciHigh = catIntervals[i][1];
+				updatedCategories.add(cc);
+			}
+		}
+
+		double[][] vulnIntervals = new BootstrapIntervals(result.getVulnerabilityMatrix(), numResamples, seed)
+				.compute(vcs.stream().mapToInt(vc -> vc.vulnTypeId1).toArray(),
+						vcs.stream().mapToInt(vc -> vc.vulnTypeId2).toArray(), BootstrapIntervals.DEFAULT_CONFIDENCE);
+		List<VulnerabilityCorrelation> updatedVulnerabilities = new ArrayList<>();
+		for (int i = 0; i < vcs.size(); i++) {
+			if (!Double.isNaN(vulnIntervals[i][0])) {
+				VulnerabilityCorrelation vc = vcs.get(i);
+				vc.ciLow = vulnIntervals[i][0];
+				vc.ciHigh = vulnIntervals[i][1];
+				updatedVulnerabilities.add(vc);
+			}
+		}
+
+		AnalysisMetrics.BOOTSTRAP_RESAMPLES.add((long) (ccs.size() + vcs.size()) * numResamples);
+		dbManager.updateConfidenceIntervals(updatedCategories, updatedVulnerabilities);
+	}
+
+	/**
+	 * Computes the pairwise correlations between all categories and between all
+	 * issue types separately for each cohort of jobs if the user has requested
+	 * it. All cohorts are handled in a single parallel pass over the count
+	 * matrices, which ranks every column only once per cohort instead of running
+	 * the complete analysis on every subset of the jobs. Correlations that are
+	 * already in the database are not recomputed, except for the cohorts by size,
+	 * whose bucket boundaries depend on all jobs. Partial correlations are not
+	 * computed for cohorts.
+	 * 
+	 * @param cmd       The command line with the cohort options
+	 * @param result    The count matrices over all jobs
+	 * @param dbManager The database manager
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void correlateCohorts(CommandLine cmd, AnalysisResult result, IDatabaseManager dbManager)
+			throws IOException, SQLException {
+		String s = cmd.getOptionValue(OPTION_COHORTS);
+		if (s == null || s.isEmpty())
+			return;
+		Logger logger = getLogger();
+		Set<CohortDimension> dimensions = EnumSet.noneOf(CohortDimension.class);
+		for (String dimension : s.split(",")) {
+			if (!dimension.isBlank())
+				dimensions.add(CohortDimension.valueOf(dimension.trim().toUpperCase()));
+		}
+		int sizeBuckets = CohortPartition.DEFAULT_SIZE_BUCKETS;
+		s = cmd.getOptionValue(OPTION_COHORT_BUCKETS);
+		if (s != null && !s.isEmpty())
+			sizeBuckets = Integer.valueOf(s);
+
+		// The count matrices do not know when a job has finished
+		Map<Long, Long> finishDates = new HashMap<>();
+		if (dimensions.contains(CohortDimension.MONTH)) {
+			for (ProcessedJob pj : dbManager.getAllProcessedJobs())
+				finishDates.put(pj.jobId, pj.finishDate);
+		}
+
+		// We measure the app size in the same way as for the partial correlations
+		double[] sizes = null;
+		if (dimensions.contains(CohortDimension.SIZE)) {
+			String sizeFile = cmd.getOptionValue(OPTION_SIZE_FILE);
+			if (sizeFile != null && !sizeFile.isEmpty())
+				sizes = SizeCovariates.load(new File(sizeFile), result.getTypeMatrix())[0];
+			else
+				sizes = SizeCovariates.getTotalFindings(result.getTypeMatrix());
+		}
+		CohortPartition partition = CohortPartition.create(dimensions, result.getTypeMatrix(), finishDates, sizes,
+				sizeBuckets);
+		logger.info(String.format("Computing correlations for %d cohorts: %s", partition.getCohortCount(),
+				partition.getSizes()));
+
+		// Load the known correlations in one go. The size buckets are computed from
+		// the current jobs, so a size cohort from an earlier run may have covered
+		// different jobs. We therefore remove every cohort with a size dimension,
+		// whatever its other dimensions, and compute the requested ones from
+		// scratch.
+		List<CategoryCorrelation> knownCategoryCorrelations = dbManager.getCategoryCohortCorrelations();
+		List<VulnerabilityCorrelation> knownVulnCorrelations = dbManager.getVulnerabilityCohortCorrelations();
+		Set<String> staleCohorts = new HashSet<>();
+		for (CategoryCorrelation cc : knownCategoryCorrelations) {
+			if (CohortPartition.getDimensions(cc.cohort).contains(CohortDimension.SIZE))
+				staleCohorts.add(cc.cohort);
+		}
+		for (VulnerabilityCorrelation vc : knownVulnCorrelations) {
+			if (CohortPartition.getDimensions(vc.cohort).contains(CohortDimension.SIZE))
+				staleCohorts.add(vc.cohort);
+		}
+		if (!staleCohorts.isEmpty()) {
+			logger.info(String.format("Removing the correlations of %d size cohorts from earlier runs",
+					staleCohorts.size()));
+			dbManager.deleteCohortCorrelations(staleCohorts);
+		}
+		Set<String> knownCategories = new HashSet<>();
+		for (CategoryCorrelation cc : knownCategoryCorrelations) {
+			if (!staleCohorts.contains(cc.cohort))
+				knownCategories.add(getCohortPairKey(cc.cohort, cc.catId1, cc.catId2));
+		}
+		Set<String> knownVulns = new HashSet<>();
+		for (VulnerabilityCorrelation vc : knownVulnCorrelations) {
+			if (!staleCohorts.contains(vc.cohort))
+				knownVulns.add(getCohortPairKey(vc.cohort, vc.vulnTypeId1, vc.vulnTypeId2));
+		}
+
+		try (CorrelationWriter writer = new CorrelationWriter(dbManager)) {
+			correlateCohorts(result.getCategoryMatrix(), partition, knownCategories, true, writer);
+			correlateCohorts(result.getVulnerabilityMatrix(), partition, knownVulns, false, writer);
 		}
 	}
 
 	/**
-	 * Computes the correlation between the two vectors
+	 * Computes the pairwise correlations between the columns of the given matrix
+	 * for all cohorts in parallel. Pairs in which one of the columns does not vary
+	 * within the cohort have no correlation and are skipped.
+	 * 
+	 * @param matrix     The count matrix
+	 * @param partition  The partition of the rows into cohorts
+	 * @param known      The keys of the correlations that are already known
+	 * @param categories True if the matrix contains categories, false if it
+	 *                   contains vulnerability types
+	 * @param writer     The writer for persisting new correlations
+	 * @throws IOException
+	 */
+	private static void correlateCohorts(CountMatrix matrix, CohortPartition partition, Set<String> known,
+			boolean categories, CorrelationWriter writer) throws IOException {
+		GroupedSpearman spearman = new GroupedSpearman(matrix, partition.getAllRows());
+		int[] ids = matrix.getColumnIds();
+		try {
+			// Each task handles one row of the upper triangle in one cohort
+			IntStream.range(0, partition.getCohortCount() * ids.length).parallel().forEach(task -> {
+				int cohort = task / ids.length;
+				int i = task % ids.length;
+				int[] rows = partition.getRows(cohort);
+				if (rows.length < MIN_COHORT_JOBS || !spearman.varies(cohort, ids[i]))
+					return;
+				String name = partition.getName(cohort);
+				int[] vals1 = getValues(matrix, ids[i], rows);
+				for (int j = i + 1; j < ids.length; j++) {
+					if (!spearman.varies(cohort, ids[j]) || known.contains(getCohortPairKey(name, ids[i], ids[j])))
+						continue;
+					double correlation = spearman.correlation(cohort, ids[i], ids[j]);
+					double significance = computeSignificance(vals1, getValues(matrix, ids[j], rows));
+					try {
+						if (categories) {
+							CategoryCorrelation cc = new CategoryCorrelation(ids[i], ids[j], correlation);
+							cc.significance = significance;
+							cc.cohort = name;
+							writer.submit(cc);
+						} else {
+							VulnerabilityCorrelation vc = new VulnerabilityCorrelation(ids[i], ids[j], correlation);
+							vc.significance = significance;
+							vc.cohort = name;
+							writer.submit(vc);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					AnalysisMetrics.PAIRS_COHORTS.increment();
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Correlates every vulnerability type with every category if the user has
+	 * requested it. Only this rectangular block is computed, not the full square
+	 * over both column sets. Every column of both matrices is ranked only once,
+	 * and the rows of the block are computed in parallel. Correlations that are
+	 * already in the database are not recomputed.
+	 * 
+	 * @param cmd       The command line with the cross-level option
+	 * @param result    The count matrices over all jobs
+	 * @param dbManager The database manager
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void correlateCrossLevel(CommandLine cmd, AnalysisResult result, IDatabaseManager dbManager)
+			throws IOException, SQLException {
+		if (!cmd.hasOption(OPTION_CROSS_LEVEL))
+			return;
+		CountMatrix vulnMatrix = result.getVulnerabilityMatrix();
+		CountMatrix catMatrix = result.getCategoryMatrix();
+		int[] typeIds = vulnMatrix.getColumnIds();
+		int[] catIds = catMatrix.getColumnIds();
+		getLogger().info(String.format("Correlating %d issue types with %d categories...", typeIds.length,
+				catIds.length));
+
+		// The rows of both matrices are aligned, so we can combine their ranks
+		GroupedSpearman vulnRanks = result.getVulnerabilityRanks();
+		GroupedSpearman catRanks = result.getCategoryRanks();
+
+		Set<Long> known = new HashSet<>();
+		for (CrossCorrelation cc : dbManager.getCrossCorrelations(false, 0))
+			known.add(getCrossKey(cc.vulnTypeId, cc.catId));
+
+		try (CorrelationWriter writer = new CorrelationWriter(dbManager)) {
+			IntStream.range(0, typeIds.length).parallel().forEach(i -> {
+				if (!vulnRanks.varies(0, typeIds[i]))
+					return;
+				int[] vals1 = vulnMatrix.getColumn(typeIds[i]);
+				for (int catId : catIds) {
+					if (!catRanks.varies(0, catId) || known.contains(getCrossKey(typeIds[i], catId))
+							|| result.isCrossPairPruned(typeIds[i], catId))
+						continue;
+					CrossCorrelation cc = new CrossCorrelation(typeIds[i], catId,
+							vulnRanks.correlation(0, typeIds[i], catRanks, catId));
+					cc.significance = computeSignificance(vals1, catMatrix.getColumn(catId));
+					try {
+						writer.submit(cc);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					AnalysisMetrics.PAIRS_CROSS.increment();
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		reportPrunedPairs("cross-level", result.getVulnerabilityPruner());
+	}
+
+	private static long getCrossKey(int vulnTypeId, int catId) {
+		return ((long) vulnTypeId << 32) | (catId & 0xFFFFFFFFL);
+	}
+
+	private static int[] getValues(CountMatrix matrix, int id, int[] rows) {
+		int[] col = matrix.getColumnOrZeros(id);
+		int[] values = new int[rows.length];
+		for (int i = 0; i < rows.length; i++)
+			values[i] = col[rows[i]];
+		return values;
+	}
+
+	private static String getCohortPairKey(String cohort, int id1, int id2) {
+		// Correlations are symmetric
+		return cohort + "/" + Math.min(id1, id2) + "/" + Math.max(id1, id2);
+	}
+
+	/**
+	 * Gets the number of threads with which to download and count the jobs
+	 * 
+	 * @param cmd The command line with the ingest options
+	 * @return The number of ingest threads
+	 */
+	private static int getIngestThreads(CommandLine cmd) {
+		String s = cmd.getOptionValue(OPTION_INGEST_THREADS);
+		if (s != null && !s.isEmpty())
+			return Math.max(1, Integer.valueOf(s));
+		return 1;
+	}
+
+	/**
+	 * Gets the logger for this class. If the analysis is not started through the
+	 * main method of this class, the logger is created on first use.
+	 * 
+	 * @return The logger for this class
+	 */
+	private static Logger getLogger() {
+		if (logger == null)
+			logger = LogManager.getLogger(MainClass.class);
+		return logger;
+	}
+
+	/**
+	 * Loads the vulnerability catalog from the local cache or the VUSC server
+	 * 
+	 * @param cmd     The command line with the catalog options
+	 * @param vulnAPI The API for downloading the catalog if the cache is stale, or
+	 *                null to use the cache regardless of its age
+	 * @param limiter The limiter for the calls to the VUSC server
+	 * @return The vulnerability catalog, or null if no catalog is available
+	 * @throws ApiException
+	 * @throws IOException
+	 */
+	protected static VulnerabilityCatalog loadCatalog(CommandLine cmd, VulnerabilitiesApi vulnAPI,
+			AdaptiveLimiter limiter) throws ApiException, IOException {
+		File catalogFile = new File(
+				cmd.getOptionValue(OPTION_CATALOG_FILE, VulnerabilityCatalog.DEFAULT_CACHE_FILE));
+		if (vulnAPI == null) {
+			// Without a server, we take whatever we have in the cache
+			if (!catalogFile.exists()) {
+				getLogger().warn("No cached vulnerability catalog available, classifying findings by category name");
+				return null;
+			}
+			return VulnerabilityCatalog.getInstance(catalogFile, Long.MAX_VALUE, null, null);
+		}
+		long ttlHours = VulnerabilityCatalog.DEFAULT_TTL_HOURS;
+		String s = cmd.getOptionValue(OPTION_CATALOG_TTL);
+		if (s != null && !s.isEmpty())
+			ttlHours = Long.valueOf(s);
+		return VulnerabilityCatalog.getInstance(catalogFile, TimeUnit.HOURS.toMillis(ttlHours), vulnAPI, limiter);
+	}
+
+	/**
+	 * Computes the Spearman correlation between the two vectors. When correlating
+	 * many pairs, rank the columns once with {@link GroupedSpearman} or
+	 * {@link CountingRanks} instead.
 	 * 
 	 * @param vals1 The first vector
 	 * @param vals2 The second vector
-	 * @return The correlation between the two vectors
+	 * @return The correlation between the two vectors, or NaN if one of them is
+	 *         constant
+	 */
+	public static double correlate(int[] vals1, int[] vals2) {
+		return correlateRanks(CountingRanks.scaledRanks(vals1), CountingRanks.scaledRanks(vals2));
+	}
+
+	/**
+	 * Computes the Spearman correlation from the given centered ranks, which have
+	 * been scaled to unit length
+	 * 
+	 * @param ranks1 The scaled ranks of the first vector, or <code>null</code> if
+	 *               it is constant
+	 * @param ranks2 The scaled ranks of the second vector, or <code>null</code> if
+	 *               it is constant
+	 * @return The correlation between the two vectors, or NaN if one of them is
+	 *         constant
 	 */
-	protected static double correlate(int[] vals1, int[] vals2) {
-		OpenMapRealMatrix dataMatrix = new OpenMapRealMatrix(vals1.length, 2);
-		SpearmansCorrelation sc = new SpearmansCorrelation(dataMatrix);
-		double correlation = sc.correlation(Arrays.stream(vals1).asDoubleStream().toArray(),
-				Arrays.stream(vals2).asDoubleStream().toArray());
-		return correlation;
+	public static double correlateRanks(double[] ranks1, double[] ranks2) {
+		if (ranks1 == null || ranks2 == null)
+			return Double.NaN;
+
+		// Compensate for rounding errors
+		return Math.max(-1, Math.min(1, Kernels.get().dot(ranks1, ranks2)));
 	}
 
 	/**
 	 * Correlates the given categories
 	 * 
-	 * @param vulnMap   The counting map that contains the number of findings per
-	 *                  category
-	 * @param cat1      The first category
-	 * @param cat2      The second category
-	 * @param dbManager The database manager
-	 * @throws SQLException
+	 * @param result    The analysis result with the category matrix and the known
+	 *                  correlations
+	 * @param cat1      The identifier of the first category
+	 * @param cat2      The identifier of the second category
+	 * @param writer    The writer for persisting new correlations
 	 * @throws IOException
 	 */
-	private static void correlateCategories(CountingTable<Job, String> vulnMap, String cat1, String cat2,
-			DatabaseManager dbManager) throws IOException, SQLException {
+	private static void correlateCategories(AnalysisResult result, int cat1, int cat2, CorrelationWriter writer)
+			throws IOException {
 		// Do we already know this correlation?
-		if (!dbManager.hasCategoryCorrelation(cat1, cat2)) {
-			double correlation = correlate(vulnMap, cat1, cat2);
-			double significance = computeSignificance(vulnMap, cat1, cat2);
+		if (!result.hasCategoryCorrelation(cat1, cat2) && !result.isCategoryPairPruned(cat1, cat2)) {
+			CountMatrix catMatrix = result.getCategoryMatrix();
+			NameDictionary dictionary = result.getDictionary();
+			int[] vals1 = catMatrix.getColumnOrZeros(cat1);
+			int[] vals2 = catMatrix.getColumnOrZeros(cat2);
+			CorrelationEvent event = new CorrelationEvent();
+			event.begin();
+			long start = AnalysisMetrics.PAIR_CORRELATION.start();
+			double correlation = result.getCategoryRanks().correlation(0, cat1, cat2);
+			double significance = computeSignificance(vals1, vals2);
+			AnalysisMetrics.PAIR_CORRELATION.stop(start);
+			AnalysisMetrics.PAIRS_CATEGORIES.increment();
+			event.kind = "category";
+			event.column1 = cat1;
+			event.column2 = cat2;
+			event.jobs = vals1.length;
+			event.permutations = NUM_PERMUTATIONS;
+			event.commit();
 			if (Math.abs(correlation) > Math.abs(significance))
 				logger.info(String.format(
-						"HIGH Overall correlation between categories %s and %s is %.2f (significance is %.2f)", cat1,
-						cat2, correlation, significance));
+						"HIGH Overall correlation between categories %s and %s is %.2f (significance is %.2f)",
+						dictionary.getName(cat1), dictionary.getName(cat2), correlation, significance));
 			else
 				logger.info(
 						String.format("Overall correlation between categories %s and %s is %.2f (significance is %.2f)",
-								cat1, cat2, correlation, significance));
+								dictionary.getName(cat1), dictionary.getName(cat2), correlation, significance));
 
 			CategoryCorrelation cc = new CategoryCorrelation(cat1, cat2, correlation);
 			cc.significance = significance;
-			dbManager.addToDatabase(cc);
+			result.fillPartialCorrelation(cc);
+			writer.submit(cc);
+			result.addCategoryCorrelation(cc);
 		}
 	}
 
 	/**
 	 * Correlates the given issue types
 	 * 
-	 * @param vulnMap   The counting map that contains the number of findings per
-	 *                  issue type
-	 * @param type1     The first issue type
-	 * @param type2     The second issue type
-	 * @param dbManager The database manager
-	 * @throws SQLException
+	 * @param result    The analysis result with the issue type matrix and the
+	 *                  known correlations
+	 * @param type1     The identifier of the first issue type
+	 * @param type2     The identifier of the second issue type
+	 * @param writer    The writer for persisting new correlations
 	 * @throws IOException
 	 */
-	private static void correlateIssueTypes(CountingTable<Job, String> typeMap, String type1, String type2,
-			DatabaseManager dbManager) throws IOException, SQLException {
+	private static void correlateIssueTypes(AnalysisResult result, int type1, int type2, CorrelationWriter writer)
+			throws IOException {
 		// Do we already know this correlation?
-		if (!dbManager.hasVulnerabilityCorrelation(type1, type2)) {
-			double correlation = correlate(typeMap, type1, type2);
-			double significance = computeSignificance(typeMap, type1, type2);
+		if (!result.hasVulnerabilityCorrelation(type1, type2) && !result.isVulnerabilityPairPruned(type1, type2)) {
+			CountMatrix vulnMatrix = result.getVulnerabilityMatrix();
+			NameDictionary dictionary = result.getDictionary();
+			int[] vals1 = vulnMatrix.getColumnOrZeros(type1);
+			int[] vals2 = vulnMatrix.getColumnOrZeros(type2);
+			CorrelationEvent event = new CorrelationEvent();
+			event.begin();
+			long start = AnalysisMetrics.PAIR_CORRELATION.start();
+			double correlation = result.getVulnerabilityRanks().correlation(0, type1, type2);
+			double significance = computeSignificance(vals1, vals2);
+			AnalysisMetrics.PAIR_CORRELATION.stop(start);
+			AnalysisMetrics.PAIRS_VULNERABILITIES.increment();
+			event.kind = "vulnerability";
+			event.column1 = type1;
+			event.column2 = type2;
+			event.jobs = vals1.length;
+			event.permutations = NUM_PERMUTATIONS;
+			event.commit();
 			if (Math.abs(correlation) > Math.abs(significance))
 				logger.info(String.format(
-						"HIGH Overall correlation between issue types %s and %s is %.2f (significance is %.2f)", type1,
-						type2, correlation, significance));
+						"HIGH Overall correlation between issue types %s and %s is %.2f (significance is %.2f)",
+						dictionary.getName(type1), dictionary.getName(type2), correlation, significance));
 			else
 				logger.info(String.format(
-						"Overall correlation between issue types %s and %s is %.2f (significance is %.2f)", type1,
-						type2, correlation, significance));
+						"Overall correlation between issue types %s and %s is %.2f (significance is %.2f)",
+						dictionary.getName(type1), dictionary.getName(type2), correlation, significance));
 
 			VulnerabilityCorrelation vc = new VulnerabilityCorrelation(type1, type2, correlation);
 			vc.significance = significance;
-			dbManager.addToDatabase(vc);
+			result.fillPartialCorrelation(vc);
+			writer.submit(vc);
+			result.addVulnerabilityCorrelation(vc);
 		}
 	}
 
@@ -372,61 +1587,30 @@ public class MainClass {
 	 * @return The value above which correlation coefficients are assumed to be
 	 *         non-random
 	 */
-	private static double computeSignificance(int[] vals1, int[] vals2) {
+	public static double computeSignificance(int[] vals1, int[] vals2) {
 		List<Double> randomCorrelations = new ArrayList<>();
 		Random rnd = new Random();
-		for (int i = 0; i < NUM_PERMUTATIONS; i++) {
-			int[] newVals1 = new int[vals1.length];
-			int[] newVals2 = new int[vals2.length];
-			System.arraycopy(vals1, 0, newVals1, 0, vals1.length);
-			System.arraycopy(vals2, 0, newVals1, 0, vals2.length);
-
-			for (int j = 0; j < vals1.length; j++) {
-				if (rnd.nextBoolean()) {
-					newVals1[j] = vals2[j];
-					newVals2[j] = vals1[j];
-				}
-			}
-			double correlation = correlate(newVals1, newVals2);
-			if (!Double.isNaN(correlation))
-				randomCorrelations.add(correlation);
-		}
-		randomCorrelations.sort(Double::compare);
+		IKernels kernels = Kernels.get();
 
-		// We assume that the top and bottom x% of the random distribution can be
-		// considered random with an x% error probability
-		int baseIdx = (int) Math.floor(((float) randomCorrelations.size()) * (1f - SIGNIFICANCE_ERROR_PROBABILITY));
-		return randomCorrelations.get(baseIdx);
-	}
-
-	/**
-	 * Gets the value above which correlation coefficients are assumed to be
-	 * non-random
-	 * 
-	 * @param map  The counting map that contains the number of findings per
-	 *             category or vulnerability type
-	 * @param cat1 The first category
-	 * @param cat2 The second category
-	 * @return The value above which correlation coefficients are assumed to be
-	 *         non-random
-	 */
-	private static double computeSignificance(CountingTable<Job, String> map, String cat1, String cat2) {
-		List<Double> randomCorrelations = new ArrayList<>();
-		Random rnd = new Random();
+		// The permutations only exchange values between the two vectors, so the
+		// distinct values are the same for all of them, and we can rank by counting
+		CountingRanks ranking = new CountingRanks(vals1, vals2);
+		int[] indices1 = ranking.indexOf(vals1);
+		int[] indices2 = ranking.indexOf(vals2);
+		int[] newIndices1 = new int[vals1.length];
+		int[] newIndices2 = new int[vals2.length];
+		double[] ranks1 = new double[vals1.length];
+		double[] ranks2 = new double[vals2.length];
+		long[] swaps = new long[(vals1.length + 63) / 64];
 		for (int i = 0; i < NUM_PERMUTATIONS; i++) {
-			CountingTable<Job, String> newTbl = new CountingTable<>(map);
-			for (Job j : map.rowKeySet()) {
-				if (rnd.nextBoolean()) {
-					newTbl.remove(j, cat1);
-					newTbl.remove(j, cat2);
-					newTbl.put(j, cat1, map.get(j, cat2));
-					newTbl.put(j, cat2, map.get(j, cat1));
-				}
-			}
-			double correlation = correlate(newTbl, cat1, cat2);
-			if (!Double.isNaN(correlation))
-				randomCorrelations.add(correlation);
+			// Every bit decides whether the values of one job are swapped
+			for (int j = 0; j < swaps.length; j++)
+				swaps[j] = rnd.nextLong();
+			kernels.swapWhere(indices1, indices2, swaps, newIndices1, newIndices2);
+			if (ranking.scaledRanks(newIndices1, ranks1) && ranking.scaledRanks(newIndices2, ranks2))
+				randomCorrelations.add(correlateRanks(ranks1, ranks2));
 		}
+		AnalysisMetrics.PERMUTATIONS.add(NUM_PERMUTATIONS);
 		if (randomCorrelations.isEmpty())
 			return 0;
 
@@ -438,26 +1622,6 @@ public class MainClass {
 		return randomCorrelations.get(baseIdx);
 	}
 
-	/**
-	 * Correlates the given categories
-	 * 
-	 * @param map  The counting map that contains the number of findings per
-	 *             category or vulnerability type
-	 * @param cat1 The first category
-	 * @param cat2 The second category
-	 * @return The correlation
-	 * @throws SQLException
-	 * @throws IOException
-	 */
-	private static double correlate(CountingTable<Job, String> map, String cat1, String cat2) {
-		OpenMapRealMatrix dataMatrix = new OpenMapRealMatrix(map.rowCount(), 2);
-		SpearmansCorrelation sc = new SpearmansCorrelation(dataMatrix);
-		int[] qualityVals = map.columnValues(cat1, (a, b) -> a.getId().compareTo(b.getId()));
-		int[] securityVals = map.columnValues(cat2, (a, b) -> a.getId().compareTo(b.getId()));
-		return sc.correlation(Arrays.stream(qualityVals).asDoubleStream().toArray(),
-				Arrays.stream(securityVals).asDoubleStream().toArray());
-	}
-
 	/**
 	 * Checks whether the given finding belongs to a code quality category
 	 * 
@@ -466,7 +1630,14 @@ public class MainClass {
 	 *         otherwise
 	 */
 	protected static boolean isCodeQualityCategory(VulnerabilityFinding f) {
-		return f.getCategory().equals("Code Quality");
+		if (catalog != null) {
+			Boolean isQuality = catalog.isCodeQualityType(f.getType());
+			if (isQuality != null)
+				return isQuality;
+		}
+
+		// Types that are not in the catalog are classified by their category name
+		return VulnerabilityCatalog.CODE_QUALITY_CATEGORY.equals(f.getCategory());
 	}
 
 	/**
@@ -0,0 +1,127 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import de.codeinspect.assessment.client.invoker.ApiException;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.IDatabaseManager;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.PrometheusFileReporter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.shard.ShardCoordinator;
+
+/**
+ * Runs the complete analysis in a single JVM: the jobs are ingested from the
+ * VUSC server, the correlations are computed, and the plots are created. The
+ * count matrices and the correlations are handed from one stage to the next in
+ * memory instead of being reloaded from the database.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class Pipeline {
+
+	private static Logger logger;
+
+	protected static final Options options = new Options();
+
+	static {
+		initializeCommandLineOptions();
+	}
+
+	/**
+	 * Initializes the set of available command-line options. These are the options
+	 * of the individual stages. Options that only clash with an option of an
+	 * earlier stage in their short name are available under their long name.
+	 */
+	private static void initializeCommandLineOptions() {
+		for (Option option : MainClass.options.getOptions())
+			options.addOption(option);
+		for (Option option : PlotCreator.options.getOptions()) {
+			if (options.hasLongOption(option.getLongOpt()))
+				continue;
+			if (options.hasShortOption(option.getOpt()))
+				options.addOption(null, option.getLongOpt(), option.hasArg(), option.getDescription());
+			else
+				options.addOption(option);
+		}
+	}
+
+	public static void main(String[] args) {
+		// Explicitly load log configuration
+		File logConfigFile = new File("log4j2.properties");
+		if (logConfigFile.exists()) {
+			System.out.println(String.format("Loading log configuration from %s", logConfigFile.getAbsolutePath()));
+			LoggerContext context = Configurator.initialize(null, logConfigFile.toURI().toString());
+			if (context == null)
+				System.err.println("Could not load log configuration file");
+			else
+				logger = context.getLogger(Pipeline.class);
+		}
+		if (logger == null)
+			logger = LogManager.getLogger(Pipeline.class);
+
+		// We need proper parameters
+		final HelpFormatter formatter = new HelpFormatter();
+		if (args.length == 0) {
+			formatter.printHelp("java -cp CorrelationAnalysis.jar " + Pipeline.class.getName() + " [OPTIONS]",
+					options);
+			return;
+		}
+		CommandLineParser parser = new DefaultParser();
+		PrometheusFileReporter metricsReporter = null;
+		ShardCoordinator coordinator = null;
+		try {
+			CommandLine cmd = parser.parse(options, args);
+
+			// Periodically write out the metrics if requested
+			metricsReporter = MainClass.createMetricsReporter(cmd);
+
+			IDatabaseManager dbManager = MainClass.createDatabaseManager(cmd);
+			if (dbManager == null)
+				return;
+
+			// Run the stages
+			logger.info("Ingesting jobs...");
+			Checkpoint checkpoint = MainClass.createCheckpoint(cmd);
+			coordinator = MainClass.createShardCoordinator(cmd);
+			AnalysisResult result = MainClass.ingestOrResume(cmd, dbManager, checkpoint);
+			MainClass.configurePartialCorrelations(cmd, result);
+			MainClass.configurePairPruning(cmd, result);
+			logger.info(String.format("Computing correlations on %d jobs...", result.getCategoryMatrix().getRowCount()));
+			MainClass.correlate(result, dbManager, checkpoint, coordinator);
+			MainClass.computeConfidenceIntervals(cmd, result, dbManager);
+			MainClass.correlateCohorts(cmd, result, dbManager);
+			MainClass.correlateCrossLevel(cmd, result, dbManager);
+			logger.info("Creating plots...");
+			PlotCreator.createPlots(cmd, result, dbManager);
+		} catch (ParseException e) {
+			formatter.printHelp("java -cp CorrelationAnalysis.jar " + Pipeline.class.getName() + " [OPTIONS]",
+					options);
+			return;
+		} catch (ApiException e) {
+			logger.error("Error during communication with VUSC", e);
+		} catch (IOException e) {
+			logger.error("IO error during correlation analysis", e);
+		} catch (SQLException e) {
+			logger.error("SQL error on backend database for correlations", e);
+		} finally {
+			if (coordinator != null)
+				coordinator.close();
+			if (metricsReporter != null)
+				metricsReporter.close();
+		}
+	}
+
+}
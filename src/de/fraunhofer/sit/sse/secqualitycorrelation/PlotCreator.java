@@ -6,15 +6,12 @@ import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.function.IntFunction;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -22,7 +19,7 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
@@ -33,13 +30,19 @@ import com.google.common.io.Files;
 
 import de.codeinspect.collections.CountingMap;
 import de.codeinspect.tables.CountingTable;
-import de.fraunhofer.sit.sse.secqualitycorrelation.database.CategoryAndCount;
-import de.fraunhofer.sit.sse.secqualitycorrelation.database.DatabaseManager;
-import de.fraunhofer.sit.sse.secqualitycorrelation.database.ProcessedJob;
-import de.fraunhofer.sit.sse.secqualitycorrelation.database.VulnerabilityAndCount;
+import de.fraunhofer.sit.sse.secqualitycorrelation.catalog.VulnerabilityCatalog;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.IDatabaseManager;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.NameDictionary;
 import de.fraunhofer.sit.sse.secqualitycorrelation.math.CorrelationAnalysis;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
 import de.fraunhofer.sit.sse.secqualitycorrelation.math.LinearFunction;
 import de.fraunhofer.sit.sse.secqualitycorrelation.math.RegressionResult;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.PrometheusFileReporter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.plot.PlotCompilationScheduler;
+import de.fraunhofer.sit.sse.secqualitycorrelation.plot.PlotSelection;
+import de.fraunhofer.sit.sse.secqualitycorrelation.plot.PlotSelectionMode;
+import de.fraunhofer.sit.sse.secqualitycorrelation.plot.ScatterAggregation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.plot.ScatterDataAggregator;
 import soot.util.HashMultiMap;
 import soot.util.MultiMap;
 
@@ -58,6 +61,19 @@ public class PlotCreator {
 	private static final String OPTION_DB_PWD = "w";
 
 	private static final String OPTION_OUTPUT_DIR = "p";
+	private static final String OPTION_AGGREGATION = "a";
+	private static final String OPTION_MAX_POINTS = "m";
+
+	private static final String OPTION_SELECTION = "s";
+	private static final String OPTION_TOP_N = "n";
+	private static final String OPTION_PAIR_FILE = "pairs";
+
+	private static final String OPTION_CONCURRENCY = "j";
+	private static final String OPTION_TIMEOUT = "t";
+	private static final String OPTION_RETRIES = "r";
+
+	private static final String OPTION_METRICS_FILE = "o";
+	private static final String OPTION_METRICS_INTERVAL = "i";
 
 	protected static final Options options = new Options();
 
@@ -69,11 +85,33 @@ public class PlotCreator {
 	 * Initializes the set of available command-line options
 	 */
 	private static void initializeCommandLineOptions() {
-		options.addOption(OPTION_DB_URL, "dburl", true, "The JDBC url for connecting to the database");
+		options.addOption(OPTION_DB_URL, "dburl", true,
+				"The JDBC url for connecting to the database, or log:<file> for an embedded log file");
 		options.addOption(OPTION_DB_USER, "dbuser", true, "The user for accessing the database");
 		options.addOption(OPTION_DB_PWD, "dbpwd", true, "The password for accessing the database");
 
-		options.addOption(OPTION_OUTPUT_DIR, "vuscurl", true, "The output directory for the plots");
+		options.addOption(OPTION_OUTPUT_DIR, "outputdir", true, "The output directory for the plots");
+		options.addOption(OPTION_AGGREGATION, "aggregation", true,
+				"How to aggregate the data points in large plots (NONE, WEIGHTED, GRID, AUTO). Default is AUTO.");
+		options.addOption(OPTION_MAX_POINTS, "maxpoints", true,
+				"The maximum number of data points per plot before AUTO aggregation kicks in");
+
+		options.addOption(OPTION_SELECTION, "selection", true,
+				"Which pairs to plot (ALL, TOP, SIGNIFICANT, LIST). Default is ALL.");
+		options.addOption(OPTION_TOP_N, "top", true, "The number of strongest correlations to plot in TOP mode");
+		options.addOption(null, OPTION_PAIR_FILE, true,
+				"The file with the pairs to plot in LIST mode, one \"name1;name2\" pair per line");
+
+		options.addOption(OPTION_CONCURRENCY, "jobs", true,
+				"The maximum number of plots to compile in parallel. Default is the number of available CPUs.");
+		options.addOption(OPTION_TIMEOUT, "timeout", true,
+				"The number of seconds after which a pdflatex process is killed");
+		options.addOption(OPTION_RETRIES, "retries", true, "The number of times to retry a failed plot compilation");
+
+		options.addOption(OPTION_METRICS_FILE, "metrics", true,
+				"The file to which to periodically write the metrics in Prometheus format");
+		options.addOption(OPTION_METRICS_INTERVAL, "metricsinterval", true,
+				"The number of seconds between two updates of the metrics file");
 	}
 
 	public static void main(String[] args) {
@@ -97,49 +135,19 @@ public class PlotCreator {
 			return;
 		}
 		CommandLineParser parser = new DefaultParser();
+		PrometheusFileReporter metricsReporter = null;
 		try {
 			CommandLine cmd = parser.parse(options, args);
 
-			// Get the database details
-			String dbUrl = cmd.getOptionValue(OPTION_DB_URL);
-			String dbUser = cmd.getOptionValue(OPTION_DB_USER);
-			String dbPwd = cmd.getOptionValue(OPTION_DB_PWD);
-			if (dbUrl == null || dbUrl.isEmpty() || dbUser == null || dbUser.isEmpty() || dbPwd == null
-					|| dbPwd.isEmpty()) {
-				logger.error("Database url, user, or password not specified");
+			// Periodically write out the metrics if requested
+			metricsReporter = MainClass.createMetricsReporter(cmd);
+
+			IDatabaseManager dbManager = MainClass.createDatabaseManager(cmd);
+			if (dbManager == null)
 				return;
-			}
-			DatabaseManager dbManager = new DatabaseManager(dbUrl, dbUser, dbPwd);
 
 			// Load the counts for the existing jobs from the database
-			CountingTable<ProcessedJob, String> catMap = new CountingTable<>();
-			CountingTable<ProcessedJob, String> vulnMap = new CountingTable<>();
-			CountingTable<ProcessedJob, String> typeMap = new CountingTable<>();
-			List<ProcessedJob> resolvedProcessedJobs = dbManager.getAllProcessedJobs();
-			for (int i = 0; i < resolvedProcessedJobs.size(); i++) {
-				ProcessedJob pj = resolvedProcessedJobs.get(i);
-				if (pj.categoriesToCounts != null) {
-					for (CategoryAndCount cc : pj.categoriesToCounts) {
-						catMap.add(pj, cc.category, cc.count);
-						typeMap.add(pj, cc.category.equals("Code Quality") ? cc.category : "Security", cc.count);
-					}
-				}
-				if (pj.vulnerabilitiesToCounts != null) {
-					for (VulnerabilityAndCount vc : pj.vulnerabilitiesToCounts) {
-						vulnMap.add(pj, vc.vulnType, vc.count);
-					}
-				}
-			}
-
-			// Load the template file
-			final String template = Files.asCharSource(new File("correlation.tex"), Charset.defaultCharset()).read();
-
-			// Create the category-to-category plots
-			File outputDir = new File(cmd.getOptionValue(OPTION_OUTPUT_DIR));
-			generateTexFiles(typeMap, template, outputDir, "Total_");
-			generateTexFiles(catMap, template, outputDir, "Cat_");
-			System.out.println(String.format("Writing out %d vulnerability mappings...", vulnMap.size()));
-			generateTexFiles(vulnMap, template, outputDir, "Vuln_");
+			createPlots(cmd, AnalysisResult.loadFromDatabase(dbManager), dbManager);
 		} catch (ParseException e) {
 			formatter.printHelp("java -jar CorrelationAnalysis.jar [OPTIONS]", options);
 			return;
@@ -147,129 +155,222 @@ public class PlotCreator {
 			logger.error("SQL error on backend database for correlations", e);
 		} catch (IOException e) {
 			logger.error("IO error during correlation analysis", e);
+		} finally {
+			if (metricsReporter != null)
+				metricsReporter.close();
 		}
 	}
 
-	protected static void generateTexFiles(CountingTable<ProcessedJob, String> issueMap, final String template,
-			File outputDir, String filePrefix) throws IOException {
-		ExecutorService executor = new ThreadPoolExecutor(25, 25, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
-		Set<String> doneSet = new HashSet<>();
-		Set<String> categories = issueMap.columnKeySet();
-		for (String cat1 : categories) {
-			for (String cat2 : categories) {
-				if (!cat1.equals(cat2) && !doneSet.contains(cat2)) {
-					executor.execute(new Runnable() {
-
-						@Override
-						public void run() {
-							CountingMap<ProcessedJob> cat1Counts = (CountingMap<ProcessedJob>) issueMap.column(cat1);
-							CountingMap<ProcessedJob> cat2Counts = (CountingMap<ProcessedJob>) issueMap.column(cat2);
-
-							StringBuilder catValues = getCountsFromMap(cat1Counts, cat2Counts);
-
-							String texCode = template;
-							texCode = texCode.replace("CATNAME1", cat1.replaceAll("\\_", "\\\\_"));
-							texCode = texCode.replace("CATNAME2", cat2.replaceAll("\\_", "\\\\_"));
-							texCode = texCode.replace("%CAT1", catValues);
-
-							String texCode2 = template;
-							texCode2 = texCode2.replace("CATNAME1", cat1.replaceAll("\\_", "\\\\_"));
-							texCode2 = texCode2.replace("CATNAME2", cat2.replaceAll("\\_", "\\\\_"));
-
-							// Compute linear interpolation
-							CountingTable<ProcessedJob, String> monotonousTbl = new CountingTable<>(issueMap);
-							resolveColDuplicates(monotonousTbl, cat1);
-
-							int[] v1 = monotonousTbl.columnValues(cat1,
-									(a, b) -> monotonousTbl.get(a, cat1) - monotonousTbl.get(b, cat1));
-							int[] v2 = monotonousTbl.columnValues(cat2,
-									(a, b) -> monotonousTbl.get(a, cat1) - monotonousTbl.get(b, cat1));
-
-							StringBuilder catValues2 = getCountsFromMap(v1, v2);
-							texCode2 = texCode2.replace("%CAT1", catValues2);
-
-							double[] d1 = Arrays.stream(v1).asDoubleStream().toArray();
-							double[] d2 = Arrays.stream(v2).asDoubleStream().toArray();
-
-							RegressionResult<LinearFunction> res = CorrelationAnalysis.calculateLinearRegression(d1,
-									d2);
-							LinearFunction func = res.getFunction();
-							if (!func.isValid())
-								return;
-
-							texCode = texCode.replace("$a$", String.format("%.2f", func.getA()).replace(",", "."));
-							texCode = texCode.replace("$b$", String.format("%.2f", func.getB()).replace(",", "."));
-							texCode = texCode.replace("$QUALITY$",
-									String.format("%.2f", res.getQuality()).replace(",", "."));
-
-							texCode2 = texCode2.replace("$a$", String.format("%.2f", func.getA()).replace(",", "."));
-							texCode2 = texCode2.replace("$b$", String.format("%.2f", func.getB()).replace(",", "."));
-							texCode2 = texCode2.replace("$QUALITY$",
-									String.format("%.2f", res.getQuality()).replace(",", "."));
-
-							double xmin = Double.MAX_VALUE;
-							double xmax = Double.MIN_VALUE;
-							for (ProcessedJob pj : cat1Counts.keySet()) {
-								xmin = Math.min(xmin, cat1Counts.get(pj));
-								xmax = Math.max(xmax, cat1Counts.get(pj));
-							}
-							if (Math.round(xmin * 100) == Math.round(xmax * 100))
-								return;
-
-							texCode = texCode.replace("$xmin", String.format("%.2f", xmin).replace(",", "."));
-							texCode = texCode.replace("$xmax", String.format("%.2f", xmax).replace(",", "."));
-
-							texCode2 = texCode2.replace("$xmin", String.format("%.2f", xmin).replace(",", "."));
-							texCode2 = texCode2.replace("$xmax", String.format("%.2f", xmax).replace(",", "."));
-
-							// Compile the TEX source
-							File outputFile = new File(outputDir, filePrefix + cat1 + "-" + cat2 + ".tex");
-							try {
-								writeTexFile(outputFile, texCode);
-							} catch (IOException e) {
-								logger.error(
-										String.format("Could not write PDF file for categories %s and %s", cat1, cat2),
-										e);
-							}
-//							File outputFile2 = new File(outputDir, filePrefix + cat1 + "-" + cat2 + "_2.tex");
-//							writeTexFile(outputFile2, texCode2);
-						}
-
-					});
+	/**
+	 * Creates the plots for the given count matrices. If the given result contains
+	 * all correlations, the pairs to plot are selected from memory, otherwise the
+	 * correlations are taken from the database.
+	 * 
+	 * @param cmd       The command line with the plot options
+	 * @param result    The count matrices to plot
+	 * @param dbManager The database manager
+	 * @throws IOException
+	 * @throws SQLException
+	 */
+	public static void createPlots(CommandLine cmd, AnalysisResult result, IDatabaseManager dbManager)
+			throws IOException, SQLException {
+		if (logger == null)
+			logger = LogManager.getLogger(PlotCreator.class);
+
+		// Get the aggregation settings for large plots
+		ScatterAggregation aggregationMode = ScatterAggregation.AUTO;
+		String s = cmd.getOptionValue(OPTION_AGGREGATION);
+		if (s != null && !s.isEmpty())
+			aggregationMode = ScatterAggregation.valueOf(s.toUpperCase());
+		int maxPoints = ScatterDataAggregator.DEFAULT_MAX_POINTS;
+		s = cmd.getOptionValue(OPTION_MAX_POINTS);
+		if (s != null && !s.isEmpty())
+			maxPoints = Integer.valueOf(s);
+		ScatterDataAggregator aggregator = new ScatterDataAggregator(aggregationMode, maxPoints);
+
+		// Get the pairs that we shall plot
+		PlotSelection selection = PlotSelection.all();
+		s = cmd.getOptionValue(OPTION_SELECTION);
+		if (s != null && !s.isEmpty()) {
+			switch (PlotSelectionMode.valueOf(s.toUpperCase())) {
+			case TOP:
+				s = cmd.getOptionValue(OPTION_TOP_N);
+				selection = PlotSelection.top(s == null || s.isEmpty() ? 100 : Integer.valueOf(s));
+				break;
+			case SIGNIFICANT:
+				selection = PlotSelection.significant();
+				break;
+			case LIST:
+				s = cmd.getOptionValue(OPTION_PAIR_FILE);
+				if (s == null || s.isEmpty()) {
+					logger.error("No pair file specified");
+					return;
 				}
+				selection = PlotSelection.fromFile(new File(s));
+				break;
+			default:
+				break;
 			}
-//			doneSet.add(cat1);
 		}
-		executor.shutdown();
+
+		// Configure the compilation of the plots
+		int concurrency = PlotCompilationScheduler.getDefaultConcurrency();
+		s = cmd.getOptionValue(OPTION_CONCURRENCY);
+		if (s != null && !s.isEmpty())
+			concurrency = Integer.valueOf(s);
+		long timeout = PlotCompilationScheduler.DEFAULT_TIMEOUT_SECONDS;
+		s = cmd.getOptionValue(OPTION_TIMEOUT);
+		if (s != null && !s.isEmpty())
+			timeout = Long.valueOf(s);
+		int retries = PlotCompilationScheduler.DEFAULT_RETRIES;
+		s = cmd.getOptionValue(OPTION_RETRIES);
+		if (s != null && !s.isEmpty())
+			retries = Integer.valueOf(s);
+		PlotCompilationScheduler scheduler = new PlotCompilationScheduler(concurrency, timeout, retries);
+
+		// Load the template file
+		final String template = Files.asCharSource(new File("correlation.tex"), Charset.defaultCharset()).read();
+
+		// Select the pairs of categories and vulnerability types
+		NameDictionary dictionary = result.getDictionary();
+		CountMatrix catMatrix = result.getCategoryMatrix();
+		CountMatrix vulnMatrix = result.getVulnerabilityMatrix();
+		CountMatrix typeMatrix = result.getTypeMatrix();
+		Collection<Pair<Integer, Integer>> catPairs;
+		Collection<Pair<Integer, Integer>> vulnPairs;
+		if (result.areCorrelationsComplete()) {
+			catPairs = selection.getCategoryPairs(catMatrix.getColumnIds(), dictionary,
+					result.getCategoryCorrelations());
+			vulnPairs = selection.getVulnerabilityPairs(vulnMatrix.getColumnIds(), dictionary,
+					result.getVulnerabilityCorrelations());
+		} else {
+			catPairs = selection.getCategoryPairs(catMatrix.getColumnIds(), dictionary, dbManager);
+			vulnPairs = selection.getVulnerabilityPairs(vulnMatrix.getColumnIds(), dictionary, dbManager);
+		}
+
+		// Create the category-to-category plots
+		File outputDir = new File(cmd.getOptionValue(OPTION_OUTPUT_DIR));
+		generateTexFiles(typeMatrix, PlotCreator::getCategoryTypeName,
+				PlotSelection.allPairs(typeMatrix.getColumnIds()), template, outputDir, "Total_", aggregator,
+				scheduler);
+		generateTexFiles(catMatrix, dictionary::getName, catPairs, template, outputDir, "Cat_", aggregator,
+				scheduler);
+		System.out.println(String.format("Writing out %d vulnerability mappings...", vulnPairs.size()));
+		generateTexFiles(vulnMatrix, dictionary::getName, vulnPairs, template, outputDir, "Vuln_", aggregator,
+				scheduler);
+
+		// Wait for all plots to be compiled
 		try {
-			executor.awaitTermination(Integer.MAX_VALUE, TimeUnit.DAYS);
+			scheduler.awaitCompletion();
 		} catch (InterruptedException e) {
 			logger.error("Could not wait for PDF generator tasks to terminate properly", e);
 		}
+		scheduler.logSummary();
+	}
+
+	/**
+	 * Gets the name under which the given category type appears in the plots
+	 * 
+	 * @param id The ordinal of the category type
+	 * @return The name of the category type
+	 */
+	private static String getCategoryTypeName(int id) {
+		return CategoryType.values()[id] == CategoryType.QualityCategory ? VulnerabilityCatalog.CODE_QUALITY_CATEGORY
+				: "Security";
+	}
+
+	/**
+	 * Schedules the plots for the given pairs of columns
+	 * 
+	 * @param issueMatrix The matrix with the counts per job and column
+	 * @param columnNames The function that resolves column identifiers to names
+	 * @param pairs       The pairs of column identifiers to plot
+	 * @param template    The TEX template for the plots
+	 * @param outputDir   The directory in which to place the plots
+	 * @param filePrefix  The prefix for the names of the plot files
+	 * @param aggregator  The aggregator that decides how to condense large plots
+	 * @param scheduler   The scheduler that generates and compiles the plots
+	 */
+	protected static void generateTexFiles(CountMatrix issueMatrix, IntFunction<String> columnNames,
+			Collection<Pair<Integer, Integer>> pairs, final String template, File outputDir, String filePrefix,
+			ScatterDataAggregator aggregator, PlotCompilationScheduler scheduler) {
+		for (Pair<Integer, Integer> pair : pairs) {
+			// Names are only resolved for the output
+			final String cat1 = columnNames.apply(pair.getLeft());
+			final String cat2 = columnNames.apply(pair.getRight());
+			final int[] cat1Counts = issueMatrix.getColumnOrZeros(pair.getLeft());
+			final int[] cat2Counts = issueMatrix.getColumnOrZeros(pair.getRight());
+			scheduler.submit(filePrefix + cat1 + "-" + cat2, new Callable<File>() {
+
+				@Override
+				public File call() throws IOException {
+					int[][] points = getPoints(cat1Counts, cat2Counts);
+					StringBuilder catValues = getCountsFromMap(points[0], points[1], aggregator);
+
+					String texCode = template;
+					texCode = texCode.replace("CATNAME1", cat1.replaceAll("\\_", "\\\\_"));
+					texCode = texCode.replace("CATNAME2", cat2.replaceAll("\\_", "\\\\_"));
+					texCode = texCode.replace("%CAT1", catValues);
+
+					String texCode2 = template;
+					texCode2 = texCode2.replace("CATNAME1", cat1.replaceAll("\\_", "\\\\_"));
+					texCode2 = texCode2.replace("CATNAME2", cat2.replaceAll("\\_", "\\\\_"));
+
+					// Compute linear interpolation
+					int[][] monotonous = resolveColDuplicates(cat1Counts, cat2Counts);
+					int[] v1 = monotonous[0];
+					int[] v2 = monotonous[1];
+
+					StringBuilder catValues2 = getCountsFromMap(v1, v2, aggregator);
+					texCode2 = texCode2.replace("%CAT1", catValues2);
+
+					double[] d1 = Arrays.stream(v1).asDoubleStream().toArray();
+					double[] d2 = Arrays.stream(v2).asDoubleStream().toArray();
+
+					RegressionResult<LinearFunction> res = CorrelationAnalysis.calculateLinearRegression(d1, d2);
+					LinearFunction func = res.getFunction();
+					if (!func.isValid())
+						return null;
+
+					texCode = texCode.replace("$a$", String.format("%.2f", func.getA()).replace(",", "."));
+					texCode = texCode.replace("$b$", String.format("%.2f", func.getB()).replace(",", "."));
+					texCode = texCode.replace("$QUALITY$", String.format("%.2f", res.getQuality()).replace(",", "."));
+
+					texCode2 = texCode2.replace("$a$", String.format("%.2f", func.getA()).replace(",", "."));
+					texCode2 = texCode2.replace("$b$", String.format("%.2f", func.getB()).replace(",", "."));
+					texCode2 = texCode2.replace("$QUALITY$", String.format("%.2f", res.getQuality()).replace(",", "."));
+
+					double xmin = Double.MAX_VALUE;
+					double xmax = Double.MIN_VALUE;
+					for (int x : points[0]) {
+						xmin = Math.min(xmin, x);
+						xmax = Math.max(xmax, x);
+					}
+					if (Math.round(xmin * 100) == Math.round(xmax * 100))
+						return null;
+
+					texCode = texCode.replace("$xmin", String.format("%.2f", xmin).replace(",", "."));
+					texCode = texCode.replace("$xmax", String.format("%.2f", xmax).replace(",", "."));
+
+					texCode2 = texCode2.replace("$xmin", String.format("%.2f", xmin).replace(",", "."));
+					texCode2 = texCode2.replace("$xmax", String.format("%.2f", xmax).replace(",", "."));
+
+					// Write the TEX source, the scheduler compiles it
+					File outputFile = new File(outputDir, filePrefix + cat1 + "-" + cat2 + ".tex");
+					writeTexFile(outputFile, texCode);
+//					File outputFile2 = new File(outputDir, filePrefix + cat1 + "-" + cat2 + "_2.tex");
+//					writeTexFile(outputFile2, texCode2);
+					return outputFile;
+				}
+
+			});
+		}
 	}
 
 	private static void writeTexFile(File outputFile, String texCode) throws IOException {
 		if (outputFile.exists())
 			outputFile.delete();
 		Files.asCharSink(outputFile, Charset.defaultCharset(), FileWriteMode.APPEND).write(texCode);
-		ProcessBuilder pb = new ProcessBuilder("pdflatex", outputFile.getAbsolutePath());
-		pb.inheritIO();
-		pb.directory(outputFile.getParentFile());
-		Process p = pb.start();
-		try {
-			p.waitFor();
-		} catch (InterruptedException e) {
-			logger.error("Could not compile plot as TEX file", e);
-		}
-
-		// Clean up after ourselves
-		String baseName = FilenameUtils.removeExtension(outputFile.getAbsolutePath());
-		File auxFile = new File(baseName + ".aux");
-		if (auxFile.exists())
-			auxFile.delete();
-		File logFile = new File(baseName + ".log");
-		if (logFile.exists())
-			logFile.delete();
 	}
 
 	public static <R, C> void resolveColDuplicates(CountingTable<R, C> tbl, C referenceCol) {
@@ -301,6 +402,44 @@ public class PlotCreator {
 		}
 	}
 
+	/**
+	 * Merges all rows that have the same value in the reference column. The other
+	 * column receives the average of the merged rows.
+	 * 
+	 * @param referenceCol The values in the reference column
+	 * @param otherCol     The values in the other column
+	 * @return An array with two elements. The first element contains the distinct
+	 *         values of the reference column in ascending order, the second
+	 *         element contains the respective averages of the other column.
+	 */
+	public static int[][] resolveColDuplicates(int[] referenceCol, int[] otherCol) {
+		// Counts are never negative, so we can sort on a combined key instead of
+		// grouping the rows in a hash map
+		long[] keys = new long[referenceCol.length];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = ((long) referenceCol[i] << 32) | (otherCol[i] & 0xFFFFFFFFL);
+		Arrays.sort(keys);
+
+		int[] refValues = new int[keys.length];
+		int[] otherValues = new int[keys.length];
+		int numValues = 0;
+		int i = 0;
+		while (i < keys.length) {
+			int refValue = (int) (keys[i] >>> 32);
+			long sum = 0;
+			int j = i;
+			while (j < keys.length && (int) (keys[j] >>> 32) == refValue) {
+				sum += (int) keys[j];
+				j++;
+			}
+			refValues[numValues] = refValue;
+			otherValues[numValues] = (int) (sum / (j - i));
+			numValues++;
+			i = j;
+		}
+		return new int[][] { Arrays.copyOf(refValues, numValues), Arrays.copyOf(otherValues, numValues) };
+	}
+
 	/**
 	 * Gets the values in this map as an ordered array
 	 * 
@@ -317,43 +456,37 @@ public class PlotCreator {
 	}
 
 	/**
-	 * Gets the data points to write into the TEX file
+	 * Gets the data points for the given pair of columns. Jobs without findings in
+	 * either column are left out.
 	 * 
-	 * @param map1 The map with jobs and counts for category A
-	 * @param map2 The map with jobs and counts for category B
-	 * @return The data point list to write into the TEX file
+	 * @param col1 The counts for category A
+	 * @param col2 The counts for category B
+	 * @return An array with two elements, the x coordinates and the y coordinates
 	 */
-	protected static StringBuilder getCountsFromMap(Map<ProcessedJob, Integer> map1, Map<ProcessedJob, Integer> map2) {
-		Set<ProcessedJob> allJobs = new HashSet<>(map1.size() + map2.size());
-		allJobs.addAll(map1.keySet());
-		allJobs.addAll(map2.keySet());
-
-		StringBuilder cat1Values = new StringBuilder(allJobs.size() * 25);
-		for (ProcessedJob pj : allJobs) {
-			cat1Values.append(map1.get(pj));
-			cat1Values.append('\t');
-			cat1Values.append(map2.get(pj));
-			cat1Values.append('\n');
+	protected static int[][] getPoints(int[] col1, int[] col2) {
+		int[] x = new int[col1.length];
+		int[] y = new int[col1.length];
+		int numPoints = 0;
+		for (int i = 0; i < col1.length; i++) {
+			if (col1[i] != 0 || col2[i] != 0) {
+				x[numPoints] = col1[i];
+				y[numPoints] = col2[i];
+				numPoints++;
+			}
 		}
-		return cat1Values;
+		return new int[][] { Arrays.copyOf(x, numPoints), Arrays.copyOf(y, numPoints) };
 	}
 
 	/**
 	 * Gets the data points to write into the TEX file
 	 * 
-	 * @param x The x coordinates
-	 * @param y The y coordinates
+	 * @param x          The x coordinates
+	 * @param y          The y coordinates
+	 * @param aggregator The aggregator that decides how to condense large plots
 	 * @return The data point list to write into the TEX file
 	 */
-	protected static StringBuilder getCountsFromMap(int[] x, int[] y) {
-		StringBuilder cat1Values = new StringBuilder(x.length * 25);
-		for (int i = 0; i < x.length; i++) {
-			cat1Values.append(x[i]);
-			cat1Values.append('\t');
-			cat1Values.append(y[i]);
-			cat1Values.append('\n');
-		}
-		return cat1Values;
+	protected static StringBuilder getCountsFromMap(int[] x, int[] y, ScatterDataAggregator aggregator) {
+		return aggregator.aggregate(x, y);
 	}
 
 }
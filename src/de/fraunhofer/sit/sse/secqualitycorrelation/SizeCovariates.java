@@ -0,0 +1,136 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.io.Files;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+
+/**
+ * Size measures of the analyzed apps that the partial correlations control
+ * for. Each line of a size file contains a job identifier followed by one or
+ * more measures, e.g., the number of classes, methods, and statements,
+ * separated by semicolons. Empty lines and lines starting with "#" are
+ * ignored, as is a header line.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class SizeCovariates {
+
+	private static final Logger logger = LogManager.getLogger(SizeCovariates.class);
+
+	private SizeCovariates() {
+	}
+
+	/**
+	 * Gets the total number of findings per job. Larger apps have more findings
+	 * of all kinds, so the total number of findings serves as a proxy for the app
+	 * size if no explicit size measures are available.
+	 * 
+	 * @param typeMatrix The counts per job and {@link CategoryType}
+	 * @return The total number of findings per row
+	 */
+	public static double[] getTotalFindings(CountMatrix typeMatrix) {
+		double[] total = new double[typeMatrix.getRowCount()];
+		for (int id : typeMatrix.getColumnIds()) {
+			int[] col = typeMatrix.getColumn(id);
+			for (int r = 0; r < total.length; r++)
+				total[r] += col[r];
+		}
+		return total;
+	}
+
+	/**
+	 * Loads the size measures from the given file. Jobs for which the file has no
+	 * data receive the median of the respective measure.
+	 * 
+	 * @param sizeFile The size file
+	 * @param matrix   Any matrix with the rows for which to load the measures
+	 * @return The size measures, one array per measure with one value per row
+	 * @throws IOException
+	 */
+	public static double[][] load(File sizeFile, CountMatrix matrix) throws IOException {
+		Map<Long, double[]> sizes = new HashMap<>();
+		int numMeasures = -1;
+		for (String line : Files.asCharSource(sizeFile, Charset.defaultCharset()).readLines()) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			String[] fields = line.split(";");
+			long jobId;
+			try {
+				jobId = Long.parseLong(fields[0].trim());
+			} catch (NumberFormatException e) {
+				// Header line
+				continue;
+			}
+			if (numMeasures < 0)
+				numMeasures = fields.length - 1;
+			if (numMeasures < 1 || fields.length - 1 != numMeasures)
+				throw new IOException(String.format("Invalid size definition: %s", line));
+			double[] values = new double[numMeasures];
+			try {
+				for (int m = 0; m < numMeasures; m++)
+					values[m] = Double.parseDouble(fields[m + 1].trim());
+			} catch (NumberFormatException e) {
+				throw new IOException(String.format("Invalid size definition: %s", line), e);
+			}
+			sizes.put(jobId, values);
+		}
+		if (numMeasures < 1)
+			throw new IOException(String.format("No sizes found in %s", sizeFile));
+
+		final int numRows = matrix.getRowCount();
+		double[][] covariates = new double[numMeasures][numRows];
+		boolean[] missing = new boolean[numRows];
+		int numMissing = 0;
+		for (int r = 0; r < numRows; r++) {
+			double[] values = sizes.get(matrix.getRowKey(r));
+			if (values == null) {
+				missing[r] = true;
+				numMissing++;
+				continue;
+			}
+			for (int m = 0; m < numMeasures; m++)
+				covariates[m][r] = values[m];
+		}
+
+		// Fill the gaps with a neutral value
+		if (numMissing > 0) {
+			logger.warn(String.format("%d of %d jobs have no size in %s, using the median instead", numMissing,
+					numRows, sizeFile));
+			for (int m = 0; m < numMeasures; m++) {
+				double median = getMedian(covariates[m], missing, numRows - numMissing);
+				for (int r = 0; r < numRows; r++) {
+					if (missing[r])
+						covariates[m][r] = median;
+				}
+			}
+		}
+		return covariates;
+	}
+
+	private static double getMedian(double[] values, boolean[] missing, int numPresent) {
+		if (numPresent == 0)
+			return 0;
+		double[] present = new double[numPresent];
+		int i = 0;
+		for (int r = 0; r < values.length; r++) {
+			if (!missing[r])
+				present[i++] = values[r];
+		}
+		Arrays.sort(present);
+		return numPresent % 2 == 1 ? present[numPresent / 2]
+				: (present[numPresent / 2 - 1] + present[numPresent / 2]) / 2;
+	}
+
+}
@@ -0,0 +1,379 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.catalog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.codeinspect.assessment.client.api.VulnerabilitiesApi;
+import de.codeinspect.assessment.client.invoker.ApiException;
+import de.codeinspect.assessment.client.models.Platform;
+import de.codeinspect.assessment.client.models.VulnerabilityInformation;
+import de.codeinspect.collections.CountingMap;
+import de.fraunhofer.sit.sse.secqualitycorrelation.vusc.AdaptiveLimiter;
+
+/**
+ * Compact index of the vulnerability catalog of the VUSC scanner. The catalog
+ * maps each vulnerability type to its category and the platforms on which it
+ * is detected. It is cached on disk and only downloaded again once the cached
+ * copy is older than the configured time-to-live.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class VulnerabilityCatalog {
+
+	/**
+	 * The name of the category that contains all code quality findings
+	 */
+	public static final String CODE_QUALITY_CATEGORY = "Code Quality";
+
+	/**
+	 * The platform identifier for Android apps
+	 */
+	public static final String PLATFORM_ANDROID = "ANDROID_APP_APK";
+
+	/**
+	 * The default file in which the catalog is cached
+	 */
+	public static final String DEFAULT_CACHE_FILE = "vulnerability-catalog.bin";
+
+	/**
+	 * The default time after which the cached catalog is refreshed
+	 */
+	public static final long DEFAULT_TTL_HOURS = 24;
+
+	private static final int MAGIC = 0x56434154;
+	private static final int VERSION = 1;
+
+	private static final Logger logger = LogManager.getLogger(VulnerabilityCatalog.class);
+
+	private static VulnerabilityCatalog instance;
+
+	private final long timestamp;
+	private final String[] categories;
+	private final String[] platforms;
+	private final Map<String, Integer> typeIndex;
+	private final int[] typeCategories;
+	private final int[][] typePlatforms;
+	private final boolean[] typeIsQuality;
+
+	private VulnerabilityCatalog(long timestamp, String[] categories, String[] platforms, String[] types,
+			int[] typeCategories, int[][] typePlatforms) {
+		this.timestamp = timestamp;
+		this.categories = categories;
+		this.platforms = platforms;
+		this.typeCategories = typeCategories;
+		this.typePlatforms = typePlatforms;
+
+		this.typeIndex = new HashMap<>(types.length * 2);
+		this.typeIsQuality = new boolean[types.length];
+		for (int i = 0; i < types.length; i++) {
+			typeIndex.put(types[i], i);
+			typeIsQuality[i] = typeCategories[i] >= 0 && CODE_QUALITY_CATEGORY.equals(categories[typeCategories[i]]);
+		}
+	}
+
+	/**
+	 * Gets the catalog for this JVM. The catalog is only loaded once. If the cache
+	 * file is missing or older than the given time-to-live, the catalog is
+	 * downloaded from the scanner and the cache file is updated.
+	 * 
+	 * @param cacheFile The file in which the catalog is cached
+	 * @param ttlMillis The time in milliseconds after which the cached catalog is
+	 *                  considered stale
+	 * @param api       The API for downloading the catalog from the scanner
+	 * @return The vulnerability catalog
+	 * @throws ApiException
+	 * @throws IOException
+	 */
+	public static VulnerabilityCatalog getInstance(File cacheFile, long ttlMillis, VulnerabilitiesApi api)
+			throws ApiException, IOException {
+		return getInstance(cacheFile, ttlMillis, api, null);
+	}
+
+	/**
+	 * Gets the catalog for this JVM. The catalog is only loaded once. If the cache
+	 * file is missing or older than the given time-to-live, the catalog is
+	 * downloaded from the scanner and the cache file is updated.
+	 * 
+	 * @param cacheFile The file in which the catalog is cached
+	 * @param ttlMillis The time in milliseconds after which the cached catalog is
+	 *                  considered stale
+	 * @param api       The API for downloading the catalog from the scanner
+	 * @param limiter   The limiter for the calls to the scanner, or null to call
+	 *                  the scanner directly
+	 * @return The vulnerability catalog
+	 * @throws ApiException
+	 * @throws IOException
+	 */
+	public static synchronized VulnerabilityCatalog getInstance(File cacheFile, long ttlMillis,
+			VulnerabilitiesApi api, AdaptiveLimiter limiter) throws ApiException, IOException {
+		if (instance != null)
+			return instance;
+
+		// Try the disk cache first
+		VulnerabilityCatalog cached = null;
+		if (cacheFile.exists()) {
+			try {
+				cached = readFrom(cacheFile);
+			} catch (IOException e) {
+				logger.warn(String.format("Could not read vulnerability catalog cache %s", cacheFile), e);
+			}
+		}
+		if (cached != null && System.currentTimeMillis() - cached.timestamp <= ttlMillis) {
+			logger.info(String.format("Loaded vulnerability catalog with %d types from %s", cached.getTypeCount(),
+					cacheFile));
+			instance = cached;
+			return instance;
+		}
+
+		// Refresh the catalog from the scanner
+		if (api == null)
+			throw new IOException(String.format("No usable vulnerability catalog in %s", cacheFile));
+		try {
+			VulnerabilityCatalog fresh = fromVulnerabilities(
+					limiter == null ? api.getVulnerabilities() : limiter.execute(api::getVulnerabilities));
+			fresh.writeTo(cacheFile);
+			logger.info(String.format("Downloaded vulnerability catalog with %d types", fresh.getTypeCount()));
+			instance = fresh;
+		} catch (ApiException | IOException e) {
+			if (cached == null)
+				throw e;
+			logger.warn("Could not refresh vulnerability catalog, using stale cache", e);
+			instance = cached;
+		}
+		return instance;
+	}
+
+	/**
+	 * Builds the catalog from the vulnerability information retrieved from the
+	 * scanner
+	 * 
+	 * @param vulns The vulnerability information from the scanner
+	 * @return The new catalog
+	 */
+	static VulnerabilityCatalog fromVulnerabilities(List<VulnerabilityInformation> vulns) {
+		Map<String, Integer> categoryIds = new LinkedHashMap<>();
+		Map<String, Integer> platformIds = new LinkedHashMap<>();
+		String[] types = new String[vulns.size()];
+		int[] typeCategories = new int[vulns.size()];
+		int[][] typePlatforms = new int[vulns.size()][];
+		for (int i = 0; i < vulns.size(); i++) {
+			VulnerabilityInformation vuln = vulns.get(i);
+			types[i] = vuln.getId();
+
+			typeCategories[i] = -1;
+			Object cat = vuln.getCategory();
+			if (cat instanceof Map) {
+				@SuppressWarnings("unchecked")
+				Map<String, String> catMap = (Map<String, String>) cat;
+				String catName = catMap.get("humanReadableName");
+				if (catName != null)
+					typeCategories[i] = categoryIds.computeIfAbsent(catName, c -> categoryIds.size());
+			}
+
+			List<Platform> vulnPlatforms = vuln.getPlatforms();
+			typePlatforms[i] = new int[vulnPlatforms == null ? 0 : vulnPlatforms.size()];
+			for (int j = 0; j < typePlatforms[i].length; j++)
+				typePlatforms[i][j] = platformIds.computeIfAbsent(vulnPlatforms.get(j).getId(),
+						p -> platformIds.size());
+		}
+		return new VulnerabilityCatalog(System.currentTimeMillis(), categoryIds.keySet().toArray(new String[0]),
+				platformIds.keySet().toArray(new String[0]), types, typeCategories, typePlatforms);
+	}
+
+	/**
+	 * Reads the catalog from the given cache file
+	 * 
+	 * @param file The cache file
+	 * @return The catalog
+	 * @throws IOException
+	 */
+	static VulnerabilityCatalog readFrom(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(
+				new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("Unsupported vulnerability catalog format");
+			long timestamp = in.readLong();
+			String[] categories = readStrings(in);
+			String[] platforms = readStrings(in);
+			String[] types = new String[in.readInt()];
+			int[] typeCategories = new int[types.length];
+			int[][] typePlatforms = new int[types.length][];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = in.readUTF();
+				typeCategories[i] = in.readShort();
+				typePlatforms[i] = new int[in.readUnsignedByte()];
+				for (int j = 0; j < typePlatforms[i].length; j++)
+					typePlatforms[i][j] = in.readShort();
+			}
+			return new VulnerabilityCatalog(timestamp, categories, platforms, types, typeCategories, typePlatforms);
+		}
+	}
+
+	/**
+	 * Writes this catalog to the given cache file. The file is replaced
+	 * atomically, so that concurrent readers never see a partial catalog.
+	 * 
+	 * @param file The cache file
+	 * @throws IOException
+	 */
+	void writeTo(File file) throws IOException {
+		File tempFile = new File(file.getAbsolutePath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(timestamp);
+			writeStrings(out, categories);
+			writeStrings(out, platforms);
+			String[] types = new String[typeCategories.length];
+			for (Map.Entry<String, Integer> entry : typeIndex.entrySet())
+				types[entry.getValue()] = entry.getKey();
+			out.writeInt(types.length);
+			for (int i = 0; i < types.length; i++) {
+				out.writeUTF(types[i]);
+				out.writeShort(typeCategories[i]);
+				out.writeByte(typePlatforms[i].length);
+				for (int p : typePlatforms[i])
+					out.writeShort(p);
+			}
+		}
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String[] readStrings(DataInputStream in) throws IOException {
+		String[] strings = new String[in.readInt()];
+		for (int i = 0; i < strings.length; i++)
+			strings[i] = in.readUTF();
+		return strings;
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+		out.writeInt(strings.length);
+		for (String s : strings)
+			out.writeUTF(s);
+	}
+
+	/**
+	 * Checks whether the given vulnerability type belongs to the code quality
+	 * category
+	 * 
+	 * @param type The vulnerability type
+	 * @return True if the type is a code quality type, false if it is a security
+	 *         type, or <code>null</code> if the type is not in the catalog
+	 */
+	public Boolean isCodeQualityType(String type) {
+		Integer idx = typeIndex.get(type);
+		if (idx == null)
+			return null;
+		return typeIsQuality[idx];
+	}
+
+	/**
+	 * Gets the category of the given vulnerability type
+	 * 
+	 * @param type The vulnerability type
+	 * @return The human-readable name of the category, or <code>null</code> if
+	 *         the type is unknown or has no category
+	 */
+	public String getCategory(String type) {
+		Integer idx = typeIndex.get(type);
+		if (idx == null || typeCategories[idx] < 0)
+			return null;
+		return categories[typeCategories[idx]];
+	}
+
+	/**
+	 * Checks whether the given vulnerability type is detected on the given
+	 * platform
+	 * 
+	 * @param type     The vulnerability type
+	 * @param platform The platform identifier
+	 * @return True if the type is detected on the given platform, false otherwise
+	 */
+	public boolean hasPlatform(String type, String platform) {
+		Integer idx = typeIndex.get(type);
+		if (idx == null)
+			return false;
+		for (int p : typePlatforms[idx]) {
+			if (platforms[p].equals(platform))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the number of vulnerability types per category for the given platform
+	 * 
+	 * @param platform The platform identifier
+	 * @return The number of vulnerability types per category
+	 */
+	public CountingMap<String> getCategorySizes(String platform) {
+		int platformIdx = -1;
+		for (int i = 0; i < platforms.length; i++) {
+			if (platforms[i].equals(platform)) {
+				platformIdx = i;
+				break;
+			}
+		}
+
+		CountingMap<String> categorySizes = new CountingMap<>();
+		if (platformIdx < 0)
+			return categorySizes;
+		for (int i = 0; i < typePlatforms.length; i++) {
+			if (typeCategories[i] >= 0) {
+				for (int p : typePlatforms[i]) {
+					if (p == platformIdx) {
+						categorySizes.increment(categories[typeCategories[i]]);
+						break;
+					}
+				}
+			}
+		}
+		return categorySizes;
+	}
+
+	/**
+	 * Gets the number of vulnerability types that are detected on the given
+	 * platform
+	 * 
+	 * @param platform The platform identifier
+	 * @return The number of vulnerability types on the given platform
+	 */
+	public int getTypeCount(String platform) {
+		int count = 0;
+		for (String type : typeIndex.keySet()) {
+			if (hasPlatform(type, platform))
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the number of vulnerability types in this catalog
+	 * 
+	 * @return The number of vulnerability types in this catalog
+	 */
+	public int getTypeCount() {
+		return typeCategories.length;
+	}
+
+}
@@ -19,7 +19,7 @@ public class CategoryAndCount {
 	public ProcessedJob job;
 
 	@DatabaseField
-	public String category;
+	public int categoryId;
 
 	@DatabaseField
 	public int count;
@@ -27,9 +27,9 @@ public class CategoryAndCount {
 	public CategoryAndCount() {
 	}
 
-	public CategoryAndCount(ProcessedJob job, String cat, Integer count) {
+	public CategoryAndCount(ProcessedJob job, int categoryId, Integer count) {
 		this.job = job;
-		this.category = cat;
+		this.categoryId = categoryId;
 		this.count = count;
 	}
 
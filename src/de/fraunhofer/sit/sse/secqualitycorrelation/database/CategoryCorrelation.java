@@ -16,10 +16,10 @@ public class CategoryCorrelation {
 	public long id;
 
 	@DatabaseField
-	public String catType1;
+	public int catId1;
 
 	@DatabaseField
-	public String catType2;
+	public int catId2;
 
 	@DatabaseField
 	public double correlation;
@@ -27,12 +27,40 @@ public class CategoryCorrelation {
 	@DatabaseField
 	public double significance;
 
+	/**
+	 * The partial correlation that controls for the size covariates, or
+	 * <code>null</code> if it has not been computed
+	 */
+	@DatabaseField
+	public Double partialCorrelation;
+
+	/**
+	 * The lower bound of the bootstrap confidence interval of the correlation, or
+	 * <code>null</code> if it has not been computed
+	 */
+	@DatabaseField
+	public Double ciLow;
+
+	/**
+	 * The upper bound of the bootstrap confidence interval of the correlation, or
+	 * <code>null</code> if it has not been computed
+	 */
+	@DatabaseField
+	public Double ciHigh;
+
+	/**
+	 * The cohort of jobs on which the correlation has been computed, or
+	 * <code>null</code> if it has been computed on all jobs
+	 */
+	@DatabaseField
+	public String cohort;
+
 	public CategoryCorrelation() {
 	}
 
-	public CategoryCorrelation(String catType1, String catType2, double correlation) {
-		this.catType1 = catType1;
-		this.catType2 = catType2;
+	public CategoryCorrelation(int catId1, int catId2, double correlation) {
+		this.catId1 = catId1;
+		this.catId2 = catId2;
 		this.correlation = correlation;
 	}
 
@@ -0,0 +1,292 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+
+/**
+ * Write-behind sink for computed correlations. Correlations are placed in a
+ * bounded queue and written to the database in batches by a dedicated writer
+ * thread, so that the correlation computation does not wait for the database
+ * on every single pair. If the writer falls behind and the queue is full, the
+ * computation blocks until there is space again. No correlation is ever
+ * dropped.
+ * 
+ * When the writer is closed or the JVM shuts down, all queued correlations are
+ * written before the writer terminates.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class CorrelationWriter implements AutoCloseable {
+
+	/**
+	 * The default number of correlations that may be queued before the
+	 * computation blocks
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * The default maximum number of correlations per batch
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	private static final Logger logger = LogManager.getLogger(CorrelationWriter.class);
+
+	/**
+	 * Marker object that tells the writer thread to terminate
+	 */
+	private static final Object END = new Object();
+
+	private final IDatabaseManager dbManager;
+	private final BlockingQueue<Object> queue;
+	private final int batchSize;
+	private final Thread writerThread;
+	private final Thread shutdownHook;
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final Object progressLock = new Object();
+	private long processed = 0;
+
+	private volatile Exception failure = null;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new writer with the default capacity and batch size
+	 * 
+	 * @param dbManager The database manager to which to write the correlations
+	 */
+	public CorrelationWriter(IDatabaseManager dbManager) {
+		this(dbManager, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates a new writer
+	 * 
+	 * @param dbManager The database manager to which to write the correlations
+	 * @param capacity  The number of correlations that may be queued before the
+	 *                  computation blocks
+	 * @param batchSize The maximum number of correlations per batch
+	 */
+	public CorrelationWriter(IDatabaseManager dbManager, int capacity, int batchSize) {
+		if (capacity < 1 || batchSize < 1)
+			throw new IllegalArgumentException("Capacity and batch size must be positive");
+		this.dbManager = dbManager;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+
+		// The shutdown hook drains the queue, so the writer thread must not keep the
+		// JVM alive on its own
+		writerThread = new Thread(this::run, "correlation-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		// Do not lose the queued correlations if the analysis is aborted
+		shutdownHook = new Thread(this::closeQuietly, "correlation-writer-drain");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Queues the given category correlation for writing
+	 * 
+	 * @param cc The category correlation
+	 * @throws IOException If the writer has failed or the calling thread was
+	 *                     interrupted
+	 */
+	public void submit(CategoryCorrelation cc) throws IOException {
+		enqueue(cc);
+	}
+
+	/**
+	 * Queues the given vulnerability correlation for writing
+	 * 
+	 * @param vc The vulnerability correlation
+	 * @throws IOException If the writer has failed or the calling thread was
+	 *                     interrupted
+	 */
+	public void submit(VulnerabilityCorrelation vc) throws IOException {
+		enqueue(vc);
+	}
+
+	/**
+	 * Queues the given correlation between a vulnerability type and a category
+	 * for writing
+	 * 
+	 * @param cc The cross correlation
+	 * @throws IOException If the writer has failed or the calling thread was
+	 *                     interrupted
+	 */
+	public void submit(CrossCorrelation cc) throws IOException {
+		enqueue(cc);
+	}
+
+	private void enqueue(Object correlation) throws IOException {
+		checkFailure();
+		submitted.incrementAndGet();
+		if (queue.offer(correlation))
+			return;
+
+		// The writer has fallen behind, so we need to wait
+		long start = AnalysisMetrics.WRITER_BACKPRESSURE.start();
+		try {
+			queue.put(correlation);
+		} catch (InterruptedException e) {
+			submitted.decrementAndGet();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the correlation writer");
+		} finally {
+			AnalysisMetrics.WRITER_BACKPRESSURE.stop(start);
+		}
+	}
+
+	/**
+	 * Waits until all correlations that have been submitted so far are written
+	 * 
+	 * @throws IOException If not all correlations could be written or the calling
+	 *                     thread was interrupted
+	 */
+	public void flush() throws IOException {
+		long target = submitted.get();
+		synchronized (progressLock) {
+			while (processed < target) {
+				try {
+					progressLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the correlation writer");
+				}
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Throws the error on which the writer thread has failed, if any
+	 * 
+	 * @throws IOException
+	 */
+	private void checkFailure() throws IOException {
+		if (failure != null)
+			throw new IOException("Could not write correlations to the database", failure);
+	}
+
+	/**
+	 * The main loop of the writer thread
+	 */
+	private void run() {
+		List<Object> batch = new ArrayList<>(batchSize);
+		List<CategoryCorrelation> categories = new ArrayList<>(batchSize);
+		List<VulnerabilityCorrelation> vulns = new ArrayList<>(batchSize);
+		List<CrossCorrelation> crosses = new ArrayList<>(batchSize);
+		boolean done = false;
+		while (!done) {
+			try {
+				batch.add(queue.take());
+				queue.drainTo(batch, batchSize - 1);
+			} catch (InterruptedException e) {
+				// We only terminate through the end marker, so that we never drop
+				// correlations
+				continue;
+			}
+
+			for (Object o : batch) {
+				if (o == END)
+					done = true;
+				else if (o instanceof CategoryCorrelation)
+					categories.add((CategoryCorrelation) o);
+				else if (o instanceof CrossCorrelation)
+					crosses.add((CrossCorrelation) o);
+				else
+					vulns.add((VulnerabilityCorrelation) o);
+			}
+			batch.clear();
+
+			if (failure == null) {
+				try {
+					if (!categories.isEmpty()) {
+						dbManager.addCategoryCorrelations(categories);
+						AnalysisMetrics.WRITER_BATCH_SIZE.observe(categories.size());
+					}
+					if (!vulns.isEmpty()) {
+						dbManager.addVulnerabilityCorrelations(vulns);
+						AnalysisMetrics.WRITER_BATCH_SIZE.observe(vulns.size());
+					}
+					if (!crosses.isEmpty()) {
+						dbManager.addCrossCorrelations(crosses);
+						AnalysisMetrics.WRITER_BATCH_SIZE.observe(crosses.size());
+					}
+				} catch (IOException | SQLException | RuntimeException e) {
+					logger.error("Could not write correlations to the database", e);
+					failure = e;
+				}
+			}
+			synchronized (progressLock) {
+				processed += categories.size() + vulns.size() + crosses.size();
+				progressLock.notifyAll();
+			}
+			categories.clear();
+			vulns.clear();
+			crosses.clear();
+		}
+	}
+
+	/**
+	 * Writes all queued correlations and stops the writer thread
+	 * 
+	 * @throws IOException If not all correlations could be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			checkFailure();
+			return;
+		}
+		closed = true;
+
+		// The end marker must not be dropped either
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(END);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		while (writerThread.isAlive()) {
+			try {
+				writerThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// We are already shutting down
+		}
+		checkFailure();
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException e) {
+			logger.error("Could not write all queued correlations", e);
+		}
+	}
+
+}
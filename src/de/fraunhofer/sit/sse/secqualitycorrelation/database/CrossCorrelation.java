@@ -0,0 +1,39 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * The correlation between a vulnerability type and a category
+ * 
+ * @author Steven Arzt
+ *
+ */
+@DatabaseTable(tableName = "CrossCorrelations")
+public class CrossCorrelation {
+
+	@DatabaseField(generatedId = true)
+	public long id;
+
+	@DatabaseField
+	public int vulnTypeId;
+
+	@DatabaseField
+	public int catId;
+
+	@DatabaseField
+	public double correlation;
+
+	@DatabaseField
+	public double significance;
+
+	public CrossCorrelation() {
+	}
+
+	public CrossCorrelation(int vulnTypeId, int catId, double correlation) {
+		this.vulnTypeId = vulnTypeId;
+		this.catId = catId;
+		this.correlation = correlation;
+	}
+
+}
@@ -1,27 +1,41 @@
 package de.fraunhofer.sit.sse.secqualitycorrelation.database;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
 import com.j256.ormlite.table.TableUtils;
 
 import de.codeinspect.assessment.client.models.Job;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.DatabaseWriteEvent;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.Timer;
 
 /**
- * Database manager for accessing the computed correlations
+ * Database manager for accessing the computed correlations in a relational
+ * database through JDBC
  * 
  * @author Steven Arzt
  *
  */
-public class DatabaseManager {
+public class DatabaseManager implements IDatabaseManager {
 
 	private final String dbUrl;
 	private final String userName;
@@ -43,14 +57,164 @@ public class DatabaseManager {
 	 */
 	private void ensureTables() throws IOException, SQLException {
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			TableUtils.createTableIfNotExists(cs, InternedName.class);
 			TableUtils.createTableIfNotExists(cs, ProcessedJob.class);
 			TableUtils.createTableIfNotExists(cs, CategoryAndCount.class);
 			TableUtils.createTableIfNotExists(cs, VulnerabilityAndCount.class);
 			TableUtils.createTableIfNotExists(cs, VulnerabilityCorrelation.class);
 			TableUtils.createTableIfNotExists(cs, CategoryCorrelation.class);
+			TableUtils.createTableIfNotExists(cs, CrossCorrelation.class);
+			TableUtils.createTableIfNotExists(cs, DirtyColumn.class);
+			TableUtils.createTableIfNotExists(cs, VuscServer.class);
+
+			// Older databases store the names of categories and vulnerability types
+			// directly in the tables
+			Dao<InternedName, String> dao = DaoManager.createDao(cs, InternedName.class);
+			internLegacyColumn(dao, "CategoriesAndCounts", "category", "categoryId");
+			internLegacyColumn(dao, "VulnerabilitiesAndCounts", "vulnType", "vulnTypeId");
+			internLegacyColumn(dao, "CategoryCorrelations", "catType1", "catId1");
+			internLegacyColumn(dao, "CategoryCorrelations", "catType2", "catId2");
+			internLegacyColumn(dao, "VulnerabilityCorrelations", "vulnType1", "vulnTypeId1");
+			internLegacyColumn(dao, "VulnerabilityCorrelations", "vulnType2", "vulnTypeId2");
+
+			// Older databases do not have partial correlations yet
+			addMissingColumn(dao, "CategoryCorrelations", "partialCorrelation", "DOUBLE NULL");
+			addMissingColumn(dao, "VulnerabilityCorrelations", "partialCorrelation", "DOUBLE NULL");
+
+			// Older databases do not know which app a job belongs to
+			addMissingColumn(dao, "ProcessedJobs", "appHash", "VARCHAR(255) NULL");
+			addMissingColumn(dao, "ProcessedJobs", "failedAnalyses", "INT NOT NULL DEFAULT 0");
+			addMissingColumn(dao, "ProcessedJobs", "finishDate", "BIGINT NOT NULL DEFAULT 0");
+
+			// Older databases only have correlations over all jobs
+			addMissingColumn(dao, "CategoryCorrelations", "cohort", "VARCHAR(255) NULL");
+			addMissingColumn(dao, "VulnerabilityCorrelations", "cohort", "VARCHAR(255) NULL");
+
+			// Older databases do not have confidence intervals yet
+			addMissingColumn(dao, "CategoryCorrelations", "ciLow", "DOUBLE NULL");
+			addMissingColumn(dao, "CategoryCorrelations", "ciHigh", "DOUBLE NULL");
+			addMissingColumn(dao, "VulnerabilityCorrelations", "ciLow", "DOUBLE NULL");
+			addMissingColumn(dao, "VulnerabilityCorrelations", "ciHigh", "DOUBLE NULL");
 		}
 	}
 
+	/**
+	 * Adds the given column to the given table if the table does not have it yet
+	 * 
+	 * @param dao    Any DAO on the database
+	 * @param table  The table to extend
+	 * @param column The name of the column
+	 * @param type   The SQL type of the column
+	 * @throws SQLException
+	 */
+	private static void addMissingColumn(Dao<?, ?> dao, String table, String column, String type)
+			throws SQLException {
+		if (!hasColumn(dao, table, column))
+			dao.executeRaw(String.format("ALTER TABLE `%s` ADD COLUMN `%s` %s", table, column, type));
+	}
+
+	/**
+	 * Replaces a legacy column that contains names with a column that contains the
+	 * respective identifiers from the name dictionary
+	 * 
+	 * @param dao       The DAO for the name dictionary
+	 * @param table     The table to migrate
+	 * @param legacyCol  The column that contains the names
+	 * @param idCol     The column that shall contain the identifiers
+	 * @throws SQLException
+	 */
+	private void internLegacyColumn(Dao<InternedName, String> dao, String table, String legacyCol, String idCol)
+			throws SQLException {
+		if (!hasColumn(dao, table, legacyCol))
+			return;
+		if (!hasColumn(dao, table, idCol))
+			dao.executeRaw(String.format("ALTER TABLE `%s` ADD COLUMN `%s` INT NOT NULL DEFAULT 0", table, idCol));
+		dao.executeRaw(String.format(
+				"INSERT IGNORE INTO `InternedNames` (`name`) SELECT DISTINCT `%s` FROM `%s` WHERE `%s` IS NOT NULL",
+				legacyCol, table, legacyCol));
+		dao.executeRaw(String.format(
+				"UPDATE `%s` t JOIN `InternedNames` n ON n.`name` = t.`%s` SET t.`%s` = n.`id`", table, legacyCol,
+				idCol));
+		dao.executeRaw(String.format("ALTER TABLE `%s` DROP COLUMN `%s`", table, legacyCol));
+	}
+
+	/**
+	 * Checks whether the given table has a column with the given name. We ask the
+	 * JDBC driver instead of querying the information schema, because databases
+	 * differ in how they map catalogs and schemas, e.g., H2 keeps all tables in
+	 * the schema PUBLIC.
+	 * 
+	 * @param dao    Any DAO on the database
+	 * @param table  The name of the table
+	 * @param column The name of the column
+	 * @return True if the table has the given column, false otherwise
+	 * @throws SQLException
+	 */
+	private static boolean hasColumn(Dao<?, ?> dao, String table, String column) throws SQLException {
+		ConnectionSource cs = dao.getConnectionSource();
+		DatabaseConnection dbConn = cs.getReadOnlyConnection(table);
+		try {
+			Connection conn = dbConn.getUnderlyingConnection();
+			try (ResultSet columns = conn.getMetaData().getColumns(conn.getCatalog(), conn.getSchema(), table,
+					null)) {
+				while (columns.next()) {
+					if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME")))
+						return true;
+				}
+				return false;
+			}
+		} finally {
+			cs.releaseConnection(dbConn);
+		}
+	}
+
+	/**
+	 * Loads the dictionary that maps the names of categories and vulnerability
+	 * types to their identifiers
+	 * 
+	 * @return The name dictionary
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	@Override
+	public NameDictionary loadDictionary() throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<InternedName, String> dao = DaoManager.createDao(cs, InternedName.class);
+			return new NameDictionary(this, dao.queryForAll());
+		}
+	}
+
+	/**
+	 * Adds a new name to the name dictionary
+	 * 
+	 * @param name The name to add
+	 * @return The dictionary entry with the newly assigned identifier
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	@Override
+	public InternedName addName(String name) throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<InternedName, String> dao = DaoManager.createDao(cs, InternedName.class);
+			InternedName entry = new InternedName(name);
+			dao.create(entry);
+			return entry;
+		}
+	}
+
+	@Override
+	public List<VuscServer> getVuscServers() throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<VuscServer, String> dao = DaoManager.createDao(cs, VuscServer.class);
+			return dao.queryForAll();
+		}
+	}
+
+	@Override
+	public void addVuscServer(VuscServer server) throws IOException, SQLException {
+		insert(VuscServer.class, "VuscServers", server);
+	}
+
 	/**
 	 * Gets which processes have not yet been processed
 	 * 
@@ -59,6 +223,7 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public List<Job> getUnprocessedJobs(Collection<Job> jobs) throws IOException, SQLException {
 		List<Job> subset = new ArrayList<>(jobs.size());
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
@@ -78,11 +243,9 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public void addToDatabase(ProcessedJob job) throws SQLException, IOException {
-		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
-			Dao<ProcessedJob, String> dao = DaoManager.createDao(cs, ProcessedJob.class);
-			dao.create(job);
-		}
+		insert(ProcessedJob.class, "ProcessedJobs", job);
 	}
 
 	/**
@@ -92,11 +255,9 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public void addToDatabase(CategoryAndCount cc) throws SQLException, IOException {
-		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
-			Dao<CategoryAndCount, String> dao = DaoManager.createDao(cs, CategoryAndCount.class);
-			dao.create(cc);
-		}
+		insert(CategoryAndCount.class, "CategoriesAndCounts", cc);
 	}
 
 	/**
@@ -106,11 +267,9 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public void addToDatabase(VulnerabilityAndCount vc) throws SQLException, IOException {
-		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
-			Dao<VulnerabilityAndCount, String> dao = DaoManager.createDao(cs, VulnerabilityAndCount.class);
-			dao.create(vc);
-		}
+		insert(VulnerabilityAndCount.class, "VulnerabilitiesAndCounts", vc);
 	}
 
 	/**
@@ -120,11 +279,9 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public void addToDatabase(CategoryCorrelation cc) throws IOException, SQLException {
-		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
-			Dao<CategoryCorrelation, String> dao = DaoManager.createDao(cs, CategoryCorrelation.class);
-			dao.create(cc);
-		}
+		insert(CategoryCorrelation.class, "CategoryCorrelations", cc);
 	}
 
 	/**
@@ -134,11 +291,82 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public void addToDatabase(VulnerabilityCorrelation vc) throws IOException, SQLException {
+		insert(VulnerabilityCorrelation.class, "VulnerabilityCorrelations", vc);
+	}
+
+	@Override
+	public void addCategoryCorrelations(Collection<CategoryCorrelation> ccs) throws IOException, SQLException {
+		insertAll(CategoryCorrelation.class, "CategoryCorrelations", ccs);
+	}
+
+	@Override
+	public void addVulnerabilityCorrelations(Collection<VulnerabilityCorrelation> vcs)
+			throws IOException, SQLException {
+		insertAll(VulnerabilityCorrelation.class, "VulnerabilityCorrelations", vcs);
+	}
+
+	@Override
+	public void addCrossCorrelations(Collection<CrossCorrelation> ccs) throws IOException, SQLException {
+		insertAll(CrossCorrelation.class, "CrossCorrelations", ccs);
+	}
+
+	/**
+	 * Inserts a single record into the database and records the latency of the
+	 * write
+	 * 
+	 * @param recordClass The class of the record
+	 * @param table       The name of the table for reporting purposes
+	 * @param record      The record to insert
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	private <T> void insert(Class<T> recordClass, String table, T record) throws SQLException, IOException {
+		Timer timer = AnalysisMetrics.databaseWrite(table);
+		long start = timer.start();
+		DatabaseWriteEvent event = new DatabaseWriteEvent();
+		event.begin();
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
-			Dao<VulnerabilityCorrelation, String> dao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
-			dao.create(vc);
+			Dao<T, ?> dao = DaoManager.createDao(cs, recordClass);
+			dao.create(record);
+		} finally {
+			event.table = table;
+			event.rows = 1;
+			event.commit();
+			timer.stop(start);
+		}
+		AnalysisMetrics.databaseRows(table).increment();
+	}
+
+	/**
+	 * Inserts multiple records into the database over a single connection in one
+	 * batch and records the latency of the write
+	 * 
+	 * @param recordClass The class of the records
+	 * @param table       The name of the table for reporting purposes
+	 * @param records     The records to insert
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	private <T> void insertAll(Class<T> recordClass, String table, Collection<T> records)
+			throws SQLException, IOException {
+		if (records.isEmpty())
+			return;
+		Timer timer = AnalysisMetrics.databaseWrite(table);
+		long start = timer.start();
+		DatabaseWriteEvent event = new DatabaseWriteEvent();
+		event.begin();
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<T, ?> dao = DaoManager.createDao(cs, recordClass);
+			dao.create(records);
+		} finally {
+			event.table = table;
+			event.rows = records.size();
+			event.commit();
+			timer.stop(start);
 		}
+		AnalysisMetrics.databaseRows(table).add(records.size());
 	}
 
 	/**
@@ -152,6 +380,7 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public void splitJobs(List<Job> jobs, List<Job> unprocessedJobs, List<Job> processedJobs)
 			throws IOException, SQLException {
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
@@ -173,6 +402,7 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public ProcessedJob getProcessedJob(Long id) throws IOException, SQLException {
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
 			Dao<ProcessedJob, String> dao = DaoManager.createDao(cs, ProcessedJob.class);
@@ -188,6 +418,7 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public List<ProcessedJob> getProcessedJobs(List<Long> jobIDs) throws SQLException, IOException {
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
 			Dao<ProcessedJob, String> dao = DaoManager.createDao(cs, ProcessedJob.class);
@@ -208,6 +439,7 @@ public class DatabaseManager {
 	 * @throws SQLException
 	 * @throws IOException
 	 */
+	@Override
 	public List<ProcessedJob> getAllProcessedJobs() throws IOException, SQLException {
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
 			Dao<ProcessedJob, String> dao = DaoManager.createDao(cs, ProcessedJob.class);
@@ -215,23 +447,199 @@ public class DatabaseManager {
 		}
 	}
 
+	@Override
+	public Map<String, ProcessedJob> getProcessedJobsByHash() throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<ProcessedJob, String> dao = DaoManager.createDao(cs, ProcessedJob.class);
+			Map<String, ProcessedJob> jobs = new HashMap<>();
+			for (ProcessedJob pj : dao.queryBuilder().selectColumns("jobId", "appHash", "failedAnalyses").where()
+					.isNotNull("appHash").query())
+				jobs.put(pj.appHash, pj);
+			return jobs;
+		}
+	}
+
+	@Override
+	public void replaceJob(long oldJobId, ProcessedJob job) throws IOException, SQLException {
+		Timer timer = AnalysisMetrics.databaseWrite("ProcessedJobs");
+		long start = timer.start();
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			TransactionManager.callInTransaction(cs, () -> {
+				Dao<ProcessedJob, String> jobDao = DaoManager.createDao(cs, ProcessedJob.class);
+				Dao<CategoryAndCount, Long> catDao = DaoManager.createDao(cs, CategoryAndCount.class);
+				Dao<VulnerabilityAndCount, Long> vulnDao = DaoManager.createDao(cs, VulnerabilityAndCount.class);
+				Dao<DirtyColumn, Long> dirtyDao = DaoManager.createDao(cs, DirtyColumn.class);
+
+				// Remove the old job
+				List<CategoryAndCount> oldCategories = catDao.queryForEq("job_id", oldJobId);
+				List<VulnerabilityAndCount> oldVulns = vulnDao.queryForEq("job_id", oldJobId);
+				DeleteBuilder<CategoryAndCount, Long> catDelete = catDao.deleteBuilder();
+				catDelete.where().eq("job_id", oldJobId);
+				catDelete.delete();
+				DeleteBuilder<VulnerabilityAndCount, Long> vulnDelete = vulnDao.deleteBuilder();
+				vulnDelete.where().eq("job_id", oldJobId);
+				vulnDelete.delete();
+				jobDao.deleteById(Long.toString(oldJobId));
+
+				// Add the new job
+				jobDao.create(job);
+				if (job.categoriesToCounts != null && !job.categoriesToCounts.isEmpty())
+					catDao.create(job.categoriesToCounts);
+				if (job.vulnerabilitiesToCounts != null && !job.vulnerabilitiesToCounts.isEmpty())
+					vulnDao.create(job.vulnerabilitiesToCounts);
+
+				for (DirtyColumn dc : DirtyColumn.getChangedColumns(oldCategories, oldVulns, job))
+					dirtyDao.executeRaw("INSERT IGNORE INTO `DirtyColumns` (`kind`, `columnId`) VALUES (?, ?)",
+							Integer.toString(dc.kind), Integer.toString(dc.columnId));
+				return null;
+			});
+		} finally {
+			timer.stop(start);
+		}
+		AnalysisMetrics.databaseRows("ProcessedJobs").increment();
+	}
+
+	@Override
+	public List<DirtyColumn> getDirtyColumns() throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<DirtyColumn, Long> dao = DaoManager.createDao(cs, DirtyColumn.class);
+			return dao.queryForAll();
+		}
+	}
+
+	@Override
+	public void clearDirtyColumns(Collection<DirtyColumn> columns) throws IOException, SQLException {
+		if (columns.isEmpty())
+			return;
+		List<Integer> categories = columns.stream().filter(dc -> dc.kind == DirtyColumn.KIND_CATEGORY)
+				.map(dc -> dc.columnId).collect(Collectors.toList());
+		List<Integer> vulns = columns.stream().filter(dc -> dc.kind == DirtyColumn.KIND_VULNERABILITY)
+				.map(dc -> dc.columnId).collect(Collectors.toList());
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			TransactionManager.callInTransaction(cs, () -> {
+				if (!categories.isEmpty()) {
+					Dao<CategoryCorrelation, Long> dao = DaoManager.createDao(cs, CategoryCorrelation.class);
+					DeleteBuilder<CategoryCorrelation, Long> db = dao.deleteBuilder();
+					db.where().in("catId1", categories).or().in("catId2", categories);
+					db.delete();
+				}
+				if (!categories.isEmpty() || !vulns.isEmpty()) {
+					Dao<CrossCorrelation, Long> dao = DaoManager.createDao(cs, CrossCorrelation.class);
+					DeleteBuilder<CrossCorrelation, Long> db = dao.deleteBuilder();
+					if (categories.isEmpty())
+						db.where().in("vulnTypeId", vulns);
+					else if (vulns.isEmpty())
+						db.where().in("catId", categories);
+					else
+						db.where().in("catId", categories).or().in("vulnTypeId", vulns);
+					db.delete();
+				}
+				if (!vulns.isEmpty()) {
+					Dao<VulnerabilityCorrelation, Long> dao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
+					DeleteBuilder<VulnerabilityCorrelation, Long> db = dao.deleteBuilder();
+					db.where().in("vulnTypeId1", vulns).or().in("vulnTypeId2", vulns);
+					db.delete();
+				}
+				Dao<DirtyColumn, Long> dao = DaoManager.createDao(cs, DirtyColumn.class);
+				dao.delete(columns);
+				return null;
+			});
+		}
+	}
+
+	@Override
+	public void deleteCohortCorrelations(Collection<String> cohorts) throws IOException, SQLException {
+		if (cohorts.isEmpty())
+			return;
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			TransactionManager.callInTransaction(cs, () -> {
+				Dao<CategoryCorrelation, Long> catDao = DaoManager.createDao(cs, CategoryCorrelation.class);
+				DeleteBuilder<CategoryCorrelation, Long> catDb = catDao.deleteBuilder();
+				catDb.where().in("cohort", cohorts);
+				catDb.delete();
+				Dao<VulnerabilityCorrelation, Long> vulnDao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
+				DeleteBuilder<VulnerabilityCorrelation, Long> vulnDb = vulnDao.deleteBuilder();
+				vulnDb.where().in("cohort", cohorts);
+				vulnDb.delete();
+				return null;
+			});
+		}
+	}
+
+	@Override
+	public void updateConfidenceIntervals(Collection<CategoryCorrelation> ccs,
+			Collection<VulnerabilityCorrelation> vcs) throws IOException, SQLException {
+		if (ccs.isEmpty() && vcs.isEmpty())
+			return;
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			TransactionManager.callInTransaction(cs, () -> {
+				Dao<CategoryCorrelation, Long> catDao = DaoManager.createDao(cs, CategoryCorrelation.class);
+				for (CategoryCorrelation cc : ccs) {
+					UpdateBuilder<CategoryCorrelation, Long> ub = catDao.updateBuilder();
+					ub.updateColumnValue("ciLow", cc.ciLow).updateColumnValue("ciHigh", cc.ciHigh);
+					ub.where().eq("catId1", cc.catId1).and().eq("catId2", cc.catId2).and().isNull("cohort");
+					ub.update();
+				}
+				Dao<VulnerabilityCorrelation, Long> vulnDao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
+				for (VulnerabilityCorrelation vc : vcs) {
+					UpdateBuilder<VulnerabilityCorrelation, Long> ub = vulnDao.updateBuilder();
+					ub.updateColumnValue("ciLow", vc.ciLow).updateColumnValue("ciHigh", vc.ciHigh);
+					ub.where().eq("vulnTypeId1", vc.vulnTypeId1).and().eq("vulnTypeId2", vc.vulnTypeId2).and()
+							.isNull("cohort");
+					ub.update();
+				}
+				return null;
+			});
+		}
+	}
+
+	@Override
+	public void updatePartialCorrelations(Collection<CategoryCorrelation> ccs,
+			Collection<VulnerabilityCorrelation> vcs) throws IOException, SQLException {
+		if (ccs.isEmpty() && vcs.isEmpty())
+			return;
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			TransactionManager.callInTransaction(cs, () -> {
+				Dao<CategoryCorrelation, Long> catDao = DaoManager.createDao(cs, CategoryCorrelation.class);
+				for (CategoryCorrelation cc : ccs) {
+					UpdateBuilder<CategoryCorrelation, Long> ub = catDao.updateBuilder();
+					ub.updateColumnValue("partialCorrelation", cc.partialCorrelation);
+					ub.where().eq("catId1", cc.catId1).and().eq("catId2", cc.catId2).and().isNull("cohort");
+					ub.update();
+				}
+				Dao<VulnerabilityCorrelation, Long> vulnDao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
+				for (VulnerabilityCorrelation vc : vcs) {
+					UpdateBuilder<VulnerabilityCorrelation, Long> ub = vulnDao.updateBuilder();
+					ub.updateColumnValue("partialCorrelation", vc.partialCorrelation);
+					ub.where().eq("vulnTypeId1", vc.vulnTypeId1).and().eq("vulnTypeId2", vc.vulnTypeId2).and()
+							.isNull("cohort");
+					ub.update();
+				}
+				return null;
+			});
+		}
+	}
+
 	/**
 	 * Checks whether we have already previous computed a correlation between the
 	 * given two types of vulnerabilities
 	 * 
-	 * @param type1 The first type of vulnerability
-	 * @param type2 The second type of vulnerability
+	 * @param type1 The identifier of the first type of vulnerability
+	 * @param type2 The identifier of the second type of vulnerability
 	 * @return True if the database already contains a correlation between the two
 	 *         types of vulnerabilities, false otherwise
 	 * @throws SQLException
 	 * @throws IOException
 	 */
-	public boolean hasVulnerabilityCorrelation(String type1, String type2) throws IOException, SQLException {
+	@Override
+	public boolean hasVulnerabilityCorrelation(int type1, int type2) throws IOException, SQLException {
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
 			Dao<VulnerabilityCorrelation, String> dao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
-			if (dao.queryBuilder().where().eq("vulnType1", type1).and().eq("vulnType2", type2).countOf() > 0)
+			if (dao.queryBuilder().where().eq("vulnTypeId1", type1).and().eq("vulnTypeId2", type2).and()
+					.isNull("cohort").countOf() > 0)
 				return true;
-			if (dao.queryBuilder().where().eq("vulnType2", type1).and().eq("vulnType1", type2).countOf() > 0)
+			if (dao.queryBuilder().where().eq("vulnTypeId2", type1).and().eq("vulnTypeId1", type2).and()
+					.isNull("cohort").countOf() > 0)
 				return true;
 		}
 		return false;
@@ -241,22 +649,123 @@ public class DatabaseManager {
 	 * Checks whether we have already previous computed a correlation between the
 	 * given two types of categories
 	 * 
-	 * @param type1 The first type of category
-	 * @param type2 The second type of category
+	 * @param type1 The identifier of the first type of category
+	 * @param type2 The identifier of the second type of category
 	 * @return True if the database already contains a correlation between the two
 	 *         types of categories, false otherwise
 	 * @throws SQLException
 	 * @throws IOException
 	 */
-	public boolean hasCategoryCorrelation(String type1, String type2) throws IOException, SQLException {
+	@Override
+	public boolean hasCategoryCorrelation(int type1, int type2) throws IOException, SQLException {
 		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
 			Dao<CategoryCorrelation, String> dao = DaoManager.createDao(cs, CategoryCorrelation.class);
-			if (dao.queryBuilder().where().eq("catType1", type1).and().eq("catType2", type2).countOf() > 0)
+			if (dao.queryBuilder().where().eq("catId1", type1).and().eq("catId2", type2).and().isNull("cohort")
+					.countOf() > 0)
 				return true;
-			if (dao.queryBuilder().where().eq("catType2", type1).and().eq("catType1", type2).countOf() > 0)
+			if (dao.queryBuilder().where().eq("catId2", type1).and().eq("catId1", type2).and().isNull("cohort")
+					.countOf() > 0)
 				return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Gets the category correlations ordered by descending absolute correlation
+	 * 
+	 * @param onlySignificant True to only return correlations whose absolute value
+	 *                        exceeds the significance threshold, false to return
+	 *                        all correlations
+	 * @param limit           The maximum number of correlations to return, or a
+	 *                        value smaller than one to return all matching
+	 *                        correlations
+	 * @return The matching category correlations, strongest first
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	@Override
+	public List<CategoryCorrelation> getCategoryCorrelations(boolean onlySignificant, long limit)
+			throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<CategoryCorrelation, String> dao = DaoManager.createDao(cs, CategoryCorrelation.class);
+			return buildCorrelationQuery(dao.queryBuilder(), true, onlySignificant, limit).query();
+		}
+	}
+
+	/**
+	 * Gets the vulnerability correlations ordered by descending absolute
+	 * correlation
+	 * 
+	 * @param onlySignificant True to only return correlations whose absolute value
+	 *                        exceeds the significance threshold, false to return
+	 *                        all correlations
+	 * @param limit           The maximum number of correlations to return, or a
+	 *                        value smaller than one to return all matching
+	 *                        correlations
+	 * @return The matching vulnerability correlations, strongest first
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	@Override
+	public List<VulnerabilityCorrelation> getVulnerabilityCorrelations(boolean onlySignificant, long limit)
+			throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<VulnerabilityCorrelation, String> dao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
+			return buildCorrelationQuery(dao.queryBuilder(), true, onlySignificant, limit).query();
+		}
+	}
+
+	@Override
+	public List<CategoryCorrelation> getCategoryCohortCorrelations() throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<CategoryCorrelation, String> dao = DaoManager.createDao(cs, CategoryCorrelation.class);
+			return dao.queryBuilder().where().isNotNull("cohort").query();
+		}
+	}
+
+	@Override
+	public List<VulnerabilityCorrelation> getVulnerabilityCohortCorrelations() throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<VulnerabilityCorrelation, String> dao = DaoManager.createDao(cs, VulnerabilityCorrelation.class);
+			return dao.queryBuilder().where().isNotNull("cohort").query();
+		}
+	}
+
+	@Override
+	public List<CrossCorrelation> getCrossCorrelations(boolean onlySignificant, long limit)
+			throws IOException, SQLException {
+		try (ConnectionSource cs = new JdbcConnectionSource(dbUrl, userName, password)) {
+			Dao<CrossCorrelation, String> dao = DaoManager.createDao(cs, CrossCorrelation.class);
+			return buildCorrelationQuery(dao.queryBuilder(), false, onlySignificant, limit).query();
+		}
+	}
+
+	/**
+	 * Configures a query on one of the correlation tables such that the strongest
+	 * correlations come first
+	 * 
+	 * @param qb              The query builder to configure
+	 * @param overallOnly     True to only select the correlations over all jobs,
+	 *                        false if the table has no cohorts
+	 * @param onlySignificant True to only select significant correlations
+	 * @param limit           The maximum number of rows to select, or a value
+	 *                        smaller than one for no limit
+	 * @return The configured query builder
+	 * @throws SQLException
+	 */
+	private static <T> QueryBuilder<T, String> buildCorrelationQuery(QueryBuilder<T, String> qb,
+			boolean overallOnly, boolean onlySignificant, long limit) throws SQLException {
+		Where<T, String> where = null;
+		if (overallOnly)
+			where = qb.where().isNull("cohort");
+		if (onlySignificant) {
+			String significant = "ABS(correlation) > ABS(significance)";
+			where = where == null ? qb.where().raw(significant) : where.and().raw(significant);
+		}
+		qb.orderByRaw("ABS(correlation) DESC");
+		if (limit > 0)
+			qb.limit(limit);
+		return qb;
+	}
+
 }
@@ -0,0 +1,102 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * A category or vulnerability type whose counts have changed after its
+ * correlations have been computed, e.g., because a job has been replaced with a
+ * better analysis of the same app. The correlations that involve a dirty column
+ * must be computed again.
+ * 
+ * @author Steven Arzt
+ *
+ */
+@DatabaseTable(tableName = "DirtyColumns")
+public class DirtyColumn {
+
+	public static final int KIND_CATEGORY = 0;
+	public static final int KIND_VULNERABILITY = 1;
+
+	@DatabaseField(generatedId = true)
+	public long id;
+
+	@DatabaseField(uniqueCombo = true)
+	public int kind;
+
+	@DatabaseField(uniqueCombo = true)
+	public int columnId;
+
+	public DirtyColumn() {
+	}
+
+	public DirtyColumn(int kind, int columnId) {
+		this.kind = kind;
+		this.columnId = columnId;
+	}
+
+	/**
+	 * Gets the columns whose counts differ between the old and the new version of
+	 * a job
+	 * 
+	 * @param oldCategories The category counts of the old job
+	 * @param oldVulns      The vulnerability type counts of the old job
+	 * @param newJob        The new job with its counts
+	 * @return The columns that need to be marked as dirty
+	 */
+	public static List<DirtyColumn> getChangedColumns(Collection<CategoryAndCount> oldCategories,
+			Collection<VulnerabilityAndCount> oldVulns, ProcessedJob newJob) {
+		Map<Integer, Integer> oldCatCounts = new HashMap<>();
+		if (oldCategories != null)
+			oldCategories.forEach(cc -> oldCatCounts.put(cc.categoryId, cc.count));
+		Map<Integer, Integer> newCatCounts = new HashMap<>();
+		if (newJob.categoriesToCounts != null)
+			newJob.categoriesToCounts.forEach(cc -> newCatCounts.put(cc.categoryId, cc.count));
+		Map<Integer, Integer> oldVulnCounts = new HashMap<>();
+		if (oldVulns != null)
+			oldVulns.forEach(vc -> oldVulnCounts.put(vc.vulnTypeId, vc.count));
+		Map<Integer, Integer> newVulnCounts = new HashMap<>();
+		if (newJob.vulnerabilitiesToCounts != null)
+			newJob.vulnerabilitiesToCounts.forEach(vc -> newVulnCounts.put(vc.vulnTypeId, vc.count));
+
+		List<DirtyColumn> changed = new ArrayList<>();
+		addChangedColumns(KIND_CATEGORY, oldCatCounts, newCatCounts, changed);
+		addChangedColumns(KIND_VULNERABILITY, oldVulnCounts, newVulnCounts, changed);
+		return changed;
+	}
+
+	private static void addChangedColumns(int kind, Map<Integer, Integer> oldCounts, Map<Integer, Integer> newCounts,
+			List<DirtyColumn> changed) {
+		for (Map.Entry<Integer, Integer> entry : oldCounts.entrySet()) {
+			if (!entry.getValue().equals(newCounts.getOrDefault(entry.getKey(), 0)))
+				changed.add(new DirtyColumn(kind, entry.getKey()));
+		}
+		for (Map.Entry<Integer, Integer> entry : newCounts.entrySet()) {
+			if (!oldCounts.containsKey(entry.getKey()) && entry.getValue() != 0)
+				changed.add(new DirtyColumn(kind, entry.getKey()));
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(kind, columnId);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null || getClass() != obj.getClass())
+			return false;
+		DirtyColumn other = (DirtyColumn) obj;
+		return kind == other.kind && columnId == other.columnId;
+	}
+
+}
@@ -0,0 +1,364 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import de.codeinspect.assessment.client.models.Job;
+
+/**
+ * Common interface for all storage backends that hold the processed jobs and
+ * the computed correlations
+ * 
+ * @author Steven Arzt
+ *
+ */
+public interface IDatabaseManager {
+
+	/**
+	 * Loads the dictionary that maps the names of categories and vulnerability
+	 * types to their identifiers
+	 * 
+	 * @return The name dictionary
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public NameDictionary loadDictionary() throws IOException, SQLException;
+
+	/**
+	 * Adds a new name to the name dictionary
+	 * 
+	 * @param name The name to add
+	 * @return The dictionary entry with the newly assigned identifier
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public InternedName addName(String name) throws IOException, SQLException;
+
+	/**
+	 * Gets all VUSC servers from which jobs have been taken so far
+	 * 
+	 * @return The servers with the indices of their jobs
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<VuscServer> getVuscServers() throws IOException, SQLException;
+
+	/**
+	 * Records the index of a new VUSC server, so that its jobs keep the same
+	 * global identifiers in later runs
+	 * 
+	 * @param server The server with the index of its jobs
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addVuscServer(VuscServer server) throws IOException, SQLException;
+
+	/**
+	 * Gets which processes have not yet been processed
+	 * 
+	 * @param jobs The jobs to check
+	 * @return The subset of jobs that have not yet been processed
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<Job> getUnprocessedJobs(Collection<Job> jobs) throws IOException, SQLException;
+
+	/**
+	 * Adds the given job data to the database. A job counts as processed once
+	 * this record has been written.
+	 * 
+	 * @param job The job data to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addToDatabase(ProcessedJob job) throws SQLException, IOException;
+
+	/**
+	 * Adds the given category and count association to the database
+	 * 
+	 * @param cc The data object to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addToDatabase(CategoryAndCount cc) throws SQLException, IOException;
+
+	/**
+	 * Adds the given vulnerability and count association to the database
+	 * 
+	 * @param vc The data object to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addToDatabase(VulnerabilityAndCount vc) throws SQLException, IOException;
+
+	/**
+	 * Adds the given category correlation to the database
+	 * 
+	 * @param cc The data object to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addToDatabase(CategoryCorrelation cc) throws IOException, SQLException;
+
+	/**
+	 * Adds the given vulnerability correlation to the database
+	 * 
+	 * @param vc The data object to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addToDatabase(VulnerabilityCorrelation vc) throws IOException, SQLException;
+
+	/**
+	 * Adds the given category correlations to the database in a single batch
+	 * 
+	 * @param ccs The data objects to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addCategoryCorrelations(Collection<CategoryCorrelation> ccs) throws IOException, SQLException;
+
+	/**
+	 * Adds the given vulnerability correlations to the database in a single batch
+	 * 
+	 * @param vcs The data objects to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addVulnerabilityCorrelations(Collection<VulnerabilityCorrelation> vcs)
+			throws IOException, SQLException;
+
+	/**
+	 * Adds the given correlations between vulnerability types and categories to
+	 * the database in a single batch
+	 * 
+	 * @param ccs The data objects to add
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void addCrossCorrelations(Collection<CrossCorrelation> ccs) throws IOException, SQLException;
+
+	/**
+	 * Splits the list of jobs into processed and unprocessed jobs
+	 * 
+	 * @param jobs            The full list of jobs
+	 * @param unprocessedJobs The target list to which to add the jobs that haven't
+	 *                        been processed yet
+	 * @param processedJobs   The target list to which to add all jobs that have
+	 *                        already been processed
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void splitJobs(List<Job> jobs, List<Job> unprocessedJobs, List<Job> processedJobs)
+			throws IOException, SQLException;
+
+	/**
+	 * Gets the job with the given ID
+	 * 
+	 * @param id The job ID
+	 * @return The job with the given ID or <code>null</code> if no such job exists
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public ProcessedJob getProcessedJob(Long id) throws IOException, SQLException;
+
+	/**
+	 * Gets the list of jobs that correspond to the given list of job IDs
+	 * 
+	 * @param jobIDs The list of job IDs
+	 * @return The list of jobs that correspond to the given list of job IDs
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<ProcessedJob> getProcessedJobs(List<Long> jobIDs) throws SQLException, IOException;
+
+	/**
+	 * Gets all jobs that have been processed so far
+	 * 
+	 * @return A list with all jobs that have been processed so far
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<ProcessedJob> getAllProcessedJobs() throws IOException, SQLException;
+
+	/**
+	 * Gets all processed jobs for which the hash of the app is known. Only the
+	 * metadata of the jobs is guaranteed to be available, not the counts.
+	 * 
+	 * @return The processed jobs, keyed by the SHA-256 hash of the app
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public Map<String, ProcessedJob> getProcessedJobsByHash() throws IOException, SQLException;
+
+	/**
+	 * Replaces a processed job with a new job for the same app in a single
+	 * transaction. The counts of the old job are removed, the new job is added
+	 * with its counts, and all columns whose counts have changed are marked as
+	 * dirty.
+	 * 
+	 * @param oldJobId The identifier of the job to replace
+	 * @param job      The new job including its counts
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void replaceJob(long oldJobId, ProcessedJob job) throws IOException, SQLException;
+
+	/**
+	 * Gets the columns that have been marked as dirty
+	 * 
+	 * @return The dirty columns
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<DirtyColumn> getDirtyColumns() throws IOException, SQLException;
+
+	/**
+	 * Removes all correlations that involve one of the given columns, including
+	 * the correlations between vulnerability types and categories, and removes
+	 * the dirty marks from the columns, in a single transaction. The correlations
+	 * are then computed again like any other missing correlation.
+	 * 
+	 * @param columns The dirty columns
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void clearDirtyColumns(Collection<DirtyColumn> columns) throws IOException, SQLException;
+
+	/**
+	 * Removes all category and vulnerability correlations of the given cohorts in
+	 * a single transaction
+	 * 
+	 * @param cohorts The names of the cohorts
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void deleteCohortCorrelations(Collection<String> cohorts) throws IOException, SQLException;
+
+	/**
+	 * Stores the confidence intervals of the given correlations over all jobs in
+	 * a single transaction. The correlations must already be in the database.
+	 * 
+	 * @param ccs The category correlations with their confidence intervals
+	 * @param vcs The vulnerability correlations with their confidence intervals
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void updateConfidenceIntervals(Collection<CategoryCorrelation> ccs,
+			Collection<VulnerabilityCorrelation> vcs) throws IOException, SQLException;
+
+	/**
+	 * Stores the partial correlations of the given correlations over all jobs in
+	 * a single transaction. The correlations must already be in the database.
+	 * 
+	 * @param ccs The category correlations with their partial correlations
+	 * @param vcs The vulnerability correlations with their partial correlations
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public void updatePartialCorrelations(Collection<CategoryCorrelation> ccs,
+			Collection<VulnerabilityCorrelation> vcs) throws IOException, SQLException;
+
+	/**
+	 * Checks whether we have already previous computed a correlation between the
+	 * given two types of vulnerabilities
+	 * 
+	 * @param type1 The identifier of the first type of vulnerability
+	 * @param type2 The identifier of the second type of vulnerability
+	 * @return True if the database already contains a correlation between the two
+	 *         types of vulnerabilities, false otherwise
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public boolean hasVulnerabilityCorrelation(int type1, int type2) throws IOException, SQLException;
+
+	/**
+	 * Checks whether we have already previous computed a correlation between the
+	 * given two types of categories
+	 * 
+	 * @param type1 The identifier of the first type of category
+	 * @param type2 The identifier of the second type of category
+	 * @return True if the database already contains a correlation between the two
+	 *         types of categories, false otherwise
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public boolean hasCategoryCorrelation(int type1, int type2) throws IOException, SQLException;
+
+	/**
+	 * Gets the category correlations ordered by descending absolute correlation.
+	 * Only the correlations over all jobs are considered, not the ones on
+	 * individual cohorts.
+	 * 
+	 * @param onlySignificant True to only return correlations whose absolute value
+	 *                        exceeds the significance threshold, false to return
+	 *                        all correlations
+	 * @param limit           The maximum number of correlations to return, or a
+	 *                        value smaller than one to return all matching
+	 *                        correlations
+	 * @return The matching category correlations, strongest first
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<CategoryCorrelation> getCategoryCorrelations(boolean onlySignificant, long limit)
+			throws IOException, SQLException;
+
+	/**
+	 * Gets the vulnerability correlations ordered by descending absolute
+	 * correlation. Only the correlations over all jobs are considered, not the
+	 * ones on individual cohorts.
+	 * 
+	 * @param onlySignificant True to only return correlations whose absolute value
+	 *                        exceeds the significance threshold, false to return
+	 *                        all correlations
+	 * @param limit           The maximum number of correlations to return, or a
+	 *                        value smaller than one to return all matching
+	 *                        correlations
+	 * @return The matching vulnerability correlations, strongest first
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<VulnerabilityCorrelation> getVulnerabilityCorrelations(boolean onlySignificant, long limit)
+			throws IOException, SQLException;
+
+	/**
+	 * Gets all category correlations that have been computed on individual cohorts
+	 * of jobs
+	 * 
+	 * @return The category correlations of all cohorts
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<CategoryCorrelation> getCategoryCohortCorrelations() throws IOException, SQLException;
+
+	/**
+	 * Gets all vulnerability correlations that have been computed on individual
+	 * cohorts of jobs
+	 * 
+	 * @return The vulnerability correlations of all cohorts
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<VulnerabilityCorrelation> getVulnerabilityCohortCorrelations() throws IOException, SQLException;
+
+	/**
+	 * Gets the correlations between vulnerability types and categories ordered by
+	 * descending absolute correlation
+	 * 
+	 * @param onlySignificant True to only return correlations whose absolute value
+	 *                        exceeds the significance threshold, false to return
+	 *                        all correlations
+	 * @param limit           The maximum number of correlations to return, or a
+	 *                        value smaller than one to return all matching
+	 *                        correlations
+	 * @return The matching correlations, strongest first
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public List<CrossCorrelation> getCrossCorrelations(boolean onlySignificant, long limit)
+			throws IOException, SQLException;
+
+}
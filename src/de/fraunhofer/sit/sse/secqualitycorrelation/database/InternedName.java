@@ -0,0 +1,29 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * The association between the name of a category or vulnerability type and
+ * its dense integer identifier
+ * 
+ * @author Steven Arzt
+ *
+ */
+@DatabaseTable(tableName = "InternedNames")
+public class InternedName {
+
+	@DatabaseField(generatedId = true)
+	public int id;
+
+	@DatabaseField(unique = true, canBeNull = false)
+	public String name;
+
+	public InternedName() {
+	}
+
+	public InternedName(String name) {
+		this.name = name;
+	}
+
+}
@@ -0,0 +1,812 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.codeinspect.assessment.client.models.Job;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.DatabaseWriteEvent;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.Timer;
+
+/**
+ * Storage backend that keeps all data in a single append-only log file on the
+ * local disk. The complete log is replayed into memory when the backend is
+ * opened, so all queries are answered from memory. This backend does not need
+ * a database server, which makes it suitable for local analyses and CI runs.
+ * 
+ * Each record consists of a type byte, the length of the payload, and the
+ * payload. If the last record has not been written completely, e.g., because
+ * the process was killed, it is discarded when the log is opened.
+ * 
+ * The counts of a job are buffered until the job record itself is written and
+ * are then stored together with the job in a single record. As with the
+ * database backend, a job whose record is missing is processed again in the
+ * next run, but without leaving stale counts behind.
+ * 
+ * If a job is replaced with a better analysis of the same app, the removal of
+ * the old job, the new job, and the resulting dirty columns are written as a
+ * single record, so that the replacement is atomic.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class LogDatabaseManager implements IDatabaseManager {
+
+	/**
+	 * The prefix of the database URL that selects this backend. The remainder of
+	 * the URL is the path of the log file.
+	 */
+	public static final String URL_PREFIX = "log:";
+
+	private static final int MAGIC = 0x53514331;
+
+	private static final byte RECORD_NAME = 1;
+	private static final byte RECORD_JOB = 2;
+	private static final byte RECORD_CATEGORY_CORRELATION = 3;
+	private static final byte RECORD_VULNERABILITY_CORRELATION = 4;
+	private static final byte RECORD_REPLACE_JOB = 5;
+	private static final byte RECORD_CLEAR_DIRTY = 6;
+	private static final byte RECORD_CROSS_CORRELATION = 7;
+	private static final byte RECORD_VUSC_SERVER = 8;
+	private static final byte RECORD_DELETE_COHORTS = 9;
+
+	private static final Logger logger = LogManager.getLogger(LogDatabaseManager.class);
+
+	private final File logFile;
+	private final DataOutputStream out;
+
+	private final List<InternedName> names = new ArrayList<>();
+	private int nextNameId = 1;
+	private final Map<Long, ProcessedJob> jobs = new LinkedHashMap<>();
+	private final Map<Long, List<CategoryAndCount>> pendingCategories = new HashMap<>();
+	private final Map<Long, List<VulnerabilityAndCount>> pendingVulnerabilities = new HashMap<>();
+	private final Map<Long, CategoryCorrelation> categoryCorrelations = new LinkedHashMap<>();
+	private final Map<Long, VulnerabilityCorrelation> vulnerabilityCorrelations = new LinkedHashMap<>();
+	private final Map<String, Map<Long, CategoryCorrelation>> categoryCohortCorrelations = new LinkedHashMap<>();
+	private final Map<String, Map<Long, VulnerabilityCorrelation>> vulnerabilityCohortCorrelations =
+			new LinkedHashMap<>();
+	private final Map<Long, CrossCorrelation> crossCorrelations = new LinkedHashMap<>();
+	private long nextCorrelationId = 1;
+	private final Set<DirtyColumn> dirtyColumns = new LinkedHashSet<>();
+	private final List<VuscServer> vuscServers = new ArrayList<>();
+
+	/**
+	 * Opens the given log file. If the file does not exist yet, a new log is
+	 * created.
+	 * 
+	 * @param logFile The log file
+	 * @throws IOException
+	 */
+	public LogDatabaseManager(File logFile) throws IOException {
+		this.logFile = logFile;
+		boolean isNew = !logFile.exists() || logFile.length() == 0;
+		if (!isNew)
+			replay();
+		else if (logFile.getParentFile() != null)
+			logFile.getParentFile().mkdirs();
+
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+		if (isNew) {
+			out.writeInt(MAGIC);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Creates a new backend from the given database URL
+	 * 
+	 * @param dbUrl The database URL, which must start with {@link #URL_PREFIX}
+	 * @return The new backend
+	 * @throws IOException
+	 */
+	public static LogDatabaseManager fromUrl(String dbUrl) throws IOException {
+		if (!dbUrl.startsWith(URL_PREFIX))
+			throw new IllegalArgumentException(String.format("Not a log database URL: %s", dbUrl));
+		return new LogDatabaseManager(new File(dbUrl.substring(URL_PREFIX.length())));
+	}
+
+	/**
+	 * Reads all records from the log file into memory
+	 * 
+	 * @throws IOException
+	 */
+	private void replay() throws IOException {
+		long validLength;
+		int numRecords = 0;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(logFile), 1 << 16))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(String.format("%s is not a correlation log file", logFile));
+			validLength = 4;
+			while (true) {
+				byte type;
+				byte[] payload;
+				try {
+					type = in.readByte();
+					int length = in.readInt();
+					if (length < 0)
+						break;
+					payload = new byte[length];
+					in.readFully(payload);
+				} catch (EOFException e) {
+					break;
+				}
+				applyRecord(type, new DataInputStream(new ByteArrayInputStream(payload)));
+				validLength += 5 + payload.length;
+				numRecords++;
+			}
+		}
+
+		// Drop a partially written record at the end of the file
+		if (validLength < logFile.length()) {
+			logger.warn(String.format("Discarding %d bytes of an incomplete record at the end of %s",
+					logFile.length() - validLength, logFile));
+			try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+				raf.setLength(validLength);
+			}
+		}
+		logger.info(String.format("Loaded %d records with %d jobs from %s", numRecords, jobs.size(), logFile));
+	}
+
+	/**
+	 * Applies a single record from the log to the in-memory state
+	 * 
+	 * @param type The type of the record
+	 * @param in   The payload of the record
+	 * @throws IOException
+	 */
+	private void applyRecord(byte type, DataInputStream in) throws IOException {
+		switch (type) {
+		case RECORD_NAME: {
+			InternedName entry = new InternedName(in.readUTF());
+			entry.id = in.readInt();
+			names.add(entry);
+			nextNameId = Math.max(nextNameId, entry.id + 1);
+			break;
+		}
+		case RECORD_JOB: {
+			ProcessedJob pj = readJob(in);
+			jobs.put(pj.jobId, pj);
+			break;
+		}
+		case RECORD_REPLACE_JOB: {
+			jobs.remove(in.readLong());
+			dirtyColumns.addAll(readColumns(in));
+			ProcessedJob pj = readJob(in);
+			jobs.put(pj.jobId, pj);
+			break;
+		}
+		case RECORD_CLEAR_DIRTY: {
+			List<DirtyColumn> columns = readColumns(in);
+			for (DirtyColumn dc : columns) {
+				if (dc.kind == DirtyColumn.KIND_CATEGORY) {
+					categoryCorrelations.values()
+							.removeIf(cc -> cc.catId1 == dc.columnId || cc.catId2 == dc.columnId);
+					for (Map<Long, CategoryCorrelation> cohort : categoryCohortCorrelations.values())
+						cohort.values().removeIf(cc -> cc.catId1 == dc.columnId || cc.catId2 == dc.columnId);
+					crossCorrelations.values().removeIf(cc -> cc.catId == dc.columnId);
+				} else {
+					vulnerabilityCorrelations.values()
+							.removeIf(vc -> vc.vulnTypeId1 == dc.columnId || vc.vulnTypeId2 == dc.columnId);
+					for (Map<Long, VulnerabilityCorrelation> cohort : vulnerabilityCohortCorrelations.values())
+						cohort.values()
+								.removeIf(vc -> vc.vulnTypeId1 == dc.columnId || vc.vulnTypeId2 == dc.columnId);
+					crossCorrelations.values().removeIf(cc -> cc.vulnTypeId == dc.columnId);
+				}
+			}
+			dirtyColumns.removeAll(columns);
+			break;
+		}
+		case RECORD_CATEGORY_CORRELATION: {
+			CategoryCorrelation cc = new CategoryCorrelation(in.readInt(), in.readInt(), in.readDouble());
+			cc.significance = in.readDouble();
+			cc.partialCorrelation = readOptionalDouble(in);
+			cc.cohort = readCohort(in);
+			cc.ciLow = readOptionalDouble(in);
+			cc.ciHigh = readOptionalDouble(in);
+			putCorrelation(cc);
+			break;
+		}
+		case RECORD_VULNERABILITY_CORRELATION: {
+			VulnerabilityCorrelation vc = new VulnerabilityCorrelation(in.readInt(), in.readInt(), in.readDouble());
+			vc.significance = in.readDouble();
+			vc.partialCorrelation = readOptionalDouble(in);
+			vc.cohort = readCohort(in);
+			vc.ciLow = readOptionalDouble(in);
+			vc.ciHigh = readOptionalDouble(in);
+			putCorrelation(vc);
+			break;
+		}
+		case RECORD_CROSS_CORRELATION: {
+			CrossCorrelation cc = new CrossCorrelation(in.readInt(), in.readInt(), in.readDouble());
+			cc.significance = in.readDouble();
+			cc.id = nextCorrelationId++;
+			crossCorrelations.put(getCrossKey(cc.vulnTypeId, cc.catId), cc);
+			break;
+		}
+		case RECORD_DELETE_COHORTS: {
+			int numCohorts = in.readInt();
+			for (int i = 0; i < numCohorts; i++) {
+				String cohort = in.readUTF();
+				categoryCohortCorrelations.remove(cohort);
+				vulnerabilityCohortCorrelations.remove(cohort);
+			}
+			break;
+		}
+		case RECORD_VUSC_SERVER: {
+			vuscServers.add(new VuscServer(in.readUTF(), in.readInt()));
+			break;
+		}
+		default:
+			throw new IOException(String.format("Unknown record type %d in %s", type, logFile));
+		}
+	}
+
+	/**
+	 * Reads a job with its counts. Records that have been written before the app
+	 * hashes were recorded end after the counts, and records that have been
+	 * written before the finish dates were recorded end after the number of
+	 * failed analyses.
+	 * 
+	 * @param in The record payload
+	 * @return The job
+	 * @throws IOException
+	 */
+	private static ProcessedJob readJob(DataInputStream in) throws IOException {
+		ProcessedJob pj = new ProcessedJob();
+		pj.jobId = in.readLong();
+		pj.numSecFindings = in.readInt();
+		pj.numQualFindings = in.readInt();
+		int numCategories = in.readInt();
+		pj.categoriesToCounts = new ArrayList<>(numCategories);
+		for (int i = 0; i < numCategories; i++)
+			pj.categoriesToCounts.add(new CategoryAndCount(pj, in.readInt(), in.readInt()));
+		int numVulns = in.readInt();
+		pj.vulnerabilitiesToCounts = new ArrayList<>(numVulns);
+		for (int i = 0; i < numVulns; i++)
+			pj.vulnerabilitiesToCounts.add(new VulnerabilityAndCount(pj, in.readInt(), in.readInt()));
+		if (in.available() > 0) {
+			String appHash = in.readUTF();
+			pj.appHash = appHash.isEmpty() ? null : appHash;
+			pj.failedAnalyses = in.readInt();
+		}
+		if (in.available() >= 8)
+			pj.finishDate = in.readLong();
+		return pj;
+	}
+
+	/**
+	 * Writes a job with its counts
+	 * 
+	 * @param job        The job
+	 * @param categories The category counts of the job
+	 * @param vulns      The vulnerability type counts of the job
+	 * @param data       The stream to which to write the job
+	 * @throws IOException
+	 */
+	private static void writeJob(ProcessedJob job, Collection<CategoryAndCount> categories,
+			Collection<VulnerabilityAndCount> vulns, DataOutputStream data) throws IOException {
+		data.writeLong(job.jobId);
+		data.writeInt(job.numSecFindings);
+		data.writeInt(job.numQualFindings);
+		data.writeInt(categories.size());
+		for (CategoryAndCount cc : categories) {
+			data.writeInt(cc.categoryId);
+			data.writeInt(cc.count);
+		}
+		data.writeInt(vulns.size());
+		for (VulnerabilityAndCount vc : vulns) {
+			data.writeInt(vc.vulnTypeId);
+			data.writeInt(vc.count);
+		}
+		data.writeUTF(job.appHash == null ? "" : job.appHash);
+		data.writeInt(job.failedAnalyses);
+		data.writeLong(job.finishDate);
+	}
+
+	private static List<DirtyColumn> readColumns(DataInputStream in) throws IOException {
+		int numColumns = in.readInt();
+		List<DirtyColumn> columns = new ArrayList<>(numColumns);
+		for (int i = 0; i < numColumns; i++)
+			columns.add(new DirtyColumn(in.readByte(), in.readInt()));
+		return columns;
+	}
+
+	private static void writeColumns(Collection<DirtyColumn> columns, DataOutputStream data) throws IOException {
+		data.writeInt(columns.size());
+		for (DirtyColumn dc : columns) {
+			data.writeByte(dc.kind);
+			data.writeInt(dc.columnId);
+		}
+	}
+
+	/**
+	 * Reads an optional value at the end of a correlation record, such as the
+	 * partial correlation or a bound of the confidence interval. Records that
+	 * have been written before these values were introduced do not contain them.
+	 * 
+	 * @param in The remainder of the record payload
+	 * @return The value, or <code>null</code> if there is none
+	 * @throws IOException
+	 */
+	private static Double readOptionalDouble(DataInputStream in) throws IOException {
+		if (in.available() < 8)
+			return null;
+		double value = in.readDouble();
+		return Double.isNaN(value) ? null : value;
+	}
+
+	/**
+	 * Reads the cohort of a correlation record. Correlations over all jobs either
+	 * do not have a cohort or, if a confidence interval follows, an empty one.
+	 * 
+	 * @param in The remainder of the record payload
+	 * @return The cohort, or <code>null</code> if the correlation has been
+	 *         computed over all jobs
+	 * @throws IOException
+	 */
+	private static String readCohort(DataInputStream in) throws IOException {
+		if (in.available() == 0)
+			return null;
+		String cohort = in.readUTF();
+		return cohort.isEmpty() ? null : cohort;
+	}
+
+	/**
+	 * Writes a complete correlation record including its type and length
+	 * 
+	 * @param type         The type of the record
+	 * @param id1          The identifier of the first column
+	 * @param id2          The identifier of the second column
+	 * @param correlation  The correlation coefficient
+	 * @param significance The significance threshold
+	 * @param partial      The partial correlation, or <code>null</code> if there
+	 *                     is none
+	 * @param cohort       The cohort, or <code>null</code> for a correlation over
+	 *                     all jobs
+	 * @param ciLow        The lower bound of the confidence interval, or
+	 *                     <code>null</code> if there is none
+	 * @param ciHigh       The upper bound of the confidence interval, or
+	 *                     <code>null</code> if there is none
+	 * @param data         The stream to which to write the record
+	 * @throws IOException
+	 */
+	private static void writeCorrelation(byte type, int id1, int id2, double correlation, double significance,
+			Double partial, String cohort, Double ciLow, Double ciHigh, DataOutputStream data) throws IOException {
+		// Correlations over all jobs without a confidence interval keep the record
+		// format from before the cohorts
+		boolean hasInterval = ciLow != null || ciHigh != null;
+		ByteArrayOutputStream tail = new ByteArrayOutputStream();
+		DataOutputStream tailData = new DataOutputStream(tail);
+		if (cohort != null || hasInterval)
+			tailData.writeUTF(cohort == null ? "" : cohort);
+		if (hasInterval) {
+			tailData.writeDouble(ciLow == null ? Double.NaN : ciLow);
+			tailData.writeDouble(ciHigh == null ? Double.NaN : ciHigh);
+		}
+		data.writeByte(type);
+		data.writeInt(32 + tail.size());
+		data.writeInt(id1);
+		data.writeInt(id2);
+		data.writeDouble(correlation);
+		data.writeDouble(significance);
+		data.writeDouble(partial == null ? Double.NaN : partial);
+		tail.writeTo(data);
+	}
+
+	private void putCorrelation(CategoryCorrelation cc) {
+		cc.id = nextCorrelationId++;
+		Map<Long, CategoryCorrelation> target = cc.cohort == null ? categoryCorrelations
+				: categoryCohortCorrelations.computeIfAbsent(cc.cohort, k -> new LinkedHashMap<>());
+		target.put(getPairKey(cc.catId1, cc.catId2), cc);
+	}
+
+	private void putCorrelation(VulnerabilityCorrelation vc) {
+		vc.id = nextCorrelationId++;
+		Map<Long, VulnerabilityCorrelation> target = vc.cohort == null ? vulnerabilityCorrelations
+				: vulnerabilityCohortCorrelations.computeIfAbsent(vc.cohort, k -> new LinkedHashMap<>());
+		target.put(getPairKey(vc.vulnTypeId1, vc.vulnTypeId2), vc);
+	}
+
+	/**
+	 * Appends a single record to the log file and records the latency of the
+	 * write
+	 * 
+	 * @param table   The name of the corresponding database table for reporting
+	 *                purposes
+	 * @param type    The type of the record
+	 * @param payload The payload of the record
+	 * @throws IOException
+	 */
+	private void append(String table, byte type, ByteArrayOutputStream payload) throws IOException {
+		ByteArrayOutputStream record = new ByteArrayOutputStream(5 + payload.size());
+		DataOutputStream data = new DataOutputStream(record);
+		data.writeByte(type);
+		data.writeInt(payload.size());
+		payload.writeTo(data);
+		append(table, record, 1);
+	}
+
+	/**
+	 * Appends complete records to the log file in a single write and records the
+	 * latency of the write
+	 * 
+	 * @param table      The name of the corresponding database table for
+	 *                   reporting purposes
+	 * @param records    The records, each with its type and length
+	 * @param numRecords The number of records
+	 * @throws IOException
+	 */
+	private void append(String table, ByteArrayOutputStream records, int numRecords) throws IOException {
+		Timer timer = AnalysisMetrics.databaseWrite(table);
+		long start = timer.start();
+		DatabaseWriteEvent event = new DatabaseWriteEvent();
+		event.begin();
+		try {
+			records.writeTo(out);
+			out.flush();
+		} finally {
+			event.table = table;
+			event.rows = numRecords;
+			event.commit();
+			timer.stop(start);
+		}
+		AnalysisMetrics.databaseRows(table).add(numRecords);
+	}
+
+	private static long getPairKey(int id1, int id2) {
+		return ((long) Math.min(id1, id2) << 32) | (Math.max(id1, id2) & 0xFFFFFFFFL);
+	}
+
+	private static long getCrossKey(int vulnTypeId, int catId) {
+		// Cross correlations are not symmetric
+		return ((long) vulnTypeId << 32) | (catId & 0xFFFFFFFFL);
+	}
+
+	@Override
+	public synchronized NameDictionary loadDictionary() {
+		return new NameDictionary(this, new ArrayList<>(names));
+	}
+
+	@Override
+	public synchronized InternedName addName(String name) throws IOException {
+		InternedName entry = new InternedName(name);
+		entry.id = nextNameId;
+
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(payload);
+		data.writeUTF(name);
+		data.writeInt(entry.id);
+		append("InternedNames", RECORD_NAME, payload);
+
+		nextNameId++;
+		names.add(entry);
+		return entry;
+	}
+
+	@Override
+	public synchronized List<VuscServer> getVuscServers() {
+		return new ArrayList<>(vuscServers);
+	}
+
+	@Override
+	public synchronized void addVuscServer(VuscServer server) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(payload);
+		data.writeUTF(server.url);
+		data.writeInt(server.serverIndex);
+		append("VuscServers", RECORD_VUSC_SERVER, payload);
+		vuscServers.add(new VuscServer(server.url, server.serverIndex));
+	}
+
+	@Override
+	public synchronized List<Job> getUnprocessedJobs(Collection<Job> jobs) {
+		List<Job> subset = new ArrayList<>(jobs.size());
+		for (Job j : jobs) {
+			if (!this.jobs.containsKey(j.getId()))
+				subset.add(j);
+		}
+		return subset;
+	}
+
+	@Override
+	public synchronized void addToDatabase(ProcessedJob job) throws IOException {
+		// Prefer the counts that have been added explicitly
+		Collection<CategoryAndCount> categories = pendingCategories.remove(job.jobId);
+		if (categories == null)
+			categories = job.categoriesToCounts == null ? Collections.emptyList() : job.categoriesToCounts;
+		Collection<VulnerabilityAndCount> vulns = pendingVulnerabilities.remove(job.jobId);
+		if (vulns == null)
+			vulns = job.vulnerabilitiesToCounts == null ? Collections.emptyList() : job.vulnerabilitiesToCounts;
+
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(104 + 8 * (categories.size() + vulns.size()));
+		DataOutputStream data = new DataOutputStream(payload);
+		writeJob(job, categories, vulns, data);
+		append("ProcessedJobs", RECORD_JOB, payload);
+
+		// Keep our own copy, the caller may still modify the given object
+		applyRecord(RECORD_JOB, new DataInputStream(new ByteArrayInputStream(payload.toByteArray())));
+	}
+
+	@Override
+	public synchronized void addToDatabase(CategoryAndCount cc) {
+		pendingCategories.computeIfAbsent(cc.job.jobId, k -> new ArrayList<>()).add(cc);
+	}
+
+	@Override
+	public synchronized void addToDatabase(VulnerabilityAndCount vc) {
+		pendingVulnerabilities.computeIfAbsent(vc.job.jobId, k -> new ArrayList<>()).add(vc);
+	}
+
+	@Override
+	public synchronized void addToDatabase(CategoryCorrelation cc) throws IOException {
+		addCategoryCorrelations(Collections.singletonList(cc));
+	}
+
+	@Override
+	public synchronized void addToDatabase(VulnerabilityCorrelation vc) throws IOException {
+		addVulnerabilityCorrelations(Collections.singletonList(vc));
+	}
+
+	@Override
+	public synchronized void addCategoryCorrelations(Collection<CategoryCorrelation> ccs) throws IOException {
+		if (ccs.isEmpty())
+			return;
+		ByteArrayOutputStream records = new ByteArrayOutputStream(37 * ccs.size());
+		DataOutputStream data = new DataOutputStream(records);
+		for (CategoryCorrelation cc : ccs)
+			writeCorrelation(RECORD_CATEGORY_CORRELATION, cc.catId1, cc.catId2, cc.correlation, cc.significance,
+					cc.partialCorrelation, cc.cohort, cc.ciLow, cc.ciHigh, data);
+		append("CategoryCorrelations", records, ccs.size());
+
+		for (CategoryCorrelation cc : ccs)
+			putCorrelation(cc);
+	}
+
+	@Override
+	public synchronized void addVulnerabilityCorrelations(Collection<VulnerabilityCorrelation> vcs)
+			throws IOException {
+		if (vcs.isEmpty())
+			return;
+		ByteArrayOutputStream records = new ByteArrayOutputStream(37 * vcs.size());
+		DataOutputStream data = new DataOutputStream(records);
+		for (VulnerabilityCorrelation vc : vcs)
+			writeCorrelation(RECORD_VULNERABILITY_CORRELATION, vc.vulnTypeId1, vc.vulnTypeId2, vc.correlation,
+					vc.significance, vc.partialCorrelation, vc.cohort, vc.ciLow, vc.ciHigh, data);
+		append("VulnerabilityCorrelations", records, vcs.size());
+
+		for (VulnerabilityCorrelation vc : vcs)
+			putCorrelation(vc);
+	}
+
+	@Override
+	public synchronized void addCrossCorrelations(Collection<CrossCorrelation> ccs) throws IOException {
+		if (ccs.isEmpty())
+			return;
+		ByteArrayOutputStream records = new ByteArrayOutputStream(29 * ccs.size());
+		DataOutputStream data = new DataOutputStream(records);
+		for (CrossCorrelation cc : ccs) {
+			data.writeByte(RECORD_CROSS_CORRELATION);
+			data.writeInt(24);
+			data.writeInt(cc.vulnTypeId);
+			data.writeInt(cc.catId);
+			data.writeDouble(cc.correlation);
+			data.writeDouble(cc.significance);
+		}
+		append("CrossCorrelations", records, ccs.size());
+
+		for (CrossCorrelation cc : ccs) {
+			cc.id = nextCorrelationId++;
+			crossCorrelations.put(getCrossKey(cc.vulnTypeId, cc.catId), cc);
+		}
+	}
+
+	@Override
+	public synchronized void splitJobs(List<Job> jobs, List<Job> unprocessedJobs, List<Job> processedJobs) {
+		for (Job j : jobs) {
+			if (this.jobs.containsKey(j.getId()))
+				processedJobs.add(j);
+			else
+				unprocessedJobs.add(j);
+		}
+	}
+
+	@Override
+	public synchronized ProcessedJob getProcessedJob(Long id) {
+		return jobs.get(id);
+	}
+
+	@Override
+	public synchronized List<ProcessedJob> getProcessedJobs(List<Long> jobIDs) {
+		List<ProcessedJob> result = new ArrayList<>(jobIDs.size());
+		for (Long id : jobIDs)
+			result.add(jobs.get(id));
+		return result;
+	}
+
+	@Override
+	public synchronized List<ProcessedJob> getAllProcessedJobs() {
+		return new ArrayList<>(jobs.values());
+	}
+
+	@Override
+	public synchronized Map<String, ProcessedJob> getProcessedJobsByHash() {
+		Map<String, ProcessedJob> result = new HashMap<>();
+		for (ProcessedJob pj : jobs.values()) {
+			if (pj.appHash != null)
+				result.put(pj.appHash, pj);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void replaceJob(long oldJobId, ProcessedJob job) throws IOException {
+		ProcessedJob oldJob = jobs.get(oldJobId);
+		Collection<CategoryAndCount> categories = job.categoriesToCounts == null ? Collections.emptyList()
+				: job.categoriesToCounts;
+		Collection<VulnerabilityAndCount> vulns = job.vulnerabilitiesToCounts == null ? Collections.emptyList()
+				: job.vulnerabilitiesToCounts;
+		List<DirtyColumn> changed = DirtyColumn.getChangedColumns(oldJob == null ? null : oldJob.categoriesToCounts,
+				oldJob == null ? null : oldJob.vulnerabilitiesToCounts, job);
+
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(
+				116 + 8 * (categories.size() + vulns.size()) + 5 * changed.size());
+		DataOutputStream data = new DataOutputStream(payload);
+		data.writeLong(oldJobId);
+		writeColumns(changed, data);
+		writeJob(job, categories, vulns, data);
+		append("ProcessedJobs", RECORD_REPLACE_JOB, payload);
+		applyRecord(RECORD_REPLACE_JOB, new DataInputStream(new ByteArrayInputStream(payload.toByteArray())));
+	}
+
+	@Override
+	public synchronized List<DirtyColumn> getDirtyColumns() {
+		return new ArrayList<>(dirtyColumns);
+	}
+
+	@Override
+	public synchronized void clearDirtyColumns(Collection<DirtyColumn> columns) throws IOException {
+		if (columns.isEmpty())
+			return;
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(4 + 5 * columns.size());
+		writeColumns(columns, new DataOutputStream(payload));
+		append("DirtyColumns", RECORD_CLEAR_DIRTY, payload);
+		applyRecord(RECORD_CLEAR_DIRTY, new DataInputStream(new ByteArrayInputStream(payload.toByteArray())));
+	}
+
+	@Override
+	public synchronized void deleteCohortCorrelations(Collection<String> cohorts) throws IOException {
+		if (cohorts.isEmpty())
+			return;
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(payload);
+		data.writeInt(cohorts.size());
+		for (String cohort : cohorts)
+			data.writeUTF(cohort);
+		append("CategoryCorrelations", RECORD_DELETE_COHORTS, payload);
+		applyRecord(RECORD_DELETE_COHORTS, new DataInputStream(new ByteArrayInputStream(payload.toByteArray())));
+	}
+
+	@Override
+	public synchronized void updateConfidenceIntervals(Collection<CategoryCorrelation> ccs,
+			Collection<VulnerabilityCorrelation> vcs) throws IOException {
+		// The log is append-only, so we write the correlations again. On replay, the
+		// new records replace the old ones.
+		addCategoryCorrelations(ccs);
+		addVulnerabilityCorrelations(vcs);
+	}
+
+	@Override
+	public synchronized void updatePartialCorrelations(Collection<CategoryCorrelation> ccs,
+			Collection<VulnerabilityCorrelation> vcs) throws IOException {
+		addCategoryCorrelations(ccs);
+		addVulnerabilityCorrelations(vcs);
+	}
+
+	@Override
+	public synchronized boolean hasVulnerabilityCorrelation(int type1, int type2) {
+		return vulnerabilityCorrelations.containsKey(getPairKey(type1, type2));
+	}
+
+	@Override
+	public synchronized boolean hasCategoryCorrelation(int type1, int type2) {
+		return categoryCorrelations.containsKey(getPairKey(type1, type2));
+	}
+
+	@Override
+	public synchronized List<CategoryCorrelation> getCategoryCorrelations(boolean onlySignificant, long limit) {
+		return rankCorrelations(categoryCorrelations.values(), cc -> cc.correlation, cc -> cc.significance,
+				onlySignificant, limit);
+	}
+
+	@Override
+	public synchronized List<VulnerabilityCorrelation> getVulnerabilityCorrelations(boolean onlySignificant,
+			long limit) {
+		return rankCorrelations(vulnerabilityCorrelations.values(), vc -> vc.correlation, vc -> vc.significance,
+				onlySignificant, limit);
+	}
+
+	@Override
+	public synchronized List<CategoryCorrelation> getCategoryCohortCorrelations() {
+		List<CategoryCorrelation> result = new ArrayList<>();
+		for (Map<Long, CategoryCorrelation> cohort : categoryCohortCorrelations.values())
+			result.addAll(cohort.values());
+		return result;
+	}
+
+	@Override
+	public synchronized List<VulnerabilityCorrelation> getVulnerabilityCohortCorrelations() {
+		List<VulnerabilityCorrelation> result = new ArrayList<>();
+		for (Map<Long, VulnerabilityCorrelation> cohort : vulnerabilityCohortCorrelations.values())
+			result.addAll(cohort.values());
+		return result;
+	}
+
+	@Override
+	public synchronized List<CrossCorrelation> getCrossCorrelations(boolean onlySignificant, long limit) {
+		return rankCorrelations(crossCorrelations.values(), cc -> cc.correlation, cc -> cc.significance,
+				onlySignificant, limit);
+	}
+
+	/**
+	 * Orders the given correlations in the same way as the database query does
+	 * 
+	 * @param correlations    The correlations to order
+	 * @param correlation     The function that gets the correlation coefficient
+	 * @param significance    The function that gets the significance threshold
+	 * @param onlySignificant True to only return significant correlations
+	 * @param limit           The maximum number of correlations to return, or a
+	 *                        value smaller than one for no limit
+	 * @return The matching correlations, strongest first
+	 */
+	private static <T> List<T> rankCorrelations(Collection<T> correlations, ToDoubleFunction<T> correlation,
+			ToDoubleFunction<T> significance, boolean onlySignificant, long limit) {
+		List<T> ranked = new ArrayList<>(correlations.size());
+		for (T c : correlations) {
+			if (!onlySignificant
+					|| Math.abs(correlation.applyAsDouble(c)) > Math.abs(significance.applyAsDouble(c)))
+				ranked.add(c);
+		}
+		ranked.sort(Comparator.comparingDouble((T c) -> {
+			double corr = correlation.applyAsDouble(c);
+			return Double.isNaN(corr) ? -1 : Math.abs(corr);
+		}).reversed());
+		if (limit > 0 && ranked.size() > limit)
+			return new ArrayList<>(ranked.subList(0, (int) limit));
+		return ranked;
+	}
+
+	/**
+	 * Gets the file that holds the log
+	 * 
+	 * @return The log file
+	 */
+	public File getLogFile() {
+		return logFile;
+	}
+
+}
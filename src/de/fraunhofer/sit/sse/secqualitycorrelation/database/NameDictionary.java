@@ -0,0 +1,94 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary that maps the names of categories and vulnerability types to
+ * dense integer identifiers. Identifiers are assigned once and persisted in the
+ * database, so that all tables and in-memory structures can refer to names by
+ * their identifier. Names are only resolved when producing output.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class NameDictionary {
+
+	private final IDatabaseManager dbManager;
+	private final Map<String, Integer> ids;
+	private String[] names;
+
+	NameDictionary(IDatabaseManager dbManager, List<InternedName> entries) {
+		this.dbManager = dbManager;
+		this.ids = new HashMap<>(Math.max(16, entries.size() * 2));
+
+		int maxId = 0;
+		for (InternedName entry : entries)
+			maxId = Math.max(maxId, entry.id);
+		this.names = new String[maxId + 1];
+		for (InternedName entry : entries) {
+			ids.put(entry.name, entry.id);
+			names[entry.id] = entry.name;
+		}
+	}
+
+	/**
+	 * Gets the identifier for the given name. If the name is not yet known, a new
+	 * identifier is assigned and persisted.
+	 * 
+	 * @param name The name of the category or vulnerability type
+	 * @return The identifier for the given name
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public synchronized int intern(String name) throws IOException, SQLException {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+
+		InternedName entry = dbManager.addName(name);
+		ids.put(entry.name, entry.id);
+		if (entry.id >= names.length)
+			names = Arrays.copyOf(names, Math.max(entry.id + 1, names.length * 2));
+		names[entry.id] = entry.name;
+		return entry.id;
+	}
+
+	/**
+	 * Gets the identifier for the given name without assigning a new one
+	 * 
+	 * @param name The name of the category or vulnerability type
+	 * @return The identifier for the given name, or -1 if the name is unknown
+	 */
+	public synchronized int getId(String name) {
+		Integer id = ids.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the name with the given identifier
+	 * 
+	 * @param id The identifier
+	 * @return The name with the given identifier, or <code>null</code> if the
+	 *         identifier is unknown
+	 */
+	public synchronized String getName(int id) {
+		if (id < 0 || id >= names.length)
+			return null;
+		return names[id];
+	}
+
+	/**
+	 * Gets the number of names in this dictionary
+	 * 
+	 * @return The number of names in this dictionary
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+
+}
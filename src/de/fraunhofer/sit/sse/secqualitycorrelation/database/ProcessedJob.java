@@ -23,6 +23,26 @@ public class ProcessedJob {
 	@DatabaseField
 	public int numQualFindings;
 
+	/**
+	 * The SHA-256 hash of the app, or <code>null</code> for jobs that have been
+	 * processed before the hash was recorded
+	 */
+	@DatabaseField
+	public String appHash;
+
+	/**
+	 * The number of analyses that failed on the app
+	 */
+	@DatabaseField
+	public int failedAnalyses;
+
+	/**
+	 * The time at which the analysis of the app has finished in milliseconds
+	 * since the epoch, or zero if it is unknown
+	 */
+	@DatabaseField
+	public long finishDate;
+
 	@ForeignCollectionField
 	public Collection<CategoryAndCount> categoriesToCounts;
 
@@ -19,7 +19,7 @@ public class VulnerabilityAndCount {
 	public ProcessedJob job;
 
 	@DatabaseField
-	public String vulnType;
+	public int vulnTypeId;
 
 	@DatabaseField
 	public int count;
@@ -27,9 +27,9 @@ public class VulnerabilityAndCount {
 	public VulnerabilityAndCount() {
 	}
 
-	public VulnerabilityAndCount(ProcessedJob job, String vulnType, Integer count) {
+	public VulnerabilityAndCount(ProcessedJob job, int vulnTypeId, Integer count) {
 		this.job = job;
-		this.vulnType = vulnType;
+		this.vulnTypeId = vulnTypeId;
 		this.count = count;
 	}
 
@@ -16,10 +16,10 @@ public class VulnerabilityCorrelation {
 	public long id;
 
 	@DatabaseField
-	public String vulnType1;
+	public int vulnTypeId1;
 
 	@DatabaseField
-	public String vulnType2;
+	public int vulnTypeId2;
 
 	@DatabaseField
 	public double correlation;
@@ -27,12 +27,40 @@ public class VulnerabilityCorrelation {
 	@DatabaseField
 	public double significance;
 
+	/**
+	 * The partial correlation that controls for the size covariates, or
+	 * <code>null</code> if it has not been computed
+	 */
+	@DatabaseField
+	public Double partialCorrelation;
+
+	/**
+	 * The lower bound of the bootstrap confidence interval of the correlation, or
+	 * <code>null</code> if it has not been computed
+	 */
+	@DatabaseField
+	public Double ciLow;
+
+	/**
+	 * The upper bound of the bootstrap confidence interval of the correlation, or
+	 * <code>null</code> if it has not been computed
+	 */
+	@DatabaseField
+	public Double ciHigh;
+
+	/**
+	 * The cohort of jobs on which the correlation has been computed, or
+	 * <code>null</code> if it has been computed on all jobs
+	 */
+	@DatabaseField
+	public String cohort;
+
 	public VulnerabilityCorrelation() {
 	}
 
-	public VulnerabilityCorrelation(String vulnType1, String vulnType2, double correlation) {
-		this.vulnType1 = vulnType1;
-		this.vulnType2 = vulnType2;
+	public VulnerabilityCorrelation(int vulnTypeId1, int vulnTypeId2, double correlation) {
+		this.vulnTypeId1 = vulnTypeId1;
+		this.vulnTypeId2 = vulnTypeId2;
 		this.correlation = correlation;
 	}
 
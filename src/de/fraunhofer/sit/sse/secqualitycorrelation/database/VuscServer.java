@@ -0,0 +1,32 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.database;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * The association between the URL of a VUSC server and the index that is
+ * placed in the upper bits of the global identifiers of its jobs. The index
+ * must stay the same across runs, otherwise the jobs of the server would get
+ * new identifiers and would be processed again.
+ * 
+ * @author Steven Arzt
+ *
+ */
+@DatabaseTable(tableName = "VuscServers")
+public class VuscServer {
+
+	@DatabaseField(id = true)
+	public String url;
+
+	@DatabaseField(unique = true)
+	public int serverIndex;
+
+	public VuscServer() {
+	}
+
+	public VuscServer(String url, int serverIndex) {
+		this.url = url;
+		this.serverIndex = serverIndex;
+	}
+
+}
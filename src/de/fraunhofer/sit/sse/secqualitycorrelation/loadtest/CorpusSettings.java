@@ -0,0 +1,99 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.loadtest;
+
+/**
+ * The parameters for generating a synthetic corpus of VUSC jobs
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class CorpusSettings {
+
+	/**
+	 * The number of jobs in the corpus
+	 */
+	public int numJobs = 10000;
+
+	/**
+	 * The probability that a job analyzes the same app as an earlier job
+	 */
+	public double duplicateRate = 0.05;
+
+	/**
+	 * The probability that a job has at least one failed analysis
+	 */
+	public double failureRate = 0.1;
+
+	/**
+	 * The probability that no analysis of a job has finished, i.e., that there is
+	 * no data for the job
+	 */
+	public double noDataRate = 0.02;
+
+	/**
+	 * The maximum number of failed analyses per job
+	 */
+	public int maxFailures = 3;
+
+	/**
+	 * The number of finding categories. The first category always is the code
+	 * quality category.
+	 */
+	public int numCategories = 20;
+
+	/**
+	 * The number of vulnerability types per category
+	 */
+	public int typesPerCategory = 10;
+
+	/**
+	 * The average number of findings per job
+	 */
+	public double meanFindings = 50;
+
+	/**
+	 * The Zipf exponent for the distribution of findings over categories and over
+	 * the types within a category. Zero distributes the findings uniformly.
+	 */
+	public double skew = 1;
+
+	/**
+	 * The standard deviation of the logarithmic app size. The app size scales the
+	 * number of findings in all categories and thus correlates all of them.
+	 */
+	public double sizeEffect = 0.5;
+
+	/**
+	 * The number of disjoint category pairs that share an additional latent
+	 * factor and are thus strongly correlated
+	 */
+	public int plantedPairs = 3;
+
+	/**
+	 * The standard deviation of the logarithmic latent factor for the planted
+	 * pairs
+	 */
+	public double plantStrength = 1;
+
+	/**
+	 * The seed for the random number generator
+	 */
+	public long seed = 42;
+
+	/**
+	 * Checks whether these settings are consistent
+	 * 
+	 * @throws IllegalArgumentException If the settings are inconsistent
+	 */
+	public void validate() {
+		if (numJobs < 1)
+			throw new IllegalArgumentException("The corpus must contain at least one job");
+		if (numCategories < 2)
+			throw new IllegalArgumentException("The corpus must contain at least two categories");
+		if (typesPerCategory < 1)
+			throw new IllegalArgumentException("Every category must have at least one type");
+		if (2 * plantedPairs + 1 > numCategories)
+			throw new IllegalArgumentException(
+					String.format("%d categories are not enough for %d planted pairs", numCategories, plantedPairs));
+	}
+
+}
@@ -0,0 +1,241 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.google.common.io.Files;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.catalog.VulnerabilityCatalog;
+
+/**
+ * Generator for a synthetic corpus of VUSC jobs. Jobs are generated on demand
+ * from the seed and their identifier, so that even corpora with millions of
+ * jobs do not need to be held in memory, and every request for the same job
+ * yields the same data.
+ * 
+ * The number of findings per category follows a Poisson distribution whose
+ * mean is scaled by the size of the app. The planted category pairs share an
+ * additional latent factor, so their counts are more strongly correlated than
+ * those of all other pairs.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class SyntheticCorpus {
+
+	/**
+	 * The number of analyses that VUSC runs per job
+	 */
+	public static final int ANALYSES_PER_JOB = 3;
+
+	private static final long BASE_DATE = 1609459200000L;
+
+	private final CorpusSettings settings;
+	private final String[] categories;
+	private final String[] types;
+	private final double[] categoryMeans;
+	private final double[] typeCumulative;
+	private final int[] plantedPartner;
+
+	/**
+	 * Creates a new corpus
+	 * 
+	 * @param settings The parameters of the corpus
+	 */
+	public SyntheticCorpus(CorpusSettings settings) {
+		settings.validate();
+		this.settings = settings;
+
+		categories = new String[settings.numCategories];
+		categories[0] = VulnerabilityCatalog.CODE_QUALITY_CATEGORY;
+		for (int c = 1; c < categories.length; c++)
+			categories[c] = String.format("Security Category %d", c);
+
+		types = new String[settings.numCategories * settings.typesPerCategory];
+		for (int t = 0; t < types.length; t++)
+			types[t] = String.format("TYPE_%d_%d", t / settings.typesPerCategory, t % settings.typesPerCategory);
+
+		// Distribute the expected number of findings over the categories
+		double[] categoryWeights = zipfWeights(settings.numCategories, settings.skew);
+		categoryMeans = new double[settings.numCategories];
+		for (int c = 0; c < categoryMeans.length; c++)
+			categoryMeans[c] = settings.meanFindings * categoryWeights[c];
+
+		// All categories share the same distribution over their types
+		double[] typeWeights = zipfWeights(settings.typesPerCategory, settings.skew);
+		typeCumulative = new double[typeWeights.length];
+		double sum = 0;
+		for (int t = 0; t < typeWeights.length; t++) {
+			sum += typeWeights[t];
+			typeCumulative[t] = sum;
+		}
+
+		// Plant the correlations between categories 1 and 2, 3 and 4, and so on
+		plantedPartner = new int[settings.numCategories];
+		Arrays.fill(plantedPartner, -1);
+		for (int p = 0; p < settings.plantedPairs; p++) {
+			plantedPartner[2 * p + 1] = 2 * p + 2;
+			plantedPartner[2 * p + 2] = 2 * p + 1;
+		}
+	}
+
+	private static double[] zipfWeights(int n, double exponent) {
+		double[] weights = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			weights[i] = 1d / Math.pow(i + 1, exponent);
+			sum += weights[i];
+		}
+		for (int i = 0; i < n; i++)
+			weights[i] /= sum;
+		return weights;
+	}
+
+	/**
+	 * Gets the job with the given identifier
+	 * 
+	 * @param id The job identifier, starting at 1
+	 * @return The job with the given identifier
+	 */
+	public SyntheticJob getJob(long id) {
+		if (id < 1 || id > settings.numJobs)
+			throw new IllegalArgumentException(String.format("There is no job with id %d", id));
+		SplittableRandom rnd = new SplittableRandom(settings.seed * 0x9E3779B97F4A7C15L + id);
+
+		// Re-analyzed apps point to the app of an earlier job. That job may itself be a
+		// duplicate, so chains of duplicates end up with different hashes, which is
+		// fine for load testing.
+		long appId = id;
+		if (id > 1 && rnd.nextDouble() < settings.duplicateRate)
+			appId = id - 1 - rnd.nextLong(Math.min(id - 1, 1000));
+		String sha256Hash = String.format("%064x", appId * 0x9E3779B97F4A7C15L ^ settings.seed);
+
+		// Analysis status
+		if (rnd.nextDouble() < settings.noDataRate)
+			return new SyntheticJob(id, sha256Hash, 0, ANALYSES_PER_JOB, BASE_DATE + id * 1000, new int[0]);
+		int failed = 0;
+		if (rnd.nextDouble() < settings.failureRate)
+			failed = 1 + rnd.nextInt(Math.max(1, Math.min(settings.maxFailures, ANALYSES_PER_JOB - 1)));
+		int finished = ANALYSES_PER_JOB - failed;
+
+		// Latent factors
+		double appSize = Math.exp(settings.sizeEffect * gaussian(rnd));
+		double[] pairFactors = new double[settings.plantedPairs];
+		for (int p = 0; p < pairFactors.length; p++)
+			pairFactors[p] = Math.exp(settings.plantStrength * gaussian(rnd));
+
+		// Findings
+		int[] findingTypes = new int[16];
+		int numFindings = 0;
+		for (int c = 0; c < categories.length; c++) {
+			double mean = categoryMeans[c] * appSize;
+			if (plantedPartner[c] >= 0)
+				mean *= pairFactors[(Math.min(c, plantedPartner[c]) - 1) / 2];
+			int count = poisson(rnd, mean);
+			for (int i = 0; i < count; i++) {
+				if (numFindings == findingTypes.length)
+					findingTypes = Arrays.copyOf(findingTypes, findingTypes.length * 2);
+				findingTypes[numFindings++] = c * settings.typesPerCategory + sampleType(rnd);
+			}
+		}
+		return new SyntheticJob(id, sha256Hash, finished, failed, BASE_DATE + id * 1000,
+				Arrays.copyOf(findingTypes, numFindings));
+	}
+
+	private int sampleType(SplittableRandom rnd) {
+		int idx = Arrays.binarySearch(typeCumulative, rnd.nextDouble());
+		if (idx < 0)
+			idx = -idx - 1;
+		return Math.min(idx, typeCumulative.length - 1);
+	}
+
+	private static double gaussian(SplittableRandom rnd) {
+		// Box-Muller transform
+		return Math.sqrt(-2 * Math.log(1 - rnd.nextDouble())) * Math.cos(2 * Math.PI * rnd.nextDouble());
+	}
+
+	private static int poisson(SplittableRandom rnd, double mean) {
+		if (mean <= 0)
+			return 0;
+		if (mean > 30) {
+			// Normal approximation for large means
+			return Math.max(0, (int) Math.round(mean + Math.sqrt(mean) * gaussian(rnd)));
+		}
+
+		// Knuth's algorithm
+		double limit = Math.exp(-mean);
+		double p = rnd.nextDouble();
+		int k = 0;
+		while (p > limit) {
+			p *= rnd.nextDouble();
+			k++;
+		}
+		return k;
+	}
+
+	/**
+	 * Gets the number of jobs in this corpus
+	 * 
+	 * @return The number of jobs in this corpus
+	 */
+	public int getJobCount() {
+		return settings.numJobs;
+	}
+
+	/**
+	 * Gets the names of all vulnerability types
+	 * 
+	 * @return The names of all vulnerability types
+	 */
+	public String[] getTypes() {
+		return types;
+	}
+
+	/**
+	 * Gets the category of the given vulnerability type
+	 * 
+	 * @param typeIdx The index of the vulnerability type
+	 * @return The name of the category
+	 */
+	public String getCategory(int typeIdx) {
+		return categories[typeIdx / settings.typesPerCategory];
+	}
+
+	/**
+	 * Gets the category pairs that have been planted with a strong correlation
+	 * 
+	 * @return The category pairs with a strong correlation
+	 */
+	public List<Pair<String, String>> getPlantedPairs() {
+		List<Pair<String, String>> pairs = new ArrayList<>(settings.plantedPairs);
+		for (int p = 0; p < settings.plantedPairs; p++)
+			pairs.add(new ImmutablePair<>(categories[2 * p + 1], categories[2 * p + 2]));
+		return pairs;
+	}
+
+	/**
+	 * Writes the planted category pairs to the given file. The file uses the same
+	 * format as the pair files for the plot selection, so it can be used to plot
+	 * exactly these pairs.
+	 * 
+	 * @param file The file to write
+	 * @throws IOException
+	 */
+	public void writePlantedPairs(File file) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("# Planted correlations (seed %d, strength %.2f)\n", settings.seed,
+				settings.plantStrength));
+		for (Pair<String, String> pair : getPlantedPairs())
+			sb.append(pair.getLeft()).append(";").append(pair.getRight()).append("\n");
+		Files.asCharSink(file, Charset.defaultCharset()).write(sb);
+	}
+
+}
@@ -0,0 +1,32 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.loadtest;
+
+/**
+ * A single job in the synthetic corpus
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class SyntheticJob {
+
+	public final long id;
+	public final String sha256Hash;
+	public final int finishedAnalyses;
+	public final int failedAnalyses;
+	public final long finishDate;
+
+	/**
+	 * The index of the vulnerability type for each finding
+	 */
+	public final int[] findingTypes;
+
+	SyntheticJob(long id, String sha256Hash, int finishedAnalyses, int failedAnalyses, long finishDate,
+			int[] findingTypes) {
+		this.id = id;
+		this.sha256Hash = sha256Hash;
+		this.finishedAnalyses = finishedAnalyses;
+		this.failedAnalyses = failedAnalyses;
+		this.finishDate = finishDate;
+		this.findingTypes = findingTypes;
+	}
+
+}
@@ -0,0 +1,334 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.catalog.VulnerabilityCatalog;
+
+/**
+ * Lightweight stand-in for a VUSC server that serves a synthetic corpus. It
+ * implements the endpoints of the jobs and vulnerabilities APIs that the
+ * analysis uses, i.e., the job list, the details of a single job, and the
+ * vulnerability catalog. Only the fields that the analysis reads are
+ * populated. Every response can be delayed to simulate network and server
+ * latency.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class VuscStandInServer {
+
+	private static final Logger logger = LogManager.getLogger(VuscStandInServer.class);
+
+	private static final String OPTION_PORT = "p";
+	private static final String OPTION_THREADS = "x";
+	private static final String OPTION_LATENCY = "l";
+	private static final String OPTION_JITTER = "j";
+
+	private static final String OPTION_JOBS = "n";
+	private static final String OPTION_DUPLICATES = "d";
+	private static final String OPTION_FAILURES = "f";
+	private static final String OPTION_CATEGORIES = "c";
+	private static final String OPTION_TYPES = "t";
+	private static final String OPTION_FINDINGS = "m";
+	private static final String OPTION_SKEW = "k";
+	private static final String OPTION_PLANTED = "r";
+	private static final String OPTION_STRENGTH = "s";
+	private static final String OPTION_SEED = "e";
+	private static final String OPTION_PLANTED_FILE = "o";
+
+	private static final int DEFAULT_PORT = 8080;
+
+	protected static final Options options = new Options();
+
+	static {
+		initializeCommandLineOptions();
+	}
+
+	private final SyntheticCorpus corpus;
+	private final long latencyMillis;
+	private final long jitterMillis;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final AtomicLong requests = new AtomicLong();
+
+	/**
+	 * Initializes the set of available command-line options
+	 */
+	private static void initializeCommandLineOptions() {
+		options.addOption(OPTION_PORT, "port", true, "The port on which to listen");
+		options.addOption(OPTION_THREADS, "threads", true, "The number of threads for serving requests");
+		options.addOption(OPTION_LATENCY, "latency", true, "The minimum latency of every response in ms");
+		options.addOption(OPTION_JITTER, "jitter", true, "The maximum random latency added to every response in ms");
+
+		options.addOption(OPTION_JOBS, "jobs", true, "The number of jobs in the corpus");
+		options.addOption(OPTION_DUPLICATES, "duplicates", true,
+				"The probability that a job re-analyzes an earlier app");
+		options.addOption(OPTION_FAILURES, "failures", true, "The probability that a job has failed analyses");
+		options.addOption(OPTION_CATEGORIES, "categories", true, "The number of finding categories");
+		options.addOption(OPTION_TYPES, "types", true, "The number of vulnerability types per category");
+		options.addOption(OPTION_FINDINGS, "findings", true, "The average number of findings per job");
+		options.addOption(OPTION_SKEW, "skew", true, "The Zipf exponent for categories and types");
+		options.addOption(OPTION_PLANTED, "planted", true, "The number of category pairs with planted correlations");
+		options.addOption(OPTION_STRENGTH, "strength", true, "The strength of the planted correlations");
+		options.addOption(OPTION_SEED, "seed", true, "The seed for the random number generator");
+		options.addOption(OPTION_PLANTED_FILE, "plantedfile", true,
+				"The file to which to write the planted category pairs");
+	}
+
+	/**
+	 * Creates a new stand-in server
+	 * 
+	 * @param corpus        The corpus to serve
+	 * @param port          The port on which to listen
+	 * @param threads       The number of threads for serving requests
+	 * @param latencyMillis The minimum latency of every response
+	 * @param jitterMillis  The maximum random latency that is added to every
+	 *                      response
+	 * @throws IOException
+	 */
+	public VuscStandInServer(SyntheticCorpus corpus, int port, int threads, long latencyMillis, long jitterMillis)
+			throws IOException {
+		this.corpus = corpus;
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	/**
+	 * Starts serving requests
+	 */
+	public void start() {
+		server.start();
+		logger.info(String.format("Serving %d synthetic jobs on port %d", corpus.getJobCount(),
+				server.getAddress().getPort()));
+	}
+
+	/**
+	 * Stops serving requests
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdown();
+		logger.info(String.format("Served %d requests", requests.get()));
+	}
+
+	/**
+	 * Dispatches a request. We only look at the end of the path, so that the
+	 * server works with any base path in the client.
+	 * 
+	 * @param exchange The HTTP exchange
+	 * @throws IOException
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try {
+			delay();
+
+			String[] segments = exchange.getRequestURI().getPath().split("/");
+			String last = segments.length > 0 ? segments[segments.length - 1] : "";
+			String secondLast = segments.length > 1 ? segments[segments.length - 2] : "";
+			if (last.equals("jobs"))
+				writeJson(exchange, out -> writeJobList(out));
+			else if (secondLast.equals("jobs") && last.matches("\\d+")) {
+				long id = Long.parseLong(last);
+				if (id < 1 || id > corpus.getJobCount())
+					sendError(exchange, 404);
+				else
+					writeJson(exchange, out -> writeJob(out, corpus.getJob(id), true));
+			} else if (last.equals("vulnerabilities"))
+				writeJson(exchange, out -> writeVulnerabilities(out));
+			else
+				sendError(exchange, 404);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			sendError(exchange, 503);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void delay() throws InterruptedException {
+		long millis = latencyMillis;
+		if (jitterMillis > 0)
+			millis += ThreadLocalRandom.current().nextLong(jitterMillis + 1);
+		if (millis > 0)
+			Thread.sleep(millis);
+	}
+
+	private interface JsonContent {
+
+		void write(JsonWriter out) throws IOException;
+
+	}
+
+	private static void writeJson(HttpExchange exchange, JsonContent content) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+
+		// Stream the response, the job list can be very large
+		exchange.sendResponseHeaders(200, 0);
+		try (JsonWriter out = new JsonWriter(
+				new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)))) {
+			content.write(out);
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, int code) throws IOException {
+		exchange.sendResponseHeaders(code, -1);
+	}
+
+	private void writeJobList(JsonWriter out) throws IOException {
+		out.beginArray();
+		for (long id = 1; id <= corpus.getJobCount(); id++)
+			writeJob(out, corpus.getJob(id), false);
+		out.endArray();
+	}
+
+	private void writeJob(JsonWriter out, SyntheticJob job, boolean withResults) throws IOException {
+		out.beginObject();
+		out.name("id").value(job.id);
+
+		out.name("metadata").beginObject();
+		out.name("sha256Hash").value(job.sha256Hash);
+		out.endObject();
+
+		out.name("status").beginObject();
+		out.name("finishedAnalyses").value(job.finishedAnalyses);
+		out.name("failedAnalyses").value(job.failedAnalyses);
+		out.name("finishDate").value(job.finishDate);
+		out.endObject();
+
+		if (withResults) {
+			String[] types = corpus.getTypes();
+			out.name("jobResults").beginObject();
+			out.name("vulnerabilityFindings").beginArray();
+			for (int type : job.findingTypes) {
+				out.beginObject();
+				out.name("type").value(types[type]);
+				out.name("category").value(corpus.getCategory(type));
+				out.endObject();
+			}
+			out.endArray();
+			out.endObject();
+		}
+		out.endObject();
+	}
+
+	private void writeVulnerabilities(JsonWriter out) throws IOException {
+		String[] types = corpus.getTypes();
+		out.beginArray();
+		for (int t = 0; t < types.length; t++) {
+			out.beginObject();
+			out.name("id").value(types[t]);
+			out.name("category").beginObject();
+			out.name("humanReadableName").value(corpus.getCategory(t));
+			out.endObject();
+			out.name("platforms").beginArray();
+			out.beginObject();
+			out.name("id").value(VulnerabilityCatalog.PLATFORM_ANDROID);
+			out.endObject();
+			out.endArray();
+			out.endObject();
+		}
+		out.endArray();
+	}
+
+	public static void main(String[] args) {
+		final HelpFormatter formatter = new HelpFormatter();
+		CommandLineParser parser = new DefaultParser();
+		try {
+			CommandLine cmd = parser.parse(options, args);
+
+			CorpusSettings settings = new CorpusSettings();
+			String s = cmd.getOptionValue(OPTION_JOBS);
+			if (s != null && !s.isEmpty())
+				settings.numJobs = Integer.valueOf(s);
+			s = cmd.getOptionValue(OPTION_DUPLICATES);
+			if (s != null && !s.isEmpty())
+				settings.duplicateRate = Double.valueOf(s);
+			s = cmd.getOptionValue(OPTION_FAILURES);
+			if (s != null && !s.isEmpty())
+				settings.failureRate = Double.valueOf(s);
+			s = cmd.getOptionValue(OPTION_CATEGORIES);
+			if (s != null && !s.isEmpty())
+				settings.numCategories = Integer.valueOf(s);
+			s = cmd.getOptionValue(OPTION_TYPES);
+			if (s != null && !s.isEmpty())
+				settings.typesPerCategory = Integer.valueOf(s);
+			s = cmd.getOptionValue(OPTION_FINDINGS);
+			if (s != null && !s.isEmpty())
+				settings.meanFindings = Double.valueOf(s);
+			s = cmd.getOptionValue(OPTION_SKEW);
+			if (s != null && !s.isEmpty())
+				settings.skew = Double.valueOf(s);
+			s = cmd.getOptionValue(OPTION_PLANTED);
+			if (s != null && !s.isEmpty())
+				settings.plantedPairs = Integer.valueOf(s);
+			s = cmd.getOptionValue(OPTION_STRENGTH);
+			if (s != null && !s.isEmpty())
+				settings.plantStrength = Double.valueOf(s);
+			s = cmd.getOptionValue(OPTION_SEED);
+			if (s != null && !s.isEmpty())
+				settings.seed = Long.valueOf(s);
+			SyntheticCorpus corpus = new SyntheticCorpus(settings);
+
+			s = cmd.getOptionValue(OPTION_PLANTED_FILE);
+			if (s != null && !s.isEmpty())
+				corpus.writePlantedPairs(new File(s));
+
+			int port = DEFAULT_PORT;
+			s = cmd.getOptionValue(OPTION_PORT);
+			if (s != null && !s.isEmpty())
+				port = Integer.valueOf(s);
+			int threads = Runtime.getRuntime().availableProcessors();
+			s = cmd.getOptionValue(OPTION_THREADS);
+			if (s != null && !s.isEmpty())
+				threads = Integer.valueOf(s);
+			long latency = 0;
+			s = cmd.getOptionValue(OPTION_LATENCY);
+			if (s != null && !s.isEmpty())
+				latency = Long.valueOf(s);
+			long jitter = 0;
+			s = cmd.getOptionValue(OPTION_JITTER);
+			if (s != null && !s.isEmpty())
+				jitter = Long.valueOf(s);
+
+			VuscStandInServer server = new VuscStandInServer(corpus, port, threads, latency, jitter);
+			Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+			server.start();
+		} catch (ParseException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			formatter.printHelp("java -cp CorrelationAnalysis.jar " + VuscStandInServer.class.getName() + " [OPTIONS]",
+					options);
+		} catch (IOException e) {
+			logger.error("Could not start the VUSC stand-in server", e);
+		}
+	}
+
+}
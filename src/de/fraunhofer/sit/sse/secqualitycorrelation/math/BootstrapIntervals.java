@@ -0,0 +1,288 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Bootstrap confidence intervals for the Spearman correlations between the
+ * columns of a count matrix. Each resample draws as many jobs as the matrix
+ * has, with replacement, and the interval is taken from the percentiles of the
+ * correlations on the resamples.
+ * 
+ * The resamples are drawn in batches, and all pairs are correlated on the same
+ * resamples of a batch. A resample is stored as the rows that were drawn at
+ * least once together with the number of times they were drawn. The distinct
+ * values of each column are determined only once. On a resample, the rank of
+ * every distinct value then follows from counting how often the values were
+ * drawn, so the columns need not be sorted again for every resample. Ties
+ * receive their average rank, as in
+ * {@link org.apache.commons.math3.stat.correlation.SpearmansCorrelation}.
+ * 
+ * Only the correlations of a bounded chunk of pairs are kept at a time. The
+ * resamples are derived from a seeded {@link SplittableRandom}, so every chunk
+ * draws the same resamples again instead of keeping them, and the intervals
+ * depend neither on the number of threads nor on the chunk size. The work is
+ * distributed over the common {@link java.util.concurrent.ForkJoinPool}.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class BootstrapIntervals {
+
+	/**
+	 * The default number of resamples
+	 */
+	public static final int DEFAULT_RESAMPLES = 1000;
+
+	/**
+	 * The default seed for drawing the resamples
+	 */
+	public static final long DEFAULT_SEED = 42;
+
+	/**
+	 * The default probability with which the interval contains the correlation
+	 */
+	public static final double DEFAULT_CONFIDENCE = 0.95;
+
+	private static final int BATCH_SIZE = 64;
+	private static final int MAX_BUFFERED_CORRELATIONS = 1 << 22;
+	private static final double EPSILON = 1e-12;
+
+	private final CountMatrix matrix;
+	private final int numResamples;
+	private final long seed;
+
+	/**
+	 * A resample of the rows of the matrix
+	 */
+	private static class Resample {
+
+		final int[] rows;
+		final int[] weights;
+
+		Resample(int[] rows, int[] weights) {
+			this.rows = rows;
+			this.weights = weights;
+		}
+
+	}
+
+	/**
+	 * The distinct values of a column. The values are stored as indices into the
+	 * sorted list of distinct values.
+	 */
+	private static class RankedColumn {
+
+		final int[] valueIndices;
+		final int numValues;
+
+		RankedColumn(int[] column) {
+			int[] distinct = IntStream.of(column).distinct().sorted().toArray();
+			valueIndices = new int[column.length];
+			for (int r = 0; r < column.length; r++)
+				valueIndices[r] = Arrays.binarySearch(distinct, column[r]);
+			numValues = distinct.length;
+		}
+
+	}
+
+	/**
+	 * Creates a new object for computing bootstrap confidence intervals
+	 * 
+	 * @param matrix       The count matrix
+	 * @param numResamples The number of resamples
+	 * @param seed         The seed for drawing the resamples
+	 */
+	public BootstrapIntervals(CountMatrix matrix, int numResamples, long seed) {
+		if (numResamples < 2)
+			throw new IllegalArgumentException("At least two resamples are required");
+		this.matrix = matrix;
+		this.numResamples = numResamples;
+		this.seed = seed;
+	}
+
+	/**
+	 * Computes the percentile confidence intervals of the correlations of the
+	 * given pairs of columns
+	 * 
+	 * @param ids1       The identifiers of the first columns of the pairs
+	 * @param ids2       The identifiers of the second columns of the pairs
+	 * @param confidence The probability with which the interval shall contain
+	 *                   the correlation, e.g., 0.95
+	 * @return The lower and the upper bound of the interval for each pair, or
+	 *         NaN for both bounds if the correlation is not defined on enough
+	 *         resamples
+	 */
+	public double[][] compute(int[] ids1, int[] ids2, double confidence) {
+		if (ids1.length != ids2.length)
+			throw new IllegalArgumentException("Both lists of columns must have the same length");
+		double[][] intervals = new double[ids1.length][];
+		final int chunkSize = Math.max(1, MAX_BUFFERED_CORRELATIONS / numResamples);
+		for (int chunkStart = 0; chunkStart < ids1.length; chunkStart += chunkSize) {
+			int chunkEnd = Math.min(ids1.length, chunkStart + chunkSize);
+			computeChunk(Arrays.copyOfRange(ids1, chunkStart, chunkEnd), Arrays.copyOfRange(ids2, chunkStart, chunkEnd),
+					confidence, intervals, chunkStart);
+		}
+		return intervals;
+	}
+
+	/**
+	 * Computes the percentile confidence intervals of a chunk of pairs on all
+	 * resamples
+	 * 
+	 * @param ids1       The identifiers of the first columns of the pairs in the
+	 *                   chunk
+	 * @param ids2       The identifiers of the second columns of the pairs in the
+	 *                   chunk
+	 * @param confidence The probability with which the interval shall contain
+	 *                   the correlation
+	 * @param intervals  The target array for the intervals of all pairs
+	 * @param offset     The index of the first pair of the chunk in the target
+	 *                   array
+	 */
+	private void computeChunk(int[] ids1, int[] ids2, double confidence, double[][] intervals, int offset) {
+		final int numRows = matrix.getRowCount();
+		final int numPairs = ids1.length;
+
+		// Determine the distinct values of every column that we need
+		Map<Integer, Integer> columnIndices = new HashMap<>();
+		for (int id : ids1)
+			columnIndices.putIfAbsent(id, columnIndices.size());
+		for (int id : ids2)
+			columnIndices.putIfAbsent(id, columnIndices.size());
+		RankedColumn[] columns = new RankedColumn[columnIndices.size()];
+		columnIndices.entrySet().parallelStream()
+				.forEach(e -> columns[e.getValue()] = new RankedColumn(matrix.getColumnOrZeros(e.getKey())));
+		int[] pairColumns1 = IntStream.of(ids1).map(columnIndices::get).toArray();
+		int[] pairColumns2 = IntStream.of(ids2).map(columnIndices::get).toArray();
+
+		double[][] correlations = new double[numPairs][numResamples];
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int batchStart = 0; batchStart < numResamples; batchStart += BATCH_SIZE) {
+			final int start = batchStart;
+			final int batchSize = Math.min(BATCH_SIZE, numResamples - batchStart);
+
+			// Draw the resamples that all pairs in this batch share
+			SplittableRandom[] randoms = new SplittableRandom[batchSize];
+			for (int b = 0; b < batchSize; b++)
+				randoms[b] = random.split();
+			Resample[] resamples = new Resample[batchSize];
+			IntStream.range(0, batchSize).parallel().forEach(b -> resamples[b] = draw(randoms[b], numRows));
+
+			// Rank every column on every resample
+			double[][][] scaledRanks = new double[columns.length][batchSize][];
+			IntStream.range(0, columns.length * batchSize).parallel().forEach(t -> {
+				int c = t / batchSize;
+				int b = t % batchSize;
+				scaledRanks[c][b] = rank(columns[c], resamples[b], numRows);
+			});
+
+			// Correlate the pairs on the resamples
+			IntStream.range(0, numPairs).parallel().forEach(p -> {
+				RankedColumn column1 = columns[pairColumns1[p]];
+				RankedColumn column2 = columns[pairColumns2[p]];
+				for (int b = 0; b < batchSize; b++) {
+					double[] ranks1 = scaledRanks[pairColumns1[p]][b];
+					double[] ranks2 = scaledRanks[pairColumns2[p]][b];
+					correlations[p][start + b] = ranks1 == null || ranks2 == null ? Double.NaN
+							: correlate(column1, ranks1, column2, ranks2, resamples[b]);
+				}
+			});
+		}
+
+		IntStream.range(0, numPairs).parallel()
+				.forEach(p -> intervals[offset + p] = getPercentileInterval(correlations[p], confidence));
+	}
+
+	/**
+	 * Draws a resample with replacement
+	 * 
+	 * @param random  The random number generator for this resample
+	 * @param numRows The number of rows in the matrix
+	 * @return The resample
+	 */
+	private static Resample draw(SplittableRandom random, int numRows) {
+		int[] counts = new int[numRows];
+		for (int i = 0; i < numRows; i++)
+			counts[random.nextInt(numRows)]++;
+		int[] rows = IntStream.range(0, numRows).filter(r -> counts[r] > 0).toArray();
+		int[] weights = new int[rows.length];
+		for (int i = 0; i < rows.length; i++)
+			weights[i] = counts[rows[i]];
+		return new Resample(rows, weights);
+	}
+
+	/**
+	 * Computes the centered ranks of the distinct values of the given column on
+	 * the given resample, scaled such that the ranks of all drawn jobs have unit
+	 * length
+	 * 
+	 * @param column   The column
+	 * @param resample The resample
+	 * @param numRows  The number of rows in the matrix, which is also the number
+	 *                 of jobs in the resample
+	 * @return The scaled rank of each distinct value, or <code>null</code> if the
+	 *         column is constant on the resample
+	 */
+	private static double[] rank(RankedColumn column, Resample resample, int numRows) {
+		int[] frequencies = new int[column.numValues];
+		for (int i = 0; i < resample.rows.length; i++)
+			frequencies[column.valueIndices[resample.rows[i]]] += resample.weights[i];
+
+		// The average rank of a value is in the middle of its run of ties. The mean
+		// rank of all jobs is known in advance.
+		double[] ranks = new double[column.numValues];
+		double mean = (numRows + 1) / 2.0;
+		double sumOfSquares = 0;
+		long before = 0;
+		for (int v = 0; v < column.numValues; v++) {
+			ranks[v] = before + (frequencies[v] + 1) / 2.0 - mean;
+			sumOfSquares += frequencies[v] * ranks[v] * ranks[v];
+			before += frequencies[v];
+		}
+		if (sumOfSquares < EPSILON)
+			return null;
+		double norm = Math.sqrt(sumOfSquares);
+		for (int v = 0; v < column.numValues; v++)
+			ranks[v] /= norm;
+		return ranks;
+	}
+
+	private static double correlate(RankedColumn column1, double[] ranks1, RankedColumn column2, double[] ranks2,
+			Resample resample) {
+		double sum = 0;
+		for (int i = 0; i < resample.rows.length; i++) {
+			int r = resample.rows[i];
+			sum += resample.weights[i] * ranks1[column1.valueIndices[r]] * ranks2[column2.valueIndices[r]];
+		}
+		return Math.max(-1, Math.min(1, sum));
+	}
+
+	/**
+	 * Gets the percentile interval from the correlations on the resamples
+	 * 
+	 * @param correlations The correlations on the resamples
+	 * @param confidence   The probability with which the interval shall contain
+	 *                     the correlation
+	 * @return The lower and the upper bound of the interval
+	 */
+	private static double[] getPercentileInterval(double[] correlations, double confidence) {
+		// Resamples on which a column is constant have no correlation
+		double[] defined = Arrays.stream(correlations).filter(c -> !Double.isNaN(c)).sorted().toArray();
+		if (defined.length < 2)
+			return new double[] { Double.NaN, Double.NaN };
+		double alpha = (1 - confidence) / 2;
+		return new double[] { getQuantile(defined, alpha), getQuantile(defined, 1 - alpha) };
+	}
+
+	private static double getQuantile(double[] sorted, double p) {
+		double pos = p * (sorted.length - 1);
+		int lower = (int) Math.floor(pos);
+		int upper = Math.min(sorted.length - 1, lower + 1);
+		return sorted[lower] + (pos - lower) * (sorted[upper] - sorted[lower]);
+	}
+
+}
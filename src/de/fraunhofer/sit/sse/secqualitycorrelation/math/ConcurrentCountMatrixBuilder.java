@@ -0,0 +1,156 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builder for count matrices that multiple threads can fill concurrently. The
+ * cells are plain <code>int</code> arrays that are updated with atomic
+ * additions, so that threads that add counts to the same column do not block
+ * each other. Only the creation of a new column takes a lock.
+ * 
+ * In contrast to {@link CountMatrix.Builder}, the number of rows must be known
+ * in advance. Rows are keyed by their job identifier: adding the same job
+ * twice returns the same row. Builders that are created as aligned with
+ * another builder share its rows, so that the resulting matrices have the same
+ * rows in the same order, even if the rows are added in a different order by
+ * different threads.
+ * 
+ * If all reserved rows are used, the columns are handed to the matrix without
+ * copying.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class ConcurrentCountMatrixBuilder implements ICountMatrixBuilder {
+
+	private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(int[].class);
+	private static final VarHandle COLUMNS = MethodHandles.arrayElementVarHandle(int[][].class);
+
+	/**
+	 * The rows shared by a group of aligned builders
+	 */
+	private static class Rows {
+
+		private final long[] keys;
+		private final AtomicInteger count = new AtomicInteger();
+		private final Map<Long, Integer> index;
+
+		private Rows(int capacity) {
+			this.keys = new long[capacity];
+			this.index = new ConcurrentHashMap<>(Math.max(16, capacity * 2));
+		}
+
+		private int add(long key) {
+			return index.computeIfAbsent(key, k -> {
+				int row = count.getAndIncrement();
+				if (row >= keys.length)
+					throw new IllegalStateException(String.format("More than %d rows added", keys.length));
+				keys[row] = k;
+				return row;
+			});
+		}
+
+	}
+
+	private final Rows rows;
+	private volatile int[][] columns;
+
+	/**
+	 * Creates a new builder
+	 * 
+	 * @param capacity        The maximum number of rows
+	 * @param expectedColumns The expected maximum column identifier plus one
+	 */
+	public ConcurrentCountMatrixBuilder(int capacity, int expectedColumns) {
+		this(new Rows(capacity), expectedColumns);
+	}
+
+	/**
+	 * Creates a new builder that shares its rows with the given builder
+	 * 
+	 * @param aligned         The builder whose rows to share
+	 * @param expectedColumns The expected maximum column identifier plus one
+	 */
+	public ConcurrentCountMatrixBuilder(ConcurrentCountMatrixBuilder aligned, int expectedColumns) {
+		this(aligned.rows, expectedColumns);
+	}
+
+	private ConcurrentCountMatrixBuilder(Rows rows, int expectedColumns) {
+		this.rows = rows;
+		this.columns = new int[Math.max(1, expectedColumns)][];
+	}
+
+	@Override
+	public int addRow(long key) {
+		return rows.add(key);
+	}
+
+	@Override
+	public void add(int row, int id, int count) {
+		if (row < 0 || row >= rows.keys.length)
+			throw new IndexOutOfBoundsException("Invalid row index: " + row);
+		CELLS.getAndAdd(getOrCreateColumn(id), row, count);
+	}
+
+	/**
+	 * Gets the array for the given column, creating it if necessary
+	 * 
+	 * @param id The column identifier
+	 * @return The array for the given column
+	 */
+	private int[] getOrCreateColumn(int id) {
+		int[][] cols = columns;
+		if (id < cols.length) {
+			int[] col = (int[]) COLUMNS.getAcquire(cols, id);
+			if (col != null)
+				return col;
+		}
+		synchronized (this) {
+			cols = columns;
+			if (id >= cols.length) {
+				cols = Arrays.copyOf(cols, Math.max(id + 1, cols.length * 2));
+				columns = cols;
+			}
+			int[] col = cols[id];
+			if (col == null) {
+				col = new int[rows.keys.length];
+				COLUMNS.setRelease(cols, id, col);
+			}
+			return col;
+		}
+	}
+
+	/**
+	 * Gets the number of rows added so far
+	 * 
+	 * @return The number of rows added so far
+	 */
+	public int getRowCount() {
+		return Math.min(rows.count.get(), rows.keys.length);
+	}
+
+	/**
+	 * Creates the count matrix from the data added so far. All threads that add
+	 * data must have finished before.
+	 * 
+	 * @return The new count matrix
+	 */
+	@Override
+	public synchronized CountMatrix build() {
+		int rowCount = getRowCount();
+		int[][] cols = columns;
+		int[][] finalColumns = new int[cols.length][];
+		for (int i = 0; i < cols.length; i++) {
+			if (cols[i] != null)
+				finalColumns[i] = cols[i].length == rowCount ? cols[i] : Arrays.copyOf(cols[i], rowCount);
+		}
+		long[] keys = rows.keys.length == rowCount ? rows.keys : Arrays.copyOf(rows.keys, rowCount);
+		return new CountMatrix(keys, finalColumns);
+	}
+
+}
@@ -23,23 +23,15 @@ public class CorrelationAnalysis {
 		final int n = x.length;
 
 		// Calculate averages
-		double xs = 0;
-		double ys = 0;
-		for (int i = 0; i < x.length; i++) {
-			xs += x[i];
-			ys += y[i];
-		}
+		IKernels kernels = Kernels.get();
+		double xs = kernels.sum(x);
+		double ys = kernels.sum(y);
 		double xm = xs / n;
 		double ym = ys / n;
 
 		// Calculate slope
-		double k = 0;
-		double l = 0;
-		for (int i = 0; i < x.length; i++) {
-			k += (x[i] - xm) * (y[i] - ym);
-			double temp = (x[i] - xm);
-			l += temp * temp;
-		}
+		double k = kernels.sumOfCrossDeviations(x, xm, y, ym);
+		double l = kernels.sumOfSquaredDeviations(x, xm);
 		double a = k / l;
 		double b = ym - a * xm;
 
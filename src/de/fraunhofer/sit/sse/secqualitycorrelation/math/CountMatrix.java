@@ -0,0 +1,226 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.Arrays;
+
+/**
+ * Dense matrix of finding counts. Each row corresponds to a job and each column
+ * to a category or vulnerability type, identified by its dense integer
+ * identifier. The counts are stored column by column, so that the values of a
+ * column can be handed to the correlation analysis without copying.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class CountMatrix {
+
+	private final long[] rowKeys;
+	private final int[][] columns;
+
+	/**
+	 * Creates a new count matrix
+	 * 
+	 * @param rowKeys The job identifiers of the rows
+	 * @param columns The counts per column identifier. Columns without data are
+	 *                <code>null</code>. All other columns must have one entry per
+	 *                row.
+	 */
+	public CountMatrix(long[] rowKeys, int[][] columns) {
+		for (int[] col : columns) {
+			if (col != null && col.length != rowKeys.length)
+				throw new IllegalArgumentException("All columns must have one value per row");
+		}
+		this.rowKeys = rowKeys;
+		this.columns = columns;
+	}
+
+	/**
+	 * Gets the number of rows, i.e., jobs, in this matrix
+	 * 
+	 * @return The number of rows in this matrix
+	 */
+	public int getRowCount() {
+		return rowKeys.length;
+	}
+
+	/**
+	 * Gets the job identifier of the given row
+	 * 
+	 * @param row The row index
+	 * @return The job identifier of the given row
+	 */
+	public long getRowKey(int row) {
+		return rowKeys[row];
+	}
+
+	/**
+	 * Gets the job identifiers of all rows
+	 * 
+	 * @return The job identifiers of all rows
+	 */
+	public long[] getRowKeys() {
+		return rowKeys;
+	}
+
+	/**
+	 * Gets the counts in the given column. The returned array is shared with this
+	 * matrix and must not be modified.
+	 * 
+	 * @param id The column identifier
+	 * @return The counts in the given column, or <code>null</code> if there is no
+	 *         data for the given column
+	 */
+	public int[] getColumn(int id) {
+		if (id < 0 || id >= columns.length)
+			return null;
+		return columns[id];
+	}
+
+	/**
+	 * Gets the counts in the given column, returning zeros if there is no data for
+	 * the given column
+	 * 
+	 * @param id The column identifier
+	 * @return The counts in the given column
+	 */
+	public int[] getColumnOrZeros(int id) {
+		int[] col = getColumn(id);
+		return col == null ? new int[rowKeys.length] : col;
+	}
+
+	/**
+	 * Checks whether this matrix contains data for the given column
+	 * 
+	 * @param id The column identifier
+	 * @return True if this matrix contains data for the given column, false
+	 *         otherwise
+	 */
+	public boolean hasColumn(int id) {
+		return getColumn(id) != null;
+	}
+
+	/**
+	 * Gets the identifiers of all columns for which this matrix contains data in
+	 * ascending order
+	 * 
+	 * @return The identifiers of all columns with data
+	 */
+	public int[] getColumnIds() {
+		int[] ids = new int[columns.length];
+		int numIds = 0;
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] != null)
+				ids[numIds++] = i;
+		}
+		return Arrays.copyOf(ids, numIds);
+	}
+
+	/**
+	 * Gets the count in the given cell
+	 * 
+	 * @param row The row index
+	 * @param id  The column identifier
+	 * @return The count in the given cell
+	 */
+	public int get(int row, int id) {
+		int[] col = getColumn(id);
+		return col == null ? 0 : col[row];
+	}
+
+	/**
+	 * Builder for count matrices. Rows are appended one at a time. Multiple
+	 * builders that receive the same sequence of rows produce matrices whose rows
+	 * are aligned.
+	 * 
+	 * @author Steven Arzt
+	 *
+	 */
+	public static class Builder implements ICountMatrixBuilder {
+
+		private long[] rowKeys;
+		private int[][] columns;
+		private int rowCount = 0;
+
+		public Builder() {
+			this(1024, 64);
+		}
+
+		/**
+		 * Creates a new builder
+		 * 
+		 * @param expectedRows    The expected number of rows
+		 * @param expectedColumns The expected maximum column identifier plus one
+		 */
+		public Builder(int expectedRows, int expectedColumns) {
+			this.rowKeys = new long[Math.max(16, expectedRows)];
+			this.columns = new int[Math.max(1, expectedColumns)][];
+		}
+
+		/**
+		 * Appends a new row to the matrix
+		 * 
+		 * @param key The job identifier of the new row
+		 * @return The index of the new row
+		 */
+		@Override
+		public int addRow(long key) {
+			if (rowCount == rowKeys.length) {
+				int newCapacity = rowKeys.length * 2;
+				rowKeys = Arrays.copyOf(rowKeys, newCapacity);
+				for (int i = 0; i < columns.length; i++) {
+					if (columns[i] != null)
+						columns[i] = Arrays.copyOf(columns[i], newCapacity);
+				}
+			}
+			rowKeys[rowCount] = key;
+			return rowCount++;
+		}
+
+		/**
+		 * Adds the given count to the given cell
+		 * 
+		 * @param row   The row index
+		 * @param id    The column identifier
+		 * @param count The count to add
+		 */
+		@Override
+		public void add(int row, int id, int count) {
+			if (row < 0 || row >= rowCount)
+				throw new IndexOutOfBoundsException("Invalid row index: " + row);
+			if (id >= columns.length)
+				columns = Arrays.copyOf(columns, Math.max(id + 1, columns.length * 2));
+			int[] col = columns[id];
+			if (col == null) {
+				col = new int[rowKeys.length];
+				columns[id] = col;
+			}
+			col[row] += count;
+		}
+
+		/**
+		 * Gets the number of rows added so far
+		 * 
+		 * @return The number of rows added so far
+		 */
+		public int getRowCount() {
+			return rowCount;
+		}
+
+		/**
+		 * Creates the count matrix from the data added so far
+		 * 
+		 * @return The new count matrix
+		 */
+		@Override
+		public CountMatrix build() {
+			int[][] finalColumns = new int[columns.length][];
+			for (int i = 0; i < columns.length; i++) {
+				if (columns[i] != null)
+					finalColumns[i] = columns[i].length == rowCount ? columns[i]
+							: Arrays.copyOf(columns[i], rowCount);
+			}
+			return new CountMatrix(Arrays.copyOf(rowKeys, rowCount), finalColumns);
+		}
+
+	}
+
+}
@@ -0,0 +1,135 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.Arrays;
+
+/**
+ * Ranks integer columns by counting instead of sorting. The distinct values of
+ * the given columns are determined once, and every value of a column is
+ * replaced by the index of the value among the distinct values. A column that
+ * is composed of these indices, e.g., after exchanging values between two
+ * columns in a permutation test, is then ranked by counting how often every
+ * distinct value occurs. Ties receive their average rank, as in
+ * {@link org.apache.commons.math3.stat.correlation.SpearmansCorrelation}.
+ * 
+ * Counts have few distinct values, so this is much cheaper than sorting every
+ * column again.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class CountingRanks {
+
+	private static final int MAX_DENSE_RANGE = 1 << 20;
+	private static final double EPSILON = 1e-12;
+
+	private final int numValues;
+	private final int offset;
+	private final int[] denseIndices;
+	private final int[] sortedValues;
+
+	/**
+	 * Determines the distinct values of the given columns
+	 * 
+	 * @param columns The columns
+	 */
+	public CountingRanks(int[]... columns) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int[] column : columns) {
+			for (int v : column) {
+				min = Math.min(min, v);
+				max = Math.max(max, v);
+			}
+		}
+		offset = min;
+		if (min > max) {
+			numValues = 0;
+			denseIndices = new int[0];
+			sortedValues = null;
+		} else if ((long) max - min < MAX_DENSE_RANGE) {
+			// Small values can be looked up directly
+			denseIndices = new int[max - min + 1];
+			for (int[] column : columns)
+				for (int v : column)
+					denseIndices[v - min] = 1;
+			int count = 0;
+			for (int i = 0; i < denseIndices.length; i++)
+				denseIndices[i] = denseIndices[i] == 0 ? -1 : count++;
+			numValues = count;
+			sortedValues = null;
+		} else {
+			int total = 0;
+			for (int[] column : columns)
+				total += column.length;
+			int[] all = new int[total];
+			int pos = 0;
+			for (int[] column : columns) {
+				System.arraycopy(column, 0, all, pos, column.length);
+				pos += column.length;
+			}
+			sortedValues = Arrays.stream(all).sorted().distinct().toArray();
+			numValues = sortedValues.length;
+			denseIndices = null;
+		}
+	}
+
+	/**
+	 * Replaces the values of the given column by their indices among the
+	 * distinct values
+	 * 
+	 * @param column The column, whose values must be part of the columns with
+	 *               which this object has been created
+	 * @return The indices of the values
+	 */
+	public int[] indexOf(int[] column) {
+		int[] indices = new int[column.length];
+		for (int i = 0; i < column.length; i++)
+			indices[i] = denseIndices != null ? denseIndices[column[i] - offset]
+					: Arrays.binarySearch(sortedValues, column[i]);
+		return indices;
+	}
+
+	/**
+	 * Computes the centered ranks of the given column, scaled to unit length
+	 * 
+	 * @param indices The indices of the values of the column
+	 * @param target  Receives the scaled rank of every value of the column
+	 * @return True if the ranks have been computed, false if the column is
+	 *         constant
+	 */
+	public boolean scaledRanks(int[] indices, double[] target) {
+		int[] frequencies = new int[numValues];
+		for (int idx : indices)
+			frequencies[idx]++;
+
+		// The average rank of a value is in the middle of its run of ties
+		double[] ranks = new double[numValues];
+		double mean = (indices.length + 1) / 2.0;
+		double sumOfSquares = 0;
+		long before = 0;
+		for (int v = 0; v < numValues; v++) {
+			ranks[v] = before + (frequencies[v] + 1) / 2.0 - mean;
+			sumOfSquares += frequencies[v] * ranks[v] * ranks[v];
+			before += frequencies[v];
+		}
+		if (sumOfSquares < EPSILON)
+			return false;
+		double norm = Math.sqrt(sumOfSquares);
+		for (int i = 0; i < indices.length; i++)
+			target[i] = ranks[indices[i]] / norm;
+		return true;
+	}
+
+	/**
+	 * Computes the centered ranks of the given column, scaled to unit length
+	 * 
+	 * @param column The column
+	 * @return The scaled ranks, or <code>null</code> if the column is constant
+	 */
+	public static double[] scaledRanks(int[] column) {
+		CountingRanks ranks = new CountingRanks(column);
+		double[] target = new double[column.length];
+		return ranks.scaledRanks(ranks.indexOf(column), target) ? target : null;
+	}
+
+}
@@ -0,0 +1,182 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.Arrays;
+
+import org.apache.commons.math3.stat.ranking.NaturalRanking;
+
+/**
+ * Spearman correlations between the columns of a count matrix that are
+ * computed separately on disjoint groups of rows, e.g., on the jobs of each scan
+ * month. Every column is ranked once per group when this object is created, and
+ * the ranks are centered and scaled to unit length. Afterwards, the correlation
+ * of a pair within a group is a single dot product, so the columns need not be
+ * ranked again for every pair and group. Ties receive their average rank, as in
+ * {@link org.apache.commons.math3.stat.correlation.SpearmansCorrelation}.
+ * 
+ * Two objects that have been created with the same groups on matrices with
+ * aligned rows can also correlate their columns with each other, e.g., the
+ * vulnerability types with the categories.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class GroupedSpearman {
+
+	private static final double EPSILON = 1e-12;
+
+	private final int[][] groupRows;
+	private final double[][][] scaledRanks;
+
+	/**
+	 * Ranks all columns of the given matrix within the given groups. The columns
+	 * are ranked in parallel.
+	 * 
+	 * @param matrix    The count matrix
+	 * @param groupRows The rows of each group
+	 */
+	public GroupedSpearman(CountMatrix matrix, int[][] groupRows) {
+		this.groupRows = groupRows;
+		int[] ids = matrix.getColumnIds();
+		int maxId = ids.length == 0 ? 0 : ids[ids.length - 1] + 1;
+		scaledRanks = new double[groupRows.length][maxId][];
+		Arrays.stream(ids).parallel().forEach(id -> {
+			NaturalRanking ranking = new NaturalRanking();
+			int[] col = matrix.getColumn(id);
+			for (int g = 0; g < groupRows.length; g++) {
+				int[] rows = groupRows[g];
+				if (rows.length < 2)
+					continue;
+				double[] values = new double[rows.length];
+				for (int i = 0; i < rows.length; i++)
+					values[i] = col[rows[i]];
+				scaledRanks[g][id] = scale(ranking.rank(values));
+			}
+		});
+	}
+
+	/**
+	 * Centers the given ranks and scales them to unit length
+	 * 
+	 * @param ranks The ranks, which are modified in place unless they are all the
+	 *              same
+	 * @return The scaled ranks, or <code>null</code> if all ranks are the same
+	 */
+	private static double[] scale(double[] ranks) {
+		IKernels kernels = Kernels.get();
+		double mean = kernels.sum(ranks) / ranks.length;
+		double sumOfSquares = kernels.sumOfSquaredDeviations(ranks, mean);
+		if (sumOfSquares < EPSILON)
+			return null;
+		kernels.shiftAndScale(ranks, -mean, 1 / Math.sqrt(sumOfSquares));
+		return ranks;
+	}
+
+	/**
+	 * Checks whether the given column varies within the given group. The
+	 * correlation is only defined for columns that do.
+	 * 
+	 * @param group The index of the group
+	 * @param id    The column identifier
+	 * @return True if the column has at least two different values in the group,
+	 *         false otherwise
+	 */
+	public boolean varies(int group, int id) {
+		return id >= 0 && id < scaledRanks[group].length && scaledRanks[group][id] != null;
+	}
+
+	/**
+	 * Gets the Spearman correlation between the given columns within the given
+	 * group
+	 * 
+	 * @param group The index of the group
+	 * @param id1   The identifier of the first column
+	 * @param id2   The identifier of the second column
+	 * @return The correlation, or NaN if one of the columns does not vary within
+	 *         the group
+	 */
+	public double correlation(int group, int id1, int id2) {
+		return correlation(group, id1, this, id2);
+	}
+
+	/**
+	 * Gets the Spearman correlation between a column of this object and a column
+	 * of the given object within the given group. Both objects must have been
+	 * created with the same groups on matrices with aligned rows.
+	 * 
+	 * @param group The index of the group
+	 * @param id1   The identifier of the column in this object
+	 * @param other The object with the second column
+	 * @param id2   The identifier of the column in the other object
+	 * @return The correlation, or NaN if one of the columns does not vary within
+	 *         the group
+	 */
+	public double correlation(int group, int id1, GroupedSpearman other, int id2) {
+		if (!varies(group, id1) || !other.varies(group, id2))
+			return Double.NaN;
+		double[] ranks1 = scaledRanks[group][id1];
+		double[] ranks2 = other.scaledRanks[group][id2];
+		if (ranks1.length != ranks2.length)
+			throw new IllegalArgumentException("The groups of both objects must be the same");
+		double sum = Kernels.get().dot(ranks1, ranks2);
+
+		// Compensate for rounding errors
+		return Math.max(-1, Math.min(1, sum));
+	}
+
+	/**
+	 * Gets the centered ranks of the given column within the given group, scaled
+	 * to unit length. The returned array is shared with this object and must not
+	 * be modified.
+	 * 
+	 * @param group The index of the group
+	 * @param id    The column identifier
+	 * @return The scaled ranks, or <code>null</code> if the column does not vary
+	 *         within the group
+	 */
+	double[] getScaledRanks(int group, int id) {
+		return varies(group, id) ? scaledRanks[group][id] : null;
+	}
+
+	/**
+	 * Reorders the rows of the given group in place, such that the ranks of each
+	 * column and the rows of the group follow the given order. The correlations
+	 * do not change.
+	 * 
+	 * @param group The index of the group
+	 * @param order The new order, where <code>order[i]</code> is the old position
+	 *              of the row at position <code>i</code>
+	 */
+	void reorderRows(int group, int[] order) {
+		int[] rows = groupRows[group];
+		if (order.length != rows.length)
+			throw new IllegalArgumentException("The order must cover all rows of the group");
+		Arrays.stream(scaledRanks[group]).parallel().filter(ranks -> ranks != null).forEach(ranks -> {
+			double[] original = ranks.clone();
+			for (int i = 0; i < order.length; i++)
+				ranks[i] = original[order[i]];
+		});
+		int[] originalRows = rows.clone();
+		for (int i = 0; i < order.length; i++)
+			rows[i] = originalRows[order[i]];
+	}
+
+	/**
+	 * Gets the number of groups
+	 * 
+	 * @return The number of groups
+	 */
+	public int getGroupCount() {
+		return groupRows.length;
+	}
+
+	/**
+	 * Gets the rows of the given group
+	 * 
+	 * @param group The index of the group
+	 * @return The rows of the group
+	 */
+	public int[] getRows(int group) {
+		return groupRows[group];
+	}
+
+}
@@ -0,0 +1,35 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+/**
+ * Common interface for all builders of count matrices
+ * 
+ * @author Steven Arzt
+ *
+ */
+public interface ICountMatrixBuilder {
+
+	/**
+	 * Appends a new row to the matrix
+	 * 
+	 * @param key The job identifier of the new row
+	 * @return The index of the new row
+	 */
+	public int addRow(long key);
+
+	/**
+	 * Adds the given count to the given cell
+	 * 
+	 * @param row   The row index
+	 * @param id    The column identifier
+	 * @param count The count to add
+	 */
+	public void add(int row, int id, int count);
+
+	/**
+	 * Creates the count matrix from the data added so far
+	 * 
+	 * @return The new count matrix
+	 */
+	public CountMatrix build();
+
+}
@@ -0,0 +1,93 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+/**
+ * The loops over whole columns that dominate the correlation computation. The
+ * implementations differ only in how they run the loops, so the results may
+ * differ in the last bits due to a different order of the additions.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public interface IKernels {
+
+	/**
+	 * Gets the name of this implementation for log messages
+	 * 
+	 * @return The name of this implementation
+	 */
+	public String getName();
+
+	/**
+	 * Computes the sum of the given values
+	 * 
+	 * @param a The values
+	 * @return The sum of all values
+	 */
+	public double sum(double[] a);
+
+	/**
+	 * Computes the dot product of the given vectors
+	 * 
+	 * @param a The first vector
+	 * @param b The second vector, which must be at least as long as the first one
+	 * @return The dot product
+	 */
+	public double dot(double[] a, double[] b);
+
+	/**
+	 * Computes the dot product of the given range of the given vectors
+	 * 
+	 * @param a    The first vector
+	 * @param b    The second vector
+	 * @param from The first index, inclusive
+	 * @param to   The last index, exclusive
+	 * @return The dot product of the range
+	 */
+	public double dot(double[] a, double[] b, int from, int to);
+
+	/**
+	 * Computes the sum of the squared deviations of the given values from the
+	 * given mean
+	 * 
+	 * @param a    The values
+	 * @param mean The mean of the values
+	 * @return The sum of the squared deviations
+	 */
+	public double sumOfSquaredDeviations(double[] a, double mean);
+
+	/**
+	 * Computes the sum of the products of the deviations of the given values from
+	 * their means
+	 * 
+	 * @param a     The first values
+	 * @param meanA The mean of the first values
+	 * @param b     The second values, which must be at least as long as the first
+	 *              ones
+	 * @param meanB The mean of the second values
+	 * @return The sum of the products of the deviations
+	 */
+	public double sumOfCrossDeviations(double[] a, double meanA, double[] b, double meanB);
+
+	/**
+	 * Adds the given shift to all values and multiplies the result with the given
+	 * factor
+	 * 
+	 * @param a      The values, which are modified in place
+	 * @param shift  The value to add
+	 * @param factor The value with which to multiply
+	 */
+	public void shiftAndScale(double[] a, double shift, double factor);
+
+	/**
+	 * Exchanges the values of two vectors at the positions whose bits are set.
+	 * Bit i is bit (i % 64) of word (i / 64) of the mask.
+	 * 
+	 * @param a    The first vector
+	 * @param b    The second vector
+	 * @param mask The positions at which to exchange the values
+	 * @param outA Receives the first vector after the exchange
+	 * @param outB Receives the second vector after the exchange
+	 */
+	public void swapWhere(int[] a, int[] b, long[] mask, int[] outA, int[] outB);
+
+}
@@ -0,0 +1,69 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+/**
+ * Selects the kernels for the loops over whole columns. The kernels that use
+ * the Vector API of the JDK are only part of the artifact if it was built with
+ * the <i>vector</i> profile, and they only work if the JVM was started with
+ * <i>--add-modules jdk.incubator.vector</i>. Otherwise, we fall back to the
+ * scalar kernels. The scalar kernels can also be enforced by setting the
+ * system property {@link #PROPERTY_KERNELS} to <i>scalar</i>.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class Kernels {
+
+	/**
+	 * The system property for choosing the kernels
+	 */
+	public static final String PROPERTY_KERNELS = "secqualitycorrelation.kernels";
+
+	private static final String VECTOR_KERNELS_CLASS = "de.fraunhofer.sit.sse.secqualitycorrelation.math.VectorKernels";
+
+	private static final IKernels SCALAR = new ScalarKernels();
+	private static final IKernels VECTOR = loadVectorKernels();
+	private static final IKernels SELECTED = "scalar".equals(System.getProperty(PROPERTY_KERNELS)) || VECTOR == null
+			? SCALAR
+			: VECTOR;
+
+	private Kernels() {
+	}
+
+	private static IKernels loadVectorKernels() {
+		try {
+			return (IKernels) Class.forName(VECTOR_KERNELS_CLASS).getConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// The class is not part of this build, or the incubator module is missing
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the kernels that shall be used for the computation
+	 * 
+	 * @return The vector kernels if they are available and not disabled, the
+	 *         scalar kernels otherwise
+	 */
+	public static IKernels get() {
+		return SELECTED;
+	}
+
+	/**
+	 * Gets the kernels that process one value after the other
+	 * 
+	 * @return The scalar kernels
+	 */
+	public static IKernels scalar() {
+		return SCALAR;
+	}
+
+	/**
+	 * Gets the kernels that use the Vector API of the JDK
+	 * 
+	 * @return The vector kernels, or <code>null</code> if they are not available
+	 */
+	public static IKernels vector() {
+		return VECTOR;
+	}
+
+}
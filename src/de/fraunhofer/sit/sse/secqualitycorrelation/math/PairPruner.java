@@ -0,0 +1,176 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which pairs of columns of a count matrix are not worth correlating.
+ * Columns that have a non-zero count in only a few jobs, or that have the same
+ * count in all jobs, are pruned entirely, because their correlations are
+ * meaningless or undefined. Pairs whose columns are both non-zero in too few
+ * jobs are pruned as well. To check the latter quickly, the jobs in which a
+ * column is non-zero are kept as a bitmap, and the bitmaps of the two columns
+ * are intersected.
+ * 
+ * This class counts the pruned pairs per reason. It may be used by multiple
+ * threads concurrently.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class PairPruner {
+
+	public static final int DEFAULT_MIN_SUPPORT = 1;
+	public static final int DEFAULT_MIN_CO_OCCURRENCE = 0;
+
+	private static final byte COLUMN_OK = 0;
+	private static final byte COLUMN_LOW_SUPPORT = 1;
+	private static final byte COLUMN_CONSTANT = 2;
+
+	private final byte[] columnStates;
+	private final long[][] nonZeroRows;
+	private final int minCoOccurrence;
+
+	private final AtomicLong prunedLowSupport = new AtomicLong();
+	private final AtomicLong prunedConstant = new AtomicLong();
+	private final AtomicLong prunedLowCoOccurrence = new AtomicLong();
+
+	/**
+	 * Creates a new pruner for the columns of the given matrix
+	 * 
+	 * @param matrix          The count matrix
+	 * @param minSupport      The minimum number of jobs in which a column must be
+	 *                        non-zero
+	 * @param minCoOccurrence The minimum number of jobs in which both columns of a
+	 *                        pair must be non-zero
+	 */
+	public PairPruner(CountMatrix matrix, int minSupport, int minCoOccurrence) {
+		this.minCoOccurrence = minCoOccurrence;
+		final int numRows = matrix.getRowCount();
+		int[] ids = matrix.getColumnIds();
+		int maxId = ids.length == 0 ? 0 : ids[ids.length - 1] + 1;
+		columnStates = new byte[maxId];
+		nonZeroRows = new long[maxId][];
+		for (int id : ids) {
+			int[] col = matrix.getColumn(id);
+			long[] bits = new long[(numRows + 63) >>> 6];
+			int support = 0;
+			boolean constant = true;
+			for (int r = 0; r < numRows; r++) {
+				if (col[r] != 0) {
+					bits[r >>> 6] |= 1L << r;
+					support++;
+				}
+				if (col[r] != col[0])
+					constant = false;
+			}
+			if (support < minSupport)
+				columnStates[id] = COLUMN_LOW_SUPPORT;
+			else if (constant)
+				columnStates[id] = COLUMN_CONSTANT;
+			nonZeroRows[id] = bits;
+		}
+	}
+
+	/**
+	 * Checks whether the given pair shall not be correlated, and counts the pair
+	 * if it is pruned
+	 * 
+	 * @param id1 The identifier of the first column
+	 * @param id2 The identifier of the second column
+	 * @return True if the pair shall be skipped, false if it shall be correlated
+	 */
+	public boolean isPruned(int id1, int id2) {
+		return isPruned(id1, this, id2);
+	}
+
+	/**
+	 * Checks whether the pair of a column of this pruner's matrix and a column of
+	 * the given pruner's matrix shall not be correlated, and counts the pair in
+	 * this pruner if it is pruned. The rows of both matrices must be aligned.
+	 * 
+	 * @param id1   The identifier of the column in this pruner's matrix
+	 * @param other The pruner for the matrix of the second column
+	 * @param id2   The identifier of the column in the other pruner's matrix
+	 * @return True if the pair shall be skipped, false if it shall be correlated
+	 */
+	public boolean isPruned(int id1, PairPruner other, int id2) {
+		byte state1 = getColumnState(id1);
+		byte state2 = other.getColumnState(id2);
+		if (state1 == COLUMN_LOW_SUPPORT || state2 == COLUMN_LOW_SUPPORT) {
+			prunedLowSupport.incrementAndGet();
+			return true;
+		}
+		if (state1 == COLUMN_CONSTANT || state2 == COLUMN_CONSTANT) {
+			prunedConstant.incrementAndGet();
+			return true;
+		}
+		if (minCoOccurrence > 0 && getCoOccurrence(nonZeroRows[id1], other.nonZeroRows[id2]) < minCoOccurrence) {
+			prunedLowCoOccurrence.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	private byte getColumnState(int id) {
+		// Columns without data have no non-zero counts at all
+		if (id < 0 || id >= nonZeroRows.length || nonZeroRows[id] == null)
+			return COLUMN_LOW_SUPPORT;
+		return columnStates[id];
+	}
+
+	private static int getCoOccurrence(long[] bits1, long[] bits2) {
+		int count = 0;
+		for (int i = 0; i < bits1.length; i++)
+			count += Long.bitCount(bits1[i] & bits2[i]);
+		return count;
+	}
+
+	/**
+	 * Gets the number of pairs that were pruned because one of the columns is
+	 * non-zero in too few jobs
+	 * 
+	 * @return The number of pairs with a rare column
+	 */
+	public long getPrunedLowSupport() {
+		return prunedLowSupport.get();
+	}
+
+	/**
+	 * Gets the number of pairs that were pruned because one of the columns has the
+	 * same count in all jobs
+	 * 
+	 * @return The number of pairs with a constant column
+	 */
+	public long getPrunedConstant() {
+		return prunedConstant.get();
+	}
+
+	/**
+	 * Gets the number of pairs that were pruned because both columns are non-zero
+	 * in too few common jobs
+	 * 
+	 * @return The number of pairs with too few common jobs
+	 */
+	public long getPrunedLowCoOccurrence() {
+		return prunedLowCoOccurrence.get();
+	}
+
+	/**
+	 * Gets the total number of pruned pairs
+	 * 
+	 * @return The total number of pruned pairs
+	 */
+	public long getPrunedTotal() {
+		return getPrunedLowSupport() + getPrunedConstant() + getPrunedLowCoOccurrence();
+	}
+
+	/**
+	 * Resets the number of pruned pairs, e.g., after they have been reported
+	 */
+	public void resetCounts() {
+		prunedLowSupport.set(0);
+		prunedConstant.set(0);
+		prunedLowCoOccurrence.set(0);
+	}
+
+}
@@ -0,0 +1,138 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import org.apache.commons.math3.stat.ranking.NaturalRanking;
+
+/**
+ * Partial Spearman correlation between the columns of a count matrix that
+ * controls for a set of covariates, e.g., the size of the app. The partial
+ * correlation of two columns i and j given the covariates Z is
+ * 
+ * <pre>
+ * r_ij.Z = (r_ij - r_iZ' R_ZZ^-1 r_jZ) / sqrt((1 - r_iZ' R_ZZ^-1 r_iZ) * (1 - r_jZ' R_ZZ^-1 r_jZ))
+ * </pre>
+ * 
+ * where all coefficients are Spearman correlations. The rank correlations of
+ * every column with the covariates are computed for all columns at once when
+ * this object is created. Afterwards, the partial correlation of a pair is
+ * derived from the ordinary Spearman correlation of the pair in constant time,
+ * so the pairs need not be ranked again.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class PartialCorrelation {
+
+	private static final double EPSILON = 1e-12;
+
+	private final double[][] columnCovariateCorrelations;
+	private final double[][] weights;
+	private final double[] explainedVariance;
+
+	/**
+	 * Creates a new partial correlation for the columns of the given matrix
+	 * 
+	 * @param matrix     The count matrix
+	 * @param covariates The covariates, one array per covariate with one value per
+	 *                   row of the matrix
+	 */
+	public PartialCorrelation(CountMatrix matrix, double[][] covariates) {
+		if (covariates.length == 0)
+			throw new IllegalArgumentException("At least one covariate is required");
+		final int numRows = matrix.getRowCount();
+		final int numCovariates = covariates.length;
+		NaturalRanking ranking = new NaturalRanking();
+		PearsonsCorrelation pearson = new PearsonsCorrelation();
+
+		// Rank the covariates and correlate them with each other
+		double[][] covariateRanks = new double[numCovariates][];
+		for (int c = 0; c < numCovariates; c++) {
+			if (covariates[c].length != numRows)
+				throw new IllegalArgumentException("All covariates must have one value per row");
+			covariateRanks[c] = ranking.rank(covariates[c]);
+		}
+		double[][] rzz = new double[numCovariates][numCovariates];
+		for (int c1 = 0; c1 < numCovariates; c1++) {
+			rzz[c1][c1] = 1;
+			for (int c2 = c1 + 1; c2 < numCovariates; c2++) {
+				if (numRows > 1)
+					rzz[c1][c2] = rzz[c2][c1] = nanToZero(
+							pearson.correlation(covariateRanks[c1], covariateRanks[c2]));
+			}
+		}
+
+		// The covariates may be collinear, e.g., if they measure the app size in
+		// different units, so we need the pseudo-inverse
+		RealMatrix rzzInverse = new SingularValueDecomposition(new Array2DRowRealMatrix(rzz, false)).getSolver()
+				.getInverse();
+
+		// Correlate all columns with the covariates
+		int[] ids = matrix.getColumnIds();
+		int maxId = ids.length == 0 ? 0 : ids[ids.length - 1] + 1;
+		columnCovariateCorrelations = new double[maxId][];
+		weights = new double[maxId][];
+		explainedVariance = new double[maxId];
+		double[] colValues = new double[numRows];
+		for (int id = 0; id < maxId; id++) {
+			int[] col = matrix.getColumn(id);
+			if (col == null)
+				continue;
+			for (int r = 0; r < numRows; r++)
+				colValues[r] = col[r];
+			double[] colRanks = ranking.rank(colValues);
+
+			double[] riz = new double[numCovariates];
+			if (numRows > 1) {
+				for (int c = 0; c < numCovariates; c++)
+					riz[c] = nanToZero(pearson.correlation(colRanks, covariateRanks[c]));
+			}
+			double[] w = rzzInverse.operate(riz);
+			columnCovariateCorrelations[id] = riz;
+			weights[id] = w;
+			explainedVariance[id] = dot(riz, w);
+		}
+	}
+
+	private static double nanToZero(double d) {
+		return Double.isNaN(d) ? 0 : d;
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	/**
+	 * Gets the partial correlation between the given columns
+	 * 
+	 * @param id1         The identifier of the first column
+	 * @param id2         The identifier of the second column
+	 * @param correlation The Spearman correlation between the two columns
+	 * @return The partial correlation between the two columns, or NaN if it is
+	 *         undefined, e.g., because one of the columns is fully explained by
+	 *         the covariates
+	 */
+	public double getPartialCorrelation(int id1, int id2, double correlation) {
+		if (Double.isNaN(correlation) || !hasColumn(id1) || !hasColumn(id2))
+			return Double.NaN;
+		double residual1 = 1 - explainedVariance[id1];
+		double residual2 = 1 - explainedVariance[id2];
+		if (residual1 < EPSILON || residual2 < EPSILON)
+			return Double.NaN;
+		double partial = (correlation - dot(columnCovariateCorrelations[id1], weights[id2]))
+				/ Math.sqrt(residual1 * residual2);
+
+		// Compensate for rounding errors
+		return Math.max(-1, Math.min(1, partial));
+	}
+
+	private boolean hasColumn(int id) {
+		return id >= 0 && id < weights.length && weights[id] != null;
+	}
+
+}
@@ -0,0 +1,75 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+/**
+ * Kernels that process one value after the other. These kernels run on every
+ * JVM.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class ScalarKernels implements IKernels {
+
+	@Override
+	public String getName() {
+		return "scalar";
+	}
+
+	@Override
+	public double sum(double[] a) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i];
+		return sum;
+	}
+
+	@Override
+	public double dot(double[] a, double[] b) {
+		return dot(a, b, 0, a.length);
+	}
+
+	@Override
+	public double dot(double[] a, double[] b, int from, int to) {
+		double sum = 0;
+		for (int i = from; i < to; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	@Override
+	public double sumOfSquaredDeviations(double[] a, double mean) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++) {
+			double d = a[i] - mean;
+			sum += d * d;
+		}
+		return sum;
+	}
+
+	@Override
+	public double sumOfCrossDeviations(double[] a, double meanA, double[] b, double meanB) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += (a[i] - meanA) * (b[i] - meanB);
+		return sum;
+	}
+
+	@Override
+	public void shiftAndScale(double[] a, double shift, double factor) {
+		for (int i = 0; i < a.length; i++)
+			a[i] = (a[i] + shift) * factor;
+	}
+
+	@Override
+	public void swapWhere(int[] a, int[] b, long[] mask, int[] outA, int[] outB) {
+		for (int i = 0; i < a.length; i++) {
+			if ((mask[i >>> 6] & (1L << i)) != 0) {
+				outA[i] = b[i];
+				outB[i] = a[i];
+			} else {
+				outA[i] = a[i];
+				outB[i] = b[i];
+			}
+		}
+	}
+
+}
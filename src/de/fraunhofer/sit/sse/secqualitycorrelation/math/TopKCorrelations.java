@@ -0,0 +1,158 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.math;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the pairs of columns of a count matrix with the strongest Spearman
+ * correlation without computing the exact correlation of every pair.
+ * 
+ * The correlation of a pair is the dot product of the centered ranks of both
+ * columns, scaled to unit length. The dot product is accumulated block by
+ * block. After each block, the Cauchy-Schwarz inequality bounds the remaining
+ * part by the product of the norms of the remaining ranks of both columns. As
+ * soon as the correlation cannot exceed the weakest of the best pairs found so
+ * far, the pair is abandoned. The rows are sorted such that the rows with the
+ * largest ranks come first, so that the remaining norms shrink quickly. This is
+ * the case for sparse counts, where most jobs share the tied rank of the zero
+ * count.
+ * 
+ * The first columns of the pairs are distributed over multiple threads. Each
+ * thread keeps its best pairs in a bounded heap, and the threads share the
+ * weakest correlation that any of them would accept.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class TopKCorrelations {
+
+	private static final int BLOCK_SIZE = 256;
+
+	/**
+	 * A pair of columns with its correlation
+	 */
+	public static class Pair {
+
+		public final int id1;
+		public final int id2;
+		public final double correlation;
+
+		Pair(int id1, int id2, double correlation) {
+			this.id1 = id1;
+			this.id2 = id2;
+			this.correlation = correlation;
+		}
+
+		double strength() {
+			return Math.abs(correlation);
+		}
+
+	}
+
+	private TopKCorrelations() {
+	}
+
+	/**
+	 * Finds the pairs with the largest absolute Spearman correlation. Pairs in
+	 * which one of the columns is constant have no correlation and are never
+	 * returned.
+	 * 
+	 * @param matrix The count matrix
+	 * @param k      The maximum number of pairs to return
+	 * @param pruner The pruner that decides which pairs to skip, or
+	 *               <code>null</code> to consider all pairs
+	 * @return The strongest pairs, strongest first
+	 */
+	public static List<Pair> find(CountMatrix matrix, int k, PairPruner pruner) {
+		if (k < 1)
+			throw new IllegalArgumentException("At least one pair must be requested");
+		final int numRows = matrix.getRowCount();
+		GroupedSpearman spearman = new GroupedSpearman(matrix, new int[][] { IntStream.range(0, numRows).toArray() });
+		int[] ids = IntStream.of(matrix.getColumnIds()).filter(id -> spearman.varies(0, id)).toArray();
+
+		// Move the rows with the largest ranks to the front
+		double[] energy = new double[numRows];
+		for (int id : ids) {
+			double[] ranks = spearman.getScaledRanks(0, id);
+			for (int r = 0; r < numRows; r++)
+				energy[r] += ranks[r] * ranks[r];
+		}
+		int[] order = IntStream.range(0, numRows).boxed()
+				.sorted(Comparator.comparingDouble((Integer r) -> energy[r]).reversed()).mapToInt(Integer::intValue)
+				.toArray();
+
+		// Reorder the ranks in place, since nobody else uses this object, and compute
+		// the norm of the ranks after each block
+		spearman.reorderRows(0, order);
+		final int numBlocks = (numRows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		double[][] ranks = new double[ids.length][];
+		double[][] tailNorms = new double[ids.length][numBlocks + 1];
+		IntStream.range(0, ids.length).parallel().forEach(c -> {
+			ranks[c] = spearman.getScaledRanks(0, ids[c]);
+			double sumOfSquares = 0;
+			for (int b = numBlocks - 1; b >= 0; b--) {
+				sumOfSquares += Kernels.get().dot(ranks[c], ranks[c], b * BLOCK_SIZE,
+						Math.min(numRows, (b + 1) * BLOCK_SIZE));
+				tailNorms[c][b] = Math.sqrt(sumOfSquares);
+			}
+		});
+
+		// The weakest correlation that we would still accept. Non-negative doubles
+		// compare like their bit patterns.
+		AtomicLong threshold = new AtomicLong(Double.doubleToLongBits(0));
+		List<PriorityQueue<Pair>> heaps = IntStream.range(0, ids.length).parallel().mapToObj(i -> {
+			PriorityQueue<Pair> heap = new PriorityQueue<>(Comparator.comparingDouble(Pair::strength));
+			for (int j = i + 1; j < ids.length; j++) {
+				if (pruner != null && pruner.isPruned(ids[i], ids[j]))
+					continue;
+				double bound = Double.longBitsToDouble(threshold.get());
+				double dot = dotWithBound(ranks[i], ranks[j], tailNorms[i], tailNorms[j], bound);
+				if (Double.isNaN(dot))
+					continue;
+				if (heap.size() < k)
+					heap.add(new Pair(ids[i], ids[j], Math.max(-1, Math.min(1, dot))));
+				else if (Math.abs(dot) > heap.peek().strength()) {
+					heap.poll();
+					heap.add(new Pair(ids[i], ids[j], Math.max(-1, Math.min(1, dot))));
+				}
+				if (heap.size() == k)
+					threshold.accumulateAndGet(Double.doubleToLongBits(heap.peek().strength()), Math::max);
+			}
+			return heap;
+		}).collect(Collectors.toList());
+
+		// Merge the heaps of all threads
+		List<Pair> pairs = new ArrayList<>();
+		heaps.forEach(pairs::addAll);
+		pairs.sort(Comparator.comparingDouble(Pair::strength).reversed());
+		return pairs.size() > k ? new ArrayList<>(pairs.subList(0, k)) : pairs;
+	}
+
+	/**
+	 * Computes the dot product of the given vectors block by block, and abandons
+	 * the computation as soon as its absolute value cannot exceed the given bound
+	 * 
+	 * @param a      The first vector
+	 * @param b      The second vector
+	 * @param tailsA The norm of the first vector from the start of each block on
+	 * @param tailsB The norm of the second vector from the start of each block on
+	 * @param bound  The bound that the absolute value must exceed
+	 * @return The dot product, or NaN if it cannot exceed the bound
+	 */
+	private static double dotWithBound(double[] a, double[] b, double[] tailsA, double[] tailsB, double bound) {
+		IKernels kernels = Kernels.get();
+		double dot = 0;
+		for (int block = 0; block < tailsA.length - 1; block++) {
+			if (Math.abs(dot) + tailsA[block] * tailsB[block] <= bound)
+				return Double.NaN;
+			dot += kernels.dot(a, b, block * BLOCK_SIZE, Math.min(a.length, (block + 1) * BLOCK_SIZE));
+		}
+		return Math.abs(dot) > bound || bound == 0 ? dot : Double.NaN;
+	}
+
+}
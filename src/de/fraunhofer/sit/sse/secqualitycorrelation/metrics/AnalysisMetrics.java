@@ -0,0 +1,106 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+/**
+ * The metrics for the individual stages of the analysis
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class AnalysisMetrics {
+
+	public static final Timer JOB_LIST_FETCH = Metrics.timer("vusc_job_list_fetch_seconds",
+			"Time for retrieving the list of jobs from the VUSC server");
+	public static final Counter JOBS_LISTED = Metrics.counter("vusc_jobs_listed_total",
+			"Number of jobs reported by the VUSC server");
+	public static final Timer JOB_FETCH = Metrics.timer("vusc_job_fetch_seconds",
+			"Time for retrieving a single job with its results from the VUSC server");
+	public static final Counter JOB_CACHE_HITS = Metrics.counter("job_cache_requests_total",
+			"Number of job results requested from the job cache", "result", "hit");
+	public static final Counter JOB_CACHE_MISSES = Metrics.counter("job_cache_requests_total",
+			"Number of job results requested from the job cache", "result", "miss");
+	public static final Counter VUSC_RETRIES = Metrics.counter("vusc_retries_total",
+			"Number of calls to the VUSC server that were retried after a transient error");
+	public static final Counter VUSC_CIRCUIT_OPENED = Metrics.counter("vusc_circuit_opened_total",
+			"Number of times the calls to the VUSC server were suspended after repeated failures");
+
+	public static final Timer DEDUPLICATION = Metrics.timer("dedup_seconds",
+			"Time for removing duplicate jobs and jobs without data");
+	public static final Counter JOBS_DUPLICATE = Metrics.counter("jobs_removed_total",
+			"Number of jobs that were removed before the analysis", "reason", "duplicate");
+	public static final Counter JOBS_NO_DATA = Metrics.counter("jobs_removed_total",
+			"Number of jobs that were removed before the analysis", "reason", "no_data");
+	public static final Counter JOBS_CUTOFF = Metrics.counter("jobs_removed_total",
+			"Number of jobs that were removed before the analysis", "reason", "cutoff");
+	public static final Counter JOBS_PROCESSED = Metrics.counter("jobs_processed_total",
+			"Number of new jobs that were processed");
+	public static final Counter JOBS_REPLACED = Metrics.counter("jobs_replaced_total",
+			"Number of processed jobs that were replaced with a better analysis of the same app");
+
+	public static final Histogram FINDINGS_PER_JOB = Metrics.histogram("findings_per_job",
+			"Number of findings per processed job", Histogram.COUNT_BUCKETS);
+
+	public static final Counter PAIRS_CATEGORIES = Metrics.counter("correlation_pairs_total",
+			"Number of correlated pairs", "kind", "category");
+	public static final Counter PAIRS_VULNERABILITIES = Metrics.counter("correlation_pairs_total",
+			"Number of correlated pairs", "kind", "vulnerability");
+	public static final Counter PAIRS_COHORTS = Metrics.counter("correlation_pairs_total",
+			"Number of correlated pairs", "kind", "cohort");
+	public static final Counter PAIRS_CROSS = Metrics.counter("correlation_pairs_total",
+			"Number of correlated pairs", "kind", "cross");
+	public static final Counter PAIRS_PRUNED_SUPPORT = Metrics.counter("correlation_pairs_pruned_total",
+			"Number of pairs that were not correlated", "reason", "support");
+	public static final Counter PAIRS_PRUNED_CONSTANT = Metrics.counter("correlation_pairs_pruned_total",
+			"Number of pairs that were not correlated", "reason", "constant");
+	public static final Counter PAIRS_PRUNED_CO_OCCURRENCE = Metrics.counter("correlation_pairs_pruned_total",
+			"Number of pairs that were not correlated", "reason", "cooccurrence");
+	public static final Timer PAIR_CORRELATION = Metrics.timer("correlation_pair_seconds",
+			"Time for correlating a pair including its significance test");
+	public static final Counter PERMUTATIONS = Metrics.counter("permutations_total",
+			"Number of permutations executed for significance tests");
+	public static final Counter BOOTSTRAP_RESAMPLES = Metrics.counter("bootstrap_resamples_total",
+			"Number of resampled correlations computed for confidence intervals");
+
+	public static final Timer WRITER_BACKPRESSURE = Metrics.timer("correlation_writer_backpressure_seconds",
+			"Time for which the correlation computation was blocked because the write queue was full");
+	public static final Histogram WRITER_BATCH_SIZE = Metrics.histogram("correlation_writer_batch_size",
+			"Number of correlations written to the database in a single batch", Histogram.COUNT_BUCKETS);
+
+	public static final Timer SHARD_TILE = Metrics.timer("shard_tile_seconds",
+			"Time from handing a tile to a worker until its results have been received");
+	public static final Counter SHARD_TILES_REASSIGNED = Metrics.counter("shard_tiles_reassigned_total",
+			"Number of tiles that were handed to another worker because their worker was lost");
+
+	public static final Counter PLOTS_RENDERED = Metrics.counter("plots_total", "Number of processed plots",
+			"result", "rendered");
+	public static final Counter PLOTS_SKIPPED = Metrics.counter("plots_total", "Number of processed plots",
+			"result", "skipped");
+	public static final Counter PLOTS_FAILED = Metrics.counter("plots_total", "Number of processed plots",
+			"result", "failed");
+	public static final Timer PLOT_LATENCY = Metrics.timer("plot_seconds",
+			"Time for generating and compiling a single plot");
+
+	private AnalysisMetrics() {
+	}
+
+	/**
+	 * Gets the timer for database writes to the given table
+	 * 
+	 * @param table The name of the table
+	 * @return The timer for writes to the given table
+	 */
+	public static Timer databaseWrite(String table) {
+		return Metrics.timer("db_write_seconds", "Time for writing a batch of records to the database", "table",
+				table);
+	}
+
+	/**
+	 * Gets the counter for the rows written to the given table
+	 * 
+	 * @param table The name of the table
+	 * @return The counter for rows written to the given table
+	 */
+	public static Counter databaseRows(String table) {
+		return Metrics.counter("db_rows_written_total", "Number of rows written to the database", "table", table);
+	}
+
+}
@@ -0,0 +1,40 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event for correlating a single pair of columns, including
+ * the permutation test for its significance
+ * 
+ * @author Steven Arzt
+ *
+ */
+@Name("de.fraunhofer.sit.sse.secqualitycorrelation.Correlation")
+@Label("Pair Correlation")
+@Category({ "Correlation Analysis", "Statistics" })
+@Description("Computes the Spearman correlation of a pair of columns and its significance")
+@Threshold("1 ms")
+public class CorrelationEvent extends Event {
+
+	@Label("Kind")
+	@Description("Whether categories or vulnerability types are correlated")
+	public String kind;
+
+	@Label("First Column")
+	public int column1;
+
+	@Label("Second Column")
+	public int column2;
+
+	@Label("Jobs")
+	public int jobs;
+
+	@Label("Permutations")
+	public int permutations;
+
+}
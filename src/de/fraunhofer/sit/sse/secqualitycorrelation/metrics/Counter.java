@@ -0,0 +1,51 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing counter
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class Counter extends Metric implements CounterMXBean {
+
+	private final LongAdder value = new LongAdder();
+
+	Counter(String name, String help, Map<String, String> labels) {
+		super(name, help, labels);
+	}
+
+	/**
+	 * Increments this counter by one
+	 */
+	public void increment() {
+		value.increment();
+	}
+
+	/**
+	 * Increments this counter by the given amount
+	 * 
+	 * @param amount The amount by which to increment the counter
+	 */
+	public void add(long amount) {
+		value.add(amount);
+	}
+
+	@Override
+	public long getCount() {
+		return value.sum();
+	}
+
+	@Override
+	public String getType() {
+		return "counter";
+	}
+
+	@Override
+	public void writeSamples(StringBuilder sb) {
+		writeSample(sb, name, null, null, getCount());
+	}
+
+}
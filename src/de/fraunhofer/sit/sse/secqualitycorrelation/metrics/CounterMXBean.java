@@ -0,0 +1,18 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+/**
+ * Management interface for counters
+ * 
+ * @author Steven Arzt
+ *
+ */
+public interface CounterMXBean {
+
+	/**
+	 * Gets the current value of the counter
+	 * 
+	 * @return The current value of the counter
+	 */
+	public long getCount();
+
+}
@@ -0,0 +1,27 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for writing records to the database
+ * 
+ * @author Steven Arzt
+ *
+ */
+@Name("de.fraunhofer.sit.sse.secqualitycorrelation.DatabaseWrite")
+@Label("Database Write")
+@Category({ "Correlation Analysis", "Database" })
+@Description("Writes one or more records to the result database")
+public class DatabaseWriteEvent extends Event {
+
+	@Label("Table")
+	public String table;
+
+	@Label("Rows")
+	public int rows;
+
+}
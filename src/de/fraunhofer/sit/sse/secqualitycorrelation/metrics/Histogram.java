@@ -0,0 +1,124 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * A histogram with fixed bucket boundaries
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class Histogram extends Metric implements HistogramMXBean {
+
+	/**
+	 * Bucket boundaries for latencies in seconds, from one millisecond to ten
+	 * minutes
+	 */
+	public static final double[] LATENCY_BUCKETS = { 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1,
+			2.5, 5, 10, 30, 60, 120, 300, 600 };
+
+	/**
+	 * Bucket boundaries for counts that span several orders of magnitude
+	 */
+	public static final double[] COUNT_BUCKETS = { 0, 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000,
+			25000, 50000, 100000 };
+
+	private final double[] bounds;
+	private final AtomicLongArray buckets;
+	private final DoubleAdder sum = new DoubleAdder();
+	private final DoubleAccumulator max = new DoubleAccumulator(Math::max, 0);
+
+	Histogram(String name, String help, Map<String, String> labels, double[] bounds) {
+		super(name, help, labels);
+		this.bounds = bounds.clone();
+		Arrays.sort(this.bounds);
+
+		// The last bucket is the implicit +Inf bucket
+		this.buckets = new AtomicLongArray(this.bounds.length + 1);
+	}
+
+	/**
+	 * Records a new observation
+	 * 
+	 * @param value The observed value
+	 */
+	public void observe(double value) {
+		int idx = Arrays.binarySearch(bounds, value);
+		if (idx < 0)
+			idx = -idx - 1;
+		buckets.incrementAndGet(idx);
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	@Override
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < buckets.length(); i++)
+			count += buckets.get(i);
+		return count;
+	}
+
+	@Override
+	public double getSum() {
+		return sum.sum();
+	}
+
+	@Override
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : getSum() / count;
+	}
+
+	@Override
+	public double getMax() {
+		return max.get();
+	}
+
+	@Override
+	public double getMedian() {
+		return getQuantile(0.5);
+	}
+
+	@Override
+	public double getPercentile95() {
+		return getQuantile(0.95);
+	}
+
+	private double getQuantile(double q) {
+		long count = getCount();
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(q * count);
+		long seen = 0;
+		for (int i = 0; i < bounds.length; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank)
+				return bounds[i];
+		}
+		return getMax();
+	}
+
+	@Override
+	public String getType() {
+		return "histogram";
+	}
+
+	@Override
+	public void writeSamples(StringBuilder sb) {
+		long cumulative = 0;
+		for (int i = 0; i < bounds.length; i++) {
+			cumulative += buckets.get(i);
+			writeSample(sb, name + "_bucket", "le", formatValue(bounds[i]), cumulative);
+		}
+		cumulative += buckets.get(bounds.length);
+		writeSample(sb, name + "_bucket", "le", "+Inf", cumulative);
+		writeSample(sb, name + "_sum", null, null, getSum());
+		writeSample(sb, name + "_count", null, null, cumulative);
+	}
+
+}
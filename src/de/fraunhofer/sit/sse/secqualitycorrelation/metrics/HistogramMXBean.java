@@ -0,0 +1,55 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+/**
+ * Management interface for histograms
+ * 
+ * @author Steven Arzt
+ *
+ */
+public interface HistogramMXBean {
+
+	/**
+	 * Gets the number of observations
+	 * 
+	 * @return The number of observations
+	 */
+	public long getCount();
+
+	/**
+	 * Gets the sum of all observed values
+	 * 
+	 * @return The sum of all observed values
+	 */
+	public double getSum();
+
+	/**
+	 * Gets the mean of all observed values
+	 * 
+	 * @return The mean of all observed values, or 0 if there are no observations
+	 */
+	public double getMean();
+
+	/**
+	 * Gets the largest observed value
+	 * 
+	 * @return The largest observed value, or 0 if there are no observations
+	 */
+	public double getMax();
+
+	/**
+	 * Gets an estimate of the median. The estimate is the upper bound of the
+	 * bucket that contains the median.
+	 * 
+	 * @return The estimated median
+	 */
+	public double getMedian();
+
+	/**
+	 * Gets an estimate of the 95th percentile. The estimate is the upper bound of
+	 * the bucket that contains the percentile.
+	 * 
+	 * @return The estimated 95th percentile
+	 */
+	public double getPercentile95();
+
+}
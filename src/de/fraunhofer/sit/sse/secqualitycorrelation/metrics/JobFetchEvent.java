@@ -0,0 +1,28 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for loading a job with its results from the VUSC
+ * server
+ * 
+ * @author Steven Arzt
+ *
+ */
+@Name("de.fraunhofer.sit.sse.secqualitycorrelation.JobFetch")
+@Label("VUSC Job Fetch")
+@Category({ "Correlation Analysis", "VUSC" })
+@Description("Loads a single job including its findings from the VUSC server")
+public class JobFetchEvent extends Event {
+
+	@Label("Job Id")
+	public long jobId;
+
+	@Label("Findings")
+	public int findings;
+
+}
@@ -0,0 +1,111 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import java.util.Map;
+
+/**
+ * Base class for all metrics. A metric is identified by its name and its
+ * labels.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public abstract class Metric {
+
+	protected final String name;
+	protected final String help;
+	protected final Map<String, String> labels;
+
+	protected Metric(String name, String help, Map<String, String> labels) {
+		this.name = name;
+		this.help = help;
+		this.labels = labels;
+	}
+
+	/**
+	 * Gets the name of this metric
+	 * 
+	 * @return The name of this metric
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the description of this metric
+	 * 
+	 * @return The description of this metric
+	 */
+	public String getHelp() {
+		return help;
+	}
+
+	/**
+	 * Gets the labels that distinguish this metric from other metrics with the
+	 * same name
+	 * 
+	 * @return The labels of this metric
+	 */
+	public Map<String, String> getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Gets the metric type in the Prometheus exposition format
+	 * 
+	 * @return The metric type
+	 */
+	public abstract String getType();
+
+	/**
+	 * Writes the samples of this metric in the Prometheus exposition format
+	 * 
+	 * @param sb The string builder to which to write the samples
+	 */
+	public abstract void writeSamples(StringBuilder sb);
+
+	/**
+	 * Writes a single sample line
+	 * 
+	 * @param sb         The string builder to which to write the sample
+	 * @param sampleName The name of the sample
+	 * @param extraLabel An additional label name, or <code>null</code>
+	 * @param extraValue The value of the additional label
+	 * @param value      The value of the sample
+	 */
+	protected void writeSample(StringBuilder sb, String sampleName, String extraLabel, String extraValue,
+			double value) {
+		sb.append(sampleName);
+		if (!labels.isEmpty() || extraLabel != null) {
+			sb.append('{');
+			boolean first = true;
+			for (Map.Entry<String, String> label : labels.entrySet()) {
+				if (!first)
+					sb.append(',');
+				appendLabel(sb, label.getKey(), label.getValue());
+				first = false;
+			}
+			if (extraLabel != null) {
+				if (!first)
+					sb.append(',');
+				appendLabel(sb, extraLabel, extraValue);
+			}
+			sb.append('}');
+		}
+		sb.append(' ').append(formatValue(value)).append('\n');
+	}
+
+	private static void appendLabel(StringBuilder sb, String key, String value) {
+		sb.append(key).append("=\"");
+		sb.append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+		sb.append('"');
+	}
+
+	static String formatValue(double value) {
+		if (value == Double.POSITIVE_INFINITY)
+			return "+Inf";
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			return Long.toString((long) value);
+		return Double.toString(value);
+	}
+
+}
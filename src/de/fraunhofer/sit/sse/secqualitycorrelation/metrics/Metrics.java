@@ -0,0 +1,136 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Registry of all metrics in this JVM. Every metric is also registered as an
+ * MBean in the platform MBean server, so that it can be inspected with any JMX
+ * client while the analysis is running.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class Metrics {
+
+	/**
+	 * The JMX domain under which all metrics are registered
+	 */
+	public static final String JMX_DOMAIN = "de.fraunhofer.sit.sse.secqualitycorrelation";
+
+	private static final Logger logger = LogManager.getLogger(Metrics.class);
+
+	private static final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+	private Metrics() {
+	}
+
+	/**
+	 * Gets the counter with the given name and labels, creating it if necessary
+	 * 
+	 * @param name   The name of the counter
+	 * @param help   The description of the counter
+	 * @param labels Alternating label names and values
+	 * @return The counter
+	 */
+	public static Counter counter(String name, String help, String... labels) {
+		return register(Counter.class, new Counter(name, help, toLabelMap(labels)));
+	}
+
+	/**
+	 * Gets the histogram with the given name and labels, creating it if necessary
+	 * 
+	 * @param name   The name of the histogram
+	 * @param help   The description of the histogram
+	 * @param bounds The upper bounds of the buckets
+	 * @param labels Alternating label names and values
+	 * @return The histogram
+	 */
+	public static Histogram histogram(String name, String help, double[] bounds, String... labels) {
+		return register(Histogram.class, new Histogram(name, help, toLabelMap(labels), bounds));
+	}
+
+	/**
+	 * Gets the timer with the given name and labels, creating it if necessary
+	 * 
+	 * @param name   The name of the timer
+	 * @param help   The description of the timer
+	 * @param labels Alternating label names and values
+	 * @return The timer
+	 */
+	public static Timer timer(String name, String help, String... labels) {
+		return register(Timer.class, new Timer(name, help, toLabelMap(labels)));
+	}
+
+	private static Map<String, String> toLabelMap(String[] labels) {
+		if (labels.length % 2 != 0)
+			throw new IllegalArgumentException("Labels must be given as name-value pairs");
+		if (labels.length == 0)
+			return Collections.emptyMap();
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < labels.length; i += 2)
+			map.put(labels[i], labels[i + 1]);
+		return Collections.unmodifiableMap(map);
+	}
+
+	private static <T extends Metric> T register(Class<T> type, T metric) {
+		String key = metric.getName() + metric.getLabels();
+		Metric existing = metrics.putIfAbsent(key, metric);
+		if (existing != null) {
+			if (existing.getClass() != type)
+				throw new IllegalArgumentException(
+						String.format("Metric %s is already registered as a %s", key, existing.getType()));
+			return type.cast(existing);
+		}
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(metric, getObjectName(metric));
+		} catch (JMException e) {
+			logger.warn(String.format("Could not register metric %s with JMX", key), e);
+		}
+		return metric;
+	}
+
+	private static ObjectName getObjectName(Metric metric) throws JMException {
+		StringBuilder sb = new StringBuilder(JMX_DOMAIN);
+		sb.append(":type=").append(metric.getClass().getSimpleName());
+		sb.append(",name=").append(ObjectName.quote(metric.getName()));
+		for (Map.Entry<String, String> label : metric.getLabels().entrySet())
+			sb.append(',').append(label.getKey()).append('=').append(ObjectName.quote(label.getValue()));
+		return new ObjectName(sb.toString());
+	}
+
+	/**
+	 * Writes all metrics in the Prometheus text exposition format
+	 * 
+	 * @return The text representation of all metrics
+	 */
+	public static String toPrometheusText() {
+		StringBuilder sb = new StringBuilder();
+		String lastName = null;
+		for (Metric metric : metrics.values()) {
+			// Metrics with the same name only differ in their labels and share a
+			// single header
+			if (!metric.getName().equals(lastName)) {
+				sb.append("# HELP ").append(metric.getName()).append(' ')
+						.append(metric.getHelp().replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+				sb.append("# TYPE ").append(metric.getName()).append(' ').append(metric.getType()).append('\n');
+				lastName = metric.getName();
+			}
+			metric.writeSamples(sb);
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,27 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for generating and compiling a single plot
+ * 
+ * @author Steven Arzt
+ *
+ */
+@Name("de.fraunhofer.sit.sse.secqualitycorrelation.PlotCompilation")
+@Label("Plot Compilation")
+@Category({ "Correlation Analysis", "Plots" })
+@Description("Generates the TEX source of a plot and compiles it with pdflatex")
+public class PlotCompilationEvent extends Event {
+
+	@Label("Plot")
+	public String plot;
+
+	@Label("Succeeded")
+	public boolean succeeded;
+
+}
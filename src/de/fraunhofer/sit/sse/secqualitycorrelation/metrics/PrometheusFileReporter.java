@@ -0,0 +1,86 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Periodically writes all metrics to a text file in the Prometheus exposition
+ * format, e.g., for the textfile collector of the node exporter. The file is
+ * written once more when the reporter is closed or the JVM shuts down.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class PrometheusFileReporter implements AutoCloseable {
+
+	/**
+	 * The default interval between two reports
+	 */
+	public static final long DEFAULT_INTERVAL_SECONDS = 15;
+
+	private static final Logger logger = LogManager.getLogger(PrometheusFileReporter.class);
+
+	private final File file;
+	private final ScheduledExecutorService executor;
+	private final Thread shutdownHook;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new reporter and starts writing the metrics
+	 * 
+	 * @param file            The file to which to write the metrics
+	 * @param intervalSeconds The number of seconds between two reports
+	 */
+	public PrometheusFileReporter(File file, long intervalSeconds) {
+		this.file = file;
+		this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "metrics-reporter");
+			t.setDaemon(true);
+			return t;
+		});
+		executor.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+		// Make sure that we also get the final values if the analysis aborts
+		shutdownHook = new Thread(this::report, "metrics-final-report");
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Writes the current values of all metrics to the file. The file is replaced
+	 * atomically, so that a collector never reads a partial file.
+	 */
+	public synchronized void report() {
+		File tempFile = new File(file.getAbsolutePath() + ".tmp");
+		try {
+			Files.write(tempFile.toPath(), Metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8));
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn(String.format("Could not write metrics to %s", file.getAbsolutePath()), e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		executor.shutdownNow();
+		report();
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		} catch (IllegalStateException e) {
+			// We are already shutting down
+		}
+	}
+
+}
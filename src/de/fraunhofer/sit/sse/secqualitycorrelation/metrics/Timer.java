@@ -0,0 +1,39 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A histogram of durations in seconds
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class Timer extends Histogram implements HistogramMXBean {
+
+	Timer(String name, String help, Map<String, String> labels) {
+		super(name, help, labels, LATENCY_BUCKETS);
+	}
+
+	/**
+	 * Starts a new measurement
+	 * 
+	 * @return The start time to pass to {@link #stop(long)}
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Ends a measurement and records its duration
+	 * 
+	 * @param startNanos The start time as returned by {@link #start()}
+	 * @return The duration in nanoseconds
+	 */
+	public long stop(long startNanos) {
+		long duration = System.nanoTime() - startNanos;
+		observe(duration / (double) TimeUnit.SECONDS.toNanos(1));
+		return duration;
+	}
+
+}
@@ -0,0 +1,305 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.plot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.io.Files;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.PlotCompilationEvent;
+
+/**
+ * Scheduler for generating and compiling plots. The number of concurrent
+ * pdflatex processes is bounded by the CPUs that are actually available to this
+ * process. Every process runs with a timeout after which it is killed and
+ * retried.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class PlotCompilationScheduler {
+
+	/**
+	 * The default time after which a hanging pdflatex process is killed
+	 */
+	public static final long DEFAULT_TIMEOUT_SECONDS = 300;
+
+	/**
+	 * The default number of times a failed compilation is retried
+	 */
+	public static final int DEFAULT_RETRIES = 1;
+
+	/**
+	 * The number of seconds to wait for a killed pdflatex process to terminate
+	 */
+	private static final long KILL_TIMEOUT_SECONDS = 10;
+
+	private static final Logger logger = LogManager.getLogger(PlotCompilationScheduler.class);
+
+	private final ExecutorService executor;
+	private final int concurrency;
+	private final long timeoutMillis;
+	private final int maxRetries;
+
+	private final Map<String, Long> latencies = new ConcurrentHashMap<>();
+	private final AtomicInteger submitted = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicInteger timeouts = new AtomicInteger();
+	private final AtomicInteger retries = new AtomicInteger();
+
+	/**
+	 * Creates a new scheduler with the default settings
+	 */
+	public PlotCompilationScheduler() {
+		this(getDefaultConcurrency(), DEFAULT_TIMEOUT_SECONDS, DEFAULT_RETRIES);
+	}
+
+	/**
+	 * Creates a new scheduler
+	 * 
+	 * @param concurrency    The maximum number of plots to process concurrently
+	 * @param timeoutSeconds The number of seconds after which a pdflatex process
+	 *                       is killed
+	 * @param maxRetries     The number of times to retry a failed compilation
+	 */
+	public PlotCompilationScheduler(int concurrency, long timeoutSeconds, int maxRetries) {
+		if (concurrency < 1)
+			throw new IllegalArgumentException("Concurrency must be positive");
+		this.concurrency = concurrency;
+		this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+		this.maxRetries = Math.max(0, maxRetries);
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>());
+	}
+
+	/**
+	 * Gets the number of CPUs that are available to this process. This takes into
+	 * account the CPU quota of the cgroup in which we run, if any.
+	 * 
+	 * @return The number of CPUs available to this process
+	 */
+	public static int getDefaultConcurrency() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		int quota = getCgroupCpuLimit();
+		if (quota > 0)
+			cpus = Math.min(cpus, quota);
+		return Math.max(1, cpus);
+	}
+
+	/**
+	 * Reads the CPU quota from the cgroup file system
+	 * 
+	 * @return The number of CPUs granted by the cgroup quota, or -1 if there is no
+	 *         quota or it cannot be read
+	 */
+	private static int getCgroupCpuLimit() {
+		try {
+			// cgroup v2: "<quota> <period>" or "max <period>"
+			File cpuMax = new File("/sys/fs/cgroup/cpu.max");
+			if (cpuMax.exists()) {
+				String[] parts = Files.asCharSource(cpuMax, Charset.defaultCharset()).read().trim().split("\\s+");
+				if (parts.length == 2 && !parts[0].equals("max"))
+					return quotaToCpus(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+				return -1;
+			}
+
+			// cgroup v1
+			File quotaFile = new File("/sys/fs/cgroup/cpu/cpu.cfs_quota_us");
+			File periodFile = new File("/sys/fs/cgroup/cpu/cpu.cfs_period_us");
+			if (quotaFile.exists() && periodFile.exists()) {
+				long quota = Long.parseLong(Files.asCharSource(quotaFile, Charset.defaultCharset()).read().trim());
+				long period = Long.parseLong(Files.asCharSource(periodFile, Charset.defaultCharset()).read().trim());
+				return quotaToCpus(quota, period);
+			}
+		} catch (IOException | NumberFormatException e) {
+			logger.warn("Could not read cgroup CPU quota", e);
+		}
+		return -1;
+	}
+
+	private static int quotaToCpus(long quota, long period) {
+		if (quota <= 0 || period <= 0)
+			return -1;
+		return (int) Math.max(1, (quota + period - 1) / period);
+	}
+
+	/**
+	 * Schedules the generation and compilation of a plot
+	 * 
+	 * @param plotName  The name of the plot for reporting purposes
+	 * @param generator The generator that writes the TEX file for the plot. It
+	 *                  returns the TEX file, or <code>null</code> if no plot shall
+	 *                  be created.
+	 */
+	public void submit(String plotName, Callable<File> generator) {
+		submitted.incrementAndGet();
+		executor.execute(() -> {
+			PlotCompilationEvent event = new PlotCompilationEvent();
+			event.begin();
+			long start = System.nanoTime();
+			try {
+				File texFile = generator.call();
+				if (texFile == null) {
+					skipped.incrementAndGet();
+					AnalysisMetrics.PLOTS_SKIPPED.increment();
+					return;
+				}
+				event.succeeded = compile(plotName, texFile);
+				if (!event.succeeded)
+					failed.incrementAndGet();
+			} catch (Exception e) {
+				logger.error(String.format("Could not create plot %s", plotName), e);
+				failed.incrementAndGet();
+			}
+			(event.succeeded ? AnalysisMetrics.PLOTS_RENDERED : AnalysisMetrics.PLOTS_FAILED).increment();
+			AnalysisMetrics.PLOT_LATENCY.stop(start);
+			event.plot = plotName;
+			event.commit();
+			long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			latencies.put(plotName, latency);
+			logger.debug(String.format("Plot %s took %d ms", plotName, latency));
+		});
+	}
+
+	/**
+	 * Compiles the given TEX file, retrying on failures and timeouts
+	 * 
+	 * @param plotName The name of the plot for reporting purposes
+	 * @param texFile  The TEX file to compile
+	 * @return True if the compilation succeeded, false otherwise
+	 * @throws IOException
+	 */
+	private boolean compile(String plotName, File texFile) throws IOException {
+		String baseName = FilenameUtils.removeExtension(texFile.getAbsolutePath());
+		File outputLog = new File(baseName + ".pdflatex.txt");
+		try {
+			for (int attempt = 0; attempt <= maxRetries; attempt++) {
+				if (attempt > 0) {
+					retries.incrementAndGet();
+					logger.warn(String.format("Retrying compilation of plot %s (attempt %d)", plotName, attempt + 1));
+				}
+
+				ProcessBuilder pb = new ProcessBuilder("pdflatex", "-interaction=nonstopmode", "-halt-on-error",
+						texFile.getAbsolutePath());
+				pb.directory(texFile.getParentFile());
+				pb.redirectErrorStream(true);
+				pb.redirectOutput(outputLog);
+				Process p = pb.start();
+
+				// Make sure that pdflatex never blocks waiting for input
+				p.getOutputStream().close();
+
+				try {
+					if (!p.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+						timeouts.incrementAndGet();
+						logger.warn(String.format("Compilation of plot %s timed out after %d ms", plotName,
+								timeoutMillis));
+						p.descendants().forEach(ProcessHandle::destroyForcibly);
+						p.destroyForcibly();
+
+						// The next attempt writes to the same files, so the killed process must
+						// be gone first
+						if (!p.waitFor(KILL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+							logger.error(String.format("Killed compilation of plot %s did not terminate, giving up",
+									plotName));
+							return false;
+						}
+						continue;
+					}
+				} catch (InterruptedException e) {
+					p.descendants().forEach(ProcessHandle::destroyForcibly);
+					p.destroyForcibly();
+					Thread.currentThread().interrupt();
+					return false;
+				}
+				if (p.exitValue() == 0) {
+					outputLog.delete();
+					return true;
+				}
+				logger.warn(String.format("Compilation of plot %s failed with exit code %d, see %s", plotName,
+						p.exitValue(), outputLog.getAbsolutePath()));
+			}
+			return false;
+		} finally {
+			// Clean up after ourselves
+			File auxFile = new File(baseName + ".aux");
+			if (auxFile.exists())
+				auxFile.delete();
+			File logFile = new File(baseName + ".log");
+			if (logFile.exists())
+				logFile.delete();
+		}
+	}
+
+	/**
+	 * Waits until all scheduled plots have been processed. No new plots may be
+	 * submitted afterwards.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void awaitCompletion() throws InterruptedException {
+		executor.shutdown();
+
+		// Every single process is bounded by its timeout, so we do not need an overall
+		// deadline
+		while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+			logger.info(String.format("Processed %d of %d plots...",
+					latencies.size() + skipped.get(), submitted.get()));
+		}
+	}
+
+	/**
+	 * Writes the latency and failure statistics to the log
+	 */
+	public void logSummary() {
+		List<Map.Entry<String, Long>> entries = new ArrayList<>(latencies.entrySet());
+		entries.sort(Map.Entry.comparingByValue());
+		logger.info(String.format(
+				"Plots: %d submitted, %d skipped, %d failed, %d timeouts, %d retries, concurrency %d",
+				submitted.get(), skipped.get(), failed.get(), timeouts.get(), retries.get(), concurrency));
+		if (!entries.isEmpty()) {
+			logger.info(String.format("Plot latency in ms: min %d, median %d, p95 %d, max %d",
+					entries.get(0).getValue(), entries.get(entries.size() / 2).getValue(),
+					entries.get((int) Math.min(entries.size() - 1, Math.floor(entries.size() * 0.95))).getValue(),
+					entries.get(entries.size() - 1).getValue()));
+			for (int i = entries.size() - 1; i >= Math.max(0, entries.size() - 5); i--)
+				logger.info(String.format("Slow plot: %s took %d ms", entries.get(i).getKey(),
+						entries.get(i).getValue()));
+		}
+	}
+
+	/**
+	 * Gets the number of plots that could not be created
+	 * 
+	 * @return The number of failed plots
+	 */
+	public int getFailureCount() {
+		return failed.get();
+	}
+
+	/**
+	 * Gets the maximum number of plots that are processed concurrently
+	 * 
+	 * @return The maximum number of concurrent plots
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+}
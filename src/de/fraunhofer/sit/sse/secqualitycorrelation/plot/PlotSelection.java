@@ -0,0 +1,322 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.plot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.io.Files;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CategoryCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.IDatabaseManager;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.NameDictionary;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.VulnerabilityCorrelation;
+
+/**
+ * Decides which pairs of categories or vulnerability types shall be plotted
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class PlotSelection {
+
+	private static final Logger logger = LogManager.getLogger(PlotSelection.class);
+
+	private final PlotSelectionMode mode;
+	private final int topN;
+	private final List<Pair<String, String>> explicitPairs;
+	private final Set<String> unresolvedNames = new HashSet<>();
+
+	private PlotSelection(PlotSelectionMode mode, int topN, List<Pair<String, String>> explicitPairs) {
+		this.mode = mode;
+		this.topN = topN;
+		this.explicitPairs = explicitPairs;
+	}
+
+	/**
+	 * Creates a selection that plots all pairs of columns
+	 * 
+	 * @return The new selection
+	 */
+	public static PlotSelection all() {
+		return new PlotSelection(PlotSelectionMode.ALL, 0, null);
+	}
+
+	/**
+	 * Creates a selection that only plots the pairs with the strongest absolute
+	 * correlation
+	 * 
+	 * @param n The number of pairs to plot
+	 * @return The new selection
+	 */
+	public static PlotSelection top(int n) {
+		if (n < 1)
+			throw new IllegalArgumentException("The number of pairs to plot must be positive");
+		return new PlotSelection(PlotSelectionMode.TOP, n, null);
+	}
+
+	/**
+	 * Creates a selection that only plots the pairs whose absolute correlation
+	 * exceeds the significance threshold
+	 * 
+	 * @return The new selection
+	 */
+	public static PlotSelection significant() {
+		return new PlotSelection(PlotSelectionMode.SIGNIFICANT, 0, null);
+	}
+
+	/**
+	 * Creates a selection that plots the pairs from the given file. Each line in
+	 * the file contains the names of two categories or vulnerability types,
+	 * separated by a semicolon. Empty lines and lines starting with '#' are
+	 * ignored.
+	 * 
+	 * @param pairFile The file with the pairs to plot
+	 * @return The new selection
+	 * @throws IOException
+	 */
+	public static PlotSelection fromFile(File pairFile) throws IOException {
+		List<Pair<String, String>> pairs = new ArrayList<>();
+		for (String line : Files.asCharSource(pairFile, Charset.defaultCharset()).readLines()) {
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			int idx = line.indexOf(';');
+			if (idx < 0)
+				throw new IOException(String.format("Invalid pair definition: %s", line));
+			pairs.add(new ImmutablePair<>(line.substring(0, idx).trim(), line.substring(idx + 1).trim()));
+		}
+		return new PlotSelection(PlotSelectionMode.LIST, 0, pairs);
+	}
+
+	/**
+	 * Gets the pairs of categories to plot
+	 * 
+	 * @param categories The identifiers of the categories for which we have data
+	 * @param dictionary The dictionary for resolving explicitly listed names
+	 * @param dbManager  The database manager from which to obtain the correlations
+	 * @return The pairs of category identifiers to plot
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public Collection<Pair<Integer, Integer>> getCategoryPairs(int[] categories, NameDictionary dictionary,
+			IDatabaseManager dbManager) throws IOException, SQLException {
+		switch (mode) {
+		case TOP:
+		case SIGNIFICANT:
+			Set<Pair<Integer, Integer>> pairs = new LinkedHashSet<>();
+			for (CategoryCorrelation cc : dbManager.getCategoryCorrelations(mode == PlotSelectionMode.SIGNIFICANT,
+					topN))
+				pairs.add(new ImmutablePair<>(cc.catId1, cc.catId2));
+			return filterPairs(pairs, categories);
+		default:
+			return getPairs(categories, dictionary);
+		}
+	}
+
+	/**
+	 * Gets the pairs of vulnerability types to plot
+	 * 
+	 * @param vulnTypes  The identifiers of the vulnerability types for which we
+	 *                   have data
+	 * @param dictionary The dictionary for resolving explicitly listed names
+	 * @param dbManager  The database manager from which to obtain the correlations
+	 * @return The pairs of vulnerability type identifiers to plot
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public Collection<Pair<Integer, Integer>> getVulnerabilityPairs(int[] vulnTypes, NameDictionary dictionary,
+			IDatabaseManager dbManager) throws IOException, SQLException {
+		switch (mode) {
+		case TOP:
+		case SIGNIFICANT:
+			Set<Pair<Integer, Integer>> pairs = new LinkedHashSet<>();
+			for (VulnerabilityCorrelation vc : dbManager
+					.getVulnerabilityCorrelations(mode == PlotSelectionMode.SIGNIFICANT, topN))
+				pairs.add(new ImmutablePair<>(vc.vulnTypeId1, vc.vulnTypeId2));
+			return filterPairs(pairs, vulnTypes);
+		default:
+			return getPairs(vulnTypes, dictionary);
+		}
+	}
+
+	/**
+	 * Gets the pairs of categories to plot based on correlations that are already
+	 * in memory
+	 * 
+	 * @param categories   The identifiers of the categories for which we have data
+	 * @param dictionary   The dictionary for resolving explicitly listed names
+	 * @param correlations All known category correlations
+	 * @return The pairs of category identifiers to plot
+	 */
+	public Collection<Pair<Integer, Integer>> getCategoryPairs(int[] categories, NameDictionary dictionary,
+			Collection<CategoryCorrelation> correlations) {
+		switch (mode) {
+		case TOP:
+		case SIGNIFICANT:
+			return filterPairs(rankPairs(correlations, cc -> cc.catId1, cc -> cc.catId2, cc -> cc.correlation,
+					cc -> cc.significance), categories);
+		default:
+			return getPairs(categories, dictionary);
+		}
+	}
+
+	/**
+	 * Gets the pairs of vulnerability types to plot based on correlations that are
+	 * already in memory
+	 * 
+	 * @param vulnTypes    The identifiers of the vulnerability types for which we
+	 *                     have data
+	 * @param dictionary   The dictionary for resolving explicitly listed names
+	 * @param correlations All known vulnerability correlations
+	 * @return The pairs of vulnerability type identifiers to plot
+	 */
+	public Collection<Pair<Integer, Integer>> getVulnerabilityPairs(int[] vulnTypes, NameDictionary dictionary,
+			Collection<VulnerabilityCorrelation> correlations) {
+		switch (mode) {
+		case TOP:
+		case SIGNIFICANT:
+			return filterPairs(rankPairs(correlations, vc -> vc.vulnTypeId1, vc -> vc.vulnTypeId2,
+					vc -> vc.correlation, vc -> vc.significance), vulnTypes);
+		default:
+			return getPairs(vulnTypes, dictionary);
+		}
+	}
+
+	/**
+	 * Selects the pairs from the given correlations in the same way as the
+	 * database query does: strongest absolute correlation first, only significant
+	 * correlations in SIGNIFICANT mode, and at most n pairs in TOP mode
+	 * 
+	 * @param correlations The correlations from which to select
+	 * @param id1          The function that gets the first column of a correlation
+	 * @param id2          The function that gets the second column of a
+	 *                     correlation
+	 * @param correlation  The function that gets the correlation coefficient
+	 * @param significance The function that gets the significance threshold
+	 * @return The selected pairs, strongest first
+	 */
+	private <T> Set<Pair<Integer, Integer>> rankPairs(Collection<T> correlations, ToIntFunction<T> id1,
+			ToIntFunction<T> id2, ToDoubleFunction<T> correlation, ToDoubleFunction<T> significance) {
+		List<T> ranked = new ArrayList<>(correlations.size());
+		for (T c : correlations) {
+			double corr = correlation.applyAsDouble(c);
+			if (Double.isNaN(corr))
+				continue;
+			if (mode == PlotSelectionMode.SIGNIFICANT && Math.abs(corr) <= Math.abs(significance.applyAsDouble(c)))
+				continue;
+			ranked.add(c);
+		}
+		ranked.sort(Comparator.comparingDouble((T c) -> Math.abs(correlation.applyAsDouble(c))).reversed());
+		if (topN > 0 && ranked.size() > topN)
+			ranked = ranked.subList(0, topN);
+
+		Set<Pair<Integer, Integer>> pairs = new LinkedHashSet<>();
+		for (T c : ranked)
+			pairs.add(new ImmutablePair<>(id1.applyAsInt(c), id2.applyAsInt(c)));
+		return pairs;
+	}
+
+	/**
+	 * Gets the pairs to plot for modes that do not require any correlation data
+	 * 
+	 * @param columns    The identifiers of the columns for which we have data
+	 * @param dictionary The dictionary for resolving explicitly listed names
+	 * @return The pairs to plot
+	 */
+	private Collection<Pair<Integer, Integer>> getPairs(int[] columns, NameDictionary dictionary) {
+		if (mode == PlotSelectionMode.LIST) {
+			List<Pair<Integer, Integer>> pairs = new ArrayList<>(explicitPairs.size());
+			for (Pair<String, String> pair : explicitPairs) {
+				int id1 = resolveName(pair.getLeft(), dictionary);
+				int id2 = resolveName(pair.getRight(), dictionary);
+				if (id1 >= 0 && id2 >= 0)
+					pairs.add(new ImmutablePair<>(id1, id2));
+			}
+			return filterPairs(pairs, columns);
+		}
+		return allPairs(columns);
+	}
+
+	/**
+	 * Gets the identifier of a name from the pair file. Names that are not in the
+	 * dictionary are reported once, because a typo in the pair file would
+	 * otherwise silently drop the pair.
+	 * 
+	 * @param name       The name of the category or vulnerability type
+	 * @param dictionary The dictionary for resolving the name
+	 * @return The identifier of the name, or -1 if the name is unknown
+	 */
+	private int resolveName(String name, NameDictionary dictionary) {
+		int id = dictionary.getId(name);
+		if (id < 0) {
+			synchronized (unresolvedNames) {
+				if (unresolvedNames.add(name))
+					logger.warn(String.format("Unknown category or vulnerability type %s in the pair file", name));
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Gets all ordered pairs of distinct columns
+	 * 
+	 * @param columns The identifiers of the columns for which we have data
+	 * @return All ordered pairs of distinct columns
+	 */
+	public static Collection<Pair<Integer, Integer>> allPairs(int[] columns) {
+		List<Pair<Integer, Integer>> pairs = new ArrayList<>(columns.length * columns.length);
+		for (int col1 : columns) {
+			for (int col2 : columns) {
+				if (col1 != col2)
+					pairs.add(new ImmutablePair<>(col1, col2));
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * Removes all pairs that refer to columns for which we have no data
+	 * 
+	 * @param pairs   The pairs to filter
+	 * @param columns The identifiers of the columns for which we have data
+	 * @return The pairs for which we have data on both sides
+	 */
+	private static Collection<Pair<Integer, Integer>> filterPairs(Collection<Pair<Integer, Integer>> pairs,
+			int[] columns) {
+		Set<Integer> columnSet = IntStream.of(columns).boxed().collect(Collectors.toSet());
+		List<Pair<Integer, Integer>> filtered = new ArrayList<>(pairs.size());
+		for (Pair<Integer, Integer> pair : pairs) {
+			if (columnSet.contains(pair.getLeft()) && columnSet.contains(pair.getRight())
+					&& !pair.getLeft().equals(pair.getRight()))
+				filtered.add(pair);
+		}
+		return filtered;
+	}
+
+	/**
+	 * Gets the strategy by which this selection chooses the pairs to plot
+	 * 
+	 * @return The selection mode
+	 */
+	public PlotSelectionMode getMode() {
+		return mode;
+	}
+
+}
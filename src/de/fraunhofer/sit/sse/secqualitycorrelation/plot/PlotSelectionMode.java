@@ -0,0 +1,33 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.plot;
+
+/**
+ * The strategy for choosing which pairs of categories or vulnerability types
+ * shall be plotted
+ * 
+ * @author Steven Arzt
+ *
+ */
+public enum PlotSelectionMode {
+
+	/**
+	 * Plot all pairs of columns
+	 */
+	ALL,
+
+	/**
+	 * Only plot the pairs with the strongest absolute correlation
+	 */
+	TOP,
+
+	/**
+	 * Only plot the pairs whose absolute correlation exceeds the significance
+	 * threshold
+	 */
+	SIGNIFICANT,
+
+	/**
+	 * Only plot the pairs from an explicit list
+	 */
+	LIST
+
+}
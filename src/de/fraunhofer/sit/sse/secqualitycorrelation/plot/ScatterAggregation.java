@@ -0,0 +1,35 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.plot;
+
+/**
+ * The way in which the data points of a scatter plot are aggregated before
+ * they are written into the TEX file
+ * 
+ * @author Steven Arzt
+ *
+ */
+public enum ScatterAggregation {
+
+	/**
+	 * Write out one data point per job
+	 */
+	NONE,
+
+	/**
+	 * Merge identical data points into a single point with a weight
+	 */
+	WEIGHTED,
+
+	/**
+	 * Bin the data points into the cells of a regular grid, each cell being
+	 * represented by its weighted centroid
+	 */
+	GRID,
+
+	/**
+	 * Only aggregate if the number of data points exceeds the configured maximum.
+	 * Identical points are merged first, and the grid is only used if this is not
+	 * sufficient.
+	 */
+	AUTO
+
+}
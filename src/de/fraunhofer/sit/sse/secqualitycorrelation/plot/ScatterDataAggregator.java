@@ -0,0 +1,191 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.plot;
+
+import java.util.Arrays;
+
+/**
+ * Class for turning the raw data points of a scatter plot into the table that
+ * is written into the TEX file. Each line in the table consists of the x
+ * coordinate, the y coordinate, and the number of jobs represented by the
+ * point.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class ScatterDataAggregator {
+
+	/**
+	 * The default maximum number of points in a plot before the data gets
+	 * aggregated
+	 */
+	public static final int DEFAULT_MAX_POINTS = 5000;
+
+	private final ScatterAggregation mode;
+	private final int maxPoints;
+
+	public ScatterDataAggregator(ScatterAggregation mode, int maxPoints) {
+		if (maxPoints < 1)
+			throw new IllegalArgumentException("The maximum number of points must be positive");
+		this.mode = mode;
+		this.maxPoints = maxPoints;
+	}
+
+	/**
+	 * Gets the data points to write into the TEX file
+	 * 
+	 * @param x The x coordinates
+	 * @param y The y coordinates
+	 * @return The data point list to write into the TEX file
+	 */
+	public StringBuilder aggregate(int[] x, int[] y) {
+		if (x.length != y.length)
+			throw new IllegalArgumentException("Array must have equal length");
+
+		switch (mode) {
+		case NONE:
+			return writeRaw(x, y);
+		case WEIGHTED:
+			return writeWeighted(x, y, Integer.MAX_VALUE);
+		case GRID:
+			return writeGrid(x, y);
+		case AUTO:
+			if (x.length <= maxPoints)
+				return writeRaw(x, y);
+			StringBuilder sb = writeWeighted(x, y, maxPoints);
+			if (sb != null)
+				return sb;
+			return writeGrid(x, y);
+		default:
+			throw new IllegalStateException("Unsupported aggregation mode: " + mode);
+		}
+	}
+
+	/**
+	 * Writes out one data point per job
+	 * 
+	 * @param x The x coordinates
+	 * @param y The y coordinates
+	 * @return The data point list to write into the TEX file
+	 */
+	private StringBuilder writeRaw(int[] x, int[] y) {
+		StringBuilder sb = new StringBuilder(x.length * 25);
+		for (int i = 0; i < x.length; i++)
+			appendPoint(sb, x[i], y[i], 1);
+		return sb;
+	}
+
+	/**
+	 * Merges identical data points into weighted points
+	 * 
+	 * @param x         The x coordinates
+	 * @param y         The y coordinates
+	 * @param maxPoints The maximum number of distinct points that may be written
+	 * @return The data point list to write into the TEX file, or
+	 *         <code>null</code> if there are more distinct points than allowed
+	 */
+	private StringBuilder writeWeighted(int[] x, int[] y, int maxPoints) {
+		// Counts are never negative, so we can sort on a combined key instead of
+		// hashing the coordinate pairs
+		long[] keys = new long[x.length];
+		for (int i = 0; i < x.length; i++)
+			keys[i] = ((long) x[i] << 32) | (y[i] & 0xFFFFFFFFL);
+		Arrays.sort(keys);
+
+		StringBuilder sb = new StringBuilder(Math.min(x.length, maxPoints) * 25);
+		int numPoints = 0;
+		int i = 0;
+		while (i < keys.length) {
+			int j = i + 1;
+			while (j < keys.length && keys[j] == keys[i])
+				j++;
+			if (++numPoints > maxPoints)
+				return null;
+			appendPoint(sb, (int) (keys[i] >>> 32), (int) keys[i], j - i);
+			i = j;
+		}
+		return sb;
+	}
+
+	/**
+	 * Bins the data points into a regular grid that has at most as many cells as
+	 * we allow points in the plot
+	 * 
+	 * @param x The x coordinates
+	 * @param y The y coordinates
+	 * @return The data point list to write into the TEX file
+	 */
+	private StringBuilder writeGrid(int[] x, int[] y) {
+		if (x.length == 0)
+			return new StringBuilder();
+
+		int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+		int ymin = Integer.MAX_VALUE, ymax = Integer.MIN_VALUE;
+		for (int i = 0; i < x.length; i++) {
+			xmin = Math.min(xmin, x[i]);
+			xmax = Math.max(xmax, x[i]);
+			ymin = Math.min(ymin, y[i]);
+			ymax = Math.max(ymax, y[i]);
+		}
+
+		// We never need more cells per axis than we have distinct values
+		final int gridSize = Math.max(1, (int) Math.floor(Math.sqrt(maxPoints)));
+		final int xCells = (int) Math.min(gridSize, (long) xmax - xmin + 1);
+		final int yCells = (int) Math.min(gridSize, (long) ymax - ymin + 1);
+		final double xWidth = ((double) xmax - xmin + 1) / xCells;
+		final double yWidth = ((double) ymax - ymin + 1) / yCells;
+
+		int[] weights = new int[xCells * yCells];
+		double[] xSums = new double[weights.length];
+		double[] ySums = new double[weights.length];
+		for (int i = 0; i < x.length; i++) {
+			int cx = Math.min(xCells - 1, (int) ((x[i] - xmin) / xWidth));
+			int cy = Math.min(yCells - 1, (int) ((y[i] - ymin) / yWidth));
+			int cell = cx * yCells + cy;
+			weights[cell]++;
+			xSums[cell] += x[i];
+			ySums[cell] += y[i];
+		}
+
+		// We represent each cell by the centroid of the points inside it
+		StringBuilder sb = new StringBuilder(weights.length * 25);
+		for (int cell = 0; cell < weights.length; cell++) {
+			int w = weights[cell];
+			if (w > 0) {
+				sb.append(Math.round(xSums[cell] * 100 / w) / 100d);
+				sb.append('\t');
+				sb.append(Math.round(ySums[cell] * 100 / w) / 100d);
+				sb.append('\t');
+				sb.append(w);
+				sb.append('\n');
+			}
+		}
+		return sb;
+	}
+
+	private static void appendPoint(StringBuilder sb, int x, int y, int weight) {
+		sb.append(x);
+		sb.append('\t');
+		sb.append(y);
+		sb.append('\t');
+		sb.append(weight);
+		sb.append('\n');
+	}
+
+	/**
+	 * Gets the mode in which this aggregator operates
+	 * 
+	 * @return The aggregation mode
+	 */
+	public ScatterAggregation getMode() {
+		return mode;
+	}
+
+	/**
+	 * Gets the maximum number of points that the automatic mode allows in a plot
+	 * 
+	 * @return The maximum number of points in a plot
+	 */
+	public int getMaxPoints() {
+		return maxPoints;
+	}
+
+}
@@ -0,0 +1,148 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.shard;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountMatrix;
+
+/**
+ * Read-only snapshot of the category and vulnerability type matrices that the
+ * workers of a sharded correlation run map into memory. The snapshot contains
+ * the identifiers of the columns with data in ascending order, followed by the
+ * counts column by column. Workers on the same host share the pages of the
+ * mapped file instead of each holding its own copy of the matrices.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class MatrixSnapshot {
+
+	private static final int MAGIC = 0x5351534D;
+	private static final int VERSION = 1;
+
+	private final ByteBuffer buffer;
+	private final int rowCount;
+	private final int[][] columnIds = new int[ShardProtocol.NUM_KINDS][];
+	private final int[] dataOffsets = new int[ShardProtocol.NUM_KINDS];
+
+	private MatrixSnapshot(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a matrix snapshot");
+		int version = buffer.getInt(4);
+		if (version != VERSION)
+			throw new IOException(String.format("Unsupported matrix snapshot version %d", version));
+		rowCount = buffer.getInt(8);
+
+		int offset = 12;
+		for (int kind = 0; kind < ShardProtocol.NUM_KINDS; kind++) {
+			int[] ids = new int[buffer.getInt(offset)];
+			offset += 4;
+			for (int i = 0; i < ids.length; i++, offset += 4)
+				ids[i] = buffer.getInt(offset);
+			columnIds[kind] = ids;
+			dataOffsets[kind] = offset;
+			offset += ids.length * rowCount * 4;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the given matrices. Both matrices must have the same
+	 * rows.
+	 * 
+	 * @param file       The file to which to write the snapshot
+	 * @param catMatrix  The category matrix
+	 * @param vulnMatrix The vulnerability type matrix
+	 * @throws IOException
+	 */
+	public static void write(File file, CountMatrix catMatrix, CountMatrix vulnMatrix) throws IOException {
+		if (catMatrix.getRowCount() != vulnMatrix.getRowCount())
+			throw new IllegalArgumentException("The matrices must have the same rows");
+		long size = 12L;
+		for (CountMatrix matrix : new CountMatrix[] { catMatrix, vulnMatrix })
+			size += 4L + 4L * matrix.getColumnIds().length * (1L + matrix.getRowCount());
+		if (size > Integer.MAX_VALUE)
+			throw new IOException(String.format("Matrices with %d bytes are too large for a snapshot", size));
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(catMatrix.getRowCount());
+			writeMatrix(out, catMatrix);
+			writeMatrix(out, vulnMatrix);
+		}
+	}
+
+	private static void writeMatrix(DataOutputStream out, CountMatrix matrix) throws IOException {
+		int[] ids = matrix.getColumnIds();
+		out.writeInt(ids.length);
+		for (int id : ids)
+			out.writeInt(id);
+		for (int id : ids) {
+			for (int count : matrix.getColumn(id))
+				out.writeInt(count);
+		}
+	}
+
+	/**
+	 * Maps the given snapshot file into memory
+	 * 
+	 * @param file The snapshot file
+	 * @return The mapped snapshot
+	 * @throws IOException
+	 */
+	public static MatrixSnapshot map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// The mapping remains valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new MatrixSnapshot(buffer);
+		}
+	}
+
+	/**
+	 * Gets the number of rows, i.e., jobs, in the snapshot
+	 * 
+	 * @return The number of rows
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Gets the identifiers of the columns with data in the given matrix
+	 * 
+	 * @param kind The matrix, i.e., {@link ShardProtocol#KIND_CATEGORY} or
+	 *             {@link ShardProtocol#KIND_VULNERABILITY}
+	 * @return The column identifiers in ascending order
+	 */
+	public int[] getColumnIds(int kind) {
+		return columnIds[kind];
+	}
+
+	/**
+	 * Copies the counts in the given column out of the snapshot
+	 * 
+	 * @param kind  The matrix, i.e., {@link ShardProtocol#KIND_CATEGORY} or
+	 *              {@link ShardProtocol#KIND_VULNERABILITY}
+	 * @param index The position of the column in the list of column identifiers
+	 * @return The counts in the given column
+	 */
+	public int[] getColumn(int kind, int index) {
+		int[] col = new int[rowCount];
+		// Work on a private view, so that multiple threads can read concurrently
+		IntBuffer ints = buffer.duplicate().position(dataOffsets[kind] + index * rowCount * 4).slice()
+				.asIntBuffer();
+		ints.get(col);
+		return col;
+	}
+
+}
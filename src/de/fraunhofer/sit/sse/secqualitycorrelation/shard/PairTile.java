@@ -0,0 +1,119 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.shard;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * Rectangular block of the upper triangle of the pair space of one matrix. The
+ * tile covers all pairs (i, j) with i in [rowStart, rowEnd), j in [colStart,
+ * colEnd), and i &lt; j, where i and j are positions in the list of column
+ * identifiers of the matrix. Pairs whose correlation is already known are
+ * marked as skipped.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class PairTile {
+
+	/**
+	 * The default number of columns per side of a tile
+	 */
+	public static final int DEFAULT_SIZE = 32;
+
+	public final int kind;
+	public final int rowStart;
+	public final int rowEnd;
+	public final int colStart;
+	public final int colEnd;
+	private final BitSet skipped;
+
+	/**
+	 * Creates a new tile
+	 * 
+	 * @param kind     The matrix to which the tile refers
+	 * @param rowStart The first position of the first column of each pair
+	 * @param rowEnd   The position after the last first column
+	 * @param colStart The first position of the second column of each pair
+	 * @param colEnd   The position after the last second column
+	 * @param skipped  The pairs to skip, indexed by {@link #getLocalIndex(int, int)}
+	 */
+	public PairTile(int kind, int rowStart, int rowEnd, int colStart, int colEnd, BitSet skipped) {
+		this.kind = kind;
+		this.rowStart = rowStart;
+		this.rowEnd = rowEnd;
+		this.colStart = colStart;
+		this.colEnd = colEnd;
+		this.skipped = skipped;
+	}
+
+	/**
+	 * Gets the index of the given pair inside this tile
+	 * 
+	 * @param i The position of the first column
+	 * @param j The position of the second column
+	 * @return The index of the pair inside this tile
+	 */
+	public int getLocalIndex(int i, int j) {
+		return (i - rowStart) * (colEnd - colStart) + (j - colStart);
+	}
+
+	/**
+	 * Checks whether the given pair needs to be computed
+	 * 
+	 * @param i The position of the first column
+	 * @param j The position of the second column
+	 * @return True if the pair needs to be computed, false if it is skipped
+	 */
+	public boolean isPending(int i, int j) {
+		return i < j && !skipped.get(getLocalIndex(i, j));
+	}
+
+	/**
+	 * Gets the number of pairs in this tile that need to be computed
+	 * 
+	 * @return The number of pairs to compute
+	 */
+	public int getPendingCount() {
+		int count = 0;
+		for (int i = rowStart; i < rowEnd; i++) {
+			for (int j = Math.max(colStart, i + 1); j < colEnd; j++) {
+				if (!skipped.get(getLocalIndex(i, j)))
+					count++;
+			}
+		}
+		return count;
+	}
+
+	void write(DataOutputStream out) throws IOException {
+		out.writeByte(kind);
+		out.writeInt(rowStart);
+		out.writeInt(rowEnd);
+		out.writeInt(colStart);
+		out.writeInt(colEnd);
+		long[] words = skipped.toLongArray();
+		out.writeInt(words.length);
+		for (long word : words)
+			out.writeLong(word);
+	}
+
+	static PairTile read(DataInputStream in) throws IOException {
+		int kind = in.readByte();
+		int rowStart = in.readInt();
+		int rowEnd = in.readInt();
+		int colStart = in.readInt();
+		int colEnd = in.readInt();
+		long[] words = new long[in.readInt()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = in.readLong();
+		return new PairTile(kind, rowStart, rowEnd, colStart, colEnd, BitSet.valueOf(words));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%d-%d]x[%d-%d]", kind == ShardProtocol.KIND_CATEGORY ? "category" : "vulnerability",
+				rowStart, rowEnd, colStart, colEnd);
+	}
+
+}
@@ -0,0 +1,431 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.AnalysisResult;
+import de.fraunhofer.sit.sse.secqualitycorrelation.Checkpoint;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CategoryCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.CorrelationWriter;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.NameDictionary;
+import de.fraunhofer.sit.sse.secqualitycorrelation.database.VulnerabilityCorrelation;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+
+/**
+ * Coordinator of a sharded correlation run. The coordinator writes a snapshot of
+ * the count matrices, splits the upper triangle of the pair space into tiles,
+ * and hands the tiles to {@link ShardWorker} processes over a socket. The
+ * workers can be launched locally by the coordinator or started manually on
+ * other hosts. The results are merged into the analysis result and written
+ * through the correlation writer in the same way as in a single-process run.
+ * 
+ * If a worker disconnects before it has returned the results of its tile, the
+ * tile is handed to the next worker that asks for work.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class ShardCoordinator implements AutoCloseable {
+
+	private static final Logger logger = LogManager.getLogger(ShardCoordinator.class);
+
+	private final int port;
+	private final int numLocalWorkers;
+	private final boolean acceptRemote;
+
+	private ServerSocket serverSocket;
+	private File snapshotFile;
+	private final List<Process> localWorkers = new ArrayList<>();
+	private final Set<Socket> connections = new HashSet<>();
+
+	private final Deque<PairTile> pendingTiles = new ArrayDeque<>();
+	private int unfinishedTiles = 0;
+	private int activeConnections = 0;
+	private IOException failure = null;
+	private volatile boolean closed = false;
+
+	private AnalysisResult result;
+	private CorrelationWriter writer;
+	private Checkpoint checkpoint;
+	private final int[][] columnIds = new int[ShardProtocol.NUM_KINDS][];
+
+	/**
+	 * Creates a new coordinator
+	 * 
+	 * @param port            The port on which to accept workers from other hosts,
+	 *                        or a value smaller than one to only accept local
+	 *                        workers on a free port
+	 * @param numLocalWorkers The number of worker processes to launch on this host
+	 */
+	public ShardCoordinator(int port, int numLocalWorkers) {
+		if (port < 1 && numLocalWorkers < 1)
+			throw new IllegalArgumentException("Either a port or at least one local worker is required");
+		this.port = Math.max(0, port);
+		this.numLocalWorkers = Math.max(0, numLocalWorkers);
+		this.acceptRemote = port > 0;
+	}
+
+	/**
+	 * Computes the correlations of all pairs in the category and vulnerability
+	 * type matrices that are neither in the given result, nor pruned, nor marked
+	 * as completed in the given checkpoint. This method returns once all tiles
+	 * have been merged.
+	 * 
+	 * @param result     The count matrices and the known correlations. The new
+	 *                   correlations are added to this result.
+	 * @param writer     The writer for persisting the new correlations
+	 * @param checkpoint The checkpoint, or null if checkpointing is disabled
+	 * @throws IOException
+	 */
+	public void computePairs(AnalysisResult result, CorrelationWriter writer, Checkpoint checkpoint)
+			throws IOException {
+		if (serverSocket != null)
+			throw new IllegalStateException("A coordinator can only be used for a single run");
+		this.result = result;
+		this.writer = writer;
+		this.checkpoint = checkpoint;
+
+		// Plan the work
+		columnIds[ShardProtocol.KIND_CATEGORY] = result.getCategoryMatrix().getColumnIds();
+		columnIds[ShardProtocol.KIND_VULNERABILITY] = result.getVulnerabilityMatrix().getColumnIds();
+		addTiles(ShardProtocol.KIND_CATEGORY,
+				checkpoint == null ? new BitSet() : checkpoint.getCompletedCategoryPairs());
+		addTiles(ShardProtocol.KIND_VULNERABILITY,
+				checkpoint == null ? new BitSet() : checkpoint.getCompletedVulnerabilityPairs());
+		unfinishedTiles = pendingTiles.size();
+		if (unfinishedTiles == 0)
+			return;
+
+		snapshotFile = File.createTempFile("counts", ".snapshot");
+		snapshotFile.deleteOnExit();
+		MatrixSnapshot.write(snapshotFile, result.getCategoryMatrix(), result.getVulnerabilityMatrix());
+
+		// Wait for workers
+		if (acceptRemote)
+			serverSocket = new ServerSocket(port);
+		else
+			serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptThread = new Thread(this::acceptWorkers, "shard-coordinator");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+		logger.info(String.format("Distributing %d tiles over %d jobs, accepting workers on port %d",
+				unfinishedTiles, result.getCategoryMatrix().getRowCount(), serverSocket.getLocalPort()));
+		launchLocalWorkers();
+
+		synchronized (this) {
+			while (unfinishedTiles > 0 && failure == null) {
+				try {
+					wait(1000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for the workers");
+				}
+
+				// Without remote workers, we cannot make progress once all local workers
+				// are gone
+				if (!acceptRemote && activeConnections == 0 && unfinishedTiles > 0
+						&& localWorkers.stream().noneMatch(Process::isAlive))
+					failure = new IOException("All worker processes have terminated");
+			}
+			if (failure != null)
+				throw failure;
+		}
+		logger.info("All tiles have been computed");
+	}
+
+	/**
+	 * Splits the upper triangle of the pair space of the given matrix into tiles.
+	 * Tiles in which all pairs are known or pruned are not created.
+	 * 
+	 * @param kind      The matrix
+	 * @param completed The pairs that the checkpoint marks as completed
+	 */
+	private void addTiles(int kind, BitSet completed) {
+		int[] ids = columnIds[kind];
+		int size = PairTile.DEFAULT_SIZE;
+		for (int rowStart = 0; rowStart < ids.length; rowStart += size) {
+			int rowEnd = Math.min(rowStart + size, ids.length);
+			for (int colStart = rowStart; colStart < ids.length; colStart += size) {
+				int colEnd = Math.min(colStart + size, ids.length);
+				BitSet skipped = new BitSet();
+				PairTile tile = new PairTile(kind, rowStart, rowEnd, colStart, colEnd, skipped);
+				for (int i = rowStart; i < rowEnd; i++) {
+					for (int j = Math.max(colStart, i + 1); j < colEnd; j++) {
+						int pairIdx = Checkpoint.getPairIndex(i, j, ids.length);
+						if (completed.get(pairIdx))
+							skipped.set(tile.getLocalIndex(i, j));
+						else if (isKnown(kind, ids[i], ids[j])) {
+							skipped.set(tile.getLocalIndex(i, j));
+							completed.set(pairIdx);
+						} else if (isPruned(kind, ids[i], ids[j]))
+							skipped.set(tile.getLocalIndex(i, j));
+					}
+				}
+				if (tile.getPendingCount() > 0)
+					pendingTiles.add(tile);
+			}
+		}
+	}
+
+	private boolean isKnown(int kind, int id1, int id2) {
+		if (kind == ShardProtocol.KIND_CATEGORY)
+			return result.hasCategoryCorrelation(id1, id2);
+		return result.hasVulnerabilityCorrelation(id1, id2);
+	}
+
+	private boolean isPruned(int kind, int id1, int id2) {
+		if (kind == ShardProtocol.KIND_CATEGORY)
+			return result.isCategoryPairPruned(id1, id2);
+		return result.isVulnerabilityPairPruned(id1, id2);
+	}
+
+	/**
+	 * Launches the requested number of worker processes on this host
+	 * 
+	 * @throws IOException
+	 */
+	private void launchLocalWorkers() throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		String address = InetAddress.getLoopbackAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+		for (int i = 0; i < numLocalWorkers; i++) {
+			ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+					ShardWorker.class.getName(), "--coordinator", address);
+			pb.inheritIO();
+			synchronized (this) {
+				localWorkers.add(pb.start());
+			}
+		}
+	}
+
+	/**
+	 * Accepts worker connections until the coordinator is closed
+	 */
+	private void acceptWorkers() {
+		while (!closed) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread t = new Thread(() -> serve(socket), "shard-connection-" + socket.getRemoteSocketAddress());
+				t.setDaemon(true);
+				t.start();
+			} catch (IOException e) {
+				if (!closed)
+					logger.error("Could not accept worker connection", e);
+			}
+		}
+	}
+
+	/**
+	 * Hands out tiles to the worker on the other side of the given socket until
+	 * all tiles are finished
+	 * 
+	 * @param socket The connection to the worker
+	 */
+	private void serve(Socket socket) {
+		synchronized (this) {
+			activeConnections++;
+			connections.add(socket);
+		}
+		PairTile tile = null;
+		try (Socket s = socket) {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+			if (in.readInt() != ShardProtocol.MAGIC || in.readInt() != ShardProtocol.VERSION)
+				throw new IOException("Incompatible worker");
+
+			// Tell the worker where to find the snapshot
+			out.writeUTF(snapshotFile.getAbsolutePath());
+			out.writeLong(snapshotFile.length());
+			out.flush();
+			if (in.readBoolean()) {
+				Files.copy(snapshotFile.toPath(), out);
+				out.flush();
+			}
+			logger.info(String.format("Worker %s connected", socket.getRemoteSocketAddress()));
+
+			while ((tile = nextTile()) != null) {
+				long start = AnalysisMetrics.SHARD_TILE.start();
+				out.writeByte(ShardProtocol.MSG_TILE);
+				tile.write(out);
+				out.flush();
+
+				int numPairs = in.readInt();
+				int[] is = new int[numPairs];
+				int[] js = new int[numPairs];
+				double[] correlations = new double[numPairs];
+				double[] significances = new double[numPairs];
+				for (int p = 0; p < numPairs; p++) {
+					is[p] = in.readInt();
+					js[p] = in.readInt();
+					correlations[p] = in.readDouble();
+					significances[p] = in.readDouble();
+				}
+				AnalysisMetrics.SHARD_TILE.stop(start);
+				merge(tile, is, js, correlations, significances);
+				tile = null;
+			}
+			out.writeByte(ShardProtocol.MSG_DONE);
+			out.flush();
+		} catch (IOException e) {
+			if (!closed)
+				logger.warn(String.format("Lost worker %s", socket.getRemoteSocketAddress()), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			synchronized (this) {
+				// Somebody else needs to do the work of the lost worker
+				if (tile != null) {
+					pendingTiles.addFirst(tile);
+					AnalysisMetrics.SHARD_TILES_REASSIGNED.increment();
+				}
+				activeConnections--;
+				connections.remove(socket);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Gets the next tile to compute. If there are no pending tiles, but other
+	 * workers still have unfinished tiles, this method waits, because these tiles
+	 * might get reassigned.
+	 * 
+	 * @return The next tile to compute, or null if all tiles are finished
+	 * @throws InterruptedException
+	 */
+	private synchronized PairTile nextTile() throws InterruptedException {
+		while (pendingTiles.isEmpty() && unfinishedTiles > 0 && failure == null && !closed)
+			wait();
+		if (failure != null || closed)
+			return null;
+		return pendingTiles.poll();
+	}
+
+	/**
+	 * Merges the results of the given tile into the analysis result and the
+	 * database
+	 * 
+	 * @param tile          The tile
+	 * @param is            The positions of the first columns of the pairs
+	 * @param js            The positions of the second columns of the pairs
+	 * @param correlations  The correlations of the pairs
+	 * @param significances The significance thresholds of the pairs
+	 */
+	private synchronized void merge(PairTile tile, int[] is, int[] js, double[] correlations,
+			double[] significances) {
+		if (failure != null)
+			return;
+		int[] ids = columnIds[tile.kind];
+		NameDictionary dictionary = result.getDictionary();
+		try {
+			for (int p = 0; p < is.length; p++) {
+				int id1 = ids[is[p]];
+				int id2 = ids[js[p]];
+				int pairIdx = Checkpoint.getPairIndex(is[p], js[p], ids.length);
+				boolean high = Math.abs(correlations[p]) > Math.abs(significances[p]);
+				if (tile.kind == ShardProtocol.KIND_CATEGORY) {
+					CategoryCorrelation cc = new CategoryCorrelation(id1, id2, correlations[p]);
+					cc.significance = significances[p];
+					result.fillPartialCorrelation(cc);
+					writer.submit(cc);
+					result.addCategoryCorrelation(cc);
+					AnalysisMetrics.PAIRS_CATEGORIES.increment();
+					if (checkpoint != null)
+						checkpoint.getCompletedCategoryPairs().set(pairIdx);
+					if (high)
+						logger.info(String.format(
+								"HIGH Overall correlation between categories %s and %s is %.2f (significance is %.2f)",
+								dictionary.getName(id1), dictionary.getName(id2), correlations[p], significances[p]));
+				} else {
+					VulnerabilityCorrelation vc = new VulnerabilityCorrelation(id1, id2, correlations[p]);
+					vc.significance = significances[p];
+					result.fillPartialCorrelation(vc);
+					writer.submit(vc);
+					result.addVulnerabilityCorrelation(vc);
+					AnalysisMetrics.PAIRS_VULNERABILITIES.increment();
+					if (checkpoint != null)
+						checkpoint.getCompletedVulnerabilityPairs().set(pairIdx);
+					if (high)
+						logger.info(String.format(
+								"HIGH Overall correlation between issue types %s and %s is %.2f (significance is %.2f)",
+								dictionary.getName(id1), dictionary.getName(id2), correlations[p], significances[p]));
+				}
+			}
+			if (checkpoint != null)
+				checkpoint.writeIfDue(result, writer);
+		} catch (IOException e) {
+			failure = e;
+		}
+
+		unfinishedTiles--;
+		logger.info(String.format("Merged tile %s with %d pairs, %d tiles left", tile, is.length, unfinishedTiles));
+		notifyAll();
+	}
+
+	/**
+	 * Stops accepting workers, disconnects the remaining workers, and removes the
+	 * matrix snapshot
+	 */
+	@Override
+	public void close() {
+		List<Process> processes;
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			notifyAll();
+			processes = new ArrayList<>(localWorkers);
+		}
+		try {
+			if (serverSocket != null)
+				serverSocket.close();
+		} catch (IOException e) {
+			logger.warn("Could not close the coordinator socket", e);
+		}
+
+		// Workers that are still connected at this point are aborted
+		synchronized (this) {
+			for (Socket socket : connections) {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					// The worker is gone anyway
+				}
+			}
+		}
+
+		// Local workers terminate on their own once they have lost the connection
+		for (Process p : processes) {
+			try {
+				if (!p.waitFor(10, TimeUnit.SECONDS))
+					p.destroy();
+			} catch (InterruptedException e) {
+				p.destroy();
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (snapshotFile != null)
+			snapshotFile.delete();
+	}
+
+}
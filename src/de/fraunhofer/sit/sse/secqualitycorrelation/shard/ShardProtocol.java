@@ -0,0 +1,45 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.shard;
+
+/**
+ * Constants of the socket protocol between the coordinator and the workers of a
+ * sharded correlation run. All messages are written with
+ * {@link java.io.DataOutputStream}.
+ * 
+ * <ol>
+ * <li>The worker sends {@link #MAGIC} and {@link #VERSION}.</li>
+ * <li>The coordinator sends the path and the length of the matrix snapshot. The
+ * worker answers whether it needs the snapshot contents, because it cannot
+ * access the file under the given path, and the coordinator streams the file if
+ * so.</li>
+ * <li>The coordinator sends {@link #MSG_TILE} with a tile, and the worker
+ * answers with the correlations of all pairs in the tile. This is repeated
+ * until the coordinator sends {@link #MSG_DONE}.</li>
+ * </ol>
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class ShardProtocol {
+
+	public static final int MAGIC = 0x53515348;
+	public static final int VERSION = 1;
+
+	public static final byte MSG_TILE = 1;
+	public static final byte MSG_DONE = 2;
+
+	/**
+	 * The tile refers to the category matrix
+	 */
+	public static final int KIND_CATEGORY = 0;
+
+	/**
+	 * The tile refers to the vulnerability type matrix
+	 */
+	public static final int KIND_VULNERABILITY = 1;
+
+	static final int NUM_KINDS = 2;
+
+	private ShardProtocol() {
+	}
+
+}
@@ -0,0 +1,217 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.shard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import de.fraunhofer.sit.sse.secqualitycorrelation.MainClass;
+import de.fraunhofer.sit.sse.secqualitycorrelation.math.CountingRanks;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+
+/**
+ * Worker process of a sharded correlation run. The worker connects to the
+ * coordinator, maps the matrix snapshot into memory, and computes the
+ * correlations and significances of the tiles that the coordinator hands out
+ * until there are no more tiles. The worker neither needs the database nor the
+ * VUSC server.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class ShardWorker {
+
+	private static Logger logger;
+
+	private static final String OPTION_COORDINATOR = "c";
+
+	protected static final Options options = new Options();
+
+	static {
+		initializeCommandLineOptions();
+	}
+
+	private final String host;
+	private final int port;
+
+	/**
+	 * Initializes the set of available command-line options
+	 */
+	private static void initializeCommandLineOptions() {
+		options.addOption(OPTION_COORDINATOR, "coordinator", true,
+				"The host and port of the coordinator, e.g., localhost:4711");
+	}
+
+	/**
+	 * Creates a new worker
+	 * 
+	 * @param host The host of the coordinator
+	 * @param port The port of the coordinator
+	 */
+	public ShardWorker(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	public static void main(String[] args) {
+		// Explicitly load log configuration
+		File logConfigFile = new File("log4j2.properties");
+		if (logConfigFile.exists()) {
+			LoggerContext context = Configurator.initialize(null, logConfigFile.toURI().toString());
+			if (context != null)
+				logger = context.getLogger(ShardWorker.class);
+		}
+		if (logger == null)
+			logger = LogManager.getLogger(ShardWorker.class);
+
+		// We need proper parameters
+		final HelpFormatter formatter = new HelpFormatter();
+		final String usage = "java -cp CorrelationAnalysis.jar " + ShardWorker.class.getName() + " [OPTIONS]";
+		CommandLineParser parser = new DefaultParser();
+		try {
+			CommandLine cmd = parser.parse(options, args);
+			String coordinator = cmd.getOptionValue(OPTION_COORDINATOR);
+			int sep = coordinator == null ? -1 : coordinator.lastIndexOf(':');
+			if (sep < 0) {
+				formatter.printHelp(usage, options);
+				return;
+			}
+			new ShardWorker(coordinator.substring(0, sep), Integer.valueOf(coordinator.substring(sep + 1))).run();
+		} catch (ParseException | NumberFormatException e) {
+			formatter.printHelp(usage, options);
+		} catch (IOException e) {
+			logger.error("Lost connection to the coordinator", e);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Processes tiles until the coordinator has no more work
+	 * 
+	 * @throws IOException
+	 */
+	public void run() throws IOException {
+		if (logger == null)
+			logger = LogManager.getLogger(ShardWorker.class);
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+			out.writeInt(ShardProtocol.MAGIC);
+			out.writeInt(ShardProtocol.VERSION);
+			out.flush();
+
+			MatrixSnapshot snapshot = MatrixSnapshot.map(receiveSnapshot(in, out));
+			logger.info(String.format("Connected to coordinator %s:%d, snapshot has %d jobs", host, port,
+					snapshot.getRowCount()));
+
+			int numTiles = 0;
+			while (in.readByte() == ShardProtocol.MSG_TILE) {
+				PairTile tile = PairTile.read(in);
+				computeTile(snapshot, tile, out);
+				out.flush();
+				numTiles++;
+			}
+			logger.info(String.format("Coordinator has no more work, processed %d tiles", numTiles));
+		}
+	}
+
+	/**
+	 * Obtains the matrix snapshot. If the file that the coordinator names is not
+	 * accessible from this host, the coordinator sends the contents, which we
+	 * store in a temporary file.
+	 * 
+	 * @param in  The stream from the coordinator
+	 * @param out The stream to the coordinator
+	 * @return The snapshot file
+	 * @throws IOException
+	 */
+	private File receiveSnapshot(DataInputStream in, DataOutputStream out) throws IOException {
+		File file = new File(in.readUTF());
+		long length = in.readLong();
+		boolean needContents = !file.canRead() || file.length() != length;
+		out.writeBoolean(needContents);
+		out.flush();
+		if (!needContents)
+			return file;
+
+		File localFile = File.createTempFile("snapshot", ".bin");
+		localFile.deleteOnExit();
+		try (OutputStream fos = new BufferedOutputStream(new FileOutputStream(localFile), 1 << 16)) {
+			byte[] buf = new byte[1 << 16];
+			long remaining = length;
+			while (remaining > 0) {
+				int read = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+				if (read < 0)
+					throw new IOException("Snapshot transfer ended prematurely");
+				fos.write(buf, 0, read);
+				remaining -= read;
+			}
+		}
+		return localFile;
+	}
+
+	/**
+	 * Computes all pending pairs of the given tile and sends the results to the
+	 * coordinator
+	 * 
+	 * @param snapshot The matrix snapshot
+	 * @param tile     The tile to compute
+	 * @param out      The stream to the coordinator
+	 * @throws IOException
+	 */
+	private void computeTile(MatrixSnapshot snapshot, PairTile tile, DataOutputStream out) throws IOException {
+		// Each column of the tile is only copied out of the snapshot and ranked
+		// once
+		int[][] rowCols = new int[tile.rowEnd - tile.rowStart][];
+		int[][] colCols = new int[tile.colEnd - tile.colStart][];
+		double[][] rowRanks = new double[rowCols.length][];
+		double[][] colRanks = new double[colCols.length][];
+
+		out.writeInt(tile.getPendingCount());
+		for (int i = tile.rowStart; i < tile.rowEnd; i++) {
+			for (int j = Math.max(tile.colStart, i + 1); j < tile.colEnd; j++) {
+				if (!tile.isPending(i, j))
+					continue;
+				if (rowCols[i - tile.rowStart] == null) {
+					rowCols[i - tile.rowStart] = snapshot.getColumn(tile.kind, i);
+					rowRanks[i - tile.rowStart] = CountingRanks.scaledRanks(rowCols[i - tile.rowStart]);
+				}
+				if (colCols[j - tile.colStart] == null) {
+					colCols[j - tile.colStart] = snapshot.getColumn(tile.kind, j);
+					colRanks[j - tile.colStart] = CountingRanks.scaledRanks(colCols[j - tile.colStart]);
+				}
+				int[] vals1 = rowCols[i - tile.rowStart];
+				int[] vals2 = colCols[j - tile.colStart];
+
+				long start = AnalysisMetrics.PAIR_CORRELATION.start();
+				double correlation = MainClass.correlateRanks(rowRanks[i - tile.rowStart],
+						colRanks[j - tile.colStart]);
+				double significance = MainClass.computeSignificance(vals1, vals2);
+				AnalysisMetrics.PAIR_CORRELATION.stop(start);
+
+				out.writeInt(i);
+				out.writeInt(j);
+				out.writeDouble(correlation);
+				out.writeDouble(significance);
+			}
+		}
+	}
+
+}
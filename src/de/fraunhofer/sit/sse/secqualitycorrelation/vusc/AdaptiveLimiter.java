@@ -0,0 +1,238 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.vusc;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.codeinspect.assessment.client.invoker.ApiException;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+
+/**
+ * Limits the number of concurrent calls to the VUSC server. The VUSC server is
+ * shared with other users, so we must not flood it with requests, but we still
+ * want to fetch as fast as the server allows.
+ * 
+ * The limit adapts to the server in an AIMD fashion: Every successful call
+ * raises the limit by roughly one call per round trip. If a call fails, the
+ * limit is halved. If the recent latency grows far beyond the long-term
+ * latency, the server is queuing our requests, and the limit is reduced
+ * slightly. The limit therefore settles near the highest concurrency that the
+ * server can sustain.
+ * 
+ * Calls that fail with a transient error, i.e., a network error, a timeout, an
+ * overload response, or a server error, are retried with an exponential
+ * backoff and full jitter. After too many consecutive failures, the circuit
+ * opens and no calls are made until a cool-down period has passed. Afterwards,
+ * a single trial call decides whether the circuit closes again.
+ * 
+ * The limiter does not abort calls by itself. The per-call timeouts are
+ * configured on the API client.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class AdaptiveLimiter {
+
+	public static final int DEFAULT_MAX_RETRIES = 5;
+
+	private static final double LATENCY_TOLERANCE = 2.0;
+	private static final double SHORT_ALPHA = 0.2;
+	private static final double LONG_ALPHA = 0.02;
+	private static final double LATENCY_DECREASE = 0.9;
+	private static final double FAILURE_DECREASE = 0.5;
+
+	private static final long BASE_BACKOFF_MILLIS = 500;
+	private static final long MAX_BACKOFF_MILLIS = 60_000;
+	private static final int FAILURE_THRESHOLD = 5;
+	private static final long COOLDOWN_MILLIS = 30_000;
+
+	private static final Logger logger = LogManager.getLogger(AdaptiveLimiter.class);
+
+	/**
+	 * A single call to the VUSC server
+	 * 
+	 * @param <T> The type of the result
+	 */
+	@FunctionalInterface
+	public interface ApiCall<T> {
+
+		T call() throws ApiException;
+
+	}
+
+	private final int maxLimit;
+	private final int maxRetries;
+
+	private double limit;
+	private int inFlight = 0;
+	private double shortLatency = Double.NaN;
+	private double longLatency = Double.NaN;
+
+	private int consecutiveFailures = 0;
+	private long openUntil = 0;
+	private boolean trialInFlight = false;
+
+	/**
+	 * Creates a new limiter
+	 * 
+	 * @param maxLimit   The maximum number of concurrent calls
+	 * @param maxRetries The maximum number of retries of a failed call
+	 */
+	public AdaptiveLimiter(int maxLimit, int maxRetries) {
+		this.maxLimit = Math.max(1, maxLimit);
+		this.maxRetries = Math.max(0, maxRetries);
+		this.limit = Math.min(this.maxLimit, 4);
+	}
+
+	/**
+	 * Executes the given call once a slot is available, and retries it on
+	 * transient errors
+	 * 
+	 * @param <T>  The type of the result
+	 * @param call The call to execute
+	 * @return The result of the call
+	 * @throws ApiException If the call has failed permanently, or if all retries
+	 *                      have failed
+	 */
+	public <T> T execute(ApiCall<T> call) throws ApiException {
+		for (int attempt = 0;; attempt++) {
+			boolean trial = acquire();
+			long start = System.nanoTime();
+			T result;
+			try {
+				result = call.call();
+			} catch (ApiException e) {
+				boolean transientError = isTransient(e);
+				onFailure(trial, transientError);
+				if (!transientError || attempt >= maxRetries)
+					throw e;
+				long backoff = ThreadLocalRandom.current()
+						.nextLong(Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 20)) + 1);
+				logger.warn(String.format("Call to VUSC server failed with code %d, retry %d of %d in %d ms",
+						e.getCode(), attempt + 1, maxRetries, backoff));
+				AnalysisMetrics.VUSC_RETRIES.increment();
+				sleep(backoff);
+				continue;
+			} catch (RuntimeException e) {
+				onFailure(trial, false);
+				throw e;
+			}
+			onSuccess(trial, System.nanoTime() - start);
+			return result;
+		}
+	}
+
+	/**
+	 * Checks whether the given error is transient, i.e., whether the call might
+	 * succeed when repeated
+	 * 
+	 * @param e The error
+	 * @return True if the call shall be retried, false otherwise
+	 */
+	private static boolean isTransient(ApiException e) {
+		// Code 0 means that there was no response at all, e.g., a timeout
+		int code = e.getCode();
+		return code == 0 || code == 408 || code == 429 || code >= 500;
+	}
+
+	/**
+	 * Waits until the circuit is closed and a slot is available
+	 * 
+	 * @return True if the caller makes the trial call of a half-open circuit,
+	 *         false otherwise
+	 * @throws ApiException If the thread was interrupted
+	 */
+	private synchronized boolean acquire() throws ApiException {
+		try {
+			while (true) {
+				long now = System.currentTimeMillis();
+				if (now < openUntil) {
+					wait(openUntil - now);
+					continue;
+				}
+				if (consecutiveFailures >= FAILURE_THRESHOLD) {
+					// Half-open circuit, only a single trial call may pass
+					if (!trialInFlight && inFlight == 0) {
+						trialInFlight = true;
+						inFlight++;
+						return true;
+					}
+				} else if (inFlight < (int) limit) {
+					inFlight++;
+					return false;
+				}
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ApiException(e);
+		}
+	}
+
+	private synchronized void onSuccess(boolean trial, long latencyNanos) {
+		inFlight--;
+		if (trial) {
+			trialInFlight = false;
+			logger.info("VUSC server is responding again, closing circuit");
+		}
+		consecutiveFailures = 0;
+
+		double latency = latencyNanos;
+		if (Double.isNaN(shortLatency)) {
+			shortLatency = latency;
+			longLatency = latency;
+		} else {
+			shortLatency += SHORT_ALPHA * (latency - shortLatency);
+			longLatency += LONG_ALPHA * (latency - longLatency);
+		}
+		if (shortLatency > LATENCY_TOLERANCE * longLatency)
+			setLimit(limit * LATENCY_DECREASE);
+		else
+			setLimit(limit + 1 / limit);
+		notifyAll();
+	}
+
+	private synchronized void onFailure(boolean trial, boolean transientError) {
+		inFlight--;
+		if (trial)
+			trialInFlight = false;
+		if (transientError) {
+			setLimit(limit * FAILURE_DECREASE);
+			if (++consecutiveFailures >= FAILURE_THRESHOLD) {
+				if (!trial)
+					logger.warn(String.format("%d consecutive calls to VUSC server failed, opening circuit for %d s",
+							consecutiveFailures, COOLDOWN_MILLIS / 1000));
+				openUntil = System.currentTimeMillis() + COOLDOWN_MILLIS;
+				AnalysisMetrics.VUSC_CIRCUIT_OPENED.increment();
+			}
+		}
+		notifyAll();
+	}
+
+	private void setLimit(double newLimit) {
+		newLimit = Math.max(1, Math.min(maxLimit, newLimit));
+		if ((int) newLimit != (int) limit)
+			logger.debug(String.format("VUSC concurrency limit is now %d", (int) newLimit));
+		limit = newLimit;
+	}
+
+	private static void sleep(long millis) throws ApiException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ApiException(e);
+		}
+	}
+
+	/**
+	 * Gets the current concurrency limit
+	 * 
+	 * @return The current concurrency limit
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+}
@@ -0,0 +1,493 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.vusc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import de.codeinspect.assessment.client.invoker.JSON;
+import de.codeinspect.assessment.client.models.DetailedJobStatus;
+import de.codeinspect.assessment.client.models.Job;
+import de.codeinspect.assessment.client.models.JobResults;
+
+/**
+ * Local cache of the complete job responses of the VUSC server, including the
+ * findings. With this cache, the counts can be derived again after changing
+ * the cutoff or the counting logic without downloading every job again.
+ * 
+ * The responses are compressed and appended to segment files. Each record
+ * consists of the job identifier, the finish date of the job, the lengths of
+ * the listing and of the compressed payload, the listing, and the payload
+ * itself. The listing is the job without its results, which is all we need for
+ * listing the cached jobs, so that the payloads with the findings are only
+ * decoded when a job is processed. Segments from before the listings were
+ * recorded have no segment header, and their listings are derived from the
+ * payloads once when they are scanned. New records are never appended to such
+ * a segment.
+ * 
+ * An index maps the job identifiers to the listing and the latest record of
+ * each job. The index is written when the cache is closed. If the index is
+ * missing or older than the segments, the missing part is rebuilt by scanning
+ * the segments.
+ * 
+ * A cached response is only valid for the finish date with which it was
+ * stored, so jobs that have been re-run on the server are downloaded again.
+ * 
+ * @author Steven Arzt
+ *
+ */
+public class JobResponseCache implements AutoCloseable {
+
+	/**
+	 * The size after which a new segment file is started
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+	private static final int INDEX_MAGIC = 0x5643494E;
+	private static final int INDEX_VERSION = 2;
+	private static final String INDEX_FILE = "index.bin";
+	private static final int SEGMENT_MAGIC = 0x56435347;
+	private static final int SEGMENT_VERSION = 2;
+	private static final int SEGMENT_HEADER_SIZE = 8;
+	private static final int LEGACY_RECORD_HEADER_SIZE = 20;
+	private static final int RECORD_HEADER_SIZE = 24;
+
+	private static final Logger logger = LogManager.getLogger(JobResponseCache.class);
+
+	/**
+	 * The location of a cached response
+	 */
+	private static class Entry {
+
+		private final long finishDate;
+		private final int segment;
+		private final long offset;
+		private final int length;
+		private final byte[] listing;
+
+		private Entry(long finishDate, int segment, long offset, int length, byte[] listing) {
+			this.finishDate = finishDate;
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.listing = listing;
+		}
+
+	}
+
+	private final File directory;
+	private final JSON json;
+	private final long segmentSize;
+
+	private final Map<Long, Entry> index = new LinkedHashMap<>();
+	private final List<RandomAccessFile> readers = new ArrayList<>();
+	private DataOutputStream writer;
+	private long writerLength;
+	private boolean dirty = false;
+
+	/**
+	 * Opens the cache in the given directory with the default segment size
+	 * 
+	 * @param directory The directory that contains the segments and the index
+	 * @param json      The JSON mapper of the VUSC client for converting jobs
+	 * @throws IOException
+	 */
+	public JobResponseCache(File directory, JSON json) throws IOException {
+		this(directory, json, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens the cache in the given directory
+	 * 
+	 * @param directory   The directory that contains the segments and the index
+	 * @param json        The JSON mapper of the VUSC client for converting jobs
+	 * @param segmentSize The size after which a new segment file is started
+	 * @throws IOException
+	 */
+	public JobResponseCache(File directory, JSON json, long segmentSize) throws IOException {
+		this.directory = directory;
+		this.json = json;
+		this.segmentSize = segmentSize;
+		if (!directory.exists() && !directory.mkdirs())
+			throw new IOException(String.format("Could not create cache directory %s", directory));
+
+		long[] indexedLengths = readIndex();
+		for (int segment = 0; getSegmentFile(segment).exists(); segment++) {
+			long indexed = segment < indexedLengths.length ? indexedLengths[segment] : 0;
+			scanSegment(segment, indexed);
+			readers.add(new RandomAccessFile(getSegmentFile(segment), "r"));
+		}
+		logger.info(String.format("Opened job cache with %d jobs in %d segments", index.size(), readers.size()));
+	}
+
+	private File getSegmentFile(int segment) {
+		return new File(directory, String.format("segment-%05d.dat", segment));
+	}
+
+	/**
+	 * Reads the index file
+	 * 
+	 * @return The length of each segment that is covered by the index
+	 */
+	private long[] readIndex() {
+		File indexFile = new File(directory, INDEX_FILE);
+		if (!indexFile.exists())
+			return new long[0];
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+			if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION)
+				throw new IOException("Unsupported job cache index format");
+			long[] lengths = new long[in.readInt()];
+			for (int i = 0; i < lengths.length; i++)
+				lengths[i] = in.readLong();
+			int numEntries = in.readInt();
+			for (int i = 0; i < numEntries; i++) {
+				long jobId = in.readLong();
+				long finishDate = in.readLong();
+				int segment = in.readInt();
+				long offset = in.readLong();
+				int length = in.readInt();
+				byte[] listing = new byte[in.readInt()];
+				in.readFully(listing);
+				index.put(jobId, new Entry(finishDate, segment, offset, length, listing));
+			}
+			return lengths;
+		} catch (IOException e) {
+			// We can always rebuild the index from the segments
+			logger.warn(String.format("Could not read job cache index %s, rebuilding it", indexFile), e);
+			index.clear();
+			dirty = true;
+			return new long[0];
+		}
+	}
+
+	/**
+	 * Checks whether the given segment starts with a segment header, i.e., whether
+	 * its records contain the listings of the jobs
+	 * 
+	 * @param segment The segment number
+	 * @return True if the segment has a header, false if it is a legacy segment
+	 *         or empty
+	 * @throws IOException
+	 */
+	private boolean hasSegmentHeader(int segment) throws IOException {
+		File file = getSegmentFile(segment);
+		if (file.length() < SEGMENT_HEADER_SIZE)
+			return false;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return in.readInt() == SEGMENT_MAGIC && in.readInt() == SEGMENT_VERSION;
+		}
+	}
+
+	/**
+	 * Adds the records of the given segment to the index, starting at the given
+	 * position. A partially written record at the end of the segment is removed.
+	 * 
+	 * @param segment The segment number
+	 * @param start   The position from which to scan
+	 * @throws IOException
+	 */
+	private void scanSegment(int segment, long start) throws IOException {
+		File file = getSegmentFile(segment);
+		long length = file.length();
+		if (start >= length)
+			return;
+
+		boolean hasHeader = hasSegmentHeader(segment);
+		long validLength = hasHeader ? Math.max(start, SEGMENT_HEADER_SIZE) : start;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			in.skipNBytes(validLength);
+			while (true) {
+				long jobId;
+				long finishDate;
+				int headerSize;
+				byte[] listing;
+				int payloadLength;
+				byte[] payload = null;
+				try {
+					jobId = in.readLong();
+					finishDate = in.readLong();
+					if (hasHeader) {
+						int listingLength = in.readInt();
+						payloadLength = in.readInt();
+						headerSize = RECORD_HEADER_SIZE + listingLength;
+						if (listingLength < 0 || payloadLength < 0
+								|| validLength + headerSize + payloadLength > length)
+							break;
+						listing = new byte[listingLength];
+						in.readFully(listing);
+						in.skipNBytes(payloadLength);
+					} else {
+						payloadLength = in.readInt();
+						headerSize = LEGACY_RECORD_HEADER_SIZE;
+						if (payloadLength < 0 || validLength + headerSize + payloadLength > length)
+							break;
+						payload = new byte[payloadLength];
+						in.readFully(payload);
+						listing = null;
+					}
+				} catch (EOFException e) {
+					break;
+				}
+
+				// Legacy records only have the complete response, from which we derive the
+				// listing once
+				if (listing == null)
+					listing = toListing(decode(payload));
+				index.put(jobId, new Entry(finishDate, segment, validLength + headerSize, payloadLength, listing));
+				validLength += headerSize + payloadLength;
+			}
+		}
+		dirty = true;
+
+		// Drop a partially written record at the end of the segment
+		if (validLength < length) {
+			logger.warn(String.format("Discarding %d bytes of an incomplete record at the end of %s",
+					length - validLength, file));
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(validLength);
+			}
+		}
+	}
+
+	/**
+	 * Gets the cached response for the given job
+	 * 
+	 * @param jobId      The job identifier
+	 * @param finishDate The finish date of the job as reported by the server
+	 * @return The cached job, or <code>null</code> if the job is not cached or was
+	 *         cached with a different finish date
+	 * @throws IOException
+	 */
+	public Job get(long jobId, long finishDate) throws IOException {
+		byte[] payload;
+		synchronized (this) {
+			Entry entry = index.get(jobId);
+			if (entry == null || entry.finishDate != finishDate)
+				return null;
+			payload = readPayload(entry);
+		}
+
+		// Decompress outside of the lock
+		return decode(payload);
+	}
+
+	/**
+	 * Decompresses and parses a cached response
+	 * 
+	 * @param payload The compressed response
+	 * @return The job with its results
+	 * @throws IOException
+	 */
+	private Job decode(byte[] payload) throws IOException {
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+			return json.deserialize(new String(in.readAllBytes(), StandardCharsets.UTF_8), Job.class);
+		}
+	}
+
+	/**
+	 * Serializes the given job without its results for the listing. The results
+	 * are removed from the job temporarily, so the job must not be used
+	 * concurrently.
+	 * 
+	 * @param job The job
+	 * @return The listing of the job
+	 */
+	private byte[] toListing(Job job) {
+		JobResults results = job.getJobResults();
+		job.setJobResults(null);
+		try {
+			return json.serialize(job).getBytes(StandardCharsets.UTF_8);
+		} finally {
+			job.setJobResults(results);
+		}
+	}
+
+	private byte[] readPayload(Entry entry) throws IOException {
+		RandomAccessFile raf = readers.get(entry.segment);
+		byte[] payload = new byte[entry.length];
+		raf.seek(entry.offset);
+		raf.readFully(payload);
+		return payload;
+	}
+
+	/**
+	 * Gets all cached jobs in the order in which they were first added
+	 * 
+	 * @return The identifiers and finish dates of all cached jobs
+	 */
+	public synchronized Map<Long, Long> getJobs() {
+		Map<Long, Long> jobs = new LinkedHashMap<>(index.size() * 2);
+		for (Map.Entry<Long, Entry> entry : index.entrySet())
+			jobs.put(entry.getKey(), entry.getValue().finishDate);
+		return jobs;
+	}
+
+	/**
+	 * Gets all cached jobs without their results, e.g., for running the analysis
+	 * without access to the VUSC server. The jobs are taken from the listings in
+	 * the index, so no response is decoded. The results can be obtained via
+	 * {@link #get(long, long)}.
+	 * 
+	 * @return The cached jobs without their results
+	 */
+	public List<Job> listJobs() {
+		List<byte[]> listings;
+		synchronized (this) {
+			listings = new ArrayList<>(index.size());
+			for (Entry entry : index.values())
+				listings.add(entry.listing);
+		}
+		List<Job> jobs = new ArrayList<>(listings.size());
+		for (byte[] listing : listings)
+			jobs.add(json.deserialize(new String(listing, StandardCharsets.UTF_8), Job.class));
+		return jobs;
+	}
+
+	/**
+	 * Adds the given job to the cache, replacing any previous response for the
+	 * same job. The job must not be used concurrently while it is added.
+	 * 
+	 * @param job The job including its results
+	 * @throws IOException
+	 */
+	public void put(Job job) throws IOException {
+		// Compress outside of the lock
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+			gzip.write(json.serialize(job).getBytes(StandardCharsets.UTF_8));
+		}
+		byte[] listing = toListing(job);
+		long finishDate = getFinishDate(job);
+
+		synchronized (this) {
+			if (writer == null || writerLength >= segmentSize)
+				openWriter();
+			writer.writeLong(job.getId());
+			writer.writeLong(finishDate);
+			writer.writeInt(listing.length);
+			writer.writeInt(bos.size());
+			writer.write(listing);
+			bos.writeTo(writer);
+			writer.flush();
+			int headerSize = RECORD_HEADER_SIZE + listing.length;
+			index.put(job.getId(), new Entry(finishDate, readers.size() - 1, writerLength + headerSize, bos.size(),
+					listing));
+			writerLength += headerSize + bos.size();
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Opens the writer on the last segment, or on a new segment if the last one
+	 * is full or has no listings
+	 * 
+	 * @throws IOException
+	 */
+	private void openWriter() throws IOException {
+		if (writer != null)
+			writer.close();
+		int segment = readers.size() - 1;
+		if (segment < 0 || getSegmentFile(segment).length() >= segmentSize || !hasSegmentHeader(segment)) {
+			segment++;
+			readers.add(null);
+		}
+		File file = getSegmentFile(segment);
+		writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+		writerLength = file.length();
+		if (writerLength == 0) {
+			writer.writeInt(SEGMENT_MAGIC);
+			writer.writeInt(SEGMENT_VERSION);
+			writer.flush();
+			writerLength = SEGMENT_HEADER_SIZE;
+		}
+		if (readers.get(segment) == null)
+			readers.set(segment, new RandomAccessFile(file, "r"));
+	}
+
+	/**
+	 * Gets the finish date of the given job
+	 * 
+	 * @param job The job
+	 * @return The finish date of the job, or 0 if the job has not finished
+	 */
+	public static long getFinishDate(Job job) {
+		DetailedJobStatus status = job.getStatus();
+		return status == null ? 0 : status.getFinishDate();
+	}
+
+	/**
+	 * Writes the index and closes all segment files
+	 * 
+	 * @throws IOException
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+		}
+		if (dirty)
+			writeIndex();
+		for (RandomAccessFile raf : readers) {
+			if (raf != null)
+				raf.close();
+		}
+		readers.clear();
+	}
+
+	/**
+	 * Writes the index file. The file is replaced atomically, so that a crash
+	 * leaves the previous index intact.
+	 * 
+	 * @throws IOException
+	 */
+	private void writeIndex() throws IOException {
+		File indexFile = new File(directory, INDEX_FILE);
+		File tempFile = new File(directory, INDEX_FILE + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))) {
+			out.writeInt(INDEX_MAGIC);
+			out.writeInt(INDEX_VERSION);
+			out.writeInt(readers.size());
+			for (int segment = 0; segment < readers.size(); segment++)
+				out.writeLong(getSegmentFile(segment).length());
+			out.writeInt(index.size());
+			for (Map.Entry<Long, Entry> e : index.entrySet()) {
+				Entry entry = e.getValue();
+				out.writeLong(e.getKey());
+				out.writeLong(entry.finishDate);
+				out.writeInt(entry.segment);
+				out.writeLong(entry.offset);
+				out.writeInt(entry.length);
+				out.writeInt(entry.listing.length);
+				out.write(entry.listing);
+			}
+		}
+		Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		dirty = false;
+	}
+
+}
@@ -0,0 +1,160 @@
+package de.fraunhofer.sit.sse.secqualitycorrelation.vusc;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import de.codeinspect.assessment.client.api.JobsApi;
+import de.codeinspect.assessment.client.api.VulnerabilitiesApi;
+import de.codeinspect.assessment.client.invoker.ApiClient;
+import de.codeinspect.assessment.client.invoker.ApiException;
+import de.codeinspect.assessment.client.models.Job;
+import de.fraunhofer.sit.sse.secqualitycorrelation.metrics.AnalysisMetrics;
+
+/**
+ * A single VUSC server from which we take jobs. If we take jobs from multiple
+ * servers, their job identifiers may collide. We therefore place the index of
+ * the server in the upper bits of the job identifier. The first server has
+ * index zero, so its job identifiers are the same as on the server itself. The
+ * index of each server is recorded in the database, so that it stays the same
+ * across runs.
+ *
+ * @author Steven Arzt
+ *
+ */
+public class VuscSource {
+
+	/**
+	 * The number of bits for the job identifier on the server
+	 */
+	public static final int SOURCE_SHIFT = 48;
+
+	/**
+	 * The maximum number of servers
+	 */
+	public static final int MAX_SOURCES = 1 << (63 - SOURCE_SHIFT);
+
+	private static final long LOCAL_ID_MASK = (1L << SOURCE_SHIFT) - 1;
+
+	private final int index;
+	private final String url;
+	private final ApiClient apiClient;
+	private final JobsApi jobsApi;
+	private final AdaptiveLimiter limiter;
+
+	/**
+	 * Creates a new source
+	 *
+	 * @param index          The index of the server
+	 * @param url            The base URL of the server
+	 * @param timeoutSeconds The number of seconds after which a call is aborted
+	 * @param maxConcurrency The maximum number of concurrent calls
+	 * @param maxRetries     The maximum number of retries of a failed call
+	 */
+	public VuscSource(int index, String url, int timeoutSeconds, int maxConcurrency, int maxRetries) {
+		if (index < 0 || index >= MAX_SOURCES)
+			throw new IllegalArgumentException(String.format("Invalid source index: %d", index));
+		this.index = index;
+		this.url = url;
+
+		apiClient = new ApiClient();
+		apiClient.setBasePath(url);
+		apiClient.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(timeoutSeconds));
+		apiClient.setReadTimeout((int) TimeUnit.SECONDS.toMillis(timeoutSeconds));
+		jobsApi = new JobsApi(apiClient);
+		limiter = new AdaptiveLimiter(maxConcurrency, maxRetries);
+	}
+
+	/**
+	 * Gets all jobs from the server. The job identifiers are replaced with the
+	 * global ones.
+	 *
+	 * @return The jobs on the server
+	 * @throws ApiException
+	 */
+	public List<Job> listJobs() throws ApiException {
+		long start = AnalysisMetrics.JOB_LIST_FETCH.start();
+		List<Job> jobs = limiter.execute(() -> jobsApi.getJobs(false, null, null, null, null));
+		AnalysisMetrics.JOB_LIST_FETCH.stop(start);
+		AnalysisMetrics.JOBS_LISTED.add(jobs.size());
+		for (Job j : jobs)
+			j.setId(toGlobalId(index, j.getId()));
+		return jobs;
+	}
+
+	/**
+	 * Gets the job with the given global identifier from the server, including
+	 * the job results
+	 *
+	 * @param jobId The global job identifier
+	 * @return The job with its results
+	 * @throws ApiException
+	 */
+	public Job getJob(long jobId) throws ApiException {
+		final long localId = getLocalId(jobId);
+		long start = AnalysisMetrics.JOB_FETCH.start();
+		Job job = limiter.execute(() -> jobsApi.getJob(localId));
+		AnalysisMetrics.JOB_FETCH.stop(start);
+		job.setId(jobId);
+		return job;
+	}
+
+	/**
+	 * Creates the API for accessing the vulnerability catalog of the server
+	 *
+	 * @return The API for accessing the vulnerability catalog
+	 */
+	public VulnerabilitiesApi createVulnerabilitiesApi() {
+		return new VulnerabilitiesApi(apiClient);
+	}
+
+	/**
+	 * Computes the global identifier of a job
+	 *
+	 * @param source  The index of the server
+	 * @param localId The job identifier on the server
+	 * @return The global job identifier
+	 */
+	public static long toGlobalId(int source, long localId) {
+		if ((localId & ~LOCAL_ID_MASK) != 0)
+			throw new IllegalArgumentException(String.format("Job identifier %d is too large", localId));
+		return ((long) source << SOURCE_SHIFT) | localId;
+	}
+
+	/**
+	 * Gets the index of the server from which the job with the given global
+	 * identifier was taken
+	 *
+	 * @param jobId The global job identifier
+	 * @return The index of the server
+	 */
+	public static int getSourceIndex(long jobId) {
+		return (int) (jobId >>> SOURCE_SHIFT);
+	}
+
+	/**
+	 * Gets the job identifier on the server from the given global identifier
+	 *
+	 * @param jobId The global job identifier
+	 * @return The job identifier on the server
+	 */
+	public static long getLocalId(long jobId) {
+		return jobId & LOCAL_ID_MASK;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	public ApiClient getApiClient() {
+		return apiClient;
+	}
+
+	public AdaptiveLimiter getLimiter() {
+		return limiter;
+	}
+
+}